@@ -81,4 +81,18 @@ public class RuntimeMetricName
     public static final String DIRECTORY_LISTING_CACHE_MISS = "directoryListingCacheMiss";
     public static final String DIRECTORY_LISTING_TIME_NANOS = "directoryListingTimeNanos";
     public static final String FILES_READ_COUNT = "filesReadCount";
+    // Uncompressed bytes of the pages compressed with each codec by the ADAPTIVE compression codec, or left uncompressed by it.
+    public static final String ADAPTIVE_COMPRESSION_LZ4_BYTES = "adaptiveCompressionLz4Bytes";
+    public static final String ADAPTIVE_COMPRESSION_ZSTD_BYTES = "adaptiveCompressionZstdBytes";
+    public static final String ADAPTIVE_COMPRESSION_SKIPPED_BYTES = "adaptiveCompressionSkippedBytes";
+    // Serialized size, size before compression and serialization time of each page sent over an exchange by an output operator.
+    public static final String EXCHANGE_SERIALIZED_PAGE_BYTES = "exchangeSerializedPageBytes";
+    public static final String EXCHANGE_UNCOMPRESSED_PAGE_BYTES = "exchangeUncompressedPageBytes";
+    public static final String EXCHANGE_PAGE_SERIALIZATION_TIME_NANOS = "exchangePageSerializationTimeNanos";
+    // Utilization of the output buffer in percent, sampled each time an output operator enqueues pages.
+    public static final String OUTPUT_BUFFER_UTILIZATION_PERCENT = "outputBufferUtilizationPercent";
+    // Time an output operator was blocked on a full output buffer, one value per blocked period.
+    public static final String OUTPUT_BUFFER_BLOCKED_TIME_NANOS = "outputBufferBlockedTimeNanos";
+    // Deserialization time of each page received by an exchange operator.
+    public static final String EXCHANGE_PAGE_DESERIALIZATION_TIME_NANOS = "exchangePageDeserializationTimeNanos";
 }
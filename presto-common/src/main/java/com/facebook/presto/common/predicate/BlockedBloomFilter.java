@@ -0,0 +1,182 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.common.predicate;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.DateType;
+import com.facebook.presto.common.type.IntegerType;
+import com.facebook.presto.common.type.SmallintType;
+import com.facebook.presto.common.type.TinyintType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.VarcharType;
+import io.airlift.slice.Slice;
+import io.airlift.slice.XxHash64;
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.facebook.presto.common.predicate.TupleDomainFilterUtils.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static io.airlift.slice.Slices.wrappedBuffer;
+
+/**
+ * A split block Bloom filter. Every value sets one bit in each of the eight words
+ * of a single 64 byte block, so a lookup touches exactly one cache line.
+ * <p>
+ * Values are added and tested by their 64 bit hash, see {@link #hash(Type, Block, int)},
+ * {@link #hashLong(long)} and {@link #hashBytes(byte[], int, int)}. Filters of the same
+ * size can be combined with {@link #union(BlockedBloomFilter)}.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class BlockedBloomFilter
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BlockedBloomFilter.class).instanceSize();
+
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BYTES_PER_BLOCK = WORDS_PER_BLOCK * Long.BYTES;
+    // odd constants used to derive the bit to set in each word of the block, see the Parquet split block Bloom filter spec
+    private static final int[] SALT = {0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d, 0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31};
+
+    private final long[] words;
+    private final int blockMask;
+    private long entryCount;
+
+    private BlockedBloomFilter(long[] words)
+    {
+        this.words = words;
+        this.blockMask = words.length / WORDS_PER_BLOCK - 1;
+    }
+
+    /**
+     * Creates an empty filter of at most {@code maxSizeInBytes}, rounded down to a power of two number of blocks.
+     */
+    public static BlockedBloomFilter create(long maxSizeInBytes)
+    {
+        checkArgument(maxSizeInBytes >= BYTES_PER_BLOCK, "maxSizeInBytes must be at least " + BYTES_PER_BLOCK);
+        checkArgument(maxSizeInBytes <= (1L << 30), "maxSizeInBytes must be at most 1GB");
+        long blockCount = Long.highestOneBit(maxSizeInBytes / BYTES_PER_BLOCK);
+        return new BlockedBloomFilter(new long[(int) (blockCount * WORDS_PER_BLOCK)]);
+    }
+
+    public static boolean isSupportedType(Type type)
+    {
+        return type.equals(BigintType.BIGINT) ||
+                type.equals(IntegerType.INTEGER) ||
+                type.equals(SmallintType.SMALLINT) ||
+                type.equals(TinyintType.TINYINT) ||
+                type.equals(DateType.DATE) ||
+                type instanceof VarcharType;
+    }
+
+    /**
+     * Hashes a non-null value of a supported type the same way the readers hash the values
+     * passed to {@link TupleDomainFilter#testLong(long)} and {@link TupleDomainFilter#testBytes(byte[], int, int)}.
+     */
+    public static long hash(Type type, Block block, int position)
+    {
+        if (type instanceof VarcharType) {
+            return hashSlice(type.getSlice(block, position));
+        }
+        return hashLong(type.getLong(block, position));
+    }
+
+    public static long hashLong(long value)
+    {
+        return XxHash64.hash(value);
+    }
+
+    public static long hashSlice(Slice value)
+    {
+        return XxHash64.hash(value);
+    }
+
+    public static long hashBytes(byte[] buffer, int offset, int length)
+    {
+        return XxHash64.hash(wrappedBuffer(buffer, offset, length));
+    }
+
+    public void add(long hash)
+    {
+        int blockOffset = ((int) hash & blockMask) * WORDS_PER_BLOCK;
+        int key = (int) (hash >>> 32);
+        long newBits = 0;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            long bit = 1L << ((key * SALT[i]) >>> 26);
+            newBits |= ~words[blockOffset + i] & bit;
+            words[blockOffset + i] |= bit;
+        }
+        // a value that sets no new bit is a duplicate, or a false positive
+        if (newBits != 0) {
+            entryCount++;
+        }
+    }
+
+    public boolean mightContain(long hash)
+    {
+        int blockOffset = ((int) hash & blockMask) * WORDS_PER_BLOCK;
+        int key = (int) (hash >>> 32);
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            if ((words[blockOffset + i] & (1L << ((key * SALT[i]) >>> 26))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all values of {@code other} to this filter. Both filters must have the same size.
+     * The entry counts of the filters are added, so values present in both filters are counted twice.
+     */
+    public void union(BlockedBloomFilter other)
+    {
+        checkArgument(words.length == other.words.length, "Bloom filters have different sizes");
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+        entryCount += other.entryCount;
+    }
+
+    /**
+     * Number of distinct values added to the filter. Values that collide with all the bits of
+     * earlier values are not counted, so this may slightly underestimate the distinct count.
+     */
+    public long getEntryCount()
+    {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of entries above which the false positive rate exceeds roughly 2%.
+     */
+    public long getCapacity()
+    {
+        return (long) words.length * Long.SIZE / 10;
+    }
+
+    public long getSizeInBytes()
+    {
+        return (long) words.length * Long.BYTES;
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(words);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BlockedBloomFilter{sizeInBytes=" + getSizeInBytes() + ", entryCount=" + entryCount + "}";
+    }
+}
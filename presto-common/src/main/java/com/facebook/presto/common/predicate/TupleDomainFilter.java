@@ -1715,6 +1715,87 @@ public interface TupleDomainFilter
         }
     }
 
+    /**
+     * Accepts the values that pass the bounds filter and may be present in the Bloom filter.
+     * Used for dynamic filters whose build side has too many distinct values to be listed.
+     */
+    class BloomFilterValues
+            extends AbstractTupleDomainFilter
+    {
+        private final TupleDomainFilter bounds;
+        private final BlockedBloomFilter bloomFilter;
+
+        private BloomFilterValues(TupleDomainFilter bounds, BlockedBloomFilter bloomFilter)
+        {
+            super(true, bounds.testNull());
+            this.bounds = requireNonNull(bounds, "bounds is null");
+            this.bloomFilter = requireNonNull(bloomFilter, "bloomFilter is null");
+        }
+
+        public static BloomFilterValues of(TupleDomainFilter bounds, BlockedBloomFilter bloomFilter)
+        {
+            checkArgument(bounds.isDeterministic(), "bounds must be deterministic");
+            return new BloomFilterValues(bounds, bloomFilter);
+        }
+
+        @Override
+        public boolean testNonNull()
+        {
+            return bounds.testNonNull();
+        }
+
+        @Override
+        public boolean testLong(long value)
+        {
+            return bounds.testLong(value) && bloomFilter.mightContain(BlockedBloomFilter.hashLong(value));
+        }
+
+        @Override
+        public boolean testBytes(byte[] buffer, int offset, int length)
+        {
+            return bounds.testBytes(buffer, offset, length) && bloomFilter.mightContain(BlockedBloomFilter.hashBytes(buffer, offset, length));
+        }
+
+        @Override
+        public boolean testLength(int length)
+        {
+            return bounds.testLength(length);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            BloomFilterValues that = (BloomFilterValues) o;
+            return bounds.equals(that.bounds) &&
+                    bloomFilter == that.bloomFilter;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(bounds, System.identityHashCode(bloomFilter));
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder(this.getClass().getName());
+            sb.append("{bounds=").append(bounds);
+            sb.append(", bloomFilter=").append(bloomFilter);
+            sb.append("}");
+
+            return sb.toString();
+        }
+    }
+
     abstract class BasePositionalFilter
             implements TupleDomainFilter
     {
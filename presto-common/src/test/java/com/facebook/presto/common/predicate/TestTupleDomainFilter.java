@@ -17,6 +17,7 @@ import com.facebook.presto.common.predicate.TupleDomainFilter.BigintMultiRange;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BigintRange;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BigintValuesUsingBitmask;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BigintValuesUsingHashTable;
+import com.facebook.presto.common.predicate.TupleDomainFilter.BloomFilterValues;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BooleanValue;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BytesRange;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BytesValues;
@@ -362,6 +363,39 @@ public class TestTupleDomainFilter
         return Slices.utf8Slice(value).getBytes();
     }
 
+    @Test
+    public void testBloomFilterValues()
+    {
+        BlockedBloomFilter bloomFilter = BlockedBloomFilter.create(1024);
+        for (long value = 0; value < 100; value += 2) {
+            bloomFilter.add(BlockedBloomFilter.hashLong(value));
+        }
+        bloomFilter.add(BlockedBloomFilter.hashSlice(Slices.utf8Slice("dragon")));
+
+        TupleDomainFilter filter = BloomFilterValues.of(BigintRange.of(10, 1000, false), bloomFilter);
+        assertFalse(filter.testNull());
+        for (long value = 10; value < 100; value += 2) {
+            assertTrue(filter.testLong(value));
+        }
+        // rejected by the bounds
+        assertFalse(filter.testLong(0));
+        assertFalse(filter.testLong(8));
+
+        filter = BloomFilterValues.of(TupleDomainFilter.IS_NOT_NULL, bloomFilter);
+        assertFalse(filter.testNull());
+        assertTrue(filter.testLong(0));
+        assertTrue(filter.testBytes(toBytes("a dragon"), 2, 6));
+        assertTrue(filter.testLength(3));
+
+        int falsePositives = 0;
+        for (long value = 1; value < 10_000; value += 2) {
+            if (filter.testLong(value)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 250, "too many false positives: " + falsePositives);
+    }
+
     @Test
     public void testBytesMultiRange()
     {
@@ -24,6 +24,7 @@ import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotNull;
 
 import static com.facebook.presto.spi.schedule.NodeSelectionStrategy.NO_PREFERENCE;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 
 public class HiveCommonClientConfig
@@ -39,6 +40,7 @@ public class HiveCommonClientConfig
     private OrcWriteValidationMode orcWriterValidationMode = OrcWriteValidationMode.BOTH;
     private double orcWriterValidationPercentage;
     private DataSize orcTinyStripeThreshold = new DataSize(8, MEGABYTE);
+    private DataSize orcStripePrefetchSize = new DataSize(0, BYTE);
     private boolean parquetBatchReadOptimizationEnabled;
     private boolean parquetEnableBatchReaderVerification;
     private DataSize parquetMaxReadBlockSize = new DataSize(16, MEGABYTE);
@@ -197,6 +199,20 @@ public class HiveCommonClientConfig
         return this;
     }
 
+    @NotNull
+    public DataSize getOrcStripePrefetchSize()
+    {
+        return orcStripePrefetchSize;
+    }
+
+    @Config("hive.orc.stripe-prefetch-size")
+    @ConfigDescription("Memory the selective ORC reader may use to read stripes ahead of the stripe being decoded, or 0B to read stripes one at a time")
+    public HiveCommonClientConfig setOrcStripePrefetchSize(DataSize orcStripePrefetchSize)
+    {
+        this.orcStripePrefetchSize = orcStripePrefetchSize;
+        return this;
+    }
+
     @Config("hive.parquet-batch-read-optimization-enabled")
     @ConfigDescription("enable parquet batch reads optimization")
     public HiveCommonClientConfig setParquetBatchReadOptimizationEnabled(boolean parquetBatchReadOptimizationEnabled)
@@ -55,6 +55,7 @@ public class HiveCommonSessionProperties
     private static final String ORC_OPTIMIZED_WRITER_VALIDATE_MODE = "orc_optimized_writer_validate_mode";
     private static final String ORC_OPTIMIZED_WRITER_VALIDATE_PERCENTAGE = "orc_optimized_writer_validate_percentage";
     private static final String ORC_STREAM_BUFFER_SIZE = "orc_stream_buffer_size";
+    private static final String ORC_STRIPE_PREFETCH_SIZE = "orc_stripe_prefetch_size";
     private static final String ORC_TINY_STRIPE_THRESHOLD = "orc_tiny_stripe_threshold";
     private static final String ORC_ZSTD_JNI_DECOMPRESSION_ENABLED = "orc_zstd_jni_decompression_enabled";
     private static final String PARQUET_BATCH_READER_VERIFICATION_ENABLED = "parquet_batch_reader_verification_enabled";
@@ -144,6 +145,11 @@ public class HiveCommonSessionProperties
                         "ORC: Size of buffer for streaming reads",
                         hiveCommonClientConfig.getOrcStreamBufferSize(),
                         false),
+                dataSizeSessionProperty(
+                        ORC_STRIPE_PREFETCH_SIZE,
+                        "ORC: Memory the selective reader may use to read stripes ahead of the stripe being decoded",
+                        hiveCommonClientConfig.getOrcStripePrefetchSize(),
+                        false),
                 dataSizeSessionProperty(
                         ORC_TINY_STRIPE_THRESHOLD,
                         "ORC: Threshold below which an ORC stripe or file will read in its entirety",
@@ -253,6 +259,11 @@ public class HiveCommonSessionProperties
         return session.getProperty(ORC_STREAM_BUFFER_SIZE, DataSize.class);
     }
 
+    public static DataSize getOrcStripePrefetchSize(ConnectorSession session)
+    {
+        return session.getProperty(ORC_STRIPE_PREFETCH_SIZE, DataSize.class);
+    }
+
     public static DataSize getOrcTinyStripeThreshold(ConnectorSession session)
     {
         return session.getProperty(ORC_TINY_STRIPE_THRESHOLD, DataSize.class);
@@ -40,6 +40,7 @@ public class TestHiveCommonClientConfig
                 .setOrcMaxBufferSize(new DataSize(8, DataSize.Unit.MEGABYTE))
                 .setOrcStreamBufferSize(new DataSize(8, DataSize.Unit.MEGABYTE))
                 .setOrcTinyStripeThreshold(new DataSize(8, DataSize.Unit.MEGABYTE))
+                .setOrcStripePrefetchSize(new DataSize(0, DataSize.Unit.BYTE))
                 .setOrcMaxReadBlockSize(new DataSize(16, DataSize.Unit.MEGABYTE))
                 .setOrcLazyReadSmallRanges(true)
                 .setOrcOptimizedWriterEnabled(true)
@@ -66,6 +67,7 @@ public class TestHiveCommonClientConfig
                 .put("hive.orc.max-buffer-size", "44kB")
                 .put("hive.orc.stream-buffer-size", "55kB")
                 .put("hive.orc.tiny-stripe-threshold", "61kB")
+                .put("hive.orc.stripe-prefetch-size", "256MB")
                 .put("hive.orc.max-read-block-size", "66kB")
                 .put("hive.orc.lazy-read-small-ranges", "false")
                 .put("hive.orc.optimized-writer.enabled", "false")
@@ -89,6 +91,7 @@ public class TestHiveCommonClientConfig
                 .setOrcMaxBufferSize(new DataSize(44, DataSize.Unit.KILOBYTE))
                 .setOrcStreamBufferSize(new DataSize(55, DataSize.Unit.KILOBYTE))
                 .setOrcTinyStripeThreshold(new DataSize(61, DataSize.Unit.KILOBYTE))
+                .setOrcStripePrefetchSize(new DataSize(256, DataSize.Unit.MEGABYTE))
                 .setOrcMaxReadBlockSize(new DataSize(66, DataSize.Unit.KILOBYTE))
                 .setOrcLazyReadSmallRanges(false)
                 .setOrcOptimizedWriterEnabled(false)
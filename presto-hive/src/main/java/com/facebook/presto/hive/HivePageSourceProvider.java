@@ -17,6 +17,7 @@ import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.common.Subfield;
 import com.facebook.presto.common.Subfield.NestedField;
 import com.facebook.presto.common.Subfield.PathElement;
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.NullableValue;
 import com.facebook.presto.common.predicate.TupleDomain;
@@ -374,6 +375,10 @@ public class HivePageSourceProvider
                 .map(filter -> filter.transform(handle -> new Subfield(((HiveColumnHandle) handle).getName())).intersect(layout.getDomainPredicate()))
                 .orElse(layout.getDomainPredicate());
 
+        Map<String, BlockedBloomFilter> dynamicFilterBloomFilters = splitContext.getDynamicFilterBloomFilters().entrySet().stream()
+                .filter(entry -> ((HiveColumnHandle) entry.getKey()).getColumnType() == REGULAR)
+                .collect(toImmutableMap(entry -> ((HiveColumnHandle) entry.getKey()).getName(), Map.Entry::getValue));
+
         List<HiveColumnHandle> columnHandles = toColumnHandles(columnMappings, true);
         Optional<byte[]> rowIDPartitionComponent = split.getRowIdPartitionComponent();
         HiveUtil.checkRowIDPartitionComponent(columnHandles, rowIDPartitionComponent);
@@ -389,6 +394,7 @@ public class HivePageSourceProvider
                     bucketAdaptation,
                     outputColumns,
                     domainPredicate,
+                    dynamicFilterBloomFilters,
                     optimizedRemainingPredicate,
                     hiveStorageTimeZone,
                     fileContext,
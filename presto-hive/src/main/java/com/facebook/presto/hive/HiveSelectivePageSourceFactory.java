@@ -14,6 +14,7 @@
 package com.facebook.presto.hive;
 
 import com.facebook.presto.common.Subfield;
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.hive.metastore.Storage;
 import com.facebook.presto.spi.ConnectorPageSource;
@@ -45,4 +46,46 @@ public interface HiveSelectivePageSourceFactory
             Optional<EncryptionInformation> encryptionInformation,
             boolean appendRowNumberEnabled,
             Optional<byte[]> rowIDPartitionComponent);
+
+    /**
+     * Same as above, with Bloom filters of the dynamic filter values keyed by column name. Readers
+     * may skip the rows whose values are not in the Bloom filters, in addition to the domain predicate.
+     */
+    default Optional<? extends ConnectorPageSource> createPageSource(
+            Configuration configuration,
+            ConnectorSession session,
+            HiveFileSplit fileSplit,
+            Storage storage,
+            List<HiveColumnHandle> columns,
+            Map<Integer, String> prefilledValues,
+            Map<Integer, HiveCoercer> coercers,
+            Optional<BucketAdaptation> bucketAdaptation,
+            List<Integer> outputColumns,
+            TupleDomain<Subfield> domainPredicate,
+            Map<String, BlockedBloomFilter> dynamicFilterBloomFilters,
+            RowExpression remainingPredicate,
+            DateTimeZone hiveStorageTimeZone,
+            HiveFileContext hiveFileContext,
+            Optional<EncryptionInformation> encryptionInformation,
+            boolean appendRowNumberEnabled,
+            Optional<byte[]> rowIDPartitionComponent)
+    {
+        return createPageSource(
+                configuration,
+                session,
+                fileSplit,
+                storage,
+                columns,
+                prefilledValues,
+                coercers,
+                bucketAdaptation,
+                outputColumns,
+                domainPredicate,
+                remainingPredicate,
+                hiveStorageTimeZone,
+                hiveFileContext,
+                encryptionInformation,
+                appendRowNumberEnabled,
+                rowIDPartitionComponent);
+    }
 }
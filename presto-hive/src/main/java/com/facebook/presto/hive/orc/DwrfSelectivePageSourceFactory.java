@@ -15,11 +15,13 @@ package com.facebook.presto.hive.orc;
 
 import com.facebook.hive.orc.OrcSerde;
 import com.facebook.presto.common.Subfield;
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.type.TypeManager;
 import com.facebook.presto.hive.BucketAdaptation;
 import com.facebook.presto.hive.EncryptionInformation;
 import com.facebook.presto.hive.FileFormatDataSourceStats;
+import com.facebook.presto.hive.ForHiveClient;
 import com.facebook.presto.hive.HdfsEnvironment;
 import com.facebook.presto.hive.HiveClientConfig;
 import com.facebook.presto.hive.HiveCoercer;
@@ -38,6 +40,7 @@ import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.function.StandardFunctionResolution;
 import com.facebook.presto.spi.relation.RowExpression;
 import com.facebook.presto.spi.relation.RowExpressionService;
+import com.google.common.collect.ImmutableMap;
 import org.apache.hadoop.conf.Configuration;
 import org.joda.time.DateTimeZone;
 
@@ -46,6 +49,8 @@ import javax.inject.Inject;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_BAD_DATA;
 import static com.facebook.presto.hive.HiveUtil.checkRowIDPartitionComponent;
@@ -66,6 +71,7 @@ public class DwrfSelectivePageSourceFactory
     private final StripeMetadataSourceFactory stripeMetadataSourceFactory;
     private final TupleDomainFilterCache tupleDomainFilterCache;
     private final DwrfEncryptionProvider dwrfEncryptionProvider;
+    private final Executor stripePrefetchExecutor;
 
     @Inject
     public DwrfSelectivePageSourceFactory(
@@ -78,7 +84,8 @@ public class DwrfSelectivePageSourceFactory
             OrcFileTailSource orcFileTailSource,
             StripeMetadataSourceFactory stripeMetadataSourceFactory,
             TupleDomainFilterCache tupleDomainFilterCache,
-            HiveDwrfEncryptionProvider dwrfEncryptionProvider)
+            HiveDwrfEncryptionProvider dwrfEncryptionProvider,
+            @ForHiveClient ExecutorService stripePrefetchExecutor)
     {
         this.typeManager = requireNonNull(typeManager, "typeManager is null");
         this.functionResolution = requireNonNull(functionResolution, "functionResolution is null");
@@ -90,6 +97,7 @@ public class DwrfSelectivePageSourceFactory
         this.stripeMetadataSourceFactory = requireNonNull(stripeMetadataSourceFactory, "stripeMetadataSourceFactory is null");
         this.tupleDomainFilterCache = requireNonNull(tupleDomainFilterCache, "tupleDomainFilterCache is null");
         this.dwrfEncryptionProvider = requireNonNull(dwrfEncryptionProvider, "dwrfEncryptionProvider is null").toDwrfEncryptionProvider();
+        this.stripePrefetchExecutor = requireNonNull(stripePrefetchExecutor, "stripePrefetchExecutor is null");
     }
 
     @Override
@@ -110,6 +118,46 @@ public class DwrfSelectivePageSourceFactory
             Optional<EncryptionInformation> encryptionInformation,
             boolean appendRowNumberEnabled,
             Optional<byte[]> rowIDPartitionComponent)
+    {
+        return createPageSource(
+                configuration,
+                session,
+                fileSplit,
+                storage,
+                columns,
+                prefilledValues,
+                coercers,
+                bucketAdaptation,
+                outputColumns,
+                domainPredicate,
+                ImmutableMap.of(),
+                remainingPredicate,
+                hiveStorageTimeZone,
+                hiveFileContext,
+                encryptionInformation,
+                appendRowNumberEnabled,
+                rowIDPartitionComponent);
+    }
+
+    @Override
+    public Optional<? extends ConnectorPageSource> createPageSource(
+            Configuration configuration,
+            ConnectorSession session,
+            HiveFileSplit fileSplit,
+            Storage storage,
+            List<HiveColumnHandle> columns,
+            Map<Integer, String> prefilledValues,
+            Map<Integer, HiveCoercer> coercers,
+            Optional<BucketAdaptation> bucketAdaptation,
+            List<Integer> outputColumns,
+            TupleDomain<Subfield> domainPredicate,
+            Map<String, BlockedBloomFilter> dynamicFilterBloomFilters,
+            RowExpression remainingPredicate,
+            DateTimeZone hiveStorageTimeZone,
+            HiveFileContext hiveFileContext,
+            Optional<EncryptionInformation> encryptionInformation,
+            boolean appendRowNumberEnabled,
+            Optional<byte[]> rowIDPartitionComponent)
     {
         if (!OrcSerde.class.getName().equals(storage.getStorageFormat().getSerDe())) {
             return Optional.empty();
@@ -133,6 +181,7 @@ public class DwrfSelectivePageSourceFactory
                 bucketAdaptation,
                 outputColumns,
                 domainPredicate,
+                dynamicFilterBloomFilters,
                 remainingPredicate,
                 false,
                 hiveStorageTimeZone,
@@ -149,6 +198,7 @@ public class DwrfSelectivePageSourceFactory
                 encryptionInformation,
                 dwrfEncryptionProvider,
                 appendRowNumberEnabled,
-                rowIDPartitionComponent));
+                rowIDPartitionComponent,
+                stripePrefetchExecutor));
     }
 }
@@ -79,4 +79,11 @@ public class HdfsOrcDataSource
             throw new PrestoException(HIVE_UNKNOWN_ERROR, message, e);
         }
     }
+
+    // positioned reads of a Hadoop input stream do not change its position and are thread safe
+    @Override
+    public boolean supportsConcurrentReads()
+    {
+        return true;
+    }
 }
@@ -16,9 +16,11 @@ package com.facebook.presto.hive.orc;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.Subfield;
 import com.facebook.presto.common.function.SqlFunctionProperties;
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.FilterFunction;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.predicate.TupleDomainFilter.BloomFilterValues;
 import com.facebook.presto.common.relation.Predicate;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.common.type.TypeManager;
@@ -27,6 +29,7 @@ import com.facebook.presto.expressions.DynamicFilters.DynamicFilterExtractResult
 import com.facebook.presto.hive.BucketAdaptation;
 import com.facebook.presto.hive.EncryptionInformation;
 import com.facebook.presto.hive.FileFormatDataSourceStats;
+import com.facebook.presto.hive.ForHiveClient;
 import com.facebook.presto.hive.HdfsEnvironment;
 import com.facebook.presto.hive.HiveClientConfig;
 import com.facebook.presto.hive.HiveCoercer;
@@ -88,10 +91,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.IntStream;
 
+import static com.facebook.presto.common.predicate.TupleDomainFilter.IS_NOT_NULL;
 import static com.facebook.presto.expressions.DynamicFilters.extractDynamicFilters;
 import static com.facebook.presto.expressions.LogicalRowExpressions.TRUE_CONSTANT;
 import static com.facebook.presto.expressions.LogicalRowExpressions.and;
@@ -102,6 +108,7 @@ import static com.facebook.presto.hive.BaseHiveColumnHandle.ColumnType.REGULAR;
 import static com.facebook.presto.hive.HiveBucketing.getHiveBucket;
 import static com.facebook.presto.hive.HiveCommonSessionProperties.getOrcMaxMergeDistance;
 import static com.facebook.presto.hive.HiveCommonSessionProperties.getOrcMaxReadBlockSize;
+import static com.facebook.presto.hive.HiveCommonSessionProperties.getOrcStripePrefetchSize;
 import static com.facebook.presto.hive.HiveCommonSessionProperties.getOrcTinyStripeThreshold;
 import static com.facebook.presto.hive.HiveCommonSessionProperties.isOrcBloomFiltersEnabled;
 import static com.facebook.presto.hive.HiveCommonSessionProperties.isOrcZstdJniDecompressionEnabled;
@@ -140,6 +147,7 @@ public class OrcSelectivePageSourceFactory
     private final OrcFileTailSource orcFileTailSource;
     private final StripeMetadataSourceFactory stripeMetadataSourceFactory;
     private final TupleDomainFilterCache tupleDomainFilterCache;
+    private final Executor stripePrefetchExecutor;
 
     @Inject
     public OrcSelectivePageSourceFactory(
@@ -151,7 +159,8 @@ public class OrcSelectivePageSourceFactory
             FileFormatDataSourceStats stats,
             OrcFileTailSource orcFileTailSource,
             StripeMetadataSourceFactory stripeMetadataSourceFactory,
-            TupleDomainFilterCache tupleDomainFilterCache)
+            TupleDomainFilterCache tupleDomainFilterCache,
+            @ForHiveClient ExecutorService stripePrefetchExecutor)
     {
         this(
                 typeManager,
@@ -163,7 +172,8 @@ public class OrcSelectivePageSourceFactory
                 config.getDomainCompactionThreshold(),
                 orcFileTailSource,
                 stripeMetadataSourceFactory,
-                tupleDomainFilterCache);
+                tupleDomainFilterCache,
+                stripePrefetchExecutor);
     }
 
     public OrcSelectivePageSourceFactory(
@@ -176,7 +186,8 @@ public class OrcSelectivePageSourceFactory
             int domainCompactionThreshold,
             OrcFileTailSource orcFileTailSource,
             StripeMetadataSourceFactory stripeMetadataSourceFactory,
-            TupleDomainFilterCache tupleDomainFilterCache)
+            TupleDomainFilterCache tupleDomainFilterCache,
+            Executor stripePrefetchExecutor)
     {
         this.typeManager = requireNonNull(typeManager, "typeManager is null");
         this.functionResolution = requireNonNull(functionResolution, "functionResolution is null");
@@ -188,6 +199,7 @@ public class OrcSelectivePageSourceFactory
         this.orcFileTailSource = requireNonNull(orcFileTailSource, "orcFileTailCache is null");
         this.stripeMetadataSourceFactory = requireNonNull(stripeMetadataSourceFactory, "stripeMetadataSourceFactory is null");
         this.tupleDomainFilterCache = requireNonNull(tupleDomainFilterCache, "tupleDomainFilterCache is null");
+        this.stripePrefetchExecutor = requireNonNull(stripePrefetchExecutor, "stripePrefetchExecutor is null");
     }
 
     @Override
@@ -208,6 +220,46 @@ public class OrcSelectivePageSourceFactory
             Optional<EncryptionInformation> encryptionInformation,
             boolean appendRowNumberEnabled,
             Optional<byte[]> rowIDPartitionComponent)
+    {
+        return createPageSource(
+                configuration,
+                session,
+                fileSplit,
+                storage,
+                selectedColumns,
+                prefilledValues,
+                coercers,
+                bucketAdaptation,
+                outputColumns,
+                domainPredicate,
+                ImmutableMap.of(),
+                remainingPredicate,
+                hiveStorageTimeZone,
+                hiveFileContext,
+                encryptionInformation,
+                appendRowNumberEnabled,
+                rowIDPartitionComponent);
+    }
+
+    @Override
+    public Optional<? extends ConnectorPageSource> createPageSource(
+            Configuration configuration,
+            ConnectorSession session,
+            HiveFileSplit fileSplit,
+            Storage storage,
+            List<HiveColumnHandle> selectedColumns,
+            Map<Integer, String> prefilledValues,
+            Map<Integer, HiveCoercer> coercers,
+            Optional<BucketAdaptation> bucketAdaptation,
+            List<Integer> outputColumns,
+            TupleDomain<Subfield> domainPredicate,
+            Map<String, BlockedBloomFilter> dynamicFilterBloomFilters,
+            RowExpression remainingPredicate,
+            DateTimeZone hiveStorageTimeZone,
+            HiveFileContext hiveFileContext,
+            Optional<EncryptionInformation> encryptionInformation,
+            boolean appendRowNumberEnabled,
+            Optional<byte[]> rowIDPartitionComponent)
     {
         if (!OrcSerde.class.getName().equals(storage.getStorageFormat().getSerDe())) {
             return Optional.empty();
@@ -230,6 +282,7 @@ public class OrcSelectivePageSourceFactory
                 bucketAdaptation,
                 outputColumns,
                 domainPredicate,
+                dynamicFilterBloomFilters,
                 remainingPredicate,
                 useOrcColumnNames,
                 hiveStorageTimeZone,
@@ -246,7 +299,8 @@ public class OrcSelectivePageSourceFactory
                 encryptionInformation,
                 NO_ENCRYPTION,
                 appendRowNumberEnabled,
-                rowIDPartitionComponent));
+                rowIDPartitionComponent,
+                stripePrefetchExecutor));
     }
 
     public static ConnectorPageSource createOrcPageSource(
@@ -261,6 +315,7 @@ public class OrcSelectivePageSourceFactory
             Optional<BucketAdaptation> bucketAdaptation,
             List<Integer> outputColumns,
             TupleDomain<Subfield> domainPredicate,
+            Map<String, BlockedBloomFilter> dynamicFilterBloomFilters,
             RowExpression remainingPredicate,
             boolean useOrcColumnNames,
             DateTimeZone hiveStorageTimeZone,
@@ -277,7 +332,8 @@ public class OrcSelectivePageSourceFactory
             Optional<EncryptionInformation> encryptionInformation,
             DwrfEncryptionProvider dwrfEncryptionProvider,
             boolean appendRowNumberEnabled,
-            Optional<byte[]> rowIDPartitionComponent)
+            Optional<byte[]> rowIDPartitionComponent,
+            Executor stripePrefetchExecutor)
     {
         checkArgument(domainCompactionThreshold >= 1, "domainCompactionThreshold must be at least 1");
 
@@ -298,6 +354,7 @@ public class OrcSelectivePageSourceFactory
                 .withMaxBlockSize(maxReadBlockSize)
                 .withZstdJniDecompressionEnabled(isOrcZstdJniDecompressionEnabled(session))
                 .withAppendRowNumber(appendRowNumberEnabled || supplyRowIDs)
+                .withStripePrefetchSize(getOrcStripePrefetchSize(session))
                 .build();
         OrcAggregatedMemoryContext systemMemoryUsage = new HiveOrcAggregatedMemoryContext();
         try {
@@ -330,7 +387,7 @@ public class OrcSelectivePageSourceFactory
             OrcPredicate orcPredicate = toOrcPredicate(domainPredicate, physicalColumns, mappedCoercers, typeManager, domainCompactionThreshold, orcBloomFiltersEnabled);
 
             Map<String, Integer> columnIndices = ImmutableBiMap.copyOf(columnNames).inverse();
-            Map<Integer, Map<Subfield, TupleDomainFilter>> tupleDomainFilters = toTupleDomainFilters(domainPredicate, columnIndices, mappedCoercers, tupleDomainFilterCache);
+            Map<Integer, Map<Subfield, TupleDomainFilter>> tupleDomainFilters = toTupleDomainFilters(domainPredicate, dynamicFilterBloomFilters, columnIndices, mappedCoercers, tupleDomainFilterCache);
 
             List<Integer> outputIndices = outputColumns.stream().map(indexMapping::get).collect(toImmutableList());
             Map<Integer, List<Subfield>> requiredSubfields = collectRequiredSubfields(physicalColumns, outputIndices, tupleDomainFilters, remainingPredicate, columnIndices, functionResolution, rowExpressionService, session);
@@ -381,7 +438,8 @@ public class OrcSelectivePageSourceFactory
                     hiveStorageTimeZone,
                     systemMemoryUsage,
                     Optional.empty(),
-                    INITIAL_BATCH_SIZE);
+                    INITIAL_BATCH_SIZE,
+                    Optional.of(stripePrefetchExecutor));
 
             return new OrcSelectivePageSource(
                     recordReader,
@@ -545,9 +603,24 @@ public class OrcSelectivePageSourceFactory
         }
     }
 
-    private static Map<Integer, Map<Subfield, TupleDomainFilter>> toTupleDomainFilters(TupleDomain<Subfield> domainPredicate, Map<String, Integer> columnIndices, Map<Integer, HiveCoercer> coercers, TupleDomainFilterCache tupleDomainFilterCache)
+    private static Map<Integer, Map<Subfield, TupleDomainFilter>> toTupleDomainFilters(
+            TupleDomain<Subfield> domainPredicate,
+            Map<String, BlockedBloomFilter> dynamicFilterBloomFilters,
+            Map<String, Integer> columnIndices,
+            Map<Integer, HiveCoercer> coercers,
+            TupleDomainFilterCache tupleDomainFilterCache)
     {
-        Map<Subfield, TupleDomainFilter> filtersBySubfield = Maps.transformValues(domainPredicate.getDomains().get(), tupleDomainFilterCache::getFilter);
+        Map<Subfield, TupleDomainFilter> filtersBySubfield = new HashMap<>(Maps.transformValues(domainPredicate.getDomains().get(), tupleDomainFilterCache::getFilter));
+        for (Map.Entry<String, BlockedBloomFilter> entry : dynamicFilterBloomFilters.entrySet()) {
+            Integer columnIndex = columnIndices.get(entry.getKey());
+            if (columnIndex == null || coercers.containsKey(columnIndex)) {
+                // the values of coerced columns are not hashed the same way as the build side values
+                continue;
+            }
+            Subfield subfield = new Subfield(entry.getKey());
+            TupleDomainFilter bounds = filtersBySubfield.getOrDefault(subfield, IS_NOT_NULL);
+            filtersBySubfield.put(subfield, BloomFilterValues.of(bounds, entry.getValue()));
+        }
 
         Map<Integer, Map<Subfield, TupleDomainFilter>> filtersByColumn = new HashMap<>();
         for (Map.Entry<Subfield, TupleDomainFilter> entry : filtersBySubfield.entrySet()) {
@@ -92,6 +92,7 @@ public final class SystemSessionProperties
     public static final String JOIN_MAX_BROADCAST_TABLE_SIZE = "join_max_broadcast_table_size";
     public static final String RETRY_QUERY_WITH_HISTORY_BASED_OPTIMIZATION = "retry_query_with_history_based_optimization";
     public static final String SIZE_BASED_JOIN_DISTRIBUTION_TYPE = "size_based_join_distribution_type";
+    public static final String SHARE_BROADCAST_JOIN_LOOKUP_SOURCE = "share_broadcast_join_lookup_source";
     public static final String DISTRIBUTED_JOIN = "distributed_join";
     public static final String DISTRIBUTED_INDEX_JOIN = "distributed_index_join";
     public static final String HASH_PARTITION_COUNT = "hash_partition_count";
@@ -201,6 +202,8 @@ public final class SystemSessionProperties
     public static final String PUSHDOWN_SUBFIELDS_FROM_LAMBDA_ENABLED = "pushdown_subfields_from_lambda_enabled";
     public static final String INDEX_LOADER_TIMEOUT = "index_loader_timeout";
     public static final String OPTIMIZED_REPARTITIONING_ENABLED = "optimized_repartitioning";
+    public static final String OPTIMIZED_REPARTITIONING_PRESERVE_DICTIONARIES = "optimized_repartitioning_preserve_dictionaries";
+    public static final String PARTITION_SKEW_TRACKING_ENABLED = "partition_skew_tracking_enabled";
     public static final String AGGREGATION_PARTITIONING_MERGING_STRATEGY = "aggregation_partitioning_merging_strategy";
     public static final String LIST_BUILT_IN_FUNCTIONS_ONLY = "list_built_in_functions_only";
     public static final String PARTITIONING_PRECISION_STRATEGY = "partitioning_precision_strategy";
@@ -216,6 +219,7 @@ public final class SystemSessionProperties
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT = "dynamic_filtering_max_per_driver_row_count";
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE = "dynamic_filtering_max_per_driver_size";
     public static final String DYNAMIC_FILTERING_RANGE_ROW_LIMIT_PER_DRIVER = "dynamic_filtering_range_row_limit_per_driver";
+    public static final String DYNAMIC_FILTERING_BLOOM_FILTER_SIZE = "dynamic_filtering_bloom_filter_size";
     public static final String FRAGMENT_RESULT_CACHING_ENABLED = "fragment_result_caching_enabled";
     public static final String INLINE_SQL_FUNCTIONS = "inline_sql_functions";
     public static final String REMOTE_FUNCTIONS_ENABLED = "remote_functions_enabled";
@@ -420,6 +424,11 @@ public final class SystemSessionProperties
                         "Consider source table size when determining join distribution type when CBO fails",
                         featuresConfig.isSizeBasedJoinDistributionTypeEnabled(),
                         false),
+                booleanProperty(
+                        SHARE_BROADCAST_JOIN_LOOKUP_SOURCE,
+                        "Share the lookup source of a broadcast join between the tasks of a stage running on the same worker",
+                        featuresConfig.isShareBroadcastJoinLookupSource(),
+                        false),
                 booleanProperty(
                         CONFIDENCE_BASED_BROADCAST_ENABLED,
                         "Enable confidence based broadcasting when enabled",
@@ -1092,6 +1101,16 @@ public final class SystemSessionProperties
                         "Experimental: Use optimized repartitioning",
                         featuresConfig.isOptimizedRepartitioningEnabled(),
                         false),
+                booleanProperty(
+                        OPTIMIZED_REPARTITIONING_PRESERVE_DICTIONARIES,
+                        "Experimental: Send dictionary and run length encoded columns to the partitions without flattening them when using optimized repartitioning",
+                        featuresConfig.isOptimizedRepartitioningPreserveDictionaries(),
+                        false),
+                booleanProperty(
+                        PARTITION_SKEW_TRACKING_ENABLED,
+                        "Experimental: Report the rows sent to each partition and the hot partitioning keys of partitioned outputs",
+                        featuresConfig.isPartitionSkewTrackingEnabled(),
+                        false),
                 new PropertyMetadata<>(
                         AGGREGATION_PARTITIONING_MERGING_STRATEGY,
                         format("Strategy to merge partition preference in aggregation node. Options are %s",
@@ -1191,6 +1210,15 @@ public final class SystemSessionProperties
                         "Maximum number of build-side rows per driver up to which min and max values will be collected for dynamic filtering",
                         featuresConfig.getDynamicFilteringRangeRowLimitPerDriver(),
                         false),
+                new PropertyMetadata<>(
+                        DYNAMIC_FILTERING_BLOOM_FILTER_SIZE,
+                        "Size of the Bloom filter of build-side values collected for dynamic filtering per-driver. Zero disables the Bloom filter",
+                        VARCHAR,
+                        DataSize.class,
+                        featuresConfig.getDynamicFilteringBloomFilterSize(),
+                        false,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
                 booleanProperty(
                         FRAGMENT_RESULT_CACHING_ENABLED,
                         "Enable fragment result caching and read/write leaf fragment result pages from/to cache when applicable",
@@ -1962,6 +1990,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(SIZE_BASED_JOIN_DISTRIBUTION_TYPE, Boolean.class);
     }
 
+    public static boolean isShareBroadcastJoinLookupSource(Session session)
+    {
+        return session.getSystemProperty(SHARE_BROADCAST_JOIN_LOOKUP_SOURCE, Boolean.class);
+    }
+
     public static boolean isDistributedIndexJoinEnabled(Session session)
     {
         return session.getSystemProperty(DISTRIBUTED_INDEX_JOIN, Boolean.class);
@@ -2590,6 +2623,16 @@ public final class SystemSessionProperties
         return session.getSystemProperty(OPTIMIZED_REPARTITIONING_ENABLED, Boolean.class);
     }
 
+    public static boolean isOptimizedRepartitioningPreserveDictionaries(Session session)
+    {
+        return session.getSystemProperty(OPTIMIZED_REPARTITIONING_PRESERVE_DICTIONARIES, Boolean.class);
+    }
+
+    public static boolean isPartitionSkewTrackingEnabled(Session session)
+    {
+        return session.getSystemProperty(PARTITION_SKEW_TRACKING_ENABLED, Boolean.class);
+    }
+
     public static AggregationPartitioningMergingStrategy getAggregationPartitioningMergingStrategy(Session session)
     {
         return session.getSystemProperty(AGGREGATION_PARTITIONING_MERGING_STRATEGY, AggregationPartitioningMergingStrategy.class);
@@ -2664,6 +2707,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DYNAMIC_FILTERING_RANGE_ROW_LIMIT_PER_DRIVER, Integer.class);
     }
 
+    public static DataSize getDynamicFilteringBloomFilterSize(Session session)
+    {
+        return session.getSystemProperty(DYNAMIC_FILTERING_BLOOM_FILTER_SIZE, DataSize.class);
+    }
+
     public static boolean isFragmentResultCachingEnabled(Session session)
     {
         return session.getSystemProperty(FRAGMENT_RESULT_CACHING_ENABLED, Boolean.class);
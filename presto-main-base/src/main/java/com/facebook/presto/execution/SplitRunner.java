@@ -25,6 +25,15 @@ public interface SplitRunner
 
     ListenableFuture<?> processFor(Duration duration);
 
+    /**
+     * Returns whether the future last returned by {@link #processFor} waits for the source of the split,
+     * such as a table scan waiting for data, rather than for its consumers or for memory.
+     */
+    default boolean isBlockedOnSource()
+    {
+        return false;
+    }
+
     String getInfo();
 
     @Override
@@ -1079,6 +1079,12 @@ public class SqlTaskExecution
             return driver.processFor(duration);
         }
 
+        @Override
+        public synchronized boolean isBlockedOnSource()
+        {
+            return driver != null && driver.isBlockedOnSource();
+        }
+
         @Override
         public String getInfo()
         {
@@ -33,6 +33,7 @@ import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.util.concurrent.TimeUnit;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -87,6 +88,12 @@ public class TaskManagerConfig
     private int taskYieldThreads = 3;
 
     private BigDecimal levelTimeMultiplier = new BigDecimal(2.0);
+    private boolean splitWorkStealingEnabled;
+    private boolean splitAffinityEnabled;
+    private Duration splitAffinityMaxWait = new Duration(10, MILLISECONDS);
+    private boolean ioAwareSplitSchedulingEnabled;
+    private double ioBoundSplitCpuRatio = 0.2;
+    private double ioBoundSplitConcurrencyMultiplier = 2.0;
 
     private boolean legacyLifespanCompletionCondition;
     private TaskPriorityTracking taskPriorityTracking = TaskPriorityTracking.TASK_FAIR;
@@ -301,6 +308,89 @@ public class TaskManagerConfig
         return this;
     }
 
+    public boolean isSplitWorkStealingEnabled()
+    {
+        return splitWorkStealingEnabled;
+    }
+
+    @Config("task.split-work-stealing-enabled")
+    @ConfigDescription("Give each split runner thread its own split queue, and let idle threads steal splits from the queues of other threads")
+    public TaskManagerConfig setSplitWorkStealingEnabled(boolean splitWorkStealingEnabled)
+    {
+        this.splitWorkStealingEnabled = splitWorkStealingEnabled;
+        return this;
+    }
+
+    public boolean isSplitAffinityEnabled()
+    {
+        return splitAffinityEnabled;
+    }
+
+    @Config("task.split-affinity-enabled")
+    @ConfigDescription("Run each split on the split runner thread that ran it last, unless that thread does not get to it within task.split-affinity-max-wait. Requires task.split-work-stealing-enabled")
+    public TaskManagerConfig setSplitAffinityEnabled(boolean splitAffinityEnabled)
+    {
+        this.splitAffinityEnabled = splitAffinityEnabled;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getSplitAffinityMaxWait()
+    {
+        return splitAffinityMaxWait;
+    }
+
+    @Config("task.split-affinity-max-wait")
+    @ConfigDescription("How long a split waits for the split runner thread that ran it last before other threads can run it")
+    public TaskManagerConfig setSplitAffinityMaxWait(Duration splitAffinityMaxWait)
+    {
+        this.splitAffinityMaxWait = splitAffinityMaxWait;
+        return this;
+    }
+
+    public boolean isIoAwareSplitSchedulingEnabled()
+    {
+        return ioAwareSplitSchedulingEnabled;
+    }
+
+    @Config("task.io-aware-split-scheduling-enabled")
+    @ConfigDescription("Classify splits as I/O-bound or CPU-bound, charge I/O-bound splits only for their CPU time and run more of them while they are blocked")
+    public TaskManagerConfig setIoAwareSplitSchedulingEnabled(boolean ioAwareSplitSchedulingEnabled)
+    {
+        this.ioAwareSplitSchedulingEnabled = ioAwareSplitSchedulingEnabled;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getIoBoundSplitCpuRatio()
+    {
+        return ioBoundSplitCpuRatio;
+    }
+
+    @Config("task.io-bound-split-cpu-ratio")
+    @ConfigDescription("A split is I/O-bound when its CPU time is less than this fraction of the time it spent running or blocked")
+    public TaskManagerConfig setIoBoundSplitCpuRatio(double ioBoundSplitCpuRatio)
+    {
+        this.ioBoundSplitCpuRatio = ioBoundSplitCpuRatio;
+        return this;
+    }
+
+    @DecimalMin("1.0")
+    public double getIoBoundSplitConcurrencyMultiplier()
+    {
+        return ioBoundSplitConcurrencyMultiplier;
+    }
+
+    @Config("task.io-bound-split-concurrency-multiplier")
+    @ConfigDescription("Maximum number of running leaf splits, as a multiple of task.min-drivers, while I/O-bound splits are blocked")
+    public TaskManagerConfig setIoBoundSplitConcurrencyMultiplier(double ioBoundSplitConcurrencyMultiplier)
+    {
+        this.ioBoundSplitConcurrencyMultiplier = ioBoundSplitConcurrencyMultiplier;
+        return this;
+    }
+
     @Min(1)
     public int getMaxWorkerThreads()
     {
@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.spi.page.PageCompressor;
+import com.google.common.annotations.VisibleForTesting;
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.zstd.ZstdCompressor;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.nio.ByteBuffer;
+
+import static com.facebook.presto.common.RuntimeMetricName.ADAPTIVE_COMPRESSION_LZ4_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.ADAPTIVE_COMPRESSION_SKIPPED_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.ADAPTIVE_COMPRESSION_ZSTD_BYTES;
+import static com.facebook.presto.common.RuntimeUnit.BYTE;
+import static com.facebook.presto.execution.buffer.AdaptivePageCompressor.Codec.LZ4;
+import static com.facebook.presto.execution.buffer.AdaptivePageCompressor.Codec.NONE;
+import static com.facebook.presto.execution.buffer.AdaptivePageCompressor.Codec.ZSTD;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link PageCompressor} that chooses the codec of each page at runtime. Every few pages, a page is
+ * compressed with both LZ4 and ZSTD to sample their compression ratio and CPU time on the current data.
+ * The following pages are compressed with ZSTD when it saves noticeably more space than LZ4 at an acceptable
+ * CPU cost, with LZ4 otherwise, and are not compressed at all when neither codec makes them smaller.
+ * <p>
+ * Every compressed page starts with a byte identifying its codec, which is read back by {@link AdaptivePageDecompressor}.
+ * The number of pages and the uncompressed bytes handled by each codec are reported in the given {@link RuntimeStats}.
+ */
+@NotThreadSafe
+public class AdaptivePageCompressor
+        implements PageCompressor
+{
+    @VisibleForTesting
+    static final int SAMPLE_INTERVAL_PAGES = 16;
+    // ZSTD is only chosen when its output is at least this fraction smaller than the output of LZ4
+    private static final double MINIMUM_ZSTD_SIZE_REDUCTION = 0.1;
+    // and when it does not spend more than this many times the CPU time of LZ4
+    private static final double MAXIMUM_ZSTD_RELATIVE_CPU_COST = 5;
+
+    private final Lz4Compressor lz4Compressor = new Lz4Compressor();
+    private final ZstdCompressor zstdCompressor = new ZstdCompressor();
+    private final RuntimeStats runtimeStats;
+    private final double minimumCompressionRatio;
+
+    private Codec codec = LZ4;
+    private int pagesUntilSample;
+    private byte[] sampleBuffer;
+
+    /**
+     * @param minimumCompressionRatio the largest ratio of compressed to uncompressed size for which a page is compressed
+     */
+    public AdaptivePageCompressor(RuntimeStats runtimeStats, double minimumCompressionRatio)
+    {
+        checkArgument(minimumCompressionRatio > 0 && minimumCompressionRatio <= 1, "minimumCompressionRatio must be in (0, 1]");
+        this.runtimeStats = requireNonNull(runtimeStats, "runtimeStats is null");
+        this.minimumCompressionRatio = minimumCompressionRatio;
+    }
+
+    @Override
+    public int maxCompressedLength(int uncompressedSize)
+    {
+        // one byte for the codec, followed by the largest of the possible outputs
+        return 1 + max(uncompressedSize, max(lz4Compressor.maxCompressedLength(uncompressedSize), zstdCompressor.maxCompressedLength(uncompressedSize)));
+    }
+
+    @Override
+    public int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+    {
+        checkArgument(maxOutputLength >= maxCompressedLength(inputLength), "Output buffer is too small");
+
+        int compressedSize;
+        if (pagesUntilSample == 0) {
+            pagesUntilSample = SAMPLE_INTERVAL_PAGES - 1;
+            compressedSize = compressSample(input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
+        }
+        else {
+            pagesUntilSample--;
+            compressedSize = compress(codec, input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
+            if (codec != NONE && !isCompressible(minimumCompressionRatio, inputLength, compressedSize)) {
+                // the data stopped compressing well with the chosen codec, so sample the next page again
+                pagesUntilSample = 0;
+            }
+        }
+
+        Codec effectiveCodec = isCompressible(minimumCompressionRatio, inputLength, compressedSize) ? Codec.fromId(output[outputOffset]) : NONE;
+        runtimeStats.addMetricValue(effectiveCodec.getMetricName(), BYTE, inputLength);
+        return compressedSize;
+    }
+
+    @Override
+    public void compress(ByteBuffer input, ByteBuffer output)
+    {
+        byte[] inputArray;
+        int inputOffset;
+        int inputLength = input.remaining();
+        if (input.hasArray()) {
+            inputArray = input.array();
+            inputOffset = input.arrayOffset() + input.position();
+        }
+        else {
+            inputArray = new byte[inputLength];
+            input.duplicate().get(inputArray);
+            inputOffset = 0;
+        }
+
+        byte[] outputArray = new byte[maxCompressedLength(inputLength)];
+        int compressedSize = compress(inputArray, inputOffset, inputLength, outputArray, 0, outputArray.length);
+        output.put(outputArray, 0, compressedSize);
+        input.position(input.limit());
+    }
+
+    @VisibleForTesting
+    Codec getCodec()
+    {
+        return codec;
+    }
+
+    private int compressSample(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+    {
+        long start = System.nanoTime();
+        int lz4Size = lz4Compressor.compress(input, inputOffset, inputLength, output, outputOffset + 1, maxOutputLength - 1);
+        long lz4Nanos = System.nanoTime() - start;
+
+        int maxZstdSize = zstdCompressor.maxCompressedLength(inputLength);
+        if (sampleBuffer == null || sampleBuffer.length < maxZstdSize) {
+            sampleBuffer = new byte[maxZstdSize];
+        }
+        start = System.nanoTime();
+        int zstdSize = zstdCompressor.compress(input, inputOffset, inputLength, sampleBuffer, 0, sampleBuffer.length);
+        long zstdNanos = System.nanoTime() - start;
+
+        codec = chooseCodec(minimumCompressionRatio, inputLength, lz4Size, lz4Nanos, zstdSize, zstdNanos);
+        switch (codec) {
+            case LZ4:
+                output[outputOffset] = LZ4.getId();
+                return lz4Size + 1;
+            case ZSTD:
+                output[outputOffset] = ZSTD.getId();
+                System.arraycopy(sampleBuffer, 0, output, outputOffset + 1, zstdSize);
+                return zstdSize + 1;
+            default:
+                return compress(NONE, input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
+        }
+    }
+
+    private int compress(Codec codec, byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+    {
+        output[outputOffset] = codec.getId();
+        switch (codec) {
+            case LZ4:
+                return lz4Compressor.compress(input, inputOffset, inputLength, output, outputOffset + 1, maxOutputLength - 1) + 1;
+            case ZSTD:
+                return zstdCompressor.compress(input, inputOffset, inputLength, output, outputOffset + 1, maxOutputLength - 1) + 1;
+            default:
+                System.arraycopy(input, inputOffset, output, outputOffset + 1, inputLength);
+                return inputLength + 1;
+        }
+    }
+
+    @VisibleForTesting
+    static Codec chooseCodec(double minimumCompressionRatio, int uncompressedSize, int lz4Size, long lz4Nanos, int zstdSize, long zstdNanos)
+    {
+        boolean lz4Compressible = isCompressible(minimumCompressionRatio, uncompressedSize, lz4Size);
+        boolean zstdCompressible = isCompressible(minimumCompressionRatio, uncompressedSize, zstdSize);
+        if (!lz4Compressible && !zstdCompressible) {
+            return NONE;
+        }
+        if (!lz4Compressible) {
+            return ZSTD;
+        }
+        if (zstdCompressible
+                && zstdSize <= lz4Size * (1 - MINIMUM_ZSTD_SIZE_REDUCTION)
+                && zstdNanos <= max(lz4Nanos, 1) * MAXIMUM_ZSTD_RELATIVE_CPU_COST) {
+            return ZSTD;
+        }
+        return LZ4;
+    }
+
+    private static boolean isCompressible(double minimumCompressionRatio, int uncompressedSize, int compressedSize)
+    {
+        return compressedSize / (double) uncompressedSize <= minimumCompressionRatio;
+    }
+
+    @VisibleForTesting
+    enum Codec
+    {
+        NONE(0, ADAPTIVE_COMPRESSION_SKIPPED_BYTES),
+        LZ4(1, ADAPTIVE_COMPRESSION_LZ4_BYTES),
+        ZSTD(2, ADAPTIVE_COMPRESSION_ZSTD_BYTES);
+
+        private final byte id;
+        private final String metricName;
+
+        Codec(int id, String metricName)
+        {
+            this.id = (byte) id;
+            this.metricName = metricName;
+        }
+
+        byte getId()
+        {
+            return id;
+        }
+
+        String getMetricName()
+        {
+            return metricName;
+        }
+
+        static Codec fromId(byte id)
+        {
+            for (Codec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
+                }
+            }
+            throw new IllegalArgumentException("Unknown adaptive compression codec: " + id);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.execution.buffer.AdaptivePageCompressor.Codec;
+import com.facebook.presto.spi.page.PageDecompressor;
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decompresses the pages produced by {@link AdaptivePageCompressor}, using the codec recorded in the first byte of each page.
+ */
+public class AdaptivePageDecompressor
+        implements PageDecompressor
+{
+    private final Lz4Decompressor lz4Decompressor = new Lz4Decompressor();
+    private final ZstdDecompressor zstdDecompressor = new ZstdDecompressor();
+
+    @Override
+    public int decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+    {
+        if (inputLength == 0) {
+            throw new MalformedInputException(inputOffset, "Adaptive compression codec is missing");
+        }
+        switch (readCodec(input[inputOffset], inputOffset)) {
+            case LZ4:
+                return lz4Decompressor.decompress(input, inputOffset + 1, inputLength - 1, output, outputOffset, maxOutputLength);
+            case ZSTD:
+                return zstdDecompressor.decompress(input, inputOffset + 1, inputLength - 1, output, outputOffset, maxOutputLength);
+            default:
+                if (inputLength - 1 > maxOutputLength) {
+                    throw new MalformedInputException(inputOffset, "Output buffer is too small");
+                }
+                System.arraycopy(input, inputOffset + 1, output, outputOffset, inputLength - 1);
+                return inputLength - 1;
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuffer input, ByteBuffer output)
+    {
+        if (!input.hasRemaining()) {
+            throw new MalformedInputException(input.position(), "Adaptive compression codec is missing");
+        }
+        switch (readCodec(input.get(), input.position() - 1)) {
+            case LZ4:
+                lz4Decompressor.decompress(input, output);
+                break;
+            case ZSTD:
+                zstdDecompressor.decompress(input, output);
+                break;
+            default:
+                output.put(input);
+        }
+    }
+
+    private static Codec readCodec(byte id, long offset)
+    {
+        try {
+            return Codec.fromId(id);
+        }
+        catch (IllegalArgumentException e) {
+            throw new MalformedInputException(offset, e.getMessage());
+        }
+    }
+}
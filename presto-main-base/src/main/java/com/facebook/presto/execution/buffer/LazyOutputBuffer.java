@@ -172,7 +172,7 @@ public class LazyOutputBuffer
                             outputBuffer = new DiscardingOutputBuffer(newOutputBuffers, state);
                             break;
                         case SPOOLING:
-                            outputBuffer = spoolingOutputBufferFactory.createSpoolingOutputBuffer(taskId, taskInstanceId, newOutputBuffers, state);
+                            outputBuffer = spoolingOutputBufferFactory.createSpoolingOutputBuffer(taskId, taskInstanceId, newOutputBuffers, state, systemMemoryContextSupplier);
                             break;
                     }
 
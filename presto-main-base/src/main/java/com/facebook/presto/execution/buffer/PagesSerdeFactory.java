@@ -14,6 +14,7 @@
 package com.facebook.presto.execution.buffer;
 
 import com.facebook.presto.CompressionCodec;
+import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.spi.page.PageCompressor;
 import com.facebook.presto.spi.page.PageDecompressor;
@@ -31,6 +32,7 @@ import io.airlift.compress.zstd.ZstdDecompressor;
 import java.util.Optional;
 import java.util.OptionalInt;
 
+import static com.facebook.presto.spi.page.PagesSerde.MINIMUM_COMPRESSION_RATIO;
 import static java.util.Objects.requireNonNull;
 
 public class PagesSerdeFactory
@@ -53,20 +55,29 @@ public class PagesSerdeFactory
 
     public PagesSerde createPagesSerde()
     {
-        return createPagesSerdeInternal(Optional.empty());
+        return createPagesSerde(new RuntimeStats());
+    }
+
+    /**
+     * Creates a {@link PagesSerde} that reports the codecs chosen by the {@link CompressionCodec#ADAPTIVE} codec in {@code runtimeStats}.
+     */
+    public PagesSerde createPagesSerde(RuntimeStats runtimeStats)
+    {
+        return createPagesSerdeInternal(Optional.empty(), runtimeStats);
     }
 
     public PagesSerde createPagesSerdeForSpill(Optional<SpillCipher> spillCipher)
     {
-        return createPagesSerdeInternal(spillCipher);
+        return createPagesSerdeInternal(spillCipher, new RuntimeStats());
     }
 
-    private PagesSerde createPagesSerdeInternal(Optional<SpillCipher> spillCipher)
+    private PagesSerde createPagesSerdeInternal(Optional<SpillCipher> spillCipher, RuntimeStats runtimeStats)
     {
-        return new PagesSerde(blockEncodingSerde, getPageCompressor(), getPageDecompressor(), spillCipher, checksumEnabled);
+        requireNonNull(runtimeStats, "runtimeStats is null");
+        return new PagesSerde(blockEncodingSerde, getPageCompressor(runtimeStats), getPageDecompressor(), spillCipher, checksumEnabled);
     }
 
-    private Optional<PageCompressor> getPageCompressor()
+    private Optional<PageCompressor> getPageCompressor(RuntimeStats runtimeStats)
     {
         switch (compressionCodec) {
             case GZIP:
@@ -81,6 +92,8 @@ public class PagesSerdeFactory
                 return Optional.of(new AirliftCompressorAdapter(new ZlibCompressor(OptionalInt.empty())));
             case ZSTD:
                 return Optional.of(new AirliftCompressorAdapter(new ZstdCompressor()));
+            case ADAPTIVE:
+                return Optional.of(new AdaptivePageCompressor(runtimeStats, MINIMUM_COMPRESSION_RATIO));
             case NONE:
             default:
                 return Optional.empty();
@@ -102,6 +115,8 @@ public class PagesSerdeFactory
                 return Optional.of(new AirliftDecompressorAdapter(new ZlibDecompressor()));
             case ZSTD:
                 return Optional.of(new AirliftDecompressorAdapter(new ZstdDecompressor()));
+            case ADAPTIVE:
+                return Optional.of(new AdaptivePageDecompressor());
             case NONE:
             default:
                 return Optional.empty();
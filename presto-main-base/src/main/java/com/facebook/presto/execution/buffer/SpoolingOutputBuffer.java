@@ -19,6 +19,7 @@ import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.StateMachine;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.buffer.OutputBuffers.OutputBufferId;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.page.PageDataOutput;
 import com.facebook.presto.spi.page.SerializedPage;
@@ -28,18 +29,19 @@ import com.facebook.presto.spi.storage.TempDataSink;
 import com.facebook.presto.spi.storage.TempStorage;
 import com.facebook.presto.spi.storage.TempStorageHandle;
 import com.facebook.presto.util.FinalizerService;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.SettableFuture;
-import io.airlift.slice.InputStreamSliceInput;
-import io.airlift.slice.SliceInput;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.Immutable;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Deque;
@@ -51,7 +53,9 @@ import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import static com.facebook.airlift.concurrent.MoreFutures.addExceptionCallback;
 import static com.facebook.presto.execution.buffer.BufferResult.emptyResults;
 import static com.facebook.presto.execution.buffer.BufferState.FINISHED;
 import static com.facebook.presto.execution.buffer.BufferState.FLUSHING;
@@ -59,7 +63,7 @@ import static com.facebook.presto.execution.buffer.BufferState.NO_MORE_BUFFERS;
 import static com.facebook.presto.execution.buffer.BufferState.OPEN;
 import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.SPOOLING;
 import static com.facebook.presto.spi.StandardErrorCode.SPOOLING_STORAGE_ERROR;
-import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPagesFromStream;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
@@ -85,6 +89,8 @@ public class SpoolingOutputBuffer
     private final TempDataOperationContext tempDataOperationContext;
     private final TempStorage tempStorage;
     private final long thresholdInBytes;
+    private final long readCacheSizeInBytes;
+    private final Supplier<LocalMemoryContext> systemMemoryContextSupplier;
     private final FinalizerService finalizerService;
     private final ListeningExecutorService executor;
 
@@ -117,6 +123,10 @@ public class SpoolingOutputBuffer
     @GuardedBy("this")
     private PendingRead pendingRead;
 
+    // bytes of the stored files whose pages are held in memory
+    @GuardedBy("this")
+    private long readCacheBytes;
+
     public SpoolingOutputBuffer(
             TaskId taskId,
             String taskInstanceId,
@@ -124,6 +134,8 @@ public class SpoolingOutputBuffer
             StateMachine<BufferState> state,
             TempStorage tempStorage,
             long thresholdInBytes,
+            long readCacheSizeInBytes,
+            Supplier<LocalMemoryContext> systemMemoryContextSupplier,
             ListeningExecutorService executor,
             FinalizerService finalizerService)
     {
@@ -134,6 +146,10 @@ public class SpoolingOutputBuffer
         this.tempStorage = requireNonNull(tempStorage, "tempStorage is null");
         checkArgument(thresholdInBytes >= 0, "thresholdInBytes must be >= 0");
         this.thresholdInBytes = thresholdInBytes;
+        checkArgument(readCacheSizeInBytes >= 0, "readCacheSizeInBytes must be >= 0");
+        this.readCacheSizeInBytes = readCacheSizeInBytes;
+        requireNonNull(systemMemoryContextSupplier, "systemMemoryContextSupplier is null");
+        this.systemMemoryContextSupplier = Suppliers.memoize(systemMemoryContextSupplier::get);
         this.executor = requireNonNull(executor, "executor is null");
         this.finalizerService = requireNonNull(finalizerService, "finalizerService is null");
         this.finalizerService.addFinalizer(this, this::close);
@@ -230,7 +246,7 @@ public class SpoolingOutputBuffer
             totalInMemoryBytes.addAndGet(bytesAdded);
 
             totalPagesRemaining.addAndGet(pagesAdded);
-            peakMemoryUsage.accumulateAndGet(totalInMemoryBytes.get(), Math::max);
+            peakMemoryUsage.accumulateAndGet(totalInMemoryBytes.get() + readCacheBytes, Math::max);
 
             if (totalInMemoryBytes.get() >= thresholdInBytes) {
                 flush();
@@ -278,13 +294,18 @@ public class SpoolingOutputBuffer
         // update cutoff for file pages
         currentMemorySequenceId.addAndGet(pageCount);
 
-        // clear the pages in memory
-        pages.clear();
-
         // update info about storage
         totalStorageBytesAdded.addAndGet(bytes);
         totalStoragePagesAdded.addAndGet(pageCount);
         totalInMemoryBytes.set(0);
+
+        // keep the pages of the file in memory while there is room, so that consumers keeping up with the producer never read from storage
+        if (readCacheBytes + bytes <= readCacheSizeInBytes) {
+            handleInfo.cachePages(ImmutableList.copyOf(pages));
+        }
+
+        // clear the pages in memory
+        pages.clear();
     }
 
     @Override
@@ -367,6 +388,8 @@ public class SpoolingOutputBuffer
             return new BufferResult(taskInstanceId, startSequenceId, newSequenceId, false, 0, input);
         }, executor);
 
+        prefetchPages();
+
         return catchingAsync(resultFuture, Exception.class, e -> {
             log.error("Task %s: Failed to get page with startSequenceId %s", taskId, startSequenceId);
             return immediateFailedFuture(e);
@@ -380,43 +403,93 @@ public class SpoolingOutputBuffer
         }
 
         Iterator<HandleInfo> handleInfoIterator = getTracker.getHandleInfos().iterator();
-        HandleInfo handleInfo = handleInfoIterator.next();
-        ListenableFuture<TempStorageHandle> handleFuture = handleInfo.getHandleFuture();
-        return transformAsync(handleFuture, input -> getPagesFromStorage(ImmutableList.builder(), handleInfoIterator, input, getTracker), executor);
+        return getPagesFromStorage(ImmutableList.builder(), handleInfoIterator, handleInfoIterator.next(), getTracker);
+    }
+
+    private ListenableFuture<List<SerializedPage>> getPagesFromStorage(ImmutableList.Builder<SerializedPage> resultBuilder, Iterator<HandleInfo> handleIterator, HandleInfo handleInfo, GetTracker getTracker)
+    {
+        Optional<ListenableFuture<List<SerializedPage>>> cachedPages = handleInfo.getCachedPages();
+        if (cachedPages.isPresent()) {
+            return transformAsync(cachedPages.get(), input -> addPagesFromStorage(resultBuilder, handleIterator, input.subList(getTracker.getStartPage(), input.size()).iterator(), getTracker), executor);
+        }
+
+        return transformAsync(handleInfo.getHandleFuture(), handle -> {
+            try (InputStream inputStream = tempStorage.open(tempDataOperationContext, handle)) {
+                Iterator<SerializedPage> serializedPages = readSerializedPagesFromStream(inputStream);
+                advance(serializedPages, getTracker.getStartPage());
+                return addPagesFromStorage(resultBuilder, handleIterator, serializedPages, getTracker);
+            }
+            catch (IOException e) {
+                throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to read file from TempStorage", e);
+            }
+        }, executor);
     }
 
-    private ListenableFuture<List<SerializedPage>> getPagesFromStorage(ImmutableList.Builder<SerializedPage> resultBuilder, Iterator<HandleInfo> handleIterator, TempStorageHandle handle, GetTracker getTracker)
+    private ListenableFuture<List<SerializedPage>> addPagesFromStorage(ImmutableList.Builder<SerializedPage> resultBuilder, Iterator<HandleInfo> handleIterator, Iterator<SerializedPage> serializedPages, GetTracker getTracker)
     {
         long maxBytes = getTracker.getMaxSizeInBytes();
         long bytes = getTracker.getBytes();
         long pageCount = getTracker.getPageCount();
 
-        try (SliceInput inputStream = new InputStreamSliceInput(tempStorage.open(tempDataOperationContext, handle))) {
-            Iterator<SerializedPage> serializedPages = readSerializedPages(inputStream);
-            advance(serializedPages, getTracker.getStartPage());
-
-            while (serializedPages.hasNext()) {
-                SerializedPage page = serializedPages.next();
-                long bytesRead = bytes;
-                bytes += page.getRetainedSizeInBytes();
+        while (serializedPages.hasNext()) {
+            SerializedPage page = serializedPages.next();
+            long bytesRead = bytes;
+            bytes += page.getRetainedSizeInBytes();
 
-                if (pageCount != 0 && bytes > maxBytes) {
-                    getTracker.update(bytesRead, pageCount);
-                    return immediateFuture(resultBuilder.build());
-                }
-                resultBuilder.add(page);
-                pageCount++;
+            if (pageCount != 0 && bytes > maxBytes) {
+                getTracker.update(bytesRead, pageCount);
+                return immediateFuture(resultBuilder.build());
             }
+            resultBuilder.add(page);
+            pageCount++;
+        }
 
-            getTracker.update(bytes, pageCount);
+        getTracker.update(bytes, pageCount);
 
-            if (!handleIterator.hasNext()) {
-                return immediateFuture(resultBuilder.build());
+        if (!handleIterator.hasNext()) {
+            return immediateFuture(resultBuilder.build());
+        }
+        return getPagesFromStorage(resultBuilder, handleIterator, handleIterator.next(), getTracker);
+    }
+
+    /**
+     * Reads the stored files following the one being read while they fit in the read cache, so that
+     * the next requests of the consumer are served from memory.
+     */
+    private synchronized void prefetchPages()
+    {
+        for (HandleInfo handleInfo : handleInfoQueue) {
+            if (handleInfo.isCached()) {
+                continue;
+            }
+            if (readCacheBytes + handleInfo.getBytes() > readCacheSizeInBytes) {
+                return;
             }
-            return transformAsync(handleIterator.next().getHandleFuture(), input -> getPagesFromStorage(resultBuilder, handleIterator, input, getTracker), executor);
+            handleInfo.getCachedPages();
         }
-        catch (IOException e) {
-            throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to read file from TempStorage", e);
+    }
+
+    @GuardedBy("this")
+    private void updateReadCacheBytes(long bytesAdded)
+    {
+        readCacheBytes += bytesAdded;
+        peakMemoryUsage.accumulateAndGet(totalInMemoryBytes.get() + readCacheBytes, Math::max);
+
+        LocalMemoryContext systemMemoryContext = getSystemMemoryContextOrNull();
+        if (systemMemoryContext != null) {
+            systemMemoryContext.setBytes(readCacheBytes);
+        }
+    }
+
+    @Nullable
+    private LocalMemoryContext getSystemMemoryContextOrNull()
+    {
+        try {
+            return systemMemoryContextSupplier.get();
+        }
+        catch (RuntimeException ignored) {
+            // the task context may not exist yet when the task is aborted right after it is created
+            return null;
         }
     }
 
@@ -634,6 +707,11 @@ public class SpoolingOutputBuffer
         private final long bytes;
         private final int pageCount;
 
+        @GuardedBy("SpoolingOutputBuffer.this")
+        private ListenableFuture<List<SerializedPage>> pages;
+        @GuardedBy("SpoolingOutputBuffer.this")
+        private boolean removed;
+
         public HandleInfo(Range<Long> range, ListenableFuture<TempStorageHandle> handleFuture, long bytes, int pageCount)
         {
             this.range = requireNonNull(range, "range is null");
@@ -662,8 +740,77 @@ public class SpoolingOutputBuffer
             return handleFuture;
         }
 
+        /**
+         * Returns the pages of the file when the read cache is enabled. The whole file is read with a single
+         * sequential read the first time, and its pages are kept in memory until the file is removed.
+         */
+        public Optional<ListenableFuture<List<SerializedPage>>> getCachedPages()
+        {
+            synchronized (SpoolingOutputBuffer.this) {
+                // an outdated request must not hold pages in memory past the removal of the file
+                if (removed || readCacheSizeInBytes == 0) {
+                    return Optional.empty();
+                }
+                if (pages == null) {
+                    ListenableFuture<List<SerializedPage>> storedPages = transform(handleFuture, this::readPages, executor);
+                    setPages(storedPages);
+                    // forget a failed read, so that the next request reads the file again
+                    addExceptionCallback(storedPages, () -> releasePages(storedPages));
+                }
+                return Optional.of(pages);
+            }
+        }
+
+        public boolean isCached()
+        {
+            synchronized (SpoolingOutputBuffer.this) {
+                return pages != null;
+            }
+        }
+
+        public void cachePages(List<SerializedPage> pages)
+        {
+            synchronized (SpoolingOutputBuffer.this) {
+                checkState(this.pages == null, "pages are already cached");
+                setPages(immediateFuture(pages));
+            }
+        }
+
+        @GuardedBy("SpoolingOutputBuffer.this")
+        private void setPages(ListenableFuture<List<SerializedPage>> pages)
+        {
+            this.pages = pages;
+            updateReadCacheBytes(bytes);
+        }
+
+        private void releasePages(ListenableFuture<List<SerializedPage>> pages)
+        {
+            synchronized (SpoolingOutputBuffer.this) {
+                if (this.pages == pages) {
+                    this.pages = null;
+                    updateReadCacheBytes(-bytes);
+                }
+            }
+        }
+
+        private List<SerializedPage> readPages(TempStorageHandle handle)
+        {
+            try (InputStream input = tempStorage.open(tempDataOperationContext, handle)) {
+                return ImmutableList.copyOf(readSerializedPagesFromStream(input));
+            }
+            catch (IOException e) {
+                throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to read file from TempStorage", e);
+            }
+        }
+
         public void removeFile()
         {
+            synchronized (SpoolingOutputBuffer.this) {
+                removed = true;
+                if (pages != null) {
+                    releasePages(pages);
+                }
+            }
             executor.execute(() -> {
                 try {
                     tempStorage.remove(tempDataOperationContext, handleFuture.get());
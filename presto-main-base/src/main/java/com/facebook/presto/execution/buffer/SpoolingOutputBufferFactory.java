@@ -15,6 +15,7 @@ package com.facebook.presto.execution.buffer;
 
 import com.facebook.presto.execution.StateMachine;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spiller.LocalTempStorage;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.storage.TempStorageManager;
@@ -30,6 +31,7 @@ import javax.annotation.PreDestroy;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
@@ -84,7 +86,8 @@ public class SpoolingOutputBufferFactory
             TaskId taskId,
             String taskInstanceId,
             OutputBuffers outputBuffers,
-            StateMachine<BufferState> state)
+            StateMachine<BufferState> state,
+            Supplier<LocalMemoryContext> systemMemoryContextSupplier)
     {
         return new SpoolingOutputBuffer(
                 taskId,
@@ -93,6 +96,8 @@ public class SpoolingOutputBufferFactory
                 state,
                 tempStorageManager.getTempStorage(LocalTempStorage.NAME),
                 featuresConfig.getSpoolingOutputBufferThreshold().toBytes(),
+                featuresConfig.getSpoolingOutputBufferReadCacheSize().toBytes(),
+                systemMemoryContextSupplier,
                 executor,
                 finalizerService);
     }
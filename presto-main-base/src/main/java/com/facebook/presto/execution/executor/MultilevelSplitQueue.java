@@ -17,6 +17,7 @@ import com.facebook.airlift.stats.CounterStat;
 import com.facebook.presto.execution.TaskManagerConfig;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import io.airlift.units.Duration;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
@@ -24,67 +25,137 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.floorMod;
+import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+/**
+ * Waiting splits are kept in one or more local queues. With a single queue, every split runner thread
+ * offers and takes splits from the same queue. With work stealing, each runner thread offers the splits
+ * it yields to its own local queue and takes splits from it, and only takes splits from the other queues
+ * when its own queue has no split in the level to run next. The level to run next is always chosen from the
+ * splits waiting in all queues, so the level fairness is the same as with a single queue.
+ * <p>
+ * With split affinity, a split that was offered by a thread other than a runner thread, such as an
+ * unblocked split, goes back to the queue of the runner thread that last ran it. Other runner threads
+ * only steal it after it has waited for {@code affinityMaxWaitNanos}, so that a driver keeps running on
+ * the same thread, and on warm caches, as long as that thread gets to it soon enough.
+ */
 @ThreadSafe
 public class MultilevelSplitQueue
 {
     static final int[] LEVEL_THRESHOLD_SECONDS = {0, 1, 10, 60, 300};
     static final long LEVEL_CONTRIBUTION_CAP = SECONDS.toNanos(30);
 
-    @GuardedBy("lock")
-    private final List<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits;
+    private final LocalQueue[] localQueues;
+    private final AtomicInteger nextLocalQueue = new AtomicInteger();
+
+    // number of splits waiting in each level, over all local queues
+    private final AtomicIntegerArray levelWaitingSplitCount = new AtomicIntegerArray(LEVEL_THRESHOLD_SECONDS.length);
 
     private final AtomicLong[] levelScheduledTime = new AtomicLong[LEVEL_THRESHOLD_SECONDS.length];
 
     private final AtomicLong[] levelMinPriority;
     private final List<CounterStat> selectedLevelCounters;
+    private final CounterStat stolenSplits = new CounterStat();
 
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition notEmpty = lock.newCondition();
+    // runner threads that found no split wait on a condition of their own, registered in the local queue
+    // they take splits from, so that an offered split wakes up a runner thread of its own queue
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final AtomicInteger idleRunners = new AtomicInteger();
 
     private final double levelTimeMultiplier;
+    private final boolean affinityEnabled;
+    private final long affinityMaxWaitNanos;
 
     @Inject
     public MultilevelSplitQueue(TaskManagerConfig taskManagerConfig)
     {
-        this(taskManagerConfig.getLevelTimeMultiplier().doubleValue());
+        this(
+                taskManagerConfig.getLevelTimeMultiplier().doubleValue(),
+                taskManagerConfig.isSplitWorkStealingEnabled() ? taskManagerConfig.getMaxWorkerThreads() : 1,
+                taskManagerConfig.isSplitWorkStealingEnabled() && taskManagerConfig.isSplitAffinityEnabled(),
+                taskManagerConfig.getSplitAffinityMaxWait());
     }
 
     public MultilevelSplitQueue(double levelTimeMultiplier)
     {
+        this(levelTimeMultiplier, 1);
+    }
+
+    public MultilevelSplitQueue(double levelTimeMultiplier, int localQueueCount)
+    {
+        this(levelTimeMultiplier, localQueueCount, false, new Duration(0, NANOSECONDS));
+    }
+
+    public MultilevelSplitQueue(double levelTimeMultiplier, int localQueueCount, boolean affinityEnabled, Duration affinityMaxWait)
+    {
+        checkArgument(localQueueCount > 0, "localQueueCount must be at least 1");
+        this.affinityEnabled = affinityEnabled;
+        this.affinityMaxWaitNanos = requireNonNull(affinityMaxWait, "affinityMaxWait is null").roundTo(NANOSECONDS);
         this.levelMinPriority = new AtomicLong[LEVEL_THRESHOLD_SECONDS.length];
-        this.levelWaitingSplits = new ArrayList<>(LEVEL_THRESHOLD_SECONDS.length);
         ImmutableList.Builder<CounterStat> counters = ImmutableList.builder();
 
         for (int i = 0; i < LEVEL_THRESHOLD_SECONDS.length; i++) {
             levelScheduledTime[i] = new AtomicLong();
             levelMinPriority[i] = new AtomicLong(-1);
-            levelWaitingSplits.add(new PriorityQueue<>());
             counters.add(new CounterStat());
         }
 
+        this.localQueues = new LocalQueue[localQueueCount];
+        for (int i = 0; i < localQueueCount; i++) {
+            localQueues[i] = new LocalQueue();
+        }
+
         this.selectedLevelCounters = counters.build();
 
         this.levelTimeMultiplier = levelTimeMultiplier;
     }
 
+    /**
+     * Returns the local queue of the runner thread {@code runnerId}.
+     */
+    public int getLocalQueue(long runnerId)
+    {
+        return (int) (runnerId % localQueues.length);
+    }
+
     private void addLevelTime(int level, long nanos)
     {
         levelScheduledTime[level].addAndGet(nanos);
     }
 
+    /**
+     * Offers a split that does not belong to a runner thread, such as a new or an unblocked split.
+     * With split affinity, a split that has run before goes to the queue of the runner thread that
+     * last ran it. Other splits are spread over the local queues.
+     */
+    public void offer(PrioritizedSplitRunner split)
+    {
+        checkArgument(split != null, "split is null");
+        long lastRunnerId = split.getLastRunnerId();
+        if (affinityEnabled && lastRunnerId >= 0) {
+            offer(split, getLocalQueue(lastRunnerId));
+        }
+        else {
+            offer(split, floorMod(nextLocalQueue.getAndIncrement(), localQueues.length));
+        }
+    }
+
     /**
      * During periods of time when a level has no waiting splits, it will not accumulate
      * scheduled time and will fall behind relative to other levels.
@@ -95,59 +166,120 @@ public class MultilevelSplitQueue
      * To prevent this we set the scheduled time for levels which were empty to the expected
      * scheduled time.
      */
-    public void offer(PrioritizedSplitRunner split)
+    public void offer(PrioritizedSplitRunner split, int localQueue)
     {
         checkArgument(split != null, "split is null");
 
         split.setReady();
         int level = split.getPriority().getLevel();
-        lock.lock();
-        try {
-            if (levelWaitingSplits.get(level).isEmpty()) {
-                // Accesses to levelScheduledTime are not synchronized, so we have a data race
-                // here - our level time math will be off. However, the staleness is bounded by
-                // the fact that only running splits that complete during this computation
-                // can update the level time. Therefore, this is benign.
-                long level0Time = getLevel0TargetTime();
-                long levelExpectedTime = (long) (level0Time / Math.pow(levelTimeMultiplier, level));
-                long delta = levelExpectedTime - levelScheduledTime[level].get();
-                levelScheduledTime[level].addAndGet(delta);
-            }
+        if (levelWaitingSplitCount.get(level) == 0) {
+            // Accesses to levelScheduledTime are not synchronized, so we have a data race
+            // here - our level time math will be off. However, the staleness is bounded by
+            // the fact that only running splits that complete during this computation
+            // can update the level time. Therefore, this is benign. When several splits
+            // reach the empty level at the same time, only one of them moves the level time.
+            long level0Time = getLevel0TargetTime();
+            long levelExpectedTime = (long) (level0Time / Math.pow(levelTimeMultiplier, level));
+            long levelTime = levelScheduledTime[level].get();
+            levelScheduledTime[level].compareAndSet(levelTime, levelExpectedTime);
+        }
 
-            levelWaitingSplits.get(level).offer(split);
-            notEmpty.signal();
+        localQueues[localQueue].offer(split, level);
+
+        // a runner thread that is about to wait increments idleRunners before it looks at the queues
+        // one more time, so either it finds this split, or this signal wakes it up
+        if (idleRunners.get() > 0) {
+            idleLock.lock();
+            try {
+                signalIdleRunner(localQueue);
+            }
+            finally {
+                idleLock.unlock();
+            }
         }
-        finally {
-            lock.unlock();
+    }
+
+    /**
+     * Wakes up an idle runner thread of {@code localQueue}, or, when all its runner threads are busy,
+     * an idle runner thread of another queue that can steal the split once it is allowed to.
+     */
+    @GuardedBy("idleLock")
+    private void signalIdleRunner(int localQueue)
+    {
+        for (int i = 0; i < localQueues.length; i++) {
+            Condition idleRunner = localQueues[(localQueue + i) % localQueues.length].waitingRunners.poll();
+            if (idleRunner != null) {
+                idleRunner.signal();
+                return;
+            }
         }
     }
 
     public PrioritizedSplitRunner take()
             throws InterruptedException
+    {
+        return take(0);
+    }
+
+    /**
+     * Takes the next split to run, preferably from {@code localQueue}, waiting until one is available.
+     */
+    public PrioritizedSplitRunner take(int localQueue)
+            throws InterruptedException
     {
         while (true) {
-            lock.lockInterruptibly();
-            try {
-                PrioritizedSplitRunner result;
-                while ((result = pollSplit()) == null) {
-                    notEmpty.await();
-                }
+            PrioritizedSplitRunner result = pollSplit(localQueue);
+            if (result == null) {
+                result = awaitSplit(localQueue);
+            }
 
-                if (result.updateLevelPriority()) {
-                    offer(result);
-                    continue;
-                }
+            if (result.updateLevelPriority()) {
+                offer(result, localQueue);
+                continue;
+            }
+
+            int selectedLevel = result.getPriority().getLevel();
+            levelMinPriority[selectedLevel].set(result.getPriority().getLevelPriority());
+            selectedLevelCounters.get(selectedLevel).update(1);
 
-                int selectedLevel = result.getPriority().getLevel();
-                levelMinPriority[selectedLevel].set(result.getPriority().getLevelPriority());
-                selectedLevelCounters.get(selectedLevel).update(1);
+            return result;
+        }
+    }
 
+    private PrioritizedSplitRunner awaitSplit(int localQueue)
+            throws InterruptedException
+    {
+        idleLock.lockInterruptibly();
+        try {
+            idleRunners.incrementAndGet();
+            Condition idleRunner = idleLock.newCondition();
+            try {
+                PrioritizedSplitRunner result;
+                while ((result = pollSplit(localQueue)) == null) {
+                    localQueues[localQueue].waitingRunners.add(idleRunner);
+                    try {
+                        if (affinityEnabled && hasWaitingSplits()) {
+                            // the waiting splits are kept for other runner threads, until their affinity expires
+                            idleRunner.awaitNanos(affinityMaxWaitNanos);
+                        }
+                        else {
+                            idleRunner.await();
+                        }
+                    }
+                    finally {
+                        // a signal already removed the runner thread, unless it timed out or was interrupted
+                        localQueues[localQueue].waitingRunners.remove(idleRunner);
+                    }
+                }
                 return result;
             }
             finally {
-                lock.unlock();
+                idleRunners.decrementAndGet();
             }
         }
+        finally {
+            idleLock.unlock();
+        }
     }
 
     /**
@@ -156,16 +288,60 @@ public class MultilevelSplitQueue
      * <p>
      * This function selects the level that has the lowest ratio of actual to the target time
      * with the objective of minimizing deviation from the target scheduled time. From this level,
-     * we pick the split with the lowest priority.
+     * we pick the split with the lowest priority in {@code localQueue}, or in the first other
+     * local queue that has splits in this level that can be stolen.
      */
-    @GuardedBy("lock")
-    private PrioritizedSplitRunner pollSplit()
+    private PrioritizedSplitRunner pollSplit(int localQueue)
+    {
+        while (true) {
+            int selectedLevel = selectLevel();
+            if (selectedLevel == -1) {
+                return null;
+            }
+
+            PrioritizedSplitRunner result = localQueues[localQueue].poll(selectedLevel);
+            if (result != null) {
+                return result;
+            }
+
+            boolean affinityPending = false;
+            for (int i = 1; i < localQueues.length; i++) {
+                LocalQueue victim = localQueues[(localQueue + i) % localQueues.length];
+                if (affinityEnabled && victim.hasPendingAffinity(selectedLevel, affinityMaxWaitNanos)) {
+                    affinityPending = true;
+                    continue;
+                }
+                result = victim.poll(selectedLevel);
+                if (result != null) {
+                    stolenSplits.update(1);
+                    return result;
+                }
+            }
+
+            if (affinityPending) {
+                return null;
+            }
+            // the splits of the level were taken by other runner threads, so select a level again
+        }
+    }
+
+    private boolean hasWaitingSplits()
+    {
+        for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+            if (levelWaitingSplitCount.get(level) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int selectLevel()
     {
         long targetScheduledTime = getLevel0TargetTime();
         double worstRatio = 1;
         int selectedLevel = -1;
         for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
-            if (!levelWaitingSplits.get(level).isEmpty()) {
+            if (levelWaitingSplitCount.get(level) > 0) {
                 long levelTime = levelScheduledTime[level].get();
                 double ratio = levelTime == 0 ? 0 : targetScheduledTime / (1.0 * levelTime);
                 if (selectedLevel == -1 || ratio > worstRatio) {
@@ -176,18 +352,9 @@ public class MultilevelSplitQueue
 
             targetScheduledTime /= levelTimeMultiplier;
         }
-
-        if (selectedLevel == -1) {
-            return null;
-        }
-
-        PrioritizedSplitRunner result = levelWaitingSplits.get(selectedLevel).poll();
-        checkState(result != null, "pollSplit cannot return null");
-
-        return result;
+        return selectedLevel;
     }
 
-    @GuardedBy("lock")
     private long getLevel0TargetTime()
     {
         long level0TargetTime = levelScheduledTime[0].get();
@@ -247,27 +414,15 @@ public class MultilevelSplitQueue
     public void remove(PrioritizedSplitRunner split)
     {
         checkArgument(split != null, "split is null");
-        lock.lock();
-        try {
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                level.remove(split);
-            }
-        }
-        finally {
-            lock.unlock();
+        for (LocalQueue localQueue : localQueues) {
+            localQueue.removeAll(ImmutableList.of(split));
         }
     }
 
     public void removeAll(Collection<PrioritizedSplitRunner> splits)
     {
-        lock.lock();
-        try {
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                level.removeAll(splits);
-            }
-        }
-        finally {
-            lock.unlock();
+        for (LocalQueue localQueue : localQueues) {
+            localQueue.removeAll(splits);
         }
     }
 
@@ -279,17 +434,11 @@ public class MultilevelSplitQueue
 
     public int size()
     {
-        lock.lock();
-        try {
-            int total = 0;
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                total += level.size();
-            }
-            return total;
-        }
-        finally {
-            lock.unlock();
+        int total = 0;
+        for (LocalQueue localQueue : localQueues) {
+            total += localQueue.size();
         }
+        return total;
     }
 
     public static int computeLevel(long threadUsageNanos)
@@ -374,4 +523,104 @@ public class MultilevelSplitQueue
     {
         return selectedLevelCounters.get(4);
     }
+
+    @Managed
+    @Nested
+    public CounterStat getStolenSplits()
+    {
+        return stolenSplits;
+    }
+
+    private class LocalQueue
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        @GuardedBy("lock")
+        private final List<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits = new ArrayList<>(LEVEL_THRESHOLD_SECONDS.length);
+        @GuardedBy("idleLock")
+        private final Deque<Condition> waitingRunners = new ArrayDeque<>();
+
+        public LocalQueue()
+        {
+            for (int i = 0; i < LEVEL_THRESHOLD_SECONDS.length; i++) {
+                levelWaitingSplits.add(new PriorityQueue<>());
+            }
+        }
+
+        public void offer(PrioritizedSplitRunner split, int level)
+        {
+            lock.lock();
+            try {
+                levelWaitingSplits.get(level).offer(split);
+                levelWaitingSplitCount.incrementAndGet(level);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns whether the next split of {@code level} should stay in this queue for its runner thread,
+         * because it last ran on that thread and has been waiting for less than {@code maxWaitNanos}.
+         */
+        public boolean hasPendingAffinity(int level, long maxWaitNanos)
+        {
+            lock.lock();
+            try {
+                PrioritizedSplitRunner split = levelWaitingSplits.get(level).peek();
+                return split != null &&
+                        split.getLastRunnerId() >= 0 &&
+                        localQueues[getLocalQueue(split.getLastRunnerId())] == this &&
+                        split.getReadyNanos() < maxWaitNanos;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        public PrioritizedSplitRunner poll(int level)
+        {
+            lock.lock();
+            try {
+                PrioritizedSplitRunner split = levelWaitingSplits.get(level).poll();
+                if (split != null) {
+                    levelWaitingSplitCount.decrementAndGet(level);
+                }
+                return split;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        public void removeAll(Collection<PrioritizedSplitRunner> splits)
+        {
+            lock.lock();
+            try {
+                for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+                    PriorityQueue<PrioritizedSplitRunner> queue = levelWaitingSplits.get(level);
+                    int sizeBefore = queue.size();
+                    queue.removeAll(splits);
+                    levelWaitingSplitCount.addAndGet(level, queue.size() - sizeBefore);
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        public int size()
+        {
+            lock.lock();
+            try {
+                int total = 0;
+                for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
+                    total += level.size();
+                }
+                return total;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
 }
@@ -44,6 +44,9 @@ public class PrioritizedSplitRunner
 
     private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
 
+    // a split is not classified as I/O-bound until it has run or been blocked for this long
+    private static final long MIN_IO_BOUND_CLASSIFICATION_NANOS = new Duration(100, TimeUnit.MILLISECONDS).roundTo(NANOSECONDS);
+
     private final long createdNanos = System.nanoTime();
 
     private final TaskHandle taskHandle;
@@ -62,11 +65,18 @@ public class PrioritizedSplitRunner
     protected final AtomicLong lastRun = new AtomicLong();
     private final AtomicLong lastReady = new AtomicLong();
     private final AtomicLong start = new AtomicLong();
+    // id of the runner thread that ran the last quanta of this split, or -1 if it has not run yet
+    private final AtomicLong lastRunnerId = new AtomicLong(-1);
 
     private final AtomicLong scheduledNanos = new AtomicLong();
     private final AtomicLong waitNanos = new AtomicLong();
     private final AtomicLong cpuTimeNanos = new AtomicLong();
     private final AtomicLong processCalls = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    // end of the last quanta if it returned blocked on the source of the split, or 0 if the split is not blocked on it
+    private final AtomicLong blockedSince = new AtomicLong();
+    private volatile boolean blockedOnSource;
+    private volatile boolean ioBound;
 
     private final CounterStat globalCpuTimeMicros;
     private final CounterStat globalScheduledTimeMicros;
@@ -74,6 +84,9 @@ public class PrioritizedSplitRunner
     private final TimeStat blockedQuantaWallTime;
     private final TimeStat unblockedQuantaWallTime;
 
+    private final boolean ioAwareScheduling;
+    private final double ioBoundCpuRatio;
+
     PrioritizedSplitRunner(
             TaskHandle taskHandle,
             SplitRunner splitRunner,
@@ -82,6 +95,20 @@ public class PrioritizedSplitRunner
             CounterStat globalScheduledTimeMicros,
             TimeStat blockedQuantaWallTime,
             TimeStat unblockedQuantaWallTime)
+    {
+        this(taskHandle, splitRunner, ticker, globalCpuTimeMicros, globalScheduledTimeMicros, blockedQuantaWallTime, unblockedQuantaWallTime, false, 0);
+    }
+
+    PrioritizedSplitRunner(
+            TaskHandle taskHandle,
+            SplitRunner splitRunner,
+            Ticker ticker,
+            CounterStat globalCpuTimeMicros,
+            CounterStat globalScheduledTimeMicros,
+            TimeStat blockedQuantaWallTime,
+            TimeStat unblockedQuantaWallTime,
+            boolean ioAwareScheduling,
+            double ioBoundCpuRatio)
     {
         this.taskHandle = taskHandle;
         this.splitId = taskHandle.getNextSplitId();
@@ -92,6 +119,8 @@ public class PrioritizedSplitRunner
         this.globalScheduledTimeMicros = globalScheduledTimeMicros;
         this.blockedQuantaWallTime = blockedQuantaWallTime;
         this.unblockedQuantaWallTime = unblockedQuantaWallTime;
+        this.ioAwareScheduling = ioAwareScheduling;
+        this.ioBoundCpuRatio = ioBoundCpuRatio;
 
         this.updateLevelPriority();
     }
@@ -151,6 +180,33 @@ public class PrioritizedSplitRunner
         return waitNanos.get();
     }
 
+    /**
+     * Returns the time this split spent blocked on its source between quanta, for example waiting for a read
+     * from remote storage. Time blocked on consumers, such as a full output buffer, is not included.
+     */
+    public long getBlockedNanos()
+    {
+        return blockedNanos.get();
+    }
+
+    /**
+     * Returns whether the last quanta of this split returned blocked on the source of the split.
+     */
+    public boolean isBlockedOnSource()
+    {
+        return blockedOnSource;
+    }
+
+    /**
+     * Returns whether this split used less than the I/O-bound CPU ratio of the time it spent running or
+     * blocked. Only splits classified as I/O-bound are charged for their CPU time instead of their
+     * scheduled time when I/O aware scheduling is enabled.
+     */
+    public boolean isIoBound()
+    {
+        return ioBound;
+    }
+
     public ListenableFuture<?> process()
     {
         try {
@@ -169,7 +225,9 @@ public class PrioritizedSplitRunner
             long quantaScheduledNanos = endNanos - startNanos;
             scheduledNanos.addAndGet(quantaScheduledNanos);
 
-            priority.set(taskHandle.addScheduledNanos(quantaScheduledNanos));
+            // time an I/O-bound split spends waiting inside its quanta does not count against its task level
+            long chargedNanos = ioAwareScheduling && ioBound ? quantaCpuNanos : quantaScheduledNanos;
+            priority.set(taskHandle.addScheduledNanos(chargedNanos));
             lastRun.set(endNanos);
 
             Duration wallDuration = new Duration(quantaScheduledNanos, NANOSECONDS);
@@ -180,7 +238,13 @@ public class PrioritizedSplitRunner
                 blockedQuantaWallTime.add(wallDuration);
             }
 
-            cpuTimeNanos.addAndGet(quantaCpuNanos);
+            long totalCpuNanos = cpuTimeNanos.addAndGet(quantaCpuNanos);
+            long totalNanos = scheduledNanos.get() + blockedNanos.get();
+            ioBound = totalNanos >= MIN_IO_BOUND_CLASSIFICATION_NANOS && totalCpuNanos < ioBoundCpuRatio * totalNanos;
+            blockedOnSource = !blocked.isDone() && splitRunner.isBlockedOnSource();
+            if (blockedOnSource) {
+                blockedSince.set(endNanos);
+            }
 
             globalCpuTimeMicros.update(quantaCpuNanos / 1000);
             globalScheduledTimeMicros.update(quantaScheduledNanos / 1000);
@@ -195,7 +259,34 @@ public class PrioritizedSplitRunner
 
     public void setReady()
     {
-        lastReady.set(ticker.read());
+        long now = ticker.read();
+        long since = blockedSince.getAndSet(0);
+        if (since != 0) {
+            blockedNanos.addAndGet(now - since);
+        }
+        lastReady.set(now);
+    }
+
+    /**
+     * Returns how long this split has been ready to run since it was last offered to the split queue.
+     */
+    public long getReadyNanos()
+    {
+        return ticker.read() - lastReady.get();
+    }
+
+    public long getLastRunnerId()
+    {
+        return lastRunnerId.get();
+    }
+
+    /**
+     * Records that runner thread {@code runnerId} runs the next quanta of this split, and returns
+     * the id of the runner thread that ran the previous quanta, or -1 if the split has not run yet.
+     */
+    public long setRunnerId(long runnerId)
+    {
+        return lastRunnerId.getAndSet(runnerId);
     }
 
     /**
@@ -245,7 +336,7 @@ public class PrioritizedSplitRunner
 
     public String getInfo()
     {
-        return String.format("Split %-15s-%d %s (start = %s, wall = %s ms, cpu = %s ms, wait = %s ms, calls = %s)",
+        return String.format("Split %-15s-%d %s (start = %s, wall = %s ms, cpu = %s ms, wait = %s ms, blocked = %s ms, calls = %s, %s)",
                 taskHandle.getTaskId(),
                 splitId,
                 splitRunner.getInfo(),
@@ -253,7 +344,9 @@ public class PrioritizedSplitRunner
                 (int) ((ticker.read() - start.get()) / 1.0e6),
                 (int) (cpuTimeNanos.get() / 1.0e6),
                 (int) (waitNanos.get() / 1.0e6),
-                processCalls.get());
+                (int) (blockedNanos.get() / 1.0e6),
+                processCalls.get(),
+                ioBound ? "io-bound" : "cpu-bound");
     }
 
     @Override
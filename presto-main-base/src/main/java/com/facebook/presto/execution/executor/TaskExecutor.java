@@ -61,7 +61,6 @@ import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.DoubleSupplier;
 import java.util.function.Function;
@@ -98,8 +97,6 @@ public class TaskExecutor
                             .anyMatch(element -> element.getClassName().equals(JoniRegexpFunctions.CLASS_NAME));
     private static final Duration DEFAULT_INTERRUPT_SPLIT_INTERVAL = new Duration(60, SECONDS);
 
-    private static final AtomicLong NEXT_RUNNER_ID = new AtomicLong();
-
     private final ExecutorService executor;
     private final ThreadPoolExecutorMBean executorMBean;
 
@@ -107,6 +104,10 @@ public class TaskExecutor
     private final int minimumNumberOfDrivers;
     private final int guaranteedNumberOfDriversPerTask;
     private final int maximumNumberOfDriversPerTask;
+    private final boolean ioAwareSplitSchedulingEnabled;
+    private final double ioBoundSplitCpuRatio;
+    // number of blocked I/O-bound leaf splits that do not count towards minimumNumberOfDrivers
+    private final int maximumExtraIoBoundDrivers;
     private final EmbedVersion embedVersion;
 
     private final Ticker ticker;
@@ -153,6 +154,11 @@ public class TaskExecutor
      */
     private final Map<PrioritizedSplitRunner, Future<?>> blockedSplits = new ConcurrentHashMap<>();
 
+    /**
+     * Blocked leaf splits classified as I/O-bound.
+     */
+    private final Set<PrioritizedSplitRunner> blockedIoBoundLeafSplits = newConcurrentHashSet();
+
     private final AtomicLongArray completedTasksPerLevel = new AtomicLongArray(5);
     private final AtomicLongArray completedSplitsPerLevel = new AtomicLongArray(5);
 
@@ -169,12 +175,16 @@ public class TaskExecutor
     private final TimeDistribution intermediateSplitWaitTime = new TimeDistribution(MICROSECONDS);
 
     private final TimeDistribution leafSplitCpuTime = new TimeDistribution(MICROSECONDS);
+    private final TimeDistribution leafSplitBlockedTime = new TimeDistribution(MICROSECONDS);
     private final TimeDistribution intermediateSplitCpuTime = new TimeDistribution(MICROSECONDS);
 
     // shared between SplitRunners
     private final CounterStat globalCpuTimeMicros = new CounterStat();
     private final CounterStat globalScheduledTimeMicros = new CounterStat();
     private final CounterStat splitSkippedDueToMemoryPressure = new CounterStat();
+    private final CounterStat splitThreadMigrations = new CounterStat();
+    private final CounterStat completedIoBoundSplits = new CounterStat();
+    private final CounterStat completedCpuBoundSplits = new CounterStat();
 
     private final TimeStat blockedQuantaWallTime = new TimeStat(MICROSECONDS);
     private final TimeStat unblockedQuantaWallTime = new TimeStat(MICROSECONDS);
@@ -196,7 +206,10 @@ public class TaskExecutor
                 DEFAULT_INTERRUPT_SPLIT_INTERVAL,
                 embedVersion,
                 splitQueue,
-                Ticker.systemTicker());
+                Ticker.systemTicker(),
+                config.isIoAwareSplitSchedulingEnabled(),
+                config.getIoBoundSplitCpuRatio(),
+                config.getIoBoundSplitConcurrencyMultiplier());
     }
 
     @VisibleForTesting
@@ -258,6 +271,40 @@ public class TaskExecutor
             EmbedVersion embedVersion,
             MultilevelSplitQueue splitQueue,
             Ticker ticker)
+    {
+        this(
+                runnerThreads,
+                minDrivers,
+                guaranteedNumberOfDriversPerTask,
+                maximumNumberOfDriversPerTask,
+                taskPriorityTracking,
+                interruptRunawaySplitsTimeout,
+                interruptibleSplitPredicate,
+                interruptSplitInterval,
+                embedVersion,
+                splitQueue,
+                ticker,
+                false,
+                new TaskManagerConfig().getIoBoundSplitCpuRatio(),
+                1.0);
+    }
+
+    @VisibleForTesting
+    public TaskExecutor(
+            int runnerThreads,
+            int minDrivers,
+            int guaranteedNumberOfDriversPerTask,
+            int maximumNumberOfDriversPerTask,
+            TaskPriorityTracking taskPriorityTracking,
+            Duration interruptRunawaySplitsTimeout,
+            Predicate<List<StackTraceElement>> interruptibleSplitPredicate,
+            Duration interruptSplitInterval,
+            EmbedVersion embedVersion,
+            MultilevelSplitQueue splitQueue,
+            Ticker ticker,
+            boolean ioAwareSplitSchedulingEnabled,
+            double ioBoundSplitCpuRatio,
+            double ioBoundSplitConcurrencyMultiplier)
     {
         checkArgument(runnerThreads > 0, "runnerThreads must be at least 1");
         checkArgument(guaranteedNumberOfDriversPerTask > 0, "guaranteedNumberOfDriversPerTask must be at least 1");
@@ -265,6 +312,8 @@ public class TaskExecutor
         checkArgument(guaranteedNumberOfDriversPerTask <= maximumNumberOfDriversPerTask, "guaranteedNumberOfDriversPerTask cannot be greater than maximumNumberOfDriversPerTask");
         checkArgument(interruptRunawaySplitsTimeout.getValue(SECONDS) >= 1.0, "interruptRunawaySplitsTimeout must be at least 1 second");
         checkArgument(interruptSplitInterval.getValue(SECONDS) >= 1.0, "interruptSplitInterval must be at least 1 second");
+        checkArgument(ioBoundSplitCpuRatio >= 0 && ioBoundSplitCpuRatio <= 1, "ioBoundSplitCpuRatio must be between 0 and 1");
+        checkArgument(ioBoundSplitConcurrencyMultiplier >= 1, "ioBoundSplitConcurrencyMultiplier must be at least 1");
 
         // we manage thread pool size directly, so create an unlimited pool
         this.executor = newCachedThreadPool(threadsNamed("task-processor-%s"));
@@ -277,6 +326,9 @@ public class TaskExecutor
         this.minimumNumberOfDrivers = minDrivers;
         this.guaranteedNumberOfDriversPerTask = guaranteedNumberOfDriversPerTask;
         this.maximumNumberOfDriversPerTask = maximumNumberOfDriversPerTask;
+        this.ioAwareSplitSchedulingEnabled = ioAwareSplitSchedulingEnabled;
+        this.ioBoundSplitCpuRatio = ioBoundSplitCpuRatio;
+        this.maximumExtraIoBoundDrivers = ioAwareSplitSchedulingEnabled ? (int) (minDrivers * (ioBoundSplitConcurrencyMultiplier - 1)) : 0;
         this.waitingSplits = requireNonNull(splitQueue, "splitQueue is null");
         Function<QueryId, TaskPriorityTracker> taskPriorityTrackerFactory;
         switch (taskPriorityTracking) {
@@ -304,7 +356,7 @@ public class TaskExecutor
     {
         checkState(!closed, "TaskExecutor is closed");
         for (int i = 0; i < runnerThreads; i++) {
-            addRunnerThread();
+            addRunnerThread(i);
         }
         if (interruptRunawaySplitsTimeout != null) {
             long interval = (long) interruptSplitInterval.getValue(SECONDS);
@@ -333,10 +385,10 @@ public class TaskExecutor
                 .toString();
     }
 
-    private synchronized void addRunnerThread()
+    private synchronized void addRunnerThread(int runnerId)
     {
         try {
-            executor.execute(embedVersion.embedVersion(new TaskRunner()));
+            executor.execute(embedVersion.embedVersion(new TaskRunner(runnerId)));
         }
         catch (RejectedExecutionException ignored) {
         }
@@ -389,6 +441,7 @@ public class TaskExecutor
             allSplits.removeAll(splits);
             intermediateSplits.removeAll(splits);
             blockedSplits.keySet().removeAll(splits);
+            blockedIoBoundLeafSplits.removeAll(splits);
             waitingSplits.removeAll(splits);
         }
 
@@ -417,7 +470,9 @@ public class TaskExecutor
                         globalCpuTimeMicros,
                         globalScheduledTimeMicros,
                         blockedQuantaWallTime,
-                        unblockedQuantaWallTime);
+                        unblockedQuantaWallTime,
+                        ioAwareSplitSchedulingEnabled,
+                        ioBoundSplitCpuRatio);
 
                 if (intermediate) {
                     // add the runner to the handle so it can be destroyed if the task is canceled
@@ -471,6 +526,13 @@ public class TaskExecutor
                 leafSplitScheduledTime.add(split.getScheduledNanos());
                 leafSplitWaitTime.add(split.getWaitNanos());
                 leafSplitCpuTime.add(split.getCpuTimeNanos());
+                leafSplitBlockedTime.add(split.getBlockedNanos());
+                if (split.isIoBound()) {
+                    completedIoBoundSplits.update(1);
+                }
+                else {
+                    completedCpuBoundSplits.update(1);
+                }
             }
 
             TaskHandle taskHandle = split.getTaskHandle();
@@ -522,7 +584,9 @@ public class TaskExecutor
         // simultaneously running splits may vary. If leaf splits start first, there will
         // be 300 running splits. If intermediate splits start first, there will be only
         // 200 running splits.
-        int running = allSplits.size() - intermediateSplits.size();
+        // Blocked I/O-bound leaf splits do not use a runner thread, so up to maximumExtraIoBoundDrivers
+        // of them are not counted, which keeps more reads in flight.
+        int running = allSplits.size() - intermediateSplits.size() - Math.min(blockedIoBoundLeafSplits.size(), maximumExtraIoBoundDrivers);
         for (int i = 0; i < minimumNumberOfDrivers - running; i++) {
             PrioritizedSplitRunner split = pollNextSplitWorker();
             if (split == null) {
@@ -534,6 +598,16 @@ public class TaskExecutor
         }
     }
 
+    private synchronized boolean ioBoundSplitBlocked(PrioritizedSplitRunner split)
+    {
+        if (!allSplits.contains(split) || intermediateSplits.contains(split)) {
+            return false;
+        }
+        blockedIoBoundLeafSplits.add(split);
+        addNewEntrants();
+        return true;
+    }
+
     private synchronized void startIntermediateSplit(PrioritizedSplitRunner split)
     {
         startSplit(split);
@@ -593,7 +667,16 @@ public class TaskExecutor
     private class TaskRunner
             implements Runnable
     {
-        private final long runnerId = NEXT_RUNNER_ID.getAndIncrement();
+        // runner ids are slots of this executor, a replacement runner thread takes over the
+        // slot, and with it the local queue and the split affinity, of the thread it replaces
+        private final int runnerId;
+        private final int localQueue;
+
+        private TaskRunner(int runnerId)
+        {
+            this.runnerId = runnerId;
+            this.localQueue = waitingSplits.getLocalQueue(runnerId);
+        }
 
         @Override
         public void run()
@@ -603,7 +686,7 @@ public class TaskExecutor
                     // select next worker
                     final PrioritizedSplitRunner split;
                     try {
-                        split = waitingSplits.take();
+                        split = waitingSplits.take(localQueue);
                     }
                     catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
@@ -612,6 +695,10 @@ public class TaskExecutor
 
                     String threadId = split.getTaskHandle().getTaskId() + "-" + split.getSplitId();
                     try (SetThreadName splitName = new SetThreadName(threadId)) {
+                        long lastRunnerId = split.setRunnerId(runnerId);
+                        if (lastRunnerId >= 0 && lastRunnerId != runnerId) {
+                            splitThreadMigrations.update(1);
+                        }
                         RunningSplitInfo splitInfo = new RunningSplitInfo(ticker.read(), threadId, Thread.currentThread(), split);
                         runningSplitInfos.add(splitInfo);
                         runningSplits.add(split);
@@ -634,12 +721,17 @@ public class TaskExecutor
                         }
                         else {
                             if (blocked.isDone()) {
-                                waitingSplits.offer(split);
+                                // the split yielded at the end of its quanta, keep it on this runner thread
+                                waitingSplits.offer(split, localQueue);
                             }
                             else {
                                 blockedSplits.put(split, blocked);
+                                boolean ioBoundLeafSplit = ioAwareSplitSchedulingEnabled && split.isIoBound() && split.isBlockedOnSource() && ioBoundSplitBlocked(split);
                                 blocked.addListener(() -> {
                                     blockedSplits.remove(split);
+                                    if (ioBoundLeafSplit) {
+                                        blockedIoBoundLeafSplits.remove(split);
+                                    }
                                     // reset the level priority to prevent previously-blocked splits from starving existing splits
                                     split.resetLevelPriority();
                                     waitingSplits.offer(split);
@@ -676,7 +768,7 @@ public class TaskExecutor
             finally {
                 // unless we have been closed, we need to replace this thread
                 if (!closed) {
-                    addRunnerThread();
+                    addRunnerThread(runnerId);
                 }
             }
         }
@@ -734,6 +826,12 @@ public class TaskExecutor
         return blockedSplits.size();
     }
 
+    @Managed
+    public int getBlockedIoBoundSplits()
+    {
+        return blockedIoBoundLeafSplits.size();
+    }
+
     @Managed
     public long getCompletedTasksLevel0()
     {
@@ -901,6 +999,13 @@ public class TaskExecutor
         return leafSplitCpuTime;
     }
 
+    @Managed
+    @Nested
+    public TimeDistribution getLeafSplitBlockedTime()
+    {
+        return leafSplitBlockedTime;
+    }
+
     @Managed
     @Nested
     public TimeDistribution getIntermediateSplitCpuTime()
@@ -929,6 +1034,36 @@ public class TaskExecutor
         return splitSkippedDueToMemoryPressure;
     }
 
+    /**
+     * Number of times a split ran its next quanta on a different runner thread than the previous one.
+     */
+    @Managed
+    @Nested
+    public CounterStat getSplitThreadMigrations()
+    {
+        return splitThreadMigrations;
+    }
+
+    /**
+     * Number of completed leaf splits that were I/O-bound when they finished.
+     */
+    @Managed
+    @Nested
+    public CounterStat getCompletedIoBoundSplits()
+    {
+        return completedIoBoundSplits;
+    }
+
+    /**
+     * Number of completed leaf splits that were CPU-bound when they finished.
+     */
+    @Managed
+    @Nested
+    public CounterStat getCompletedCpuBoundSplits()
+    {
+        return completedCpuBoundSplits;
+    }
+
     private synchronized int getRunningTasksForLevel(int level)
     {
         int count = 0;
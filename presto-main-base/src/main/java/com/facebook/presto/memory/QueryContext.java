@@ -21,6 +21,7 @@ import com.facebook.presto.execution.TaskStateMachine;
 import com.facebook.presto.memory.context.MemoryReservationHandler;
 import com.facebook.presto.memory.context.MemoryTrackingContext;
 import com.facebook.presto.operator.OperatorMemoryReservationSummary;
+import com.facebook.presto.operator.SharedLookupSourceRegistry;
 import com.facebook.presto.operator.TaskContext;
 import com.facebook.presto.operator.TaskMemoryReservationSummary;
 import com.facebook.presto.spi.ErrorCause;
@@ -84,6 +85,7 @@ public class QueryContext
     private final SpillSpaceTracker spillSpaceTracker;
     private final JsonCodec<List<TaskMemoryReservationSummary>> memoryReservationSummaryJsonCodec;
     private final Map<TaskId, TaskContext> taskContexts = new ConcurrentHashMap<>();
+    private final SharedLookupSourceRegistry sharedLookupSourceRegistry = new SharedLookupSourceRegistry();
 
     @GuardedBy("this")
     private boolean resourceOverCommit;
@@ -410,6 +412,11 @@ public class QueryContext
         return queryId;
     }
 
+    public SharedLookupSourceRegistry getSharedLookupSourceRegistry()
+    {
+        return sharedLookupSourceRegistry;
+    }
+
     public synchronized void setMemoryLimits(
             DataSize queryMaxTaskMemory,
             DataSize queryMaxTotalTaskMemory,
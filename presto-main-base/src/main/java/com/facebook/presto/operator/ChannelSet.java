@@ -14,12 +14,15 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -86,6 +89,11 @@ public class ChannelSet
         private final LocalMemoryContext localMemoryContext;
 
         public ChannelSetBuilder(Type type, Optional<Integer> hashChannel, int expectedPositions, OperatorContext operatorContext, JoinCompiler joinCompiler)
+        {
+            this(type, hashChannel, expectedPositions, operatorContext, operatorContext.localUserMemoryContext(), joinCompiler);
+        }
+
+        public ChannelSetBuilder(Type type, Optional<Integer> hashChannel, int expectedPositions, OperatorContext operatorContext, LocalMemoryContext localMemoryContext, JoinCompiler joinCompiler)
         {
             List<Type> types = ImmutableList.of(type);
             this.hash = createGroupByHash(
@@ -98,7 +106,7 @@ public class ChannelSet
                     this::updateMemoryReservation);
             this.nullBlockPage = new Page(type.createBlockBuilder(null, 1, UNKNOWN.getFixedSize()).appendNull().build());
             this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
-            this.localMemoryContext = operatorContext.localUserMemoryContext();
+            this.localMemoryContext = requireNonNull(localMemoryContext, "localMemoryContext is null");
         }
 
         public ChannelSet build()
@@ -122,6 +130,33 @@ public class ChannelSet
             return hash.addPage(page);
         }
 
+        /**
+         * Returns the distinct values added so far, including the null value, as single channel pages.
+         */
+        public Iterator<Page> getValuePages()
+        {
+            return new AbstractIterator<Page>()
+            {
+                private final PageBuilder pageBuilder = new PageBuilder(hash.getTypes());
+                private int groupId;
+
+                @Override
+                protected Page computeNext()
+                {
+                    if (groupId == hash.getGroupCount()) {
+                        return endOfData();
+                    }
+                    pageBuilder.reset();
+                    while (!pageBuilder.isFull() && groupId < hash.getGroupCount()) {
+                        pageBuilder.declarePosition();
+                        hash.appendValuesTo(groupId, pageBuilder, 0);
+                        groupId++;
+                    }
+                    return new Page(pageBuilder.build().getBlock(0));
+                }
+            };
+        }
+
         public boolean updateMemoryReservation()
         {
             // If memory is not available, once we return, this operator will be blocked until memory is available.
@@ -18,23 +18,31 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.lang.Math.min;
 import static java.lang.Math.toIntExact;
+import static java.util.Collections.emptyIterator;
 import static java.util.Objects.requireNonNull;
 
 public class DistinctLimitOperator
@@ -52,6 +60,8 @@ public class DistinctLimitOperator
         private boolean closed;
         private final JoinCompiler joinCompiler;
         private final int timeoutMillis;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public DistinctLimitOperatorFactory(
                 int operatorId,
@@ -74,6 +84,21 @@ public class DistinctLimitOperator
                 Optional<Integer> hashChannel,
                 JoinCompiler joinCompiler,
                 int timeoutMillis)
+        {
+            this(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, timeoutMillis, false, unsupportedPartitioningSpillerFactory());
+        }
+
+        public DistinctLimitOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> distinctChannels,
+                long limit,
+                Optional<Integer> hashChannel,
+                JoinCompiler joinCompiler,
+                int timeoutMillis,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -85,6 +110,8 @@ public class DistinctLimitOperator
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
             this.timeoutMillis = timeoutMillis;
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         @Override
@@ -95,7 +122,7 @@ public class DistinctLimitOperator
             List<Type> distinctTypes = distinctChannels.stream()
                     .map(sourceTypes::get)
                     .collect(toImmutableList());
-            return new DistinctLimitOperator(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, timeoutMillis);
+            return new DistinctLimitOperator(operatorContext, sourceTypes, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, timeoutMillis, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -107,12 +134,13 @@ public class DistinctLimitOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, timeoutMillis);
+            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, timeoutMillis, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
     private Page inputPage;
     private long remainingLimit;
@@ -120,7 +148,7 @@ public class DistinctLimitOperator
     private boolean finishing;
 
     private final int[] outputChannels;
-    private final GroupByHash groupByHash;
+    private GroupByHash groupByHash;
     private long nextDistinctId;
 
     // for yield when memory is not available
@@ -128,10 +156,44 @@ public class DistinctLimitOperator
     private Work<GroupByIdBlock> unfinishedWork;
     private final long timeoutMillis;
 
+    private final List<Type> sourceTypes;
+    private final List<Integer> distinctChannels;
+    private final List<Type> distinctTypes;
+    private final Optional<Integer> hashChannel;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+
+    // Once spilled, the remaining input is spilled as well and the distinct rows are produced one partition at a time
+    // after all input has been received, skipping the rows whose values were spilled with the hash.
+    private Optional<DistinctRowsSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private Iterator<Page> unspilledDistinctValues = emptyIterator();
+    private Iterator<Page> unspilledInput = emptyIterator();
+    private Work<?> unfinishedDistinctValuesWork;
+    private boolean unspillingFinished;
+
     public DistinctLimitOperator(OperatorContext operatorContext, List<Integer> distinctChannels, List<Type> distinctTypes, long limit, Optional<Integer> hashChannel, JoinCompiler joinCompiler, int timeout)
+    {
+        this(operatorContext, ImmutableList.of(), distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, timeout, false, unsupportedPartitioningSpillerFactory());
+    }
+
+    public DistinctLimitOperator(
+            OperatorContext operatorContext,
+            List<Type> sourceTypes,
+            List<Integer> distinctChannels,
+            List<Type> distinctTypes,
+            long limit,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            int timeout,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
         checkArgument(limit >= 0, "limit must be at least zero");
         requireNonNull(hashChannel, "hashChannel is null");
 
@@ -153,6 +215,14 @@ public class DistinctLimitOperator
                 joinCompiler,
                 this::updateMemoryReservation);
         remainingLimit = limit;
+        this.sourceTypes = ImmutableList.copyOf(requireNonNull(sourceTypes, "sourceTypes is null"));
+        this.distinctChannels = ImmutableList.copyOf(distinctChannels);
+        this.distinctTypes = ImmutableList.copyOf(requireNonNull(distinctTypes, "distinctTypes is null"));
+        this.hashChannel = hashChannel;
+        this.joinCompiler = joinCompiler;
+        checkArgument(!spillEnabled || !this.sourceTypes.isEmpty(), "sourceTypes are required when spill is enabled");
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         if (timeout > 0) {
             this.timeoutMillis = System.currentTimeMillis() + timeout;
         }
@@ -186,13 +256,19 @@ public class DistinctLimitOperator
     @Override
     public boolean isFinished()
     {
-        return finishIfTimedOut() || (!hasUnfinishedInput() && (finishing || remainingLimit == 0));
+        return finishIfTimedOut() || (!hasUnfinishedInput() && (remainingLimit == 0 || (finishing && (!spiller.isPresent() || unspillingFinished))));
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress;
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finishIfTimedOut() && !finishing && remainingLimit > 0 && !hasUnfinishedInput();
+        return !finishIfTimedOut() && !finishing && remainingLimit > 0 && !hasUnfinishedInput() && spillInProgress.isDone();
     }
 
     @Override
@@ -204,6 +280,12 @@ public class DistinctLimitOperator
 
         checkState(needsInput());
 
+        if (spiller.isPresent()) {
+            checkSpillSucceeded(spillInProgress);
+            spillInProgress = spiller.get().spillInput(page);
+            return;
+        }
+
         inputPage = page;
         unfinishedWork = groupByHash.getGroupIds(page);
         processUnfinishedWork();
@@ -213,6 +295,10 @@ public class DistinctLimitOperator
     @Override
     public Page getOutput()
     {
+        if (spiller.isPresent() && !hasUnfinishedInput() && (!finishing || !unspillNextPage())) {
+            return null;
+        }
+
         if (unfinishedWork != null && !processUnfinishedWork()) {
             finishIfTimedOut();
             return null;
@@ -247,6 +333,105 @@ public class DistinctLimitOperator
         return result;
     }
 
+    /**
+     * Loads the next unspilled input page, preceded by the distinct values of its partition.
+     *
+     * @return true if a page is ready to be processed
+     */
+    private boolean unspillNextPage()
+    {
+        if (!spillInProgress.isDone()) {
+            return false;
+        }
+        checkSpillSucceeded(spillInProgress);
+
+        while (!unspillingFinished && remainingLimit > 0) {
+            if (unfinishedDistinctValuesWork != null) {
+                if (finishIfTimedOut() || !unfinishedDistinctValuesWork.process()) {
+                    return false;
+                }
+                unfinishedDistinctValuesWork = null;
+                // the values spilled with the hash have already been produced
+                nextDistinctId = groupByHash.getGroupCount();
+            }
+            else if (unspilledDistinctValues.hasNext()) {
+                unfinishedDistinctValuesWork = groupByHash.addPage(unspilledDistinctValues.next());
+            }
+            else if (unspilledInput.hasNext()) {
+                inputPage = unspilledInput.next();
+                unfinishedWork = groupByHash.getGroupIds(inputPage.extractChannels(spiller.get().getValueChannels()));
+                return true;
+            }
+            else if (spiller.get().hasNextPartition()) {
+                int distinctChannelCount = distinctTypes.size();
+                groupByHash = createGroupByHash(
+                        distinctTypes,
+                        IntStream.range(0, distinctChannelCount).toArray(),
+                        hashChannel.map(channel -> distinctChannelCount),
+                        min(toIntExact(min(remainingLimit, Integer.MAX_VALUE)), 10_000),
+                        isDictionaryAggregationEnabled(operatorContext.getSession()),
+                        joinCompiler,
+                        this::updateMemoryReservation);
+                nextDistinctId = 0;
+                unspilledDistinctValues = spiller.get().nextPartitionDistinctValues();
+                unspilledInput = spiller.get().getSpilledInput();
+            }
+            else {
+                groupByHash = null;
+                unspillingFinished = true;
+                updateMemoryReservation();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+
+        if (spiller.isPresent() || groupByHash == null) {
+            // Probably stale revoking request
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+
+        if (remainingLimit == 0 || (finishing && !hasUnfinishedInput())) {
+            // all distinct rows have been produced, the hash is no longer needed
+            finishMemoryRevoke = Optional.of(() -> {
+                groupByHash = null;
+                updateMemoryReservation();
+            });
+            return immediateFuture(null);
+        }
+
+        DistinctRowsSpiller distinctRowsSpiller = new DistinctRowsSpiller(sourceTypes, distinctChannels, hashChannel, partitioningSpillerFactory, operatorContext);
+        spiller = Optional.of(distinctRowsSpiller);
+        // only the values of the rows already produced are spilled
+        ListenableFuture<?> spillingFuture = distinctRowsSpiller.spillDistinctValues(groupByHash, toIntExact(nextDistinctId));
+        finishMemoryRevoke = Optional.of(() -> {
+            groupByHash = null;
+            unfinishedWork = null;
+            groupByIds = null;
+            localRevocableMemoryContext.setBytes(0);
+            if (inputPage != null) {
+                // the pending page is processed again after unspilling
+                Page page = inputPage;
+                inputPage = null;
+                spillInProgress = distinctRowsSpiller.spillInput(page);
+            }
+        });
+        return spillingFuture;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
     private boolean processUnfinishedWork()
     {
         verify(unfinishedWork != null);
@@ -273,9 +458,15 @@ public class DistinctLimitOperator
     // The following implementation is a hybrid model, where the push model is going to call the pull model causing reentrancy
     private boolean updateMemoryReservation()
     {
+        long estimatedSize = groupByHash == null ? 0 : groupByHash.getEstimatedSize();
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
-        localUserMemoryContext.setBytes(groupByHash.getEstimatedSize());
+        if (spillEnabled && !spiller.isPresent()) {
+            localRevocableMemoryContext.setBytes(estimatedSize);
+        }
+        else {
+            localUserMemoryContext.setBytes(estimatedSize);
+        }
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
@@ -285,4 +476,20 @@ public class DistinctLimitOperator
     {
         return groupByHash.getCapacity();
     }
+
+    @Override
+    public void close()
+    {
+        groupByHash = null;
+        unfinishedWork = null;
+        unfinishedDistinctValuesWork = null;
+        groupByIds = null;
+        inputPage = null;
+        unspilledDistinctValues = emptyIterator();
+        unspilledInput = emptyIterator();
+        spiller.ifPresent(DistinctRowsSpiller::close);
+        spiller = Optional.empty();
+        localUserMemoryContext.setBytes(0);
+        localRevocableMemoryContext.setBytes(0);
+    }
 }
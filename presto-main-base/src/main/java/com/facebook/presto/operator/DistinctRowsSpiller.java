@@ -0,0 +1,243 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.LongBigArray;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transformAsync;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spills the state and the remaining input of an operator that tracks distinct rows, such as
+ * {@link MarkDistinctOperator}, {@link DistinctLimitOperator} and {@link RowNumberOperator}. Both the
+ * distinct values seen before the spill and the input received after it are partitioned on the distinct
+ * channels, so that each partition can later be processed on its own with only its distinct values in memory.
+ * The distinct values can be spilled together with a count per value, such as the row count of a partition.
+ */
+final class DistinctRowsSpiller
+        implements Closeable
+{
+    static final int SPILL_PARTITION_COUNT = 16;
+
+    private final int[] valueChannels;
+    private final boolean withGroupCounts;
+    private final PartitioningSpiller valuesSpiller;
+    private final PartitioningSpiller inputSpiller;
+
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private int nextPartition;
+
+    DistinctRowsSpiller(
+            List<Type> inputTypes,
+            List<Integer> distinctChannels,
+            Optional<Integer> hashChannel,
+            PartitioningSpillerFactory partitioningSpillerFactory,
+            OperatorContext operatorContext)
+    {
+        this(inputTypes, distinctChannels, hashChannel, false, partitioningSpillerFactory, operatorContext);
+    }
+
+    DistinctRowsSpiller(
+            List<Type> inputTypes,
+            List<Integer> distinctChannels,
+            Optional<Integer> hashChannel,
+            boolean withGroupCounts,
+            PartitioningSpillerFactory partitioningSpillerFactory,
+            OperatorContext operatorContext)
+    {
+        requireNonNull(inputTypes, "inputTypes is null");
+        requireNonNull(distinctChannels, "distinctChannels is null");
+        requireNonNull(hashChannel, "hashChannel is null");
+        requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+
+        this.valueChannels = Ints.toArray(ImmutableList.<Integer>builder()
+                .addAll(distinctChannels)
+                .addAll(hashChannel.map(ImmutableList::of).orElse(ImmutableList.of()))
+                .build());
+        List<Type> distinctTypes = distinctChannels.stream()
+                .map(inputTypes::get)
+                .collect(toImmutableList());
+        ImmutableList.Builder<Type> valueTypes = ImmutableList.builder();
+        IntStream.of(valueChannels)
+                .mapToObj(inputTypes::get)
+                .forEach(valueTypes::add);
+        if (withGroupCounts) {
+            valueTypes.add(BIGINT);
+        }
+        this.withGroupCounts = withGroupCounts;
+
+        // values and input rows are partitioned on the same types, so equal rows end up in the same partition
+        this.valuesSpiller = partitioningSpillerFactory.create(
+                valueTypes.build(),
+                new LocalPartitionGenerator(new InterpretedHashGenerator(distinctTypes, IntStream.range(0, distinctTypes.size()).toArray()), SPILL_PARTITION_COUNT),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.aggregateSystemMemoryContext());
+        this.inputSpiller = partitioningSpillerFactory.create(
+                inputTypes,
+                new LocalPartitionGenerator(new InterpretedHashGenerator(distinctTypes, Ints.toArray(distinctChannels)), SPILL_PARTITION_COUNT),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.aggregateSystemMemoryContext());
+    }
+
+    /**
+     * Returns the layout of the distinct values within an input page: the distinct channels
+     * followed by the hash channel, if present.
+     */
+    int[] getValueChannels()
+    {
+        return valueChannels;
+    }
+
+    /**
+     * Spills the values of the first {@code groupCount} groups of {@code groupByHash}.
+     */
+    ListenableFuture<?> spillDistinctValues(GroupByHash groupByHash, int groupCount)
+    {
+        checkState(!withGroupCounts, "Group counts must be spilled with the values");
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        spillInProgress = spillValues(getValuePages(groupByHash, groupCount, Optional.empty()));
+        return spillInProgress;
+    }
+
+    /**
+     * Spills the values of the first {@code groupCount} groups of {@code groupByHash}, each followed
+     * by the count of the group in {@code groupCounts}.
+     */
+    ListenableFuture<?> spillDistinctValues(GroupByHash groupByHash, int groupCount, LongBigArray groupCounts)
+    {
+        checkState(withGroupCounts, "Group counts are not spilled");
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        spillInProgress = spillValues(getValuePages(groupByHash, groupCount, Optional.of(groupCounts)));
+        return spillInProgress;
+    }
+
+    private ListenableFuture<?> spillValues(Iterator<Page> pages)
+    {
+        // the spiller does not allow a new spill before the previous one is finished
+        while (pages.hasNext()) {
+            ListenableFuture<?> spillingFuture = valuesSpiller.partitionAndSpill(pages.next(), partition -> true).getSpillingFuture();
+            if (!spillingFuture.isDone()) {
+                return transformAsync(spillingFuture, ignored -> spillValues(pages), directExecutor());
+            }
+            checkSpillSucceeded(spillingFuture);
+        }
+        return immediateFuture(null);
+    }
+
+    ListenableFuture<?> spillInput(Page page)
+    {
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        checkSpillSucceeded(spillInProgress);
+        spillInProgress = inputSpiller.partitionAndSpill(page, partition -> true).getSpillingFuture();
+        return spillInProgress;
+    }
+
+    boolean hasNextPartition()
+    {
+        return nextPartition < SPILL_PARTITION_COUNT;
+    }
+
+    /**
+     * Moves to the next partition and returns its distinct values, laid out as described in
+     * {@link #getValueChannels()} and followed by the count of each value if spilled with counts. The input rows of the partition must be read with
+     * {@link #getSpilledInput()} before moving to the next partition.
+     */
+    Iterator<Page> nextPartitionDistinctValues()
+    {
+        checkState(spillInProgress.isDone(), "Spill still in progress");
+        checkSpillSucceeded(spillInProgress);
+        checkState(hasNextPartition(), "No more partitions");
+        nextPartition++;
+        return valuesSpiller.getSpilledPages(nextPartition - 1);
+    }
+
+    Iterator<Page> getSpilledInput()
+    {
+        checkState(nextPartition > 0, "No partition is being read");
+        Iterator<Page> input = inputSpiller.getSpilledPages(nextPartition - 1);
+        if (!hasNextPartition()) {
+            valuesSpiller.verifyAllPartitionsRead();
+            inputSpiller.verifyAllPartitionsRead();
+        }
+        return input;
+    }
+
+    @Override
+    public void close()
+    {
+        try (Closer closer = Closer.create()) {
+            closer.register(valuesSpiller);
+            closer.register(inputSpiller);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Iterator<Page> getValuePages(GroupByHash groupByHash, int groupCount, Optional<LongBigArray> groupCounts)
+    {
+        List<Type> types = ImmutableList.<Type>builder()
+                .addAll(groupByHash.getTypes())
+                .addAll(groupCounts.map(counts -> ImmutableList.of(BIGINT)).orElse(ImmutableList.of()))
+                .build();
+        int countChannel = groupByHash.getTypes().size();
+        return new AbstractIterator<Page>()
+        {
+            private final PageBuilder pageBuilder = new PageBuilder(types);
+            private int groupId;
+
+            @Override
+            protected Page computeNext()
+            {
+                if (groupId == groupCount) {
+                    return endOfData();
+                }
+                pageBuilder.reset();
+                while (!pageBuilder.isFull() && groupId < groupCount) {
+                    pageBuilder.declarePosition();
+                    groupByHash.appendValuesTo(groupId, pageBuilder, 0);
+                    if (groupCounts.isPresent()) {
+                        BIGINT.writeLong(pageBuilder.getBlockBuilder(countChannel), groupCounts.get().get(groupId));
+                    }
+                    groupId++;
+                }
+                return pageBuilder.build();
+            }
+        };
+    }
+}
@@ -98,6 +98,8 @@ public class Driver
     private TaskSource currentTaskSource;
 
     private final AtomicReference<SettableFuture<?>> driverBlockedFuture = new AtomicReference<>();
+    // whether the driver was last blocked by its source operator, such as a table scan waiting for data
+    private volatile boolean blockedOnSource;
 
     private final AtomicReference<Optional<Iterator<Page>>> cachedResult = new AtomicReference<>(Optional.empty());
     private final AtomicReference<Split> split = new AtomicReference<>();
@@ -212,6 +214,15 @@ public class Driver
         return result.orElseGet(() -> state.get() != State.ALIVE || driverContext.isDone());
     }
 
+    /**
+     * Returns whether the driver was last blocked waiting for its source operator to produce data,
+     * rather than only for downstream operators, the output buffer or memory.
+     */
+    public boolean isBlockedOnSource()
+    {
+        return blockedOnSource;
+    }
+
     @GuardedBy("exclusiveLock")
     private boolean isFinishedInternal()
     {
@@ -513,6 +524,9 @@ public class Driver
                 }
 
                 if (!blockedFutures.isEmpty()) {
+                    blockedOnSource = sourceOperator.isPresent() &&
+                            blockedOperators.contains(sourceOperator.get()) &&
+                            !sourceOperator.get().isBlocked().isDone();
                     // unblock when the first future is complete
                     ListenableFuture<?> blocked = firstFinishedFuture(blockedFutures);
                     // driver records serial blocked time
@@ -16,10 +16,12 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.predicate.ValueSet;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.aggregation.TypedSet;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.google.common.collect.ImmutableList;
@@ -29,6 +31,7 @@ import io.airlift.units.DataSize;
 import javax.annotation.Nullable;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
@@ -39,6 +42,7 @@ import static com.facebook.presto.common.type.TypeUtils.isFloatingPointNaN;
 import static com.facebook.presto.common.type.TypeUtils.readNativeValue;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toSet;
 
@@ -47,6 +51,8 @@ import static java.util.stream.Collectors.toSet;
  * The collected pages' value are used for creating a run-time filtering constraint (for probe-side table scan in an inner join).
  * We record all values for the run-time filter only for small build-side pages (which should be the case when using "broadcast" join).
  * For large inputs on build side, we can optionally record the min and max values per channel for orderable types (except Double and Real).
+ * When enabled, a Bloom filter of the values is built as well for the supported types, and published just before the predicate
+ * so that scans can still filter on high cardinality keys after the predicate collapsed to a range.
  */
 public class DynamicFilterSourceOperator
         implements Operator
@@ -93,6 +99,8 @@ public class DynamicFilterSourceOperator
         private final DataSize maxFilterSize;
         private final int minMaxCollectionLimit;
         private final boolean useNewNanDefinition;
+        private final Consumer<Map<String, BlockedBloomFilter>> bloomFiltersConsumer;
+        private final DataSize bloomFilterSize;
 
         private boolean closed;
 
@@ -105,6 +113,21 @@ public class DynamicFilterSourceOperator
                 DataSize maxFilterSize,
                 int minMaxCollectionLimit,
                 boolean useNewNanDefinition)
+        {
+            this(operatorId, planNodeId, dynamicPredicateConsumer, channels, maxFilterPositionsCount, maxFilterSize, minMaxCollectionLimit, useNewNanDefinition, bloomFilters -> {}, new DataSize(0, BYTE));
+        }
+
+        public DynamicFilterSourceOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                Consumer<TupleDomain<String>> dynamicPredicateConsumer,
+                List<Channel> channels,
+                int maxFilterPositionsCount,
+                DataSize maxFilterSize,
+                int minMaxCollectionLimit,
+                boolean useNewNanDefinition,
+                Consumer<Map<String, BlockedBloomFilter>> bloomFiltersConsumer,
+                DataSize bloomFilterSize)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -120,6 +143,8 @@ public class DynamicFilterSourceOperator
             this.maxFilterSize = maxFilterSize;
             this.minMaxCollectionLimit = minMaxCollectionLimit;
             this.useNewNanDefinition = useNewNanDefinition;
+            this.bloomFiltersConsumer = requireNonNull(bloomFiltersConsumer, "bloomFiltersConsumer is null");
+            this.bloomFilterSize = requireNonNull(bloomFilterSize, "bloomFilterSize is null");
         }
 
         @Override
@@ -134,7 +159,9 @@ public class DynamicFilterSourceOperator
                     maxFilterPositionsCount,
                     maxFilterSize,
                     minMaxCollectionLimit,
-                    useNewNanDefinition);
+                    useNewNanDefinition,
+                    bloomFiltersConsumer,
+                    bloomFilterSize);
         }
 
         @Override
@@ -158,6 +185,8 @@ public class DynamicFilterSourceOperator
     private final List<Channel> channels;
     private final List<Integer> minMaxChannels;
     private final boolean useNewNanDefinition;
+    private final Consumer<Map<String, BlockedBloomFilter>> bloomFiltersConsumer;
+    private final LocalMemoryContext bloomFiltersMemoryContext;
 
     private boolean finished;
     private Page current;
@@ -174,6 +203,12 @@ public class DynamicFilterSourceOperator
     @Nullable
     private Block[] maxValues;
 
+    // May be dropped if the filters become too full. Entries are null for unsupported types.
+    @Nullable
+    private BlockedBloomFilter[] bloomFilters;
+    // The predicate became 'all' while the Bloom filters are still being collected.
+    private boolean allPredicatePending;
+
     private DynamicFilterSourceOperator(
             OperatorContext context,
             Consumer<TupleDomain<String>> dynamicPredicateConsumer,
@@ -182,7 +217,9 @@ public class DynamicFilterSourceOperator
             int maxFilterPositionsCount,
             DataSize maxFilterSize,
             int minMaxCollectionLimit,
-            boolean useNewNanDefinition)
+            boolean useNewNanDefinition,
+            Consumer<Map<String, BlockedBloomFilter>> bloomFiltersConsumer,
+            DataSize bloomFilterSize)
     {
         this.context = requireNonNull(context, "context is null");
         this.maxFilterPositionsCount = maxFilterPositionsCount;
@@ -216,6 +253,18 @@ public class DynamicFilterSourceOperator
             maxValues = new Block[channels.size()];
         }
         this.useNewNanDefinition = useNewNanDefinition;
+
+        this.bloomFiltersConsumer = requireNonNull(bloomFiltersConsumer, "bloomFiltersConsumer is null");
+        if (bloomFilterSize.toBytes() > 0 && channels.stream().map(Channel::getType).anyMatch(BlockedBloomFilter::isSupportedType)) {
+            bloomFilters = new BlockedBloomFilter[channels.size()];
+            for (int channelIndex = 0; channelIndex < channels.size(); ++channelIndex) {
+                if (BlockedBloomFilter.isSupportedType(channels.get(channelIndex).getType())) {
+                    bloomFilters[channelIndex] = BlockedBloomFilter.create(bloomFilterSize.toBytes());
+                }
+            }
+        }
+        this.bloomFiltersMemoryContext = context.newLocalSystemMemoryContext(DynamicFilterSourceOperator.class.getSimpleName());
+        updateBloomFiltersMemoryUsage();
     }
 
     @Override
@@ -235,6 +284,7 @@ public class DynamicFilterSourceOperator
     {
         verify(!finished, "DynamicFilterSourceOperator: addInput() shouldn't not be called after finish()");
         current = page;
+        updateBloomFilters(page);
         if (valueSets == null) {
             // the exact predicate became too large.
             if (minValues == null) {
@@ -278,7 +328,7 @@ public class DynamicFilterSourceOperator
         // The resulting predicate is too large
         if (minMaxChannels.isEmpty()) {
             // allow all probe-side values to be read.
-            dynamicPredicateConsumer.accept(TupleDomain.all());
+            publishAllPredicate();
         }
         else {
             if (minMaxCollectionLimit < 0) {
@@ -301,12 +351,89 @@ public class DynamicFilterSourceOperator
     private void handleMinMaxCollectionLimitExceeded()
     {
         // allow all probe-side values to be read.
-        dynamicPredicateConsumer.accept(TupleDomain.all());
+        publishAllPredicate();
         // Drop references to collected values.
         minValues = null;
         maxValues = null;
     }
 
+    private void publishAllPredicate()
+    {
+        if (bloomFilters != null) {
+            // the Bloom filters are published along with the predicate once all the build-side values are collected
+            allPredicatePending = true;
+            return;
+        }
+        dynamicPredicateConsumer.accept(TupleDomain.all());
+    }
+
+    private void publishPredicate(TupleDomain<String> predicate)
+    {
+        if (bloomFilters != null) {
+            ImmutableMap.Builder<String, BlockedBloomFilter> bloomFiltersBuilder = ImmutableMap.builder();
+            for (int channelIndex = 0; channelIndex < channels.size(); ++channelIndex) {
+                if (bloomFilters[channelIndex] != null) {
+                    bloomFiltersBuilder.put(channels.get(channelIndex).getFilterId(), bloomFilters[channelIndex]);
+                }
+            }
+            bloomFilters = null;
+            updateBloomFiltersMemoryUsage();
+            // must be published before the predicate, which completes this partition of the dynamic filter
+            bloomFiltersConsumer.accept(bloomFiltersBuilder.build());
+        }
+        dynamicPredicateConsumer.accept(predicate);
+    }
+
+    private void updateBloomFilters(Page page)
+    {
+        if (bloomFilters == null) {
+            return;
+        }
+        boolean hasBloomFilter = false;
+        for (int channelIndex = 0; channelIndex < channels.size(); ++channelIndex) {
+            BlockedBloomFilter bloomFilter = bloomFilters[channelIndex];
+            if (bloomFilter == null) {
+                continue;
+            }
+            Type type = channels.get(channelIndex).getType();
+            Block block = page.getBlock(channels.get(channelIndex).getIndex());
+            for (int position = 0; position < block.getPositionCount(); ++position) {
+                if (!block.isNull(position)) {
+                    bloomFilter.add(BlockedBloomFilter.hash(type, block, position));
+                }
+            }
+            if (bloomFilter.getEntryCount() > bloomFilter.getCapacity()) {
+                // too many false positives to be worth testing on the probe side
+                bloomFilters[channelIndex] = null;
+                updateBloomFiltersMemoryUsage();
+            }
+            else {
+                hasBloomFilter = true;
+            }
+        }
+        if (!hasBloomFilter) {
+            bloomFilters = null;
+            updateBloomFiltersMemoryUsage();
+            if (allPredicatePending) {
+                allPredicatePending = false;
+                dynamicPredicateConsumer.accept(TupleDomain.all());
+            }
+        }
+    }
+
+    private void updateBloomFiltersMemoryUsage()
+    {
+        long bytes = 0;
+        if (bloomFilters != null) {
+            for (BlockedBloomFilter bloomFilter : bloomFilters) {
+                if (bloomFilter != null) {
+                    bytes += bloomFilter.getRetainedSizeInBytes();
+                }
+            }
+        }
+        bloomFiltersMemoryContext.setBytes(bytes);
+    }
+
     private void updateMinMaxValues(Block block, int channelIndex)
     {
         checkState(minValues != null && maxValues != null);
@@ -367,6 +494,11 @@ public class DynamicFilterSourceOperator
             return;
         }
         finished = true;
+        if (allPredicatePending) {
+            allPredicatePending = false;
+            publishPredicate(TupleDomain.all());
+            return;
+        }
         ImmutableMap.Builder<String, Domain> domainsBuilder = ImmutableMap.builder();
         if (valueSets == null) {
             if (minValues == null) {
@@ -392,7 +524,7 @@ public class DynamicFilterSourceOperator
             }
             minValues = null;
             maxValues = null;
-            dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domainsBuilder.build()));
+            publishPredicate(TupleDomain.withColumnDomains(domainsBuilder.build()));
             return;
         }
 
@@ -404,7 +536,7 @@ public class DynamicFilterSourceOperator
         }
         valueSets = null;
         blockBuilders = null;
-        dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domainsBuilder.build()));
+        publishPredicate(TupleDomain.withColumnDomains(domainsBuilder.build()));
     }
 
     private Domain convertToDomain(Type type, Block block)
@@ -428,4 +560,11 @@ public class DynamicFilterSourceOperator
     {
         return current == null && finished;
     }
+
+    @Override
+    public void close()
+    {
+        bloomFilters = null;
+        bloomFiltersMemoryContext.close();
+    }
 }
@@ -19,6 +19,7 @@ import com.facebook.presto.operator.PageBufferClient.ClientCallback;
 import com.facebook.presto.operator.WorkProcessor.ProcessState;
 import com.facebook.presto.spi.page.PageCodecMarker;
 import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
@@ -80,6 +81,7 @@ public class ExchangeClient
     private final int concurrentRequestMultiplier;
     private final Duration maxErrorDuration;
     private final boolean acknowledgePages;
+    private final boolean adaptiveConcurrencyEnabled;
     private final RpcShuffleClientProvider rpcShuffleClientProvider;
     private final ScheduledExecutorService scheduler;
 
@@ -108,12 +110,19 @@ public class ExchangeClient
     private long successfulRequests;
     @GuardedBy("this")
     private final ExponentialMovingAverage responseSizeExponentialMovingAverage;
+    @GuardedBy("this")
+    private final ExchangeRequestController requestController;
+    @GuardedBy("this")
+    private int concurrentRequests;
+    @GuardedBy("this")
+    private long requestMaxResponseSizeInBytes;
 
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
 
     private final LocalMemoryContext systemMemoryContext;
     private final Executor pageBufferClientCallbackExecutor;
+    private final ExchangeClientStats stats;
 
     // ExchangeClientStatus.mergeWith assumes all clients have the same bufferCapacity.
     // Please change that method accordingly when this assumption becomes not true.
@@ -128,6 +137,35 @@ public class ExchangeClient
             ScheduledExecutorService scheduler,
             LocalMemoryContext systemMemoryContext,
             Executor pageBufferClientCallbackExecutor)
+    {
+        this(
+                bufferCapacity,
+                maxResponseSize,
+                concurrentRequestMultiplier,
+                maxErrorDuration,
+                acknowledgePages,
+                false,
+                responseSizeExponentialMovingAverageDecayingAlpha,
+                rpcShuffleClientProvider,
+                scheduler,
+                systemMemoryContext,
+                pageBufferClientCallbackExecutor,
+                new ExchangeClientStats());
+    }
+
+    public ExchangeClient(
+            DataSize bufferCapacity,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            Duration maxErrorDuration,
+            boolean acknowledgePages,
+            boolean adaptiveConcurrencyEnabled,
+            double responseSizeExponentialMovingAverageDecayingAlpha,
+            RpcShuffleClientProvider rpcShuffleClientProvider,
+            ScheduledExecutorService scheduler,
+            LocalMemoryContext systemMemoryContext,
+            Executor pageBufferClientCallbackExecutor,
+            ExchangeClientStats stats)
     {
         checkArgument(responseSizeExponentialMovingAverageDecayingAlpha >= 0.0 && responseSizeExponentialMovingAverageDecayingAlpha <= 1.0, "responseSizeExponentialMovingAverageDecayingAlpha must be between 0 and 1: %s", responseSizeExponentialMovingAverageDecayingAlpha);
         this.bufferCapacity = bufferCapacity.toBytes();
@@ -135,12 +173,15 @@ public class ExchangeClient
         this.concurrentRequestMultiplier = concurrentRequestMultiplier;
         this.maxErrorDuration = maxErrorDuration;
         this.acknowledgePages = acknowledgePages;
+        this.adaptiveConcurrencyEnabled = adaptiveConcurrencyEnabled;
         this.rpcShuffleClientProvider = rpcShuffleClientProvider;
         this.scheduler = scheduler;
         this.systemMemoryContext = systemMemoryContext;
         this.maxBufferRetainedSizeInBytes = Long.MIN_VALUE;
         this.pageBufferClientCallbackExecutor = requireNonNull(pageBufferClientCallbackExecutor, "pageBufferClientCallbackExecutor is null");
         this.responseSizeExponentialMovingAverage = new ExponentialMovingAverage(responseSizeExponentialMovingAverageDecayingAlpha, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        this.requestController = new ExchangeRequestController(maxResponseSize.toBytes(), concurrentRequestMultiplier, Ticker.systemTicker());
+        this.stats = requireNonNull(stats, "stats is null");
     }
 
     public ExchangeClientStatus getStatus()
@@ -158,7 +199,18 @@ public class ExchangeClient
             if (bufferedPages > 0 && pageBuffer.peekLast() == NO_MORE_PAGES) {
                 bufferedPages--;
             }
-            return new ExchangeClientStatus(bufferRetainedSizeInBytes, maxBufferRetainedSizeInBytes, responseSizeExponentialMovingAverage.get(), successfulRequests, bufferedPages, noMoreLocations, pageBufferClientStatus);
+            return new ExchangeClientStatus(
+                    bufferRetainedSizeInBytes,
+                    maxBufferRetainedSizeInBytes,
+                    responseSizeExponentialMovingAverage.get(),
+                    successfulRequests,
+                    bufferedPages,
+                    noMoreLocations,
+                    pageBufferClientStatus,
+                    concurrentRequests,
+                    requestMaxResponseSizeInBytes,
+                    requestController.getThroughputBytesPerSecond(),
+                    requestController.getLatencyNanos());
         }
     }
 
@@ -343,8 +395,17 @@ public class ExchangeClient
             return;
         }
         long averageResponseSize = max(1, responseSizeExponentialMovingAverage.get());
-        int clientCount = (int) ((1.0 * neededBytes / averageResponseSize) * concurrentRequestMultiplier);
-        clientCount = max(clientCount, 1);
+        int clientCount;
+        if (adaptiveConcurrencyEnabled && requestController.hasEstimates()) {
+            clientCount = requestController.getConcurrentRequests(neededBytes, averageResponseSize);
+            requestMaxResponseSizeInBytes = requestController.getResponseSizeInBytes();
+        }
+        else {
+            clientCount = (int) ((1.0 * neededBytes / averageResponseSize) * concurrentRequestMultiplier);
+            clientCount = max(clientCount, 1);
+            requestMaxResponseSizeInBytes = min(averageResponseSize * 2, maxResponseSize.toBytes());
+        }
+        concurrentRequests = clientCount;
 
         int pendingClients = allClients.size() - queuedClients.size() - completedClients.size();
         clientCount -= pendingClients;
@@ -360,8 +421,7 @@ public class ExchangeClient
                 continue;
             }
 
-            DataSize max = new DataSize(min(averageResponseSize * 2, maxResponseSize.toBytes()), BYTE);
-            client.scheduleRequest(max);
+            client.scheduleRequest(new DataSize(requestMaxResponseSizeInBytes, BYTE));
             i++;
         }
     }
@@ -383,17 +443,21 @@ public class ExchangeClient
         }
     }
 
-    private boolean addPages(List<SerializedPage> pages)
+    private boolean addPages(PageBufferClient client, List<SerializedPage> pages)
     {
         // Compute stats before acquiring the lock
+        long requestLatencyNanos = client.getLastRequestLatencyNanos();
+        long requestedBytes = client.getLastRequestMaxResponseSizeInBytes();
         long pagesRetainedSizeInBytes = 0;
         long responseSize = 0;
         for (SerializedPage page : pages) {
             pagesRetainedSizeInBytes += page.getRetainedSizeInBytes();
             responseSize += page.getSizeInBytes();
+            stats.recordPage(page);
         }
 
         List<SettableFuture<?>> notify = ImmutableList.of();
+        long bufferedBytes;
         synchronized (this) {
             if (isClosed() || isFailed()) {
                 return false;
@@ -413,7 +477,10 @@ public class ExchangeClient
 
             successfulRequests++;
             responseSizeExponentialMovingAverage.update(responseSize);
+            requestController.requestCompleted(requestedBytes, responseSize, requestLatencyNanos);
+            bufferedBytes = bufferRetainedSizeInBytes;
         }
+        stats.recordBufferUtilization(bufferedBytes / (double) bufferCapacity);
         // Trigger notifications after releasing the lock
         notifyListeners(notify);
 
@@ -490,7 +557,7 @@ public class ExchangeClient
         {
             requireNonNull(client, "client is null");
             requireNonNull(pages, "pages is null");
-            return ExchangeClient.this.addPages(pages);
+            return ExchangeClient.this.addPages(client, pages);
         }
 
         @Override
@@ -41,6 +41,7 @@ public class ExchangeClientConfig
     private int pageBufferClientMaxCallbackThreads = 25;
     private boolean acknowledgePages = true;
     private double responseSizeExponentialMovingAverageDecayingAlpha = 0.1;
+    private boolean adaptiveConcurrencyEnabled;
 
     @NotNull
     public DataSize getMaxBufferSize()
@@ -172,4 +173,16 @@ public class ExchangeClientConfig
     {
         return responseSizeExponentialMovingAverageDecayingAlpha;
     }
+
+    public boolean isAdaptiveConcurrencyEnabled()
+    {
+        return adaptiveConcurrencyEnabled;
+    }
+
+    @Config("exchange.adaptive-concurrency-enabled")
+    public ExchangeClientConfig setAdaptiveConcurrencyEnabled(boolean adaptiveConcurrencyEnabled)
+    {
+        this.adaptiveConcurrencyEnabled = adaptiveConcurrencyEnabled;
+        return this;
+    }
 }
@@ -42,10 +42,12 @@ public class ExchangeClientFactory
     private final RpcShuffleClientProvider rpcShuffleClientProvider;
     private final DataSize maxResponseSize;
     private final boolean acknowledgePages;
+    private final boolean adaptiveConcurrencyEnabled;
     private final double responseSizeExponentialMovingAverageDecayingAlpha;
     private final ScheduledExecutorService scheduler;
     private final ThreadPoolExecutorMBean executorMBean;
     private final ExecutorService pageBufferClientCallbackExecutor;
+    private final ExchangeClientStats stats = new ExchangeClientStats();
 
     @Inject
     public ExchangeClientFactory(
@@ -59,6 +61,7 @@ public class ExchangeClientFactory
                 config.getConcurrentRequestMultiplier(),
                 config.getMaxErrorDuration(),
                 config.isAcknowledgePages(),
+                config.isAdaptiveConcurrencyEnabled(),
                 config.getPageBufferClientMaxCallbackThreads(),
                 config.getResponseSizeExponentialMovingAverageDecayingAlpha(),
                 rpcShuffleClientProvider,
@@ -75,11 +78,37 @@ public class ExchangeClientFactory
             double responseSizeExponentialMovingAverageDecayingAlpha,
             RpcShuffleClientProvider rpcShuffleClientProvider,
             ScheduledExecutorService scheduler)
+    {
+        this(
+                maxBufferedBytes,
+                maxResponseSize,
+                concurrentRequestMultiplier,
+                maxErrorDuration,
+                acknowledgePages,
+                false,
+                pageBufferClientMaxCallbackThreads,
+                responseSizeExponentialMovingAverageDecayingAlpha,
+                rpcShuffleClientProvider,
+                scheduler);
+    }
+
+    public ExchangeClientFactory(
+            DataSize maxBufferedBytes,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            Duration maxErrorDuration,
+            boolean acknowledgePages,
+            boolean adaptiveConcurrencyEnabled,
+            int pageBufferClientMaxCallbackThreads,
+            double responseSizeExponentialMovingAverageDecayingAlpha,
+            RpcShuffleClientProvider rpcShuffleClientProvider,
+            ScheduledExecutorService scheduler)
     {
         this.maxBufferedBytes = requireNonNull(maxBufferedBytes, "maxBufferedBytes is null");
         this.concurrentRequestMultiplier = concurrentRequestMultiplier;
         this.maxErrorDuration = requireNonNull(maxErrorDuration, "maxErrorDuration is null");
         this.acknowledgePages = acknowledgePages;
+        this.adaptiveConcurrencyEnabled = adaptiveConcurrencyEnabled;
         this.rpcShuffleClientProvider = requireNonNull(rpcShuffleClientProvider, "rpcShuffleClientProvider is null");
 
         // Use only 0.75 of the maxResponseSize to leave room for additional bytes from the encoding
@@ -114,6 +143,13 @@ public class ExchangeClientFactory
         return executorMBean;
     }
 
+    @Managed
+    @Nested
+    public ExchangeClientStats getStats()
+    {
+        return stats;
+    }
+
     @Override
     public ExchangeClient get(LocalMemoryContext systemMemoryContext)
     {
@@ -123,10 +159,12 @@ public class ExchangeClientFactory
                 concurrentRequestMultiplier,
                 maxErrorDuration,
                 acknowledgePages,
+                adaptiveConcurrencyEnabled,
                 responseSizeExponentialMovingAverageDecayingAlpha,
                 rpcShuffleClientProvider,
                 scheduler,
                 systemMemoryContext,
-                pageBufferClientCallbackExecutor);
+                pageBufferClientCallbackExecutor,
+                stats);
     }
 }
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.airlift.stats.DistributionStat;
+import com.facebook.presto.spi.page.SerializedPage;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Distributions of the pages received by all {@link ExchangeClient}s of a node, and of the utilization
+ * of their buffers.
+ */
+@ThreadSafe
+public class ExchangeClientStats
+{
+    private final DistributionStat pageSizeInBytes = new DistributionStat();
+    private final DistributionStat pageUncompressedSizeInBytes = new DistributionStat();
+    private final DistributionStat pageCompressionPercent = new DistributionStat();
+    private final DistributionStat bufferUtilizationPercent = new DistributionStat();
+
+    public void recordPage(SerializedPage page)
+    {
+        pageSizeInBytes.add(page.getSizeInBytes());
+        pageUncompressedSizeInBytes.add(page.getUncompressedSizeInBytes());
+        if (page.getUncompressedSizeInBytes() > 0) {
+            // size of the page on the wire relative to its size before compression
+            pageCompressionPercent.add(page.getSizeInBytes() * 100L / page.getUncompressedSizeInBytes());
+        }
+    }
+
+    public void recordBufferUtilization(double utilization)
+    {
+        bufferUtilizationPercent.add(Math.round(utilization * 100));
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getPageSizeInBytes()
+    {
+        return pageSizeInBytes;
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getPageUncompressedSizeInBytes()
+    {
+        return pageUncompressedSizeInBytes;
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getPageCompressionPercent()
+    {
+        return pageCompressionPercent;
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getBufferUtilizationPercent()
+    {
+        return bufferUtilizationPercent;
+    }
+}
@@ -37,6 +37,10 @@ public class ExchangeClientStatus
     private final int bufferedPages;
     private final boolean noMoreLocations;
     private final List<PageBufferClientStatus> pageBufferClientStatuses;
+    private final int concurrentRequests;
+    private final long maxResponseSizeInBytes;
+    private final long throughputBytesPerSecond;
+    private final long requestLatencyNanos;
 
     @JsonCreator
     @ThriftConstructor
@@ -47,7 +51,11 @@ public class ExchangeClientStatus
             @JsonProperty("successfulRequestsCount") long successfulRequestsCount,
             @JsonProperty("bufferedPages") int bufferedPages,
             @JsonProperty("noMoreLocations") boolean noMoreLocations,
-            @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses)
+            @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses,
+            @JsonProperty("concurrentRequests") int concurrentRequests,
+            @JsonProperty("maxResponseSizeInBytes") long maxResponseSizeInBytes,
+            @JsonProperty("throughputBytesPerSecond") long throughputBytesPerSecond,
+            @JsonProperty("requestLatencyNanos") long requestLatencyNanos)
     {
         this.bufferedBytes = bufferedBytes;
         this.maxBufferedBytes = maxBufferedBytes;
@@ -56,6 +64,10 @@ public class ExchangeClientStatus
         this.bufferedPages = bufferedPages;
         this.noMoreLocations = noMoreLocations;
         this.pageBufferClientStatuses = ImmutableList.copyOf(requireNonNull(pageBufferClientStatuses, "pageBufferClientStatuses is null"));
+        this.concurrentRequests = concurrentRequests;
+        this.maxResponseSizeInBytes = maxResponseSizeInBytes;
+        this.throughputBytesPerSecond = throughputBytesPerSecond;
+        this.requestLatencyNanos = requestLatencyNanos;
     }
 
     @JsonProperty
@@ -107,6 +119,34 @@ public class ExchangeClientStatus
         return pageBufferClientStatuses;
     }
 
+    @JsonProperty
+    @ThriftField(8)
+    public int getConcurrentRequests()
+    {
+        return concurrentRequests;
+    }
+
+    @JsonProperty
+    @ThriftField(9)
+    public long getMaxResponseSizeInBytes()
+    {
+        return maxResponseSizeInBytes;
+    }
+
+    @JsonProperty
+    @ThriftField(10)
+    public long getThroughputBytesPerSecond()
+    {
+        return throughputBytesPerSecond;
+    }
+
+    @JsonProperty
+    @ThriftField(11)
+    public long getRequestLatencyNanos()
+    {
+        return requestLatencyNanos;
+    }
+
     @Override
     public boolean isFinal()
     {
@@ -124,6 +164,10 @@ public class ExchangeClientStatus
                 .add("bufferedPages", bufferedPages)
                 .add("noMoreLocations", noMoreLocations)
                 .add("pageBufferClientStatuses", pageBufferClientStatuses)
+                .add("concurrentRequests", concurrentRequests)
+                .add("maxResponseSizeInBytes", maxResponseSizeInBytes)
+                .add("throughputBytesPerSecond", throughputBytesPerSecond)
+                .add("requestLatencyNanos", requestLatencyNanos)
                 .toString();
     }
 
@@ -137,7 +181,11 @@ public class ExchangeClientStatus
                 successfulRequestsCount + other.successfulRequestsCount,
                 bufferedPages + other.bufferedPages,
                 noMoreLocations && other.noMoreLocations, // if at least one has some locations, merge has some too
-                ImmutableList.of()); // pageBufferClientStatuses may be long, so we don't want to combine the lists
+                ImmutableList.of(), // pageBufferClientStatuses may be long, so we don't want to combine the lists
+                concurrentRequests + other.concurrentRequests,
+                Math.max(maxResponseSizeInBytes, other.maxResponseSizeInBytes),
+                throughputBytesPerSecond + other.throughputBytesPerSecond,
+                mergeAvgs(requestLatencyNanos, successfulRequestsCount, other.requestLatencyNanos, other.successfulRequestsCount));
     }
 
     private static long mergeAvgs(long value1, long count1, long value2, long count2)
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.execution.ScheduledSplit;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.metadata.Split;
 import com.facebook.presto.spi.ConnectorId;
 import com.facebook.presto.spi.UpdatablePageSource;
@@ -29,6 +30,8 @@ import java.io.Closeable;
 import java.util.Optional;
 import java.util.function.Supplier;
 
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_PAGE_DESERIALIZATION_TIME_NANOS;
+import static com.facebook.presto.common.RuntimeUnit.NANO;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
@@ -93,6 +96,7 @@ public class ExchangeOperator
     private final PlanNodeId sourceId;
     private final ExchangeClient exchangeClient;
     private final PagesSerde serde;
+    private final LocalMemoryContext systemMemoryContext;
     private ListenableFuture<?> isBlocked = NOT_BLOCKED;
 
     public ExchangeOperator(
@@ -105,6 +109,7 @@ public class ExchangeOperator
         this.sourceId = requireNonNull(sourceId, "sourceId is null");
         this.exchangeClient = requireNonNull(exchangeClient, "exchangeClient is null");
         this.serde = requireNonNull(serde, "serde is null");
+        this.systemMemoryContext = operatorContext.localSystemMemoryContext();
 
         operatorContext.setInfoSupplier(exchangeClient::getStatus);
     }
@@ -187,7 +192,11 @@ public class ExchangeOperator
 
         operatorContext.recordRawInput(page.getSizeInBytes(), page.getPositionCount());
 
+        long start = System.nanoTime();
         Page deserializedPage = serde.deserialize(page);
+        operatorContext.getRuntimeStats().addMetricValue(EXCHANGE_PAGE_DESERIALIZATION_TIME_NANOS, NANO, System.nanoTime() - start);
+        // the serde keeps its decompression buffer for the following pages
+        systemMemoryContext.setBytes(serde.getRetainedSizeInBytes());
         operatorContext.recordProcessedInput(deserializedPage.getSizeInBytes(), page.getPositionCount());
 
         return deserializedPage;
@@ -196,6 +205,7 @@ public class ExchangeOperator
     @Override
     public void close()
     {
+        systemMemoryContext.setBytes(0);
         exchangeClient.close();
     }
 }
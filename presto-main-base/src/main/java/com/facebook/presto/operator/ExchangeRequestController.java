@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.base.Ticker;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Chooses the number of concurrent requests of an {@link ExchangeClient} and their maximum response size from the
+ * throughput and the latency observed for the previous requests.
+ * <p>
+ * The throughput multiplied by the average latency of the requests is the amount of data received during one round
+ * trip. Enough requests are kept in flight to receive twice that amount, each expected to return the average response
+ * size, which lets the throughput double on every round trip while the exchange ramps up, without ever asking for more
+ * than the free buffer space. As with the static estimate of {@link ExchangeClient}, the responses in flight add up to
+ * at most the concurrent request multiplier times the free buffer space when they all come back full.
+ * <p>
+ * The maximum response size doubles while responses come back full, so that a few tasks with a lot of data are read
+ * with few large responses, and halves while they come back mostly empty, so that many tasks with little data each
+ * are read with many small ones.
+ */
+@NotThreadSafe
+class ExchangeRequestController
+{
+    private static final double IN_FLIGHT_BYTES_PER_ROUND_TRIP = 2.0;
+    private static final double FULL_RESPONSE_FRACTION = 0.9;
+    private static final double EMPTY_RESPONSE_FRACTION = 0.25;
+    private static final long MIN_RESPONSE_SIZE_IN_BYTES = DEFAULT_MAX_PAGE_SIZE_IN_BYTES / 16;
+    private static final long MIN_THROUGHPUT_WINDOW_NANOS = MILLISECONDS.toNanos(100);
+    private static final double ALPHA = 0.2;
+
+    private final long maxResponseSizeInBytes;
+    private final int concurrentRequestMultiplier;
+    private final Ticker ticker;
+
+    private long responseSizeInBytes;
+    private double latencyNanos;
+    private double throughputBytesPerSecond;
+    private boolean hasThroughput;
+
+    private long windowStartNanos;
+    private long windowBytes;
+
+    public ExchangeRequestController(long maxResponseSizeInBytes, int concurrentRequestMultiplier, Ticker ticker)
+    {
+        checkArgument(maxResponseSizeInBytes > 0, "maxResponseSizeInBytes must be positive: %s", maxResponseSizeInBytes);
+        checkArgument(concurrentRequestMultiplier > 0, "concurrentRequestMultiplier must be positive: %s", concurrentRequestMultiplier);
+        this.maxResponseSizeInBytes = maxResponseSizeInBytes;
+        this.concurrentRequestMultiplier = concurrentRequestMultiplier;
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.responseSizeInBytes = min(maxResponseSizeInBytes, 2L * DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        this.windowStartNanos = ticker.read();
+    }
+
+    /**
+     * Records a completed request that asked for at most {@code requestedBytes} and received {@code responseBytes}
+     * after {@code requestLatencyNanos}.
+     */
+    public void requestCompleted(long requestedBytes, long responseBytes, long requestLatencyNanos)
+    {
+        // empty responses count too: the requests waiting for data on idle tasks are the ones that need more requests in flight
+        latencyNanos = latencyNanos == 0 ? requestLatencyNanos : latencyNanos + ALPHA * (requestLatencyNanos - latencyNanos);
+
+        if (requestedBytes > 0) {
+            if (responseBytes >= requestedBytes * FULL_RESPONSE_FRACTION) {
+                responseSizeInBytes = min(maxResponseSizeInBytes, max(responseSizeInBytes, 2 * requestedBytes));
+            }
+            else if (responseBytes < requestedBytes * EMPTY_RESPONSE_FRACTION) {
+                responseSizeInBytes = max(min(MIN_RESPONSE_SIZE_IN_BYTES, maxResponseSizeInBytes), min(responseSizeInBytes, requestedBytes / 2));
+            }
+        }
+
+        windowBytes += responseBytes;
+        long now = ticker.read();
+        long windowNanos = now - windowStartNanos;
+        if (windowNanos >= max(MIN_THROUGHPUT_WINDOW_NANOS, (long) latencyNanos)) {
+            double windowThroughput = windowBytes * (double) SECONDS.toNanos(1) / windowNanos;
+            throughputBytesPerSecond = hasThroughput ? throughputBytesPerSecond + ALPHA * (windowThroughput - throughputBytesPerSecond) : windowThroughput;
+            hasThroughput = true;
+            windowStartNanos = now;
+            windowBytes = 0;
+        }
+    }
+
+    /**
+     * Returns whether enough requests completed to estimate both the throughput and the latency.
+     */
+    public boolean hasEstimates()
+    {
+        return hasThroughput && latencyNanos > 0 && throughputBytesPerSecond > 0;
+    }
+
+    /**
+     * Returns the number of requests that should be in flight, given the free buffer space and the average response size.
+     */
+    public int getConcurrentRequests(long freeBufferBytes, long averageResponseSizeInBytes)
+    {
+        checkArgument(hasEstimates(), "Throughput and latency are not known yet");
+        double bytesPerRoundTrip = throughputBytesPerSecond * latencyNanos / SECONDS.toNanos(1);
+        long inFlightBytes = min(freeBufferBytes, max(responseSizeInBytes, (long) (bytesPerRoundTrip * IN_FLIGHT_BYTES_PER_ROUND_TRIP)));
+        long averageResponseSize = max(1, averageResponseSizeInBytes);
+        long expectedRequests = (inFlightBytes + averageResponseSize - 1) / averageResponseSize;
+        long maxRequests = concurrentRequestMultiplier * freeBufferBytes / responseSizeInBytes;
+        return (int) max(1, min(Integer.MAX_VALUE, min(expectedRequests, maxRequests)));
+    }
+
+    public long getResponseSizeInBytes()
+    {
+        return responseSizeInBytes;
+    }
+
+    public long getLatencyNanos()
+    {
+        return (long) latencyNanos;
+    }
+
+    public long getThroughputBytesPerSecond()
+    {
+        return (long) throughputBytesPerSecond;
+    }
+}
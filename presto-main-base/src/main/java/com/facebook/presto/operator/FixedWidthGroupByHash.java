@@ -0,0 +1,656 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.IntBigArray;
+import com.facebook.presto.common.array.LongBigArray;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.facebook.presto.common.type.DecimalType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.scalar.CombineHashFunction;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
+import com.facebook.presto.type.TypeUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INSUFFICIENT_RESOURCES;
+import static com.facebook.presto.sql.planner.PlannerUtils.INITIAL_HASH_VALUE;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link GroupByHash} for group keys made up only of fixed width types whose values are
+ * stored as a {@code long} (bigint, integer, smallint, tinyint, date and short decimal).
+ * <p>
+ * Instead of appending keys to per-channel block builders and comparing them through a
+ * {@link PagesHashStrategy}, each hash table entry holds the group id, the raw hash, a null mask
+ * and the key values inline in a single row-major array. A probe therefore only touches one
+ * contiguous entry, which avoids most of the cache misses on wide multi-column group by keys.
+ */
+// This implementation assumes arrays used in the hash are always a power of 2
+public class FixedWidthGroupByHash
+        implements GroupByHash
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(FixedWidthGroupByHash.class).instanceSize();
+    private static final float FILL_RATIO = 0.75f;
+
+    // layout of an entry in the hash table, followed by one value per key channel
+    private static final int GROUP_ID_OFFSET = 0;
+    private static final int RAW_HASH_OFFSET = 1;
+    private static final int NULL_MASK_OFFSET = 2;
+    private static final int KEYS_OFFSET = 3;
+
+    // one bit of the null mask per key channel
+    private static final int MAX_CHANNELS = Long.SIZE;
+    private static final int EMPTY_GROUP_ID = -1;
+
+    private final List<Type> hashTypes;
+    private final Type[] keyTypes;
+    private final List<Type> types;
+    private final int[] channels;
+    private final boolean outputRawHash;
+    private final HashGenerator hashGenerator;
+    private final int entrySize;
+
+    // scratch space for the key values of the row being probed
+    private final long[] rowValues;
+
+    private int hashCapacity;
+    private int maxFill;
+    private int mask;
+
+    // the hash table storing the entries inline, entrySize longs per slot
+    private LongBigArray entries;
+
+    // reverse index from the groupId back to the slot in the hash table
+    private final IntBigArray hashPositionByGroupId;
+
+    private int nextGroupId;
+    private long hashCollisions;
+    private double expectedHashCollisions;
+
+    // reserve enough memory before rehash
+    private final UpdateMemory updateMemory;
+    private long preallocatedMemoryInBytes;
+    private long currentPageSizeInBytes;
+
+    public FixedWidthGroupByHash(
+            List<? extends Type> hashTypes,
+            int[] hashChannels,
+            Optional<Integer> inputHashChannel,
+            int expectedSize,
+            UpdateMemory updateMemory)
+    {
+        this.hashTypes = ImmutableList.copyOf(requireNonNull(hashTypes, "hashTypes is null"));
+        requireNonNull(hashChannels, "hashChannels is null");
+        requireNonNull(inputHashChannel, "inputHashChannel is null");
+        checkArgument(hashTypes.size() == hashChannels.length, "hashTypes and hashChannels have different sizes");
+        checkArgument(isSupportedTypes(hashTypes), "hashTypes must all be fixed width types stored as long: %s", hashTypes);
+        checkArgument(expectedSize > 0, "expectedSize must be greater than zero");
+
+        this.keyTypes = this.hashTypes.toArray(new Type[0]);
+        this.channels = hashChannels.clone();
+        this.outputRawHash = inputHashChannel.isPresent();
+        this.types = outputRawHash ? ImmutableList.copyOf(Iterables.concat(hashTypes, ImmutableList.of(BIGINT))) : this.hashTypes;
+        this.hashGenerator = inputHashChannel.isPresent() ? new PrecomputedHashGenerator(inputHashChannel.get()) : new InterpretedHashGenerator(this.hashTypes, hashChannels);
+        this.entrySize = KEYS_OFFSET + keyTypes.length;
+        this.rowValues = new long[keyTypes.length];
+
+        hashCapacity = arraySize(expectedSize, FILL_RATIO);
+
+        maxFill = calculateMaxFill(hashCapacity);
+        mask = hashCapacity - 1;
+        entries = new LongBigArray(EMPTY_GROUP_ID);
+        entries.ensureCapacity((long) hashCapacity * entrySize);
+
+        hashPositionByGroupId = new IntBigArray();
+        hashPositionByGroupId.ensureCapacity(maxFill);
+
+        // This interface is used for actively reserving memory (push model) for rehash.
+        // The caller can also query memory usage on this object (pull model)
+        this.updateMemory = requireNonNull(updateMemory, "updateMemory is null");
+    }
+
+    public static boolean isSupportedTypes(List<? extends Type> types)
+    {
+        if (types.isEmpty() || types.size() > MAX_CHANNELS) {
+            return false;
+        }
+        for (Type type : types) {
+            if (!isSupportedType(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSupportedType(Type type)
+    {
+        // these types compare for equality and hash on their long representation
+        if (type.equals(BIGINT) || type.equals(INTEGER) || type.equals(SMALLINT) || type.equals(TINYINT) || type.equals(DATE)) {
+            return true;
+        }
+        return type instanceof DecimalType && ((DecimalType) type).isShort();
+    }
+
+    @Override
+    public long getEstimatedSize()
+    {
+        return INSTANCE_SIZE +
+                entries.sizeOf() +
+                hashPositionByGroupId.sizeOf() +
+                preallocatedMemoryInBytes;
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        return expectedHashCollisions + estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return types;
+    }
+
+    @Override
+    public int getGroupCount()
+    {
+        return nextGroupId;
+    }
+
+    @Override
+    public void appendValuesTo(int groupId, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        checkArgument(groupId >= 0, "groupId is negative");
+        long entry = getEntry(hashPositionByGroupId.get(groupId));
+        appendKeysTo(entry, pageBuilder, outputChannelOffset);
+        if (outputRawHash) {
+            BIGINT.writeLong(pageBuilder.getBlockBuilder(outputChannelOffset + keyTypes.length), entries.get(entry + RAW_HASH_OFFSET));
+        }
+    }
+
+    @Override
+    public Work<?> addPage(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        if (isRunLengthEncoded(page)) {
+            return new AddRunLengthEncodedPageWork(page);
+        }
+        return new AddPageWork(page);
+    }
+
+    @Override
+    public List<Page> getBufferedPages()
+    {
+        ImmutableList.Builder<Page> inputPages = ImmutableList.builder();
+        PageBuilder pageBuilder = new PageBuilder(hashTypes);
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            if (pageBuilder.isFull()) {
+                inputPages.add(pageBuilder.build());
+                pageBuilder.reset();
+            }
+            pageBuilder.declarePosition();
+            appendKeysTo(getEntry(hashPositionByGroupId.get(groupId)), pageBuilder, 0);
+        }
+        if (!pageBuilder.isEmpty()) {
+            inputPages.add(pageBuilder.build());
+        }
+        return inputPages.build();
+    }
+
+    @Override
+    public Work<GroupByIdBlock> getGroupIds(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        if (isRunLengthEncoded(page)) {
+            return new GetRunLengthEncodedGroupIdsWork(page);
+        }
+        return new GetGroupIdsWork(page);
+    }
+
+    @Override
+    public boolean contains(int position, Page page, int[] hashChannels)
+    {
+        long rawHash = INITIAL_HASH_VALUE;
+        for (int i = 0; i < keyTypes.length; i++) {
+            rawHash = CombineHashFunction.getHash(rawHash, TypeUtils.hashPosition(keyTypes[i], page.getBlock(hashChannels[i]), position));
+        }
+        return contains(position, page, hashChannels, rawHash);
+    }
+
+    @Override
+    public boolean contains(int position, Page page, int[] hashChannels, long rawHash)
+    {
+        long nullMask = loadRow(position, page, hashChannels);
+        long hashPosition = getHashPosition(rawHash, mask);
+
+        // look for a slot containing this key
+        while (true) {
+            long entry = getEntry(hashPosition);
+            if (entries.get(entry + GROUP_ID_OFFSET) == EMPTY_GROUP_ID) {
+                return false;
+            }
+            if (entryMatchesRow(entry, rawHash, nullMask)) {
+                return true;
+            }
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+        }
+    }
+
+    @Override
+    public long getRawHash(int groupId)
+    {
+        return entries.get(getEntry(hashPositionByGroupId.get(groupId)) + RAW_HASH_OFFSET);
+    }
+
+    @VisibleForTesting
+    @Override
+    public int getCapacity()
+    {
+        return hashCapacity;
+    }
+
+    private int putIfAbsent(int position, Page page)
+    {
+        long rawHash = hashGenerator.hashPosition(position, page);
+        long nullMask = loadRow(position, page, channels);
+        long hashPosition = getHashPosition(rawHash, mask);
+
+        // look for an empty slot or a slot containing this key
+        while (true) {
+            long entry = getEntry(hashPosition);
+            long groupId = entries.get(entry + GROUP_ID_OFFSET);
+            if (groupId == EMPTY_GROUP_ID) {
+                break;
+            }
+            if (entryMatchesRow(entry, rawHash, nullMask)) {
+                return (int) groupId;
+            }
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+            hashCollisions++;
+        }
+
+        return addNewGroup(hashPosition, rawHash, nullMask);
+    }
+
+    private int addNewGroup(long hashPosition, long rawHash, long nullMask)
+    {
+        // record group id in hash
+        int groupId = nextGroupId++;
+
+        long entry = getEntry(hashPosition);
+        entries.set(entry + GROUP_ID_OFFSET, groupId);
+        entries.set(entry + RAW_HASH_OFFSET, rawHash);
+        entries.set(entry + NULL_MASK_OFFSET, nullMask);
+        for (int i = 0; i < rowValues.length; i++) {
+            entries.set(entry + KEYS_OFFSET + i, rowValues[i]);
+        }
+        hashPositionByGroupId.set(groupId, toIntExact(hashPosition));
+
+        // increase capacity, if necessary
+        if (needRehash()) {
+            tryRehash();
+        }
+        return groupId;
+    }
+
+    /**
+     * Copies the key values of the row into {@code rowValues} and returns its null mask.
+     * Null keys are stored as zero so that entries can be compared value by value.
+     */
+    private long loadRow(int position, Page page, int[] hashChannels)
+    {
+        long nullMask = 0;
+        for (int i = 0; i < keyTypes.length; i++) {
+            Block block = page.getBlock(hashChannels[i]);
+            if (block.isNull(position)) {
+                nullMask |= 1L << i;
+                rowValues[i] = 0;
+            }
+            else {
+                rowValues[i] = keyTypes[i].getLong(block, position);
+            }
+        }
+        return nullMask;
+    }
+
+    private boolean entryMatchesRow(long entry, long rawHash, long nullMask)
+    {
+        if (entries.get(entry + RAW_HASH_OFFSET) != rawHash || entries.get(entry + NULL_MASK_OFFSET) != nullMask) {
+            return false;
+        }
+        for (int i = 0; i < rowValues.length; i++) {
+            if (entries.get(entry + KEYS_OFFSET + i) != rowValues[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendKeysTo(long entry, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        long nullMask = entries.get(entry + NULL_MASK_OFFSET);
+        for (int i = 0; i < keyTypes.length; i++) {
+            BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(outputChannelOffset + i);
+            if ((nullMask & (1L << i)) != 0) {
+                blockBuilder.appendNull();
+            }
+            else {
+                keyTypes[i].writeLong(blockBuilder, entries.get(entry + KEYS_OFFSET + i));
+            }
+        }
+    }
+
+    private long getEntry(long hashPosition)
+    {
+        return hashPosition * entrySize;
+    }
+
+    private boolean needRehash()
+    {
+        return nextGroupId >= maxFill;
+    }
+
+    private boolean tryRehash()
+    {
+        long newCapacityLong = hashCapacity * 2L;
+        if (newCapacityLong > Integer.MAX_VALUE) {
+            throw new PrestoException(GENERIC_INSUFFICIENT_RESOURCES, "Size of hash table cannot exceed 1 billion entries");
+        }
+        int newCapacity = toIntExact(newCapacityLong);
+
+        // An estimate of how much extra memory is needed before we can go ahead and expand the hash table.
+        // This includes the new capacity for entries and hashPositionByGroupId as well as the size of the current page
+        preallocatedMemoryInBytes = newCapacity * (long) entrySize * Long.BYTES +
+                calculateMaxFill(newCapacity) * (long) Integer.BYTES +
+                currentPageSizeInBytes;
+        if (!updateMemory.update()) {
+            // reserved memory but has exceeded the limit
+            return false;
+        }
+
+        expectedHashCollisions += estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+
+        int newMask = newCapacity - 1;
+        LongBigArray newEntries = new LongBigArray(EMPTY_GROUP_ID);
+        newEntries.ensureCapacity((long) newCapacity * entrySize);
+
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            long oldEntry = getEntry(hashPositionByGroupId.get(groupId));
+            long rawHash = entries.get(oldEntry + RAW_HASH_OFFSET);
+
+            // find an empty slot for the entry
+            long hashPosition = getHashPosition(rawHash, newMask);
+            while (newEntries.get(getEntry(hashPosition) + GROUP_ID_OFFSET) != EMPTY_GROUP_ID) {
+                hashPosition = (hashPosition + 1) & newMask;
+                hashCollisions++;
+            }
+
+            // move the entry
+            long newEntry = getEntry(hashPosition);
+            for (int i = 0; i < entrySize; i++) {
+                newEntries.set(newEntry + i, entries.get(oldEntry + i));
+            }
+            hashPositionByGroupId.set(groupId, toIntExact(hashPosition));
+        }
+
+        mask = newMask;
+        hashCapacity = newCapacity;
+        maxFill = calculateMaxFill(hashCapacity);
+        entries = newEntries;
+        hashPositionByGroupId.ensureCapacity(maxFill);
+
+        preallocatedMemoryInBytes = 0;
+        // release temporary memory reservation
+        updateMemory.update();
+        return true;
+    }
+
+    private boolean isRunLengthEncoded(Page page)
+    {
+        for (int channel : channels) {
+            if (!(page.getBlock(channel) instanceof RunLengthEncodedBlock)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long getHashPosition(long rawHash, int mask)
+    {
+        return murmurHash3(rawHash) & mask;
+    }
+
+    private static int calculateMaxFill(int hashSize)
+    {
+        checkArgument(hashSize > 0, "hashSize must be greater than 0");
+        int maxFill = (int) Math.ceil(hashSize * FILL_RATIO);
+        if (maxFill == hashSize) {
+            maxFill--;
+        }
+        checkArgument(hashSize > maxFill, "hashSize must be larger than maxFill");
+        return maxFill;
+    }
+
+    private class AddPageWork
+            implements Work<Void>
+    {
+        private final Page page;
+
+        private int lastPosition;
+
+        public AddPageWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = page.getPositionCount();
+            checkState(lastPosition <= positionCount, "position count out of bound");
+
+            // needRehash() == true indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // get the group for the current row
+                putIfAbsent(lastPosition, page);
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public Void getResult()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class AddRunLengthEncodedPageWork
+            implements Work<Void>
+    {
+        private final Page page;
+
+        private boolean finished;
+
+        public AddRunLengthEncodedPageWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            checkState(!finished);
+            if (page.getPositionCount() == 0) {
+                finished = true;
+                return true;
+            }
+
+            // needRehash() == true indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // Only needs to process the first row since it is Run Length Encoded
+            putIfAbsent(0, page);
+            finished = true;
+
+            return true;
+        }
+
+        @Override
+        public Void getResult()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class GetGroupIdsWork
+            implements Work<GroupByIdBlock>
+    {
+        private final BlockBuilder blockBuilder;
+        private final Page page;
+
+        private boolean finished;
+        private int lastPosition;
+
+        public GetGroupIdsWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+            // we know the exact size required for the block
+            this.blockBuilder = BIGINT.createFixedSizeBlockBuilder(page.getPositionCount());
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = page.getPositionCount();
+            checkState(lastPosition <= positionCount, "position count out of bound");
+            checkState(!finished);
+
+            // needRehash() == true indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // output the group id for this row
+                BIGINT.writeLong(blockBuilder, putIfAbsent(lastPosition, page));
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public GroupByIdBlock getResult()
+        {
+            checkState(lastPosition == page.getPositionCount(), "process has not yet finished");
+            checkState(!finished, "result has produced");
+            finished = true;
+            return new GroupByIdBlock(nextGroupId, blockBuilder.build());
+        }
+    }
+
+    private class GetRunLengthEncodedGroupIdsWork
+            implements Work<GroupByIdBlock>
+    {
+        private final Page page;
+
+        private int groupId = -1;
+        private boolean processFinished;
+        private boolean resultProduced;
+
+        public GetRunLengthEncodedGroupIdsWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            checkState(!processFinished);
+            if (page.getPositionCount() == 0) {
+                processFinished = true;
+                return true;
+            }
+
+            // needRehash() == true indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // Only needs to process the first row since it is Run Length Encoded
+            groupId = putIfAbsent(0, page);
+            processFinished = true;
+            return true;
+        }
+
+        @Override
+        public GroupByIdBlock getResult()
+        {
+            checkState(processFinished);
+            checkState(!resultProduced);
+            resultProduced = true;
+
+            return new GroupByIdBlock(
+                    nextGroupId,
+                    new RunLengthEncodedBlock(
+                            BIGINT.createFixedSizeBlockBuilder(1).writeLong(groupId).build(),
+                            page.getPositionCount()));
+        }
+    }
+}
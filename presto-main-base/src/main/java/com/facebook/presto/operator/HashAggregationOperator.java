@@ -21,6 +21,7 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
 import com.facebook.presto.operator.aggregation.builder.HashAggregationBuilder;
 import com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder;
+import com.facebook.presto.operator.aggregation.builder.RadixPartitionedHashAggregationBuilder;
 import com.facebook.presto.operator.aggregation.builder.SpillableHashAggregationBuilder;
 import com.facebook.presto.operator.aggregation.partial.PartialAggregationController;
 import com.facebook.presto.operator.aggregation.partial.SkipAggregationBuilder;
@@ -44,6 +45,8 @@ import java.util.OptionalLong;
 import java.util.stream.Collectors;
 
 import static com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder.toTypes;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.getRadixAggregationPartitionSize;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isRadixPartitionedAggregationEnabled;
 import static com.facebook.presto.sql.planner.PlannerUtils.INITIAL_HASH_VALUE;
 import static com.facebook.presto.type.TypeUtils.NULL_HASH_CODE;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -298,12 +301,15 @@ public class HashAggregationOperator
     private final JoinCompiler joinCompiler;
     private final boolean useSystemMemory;
     private final Optional<PagesHashStrategy> preGroupedHashStrategy;
+    private final Optional<DataSize> radixPartitionSize;
 
     private final List<Type> types;
     private final HashCollisionsCounter hashCollisionsCounter;
 
     private HashAggregationBuilder aggregationBuilder;
     private WorkProcessor<Page> outputPages;
+    // the output only flushes the full partitions and the aggregation builder stays open
+    private boolean flushingPartitions;
     private boolean inputProcessed;
     private boolean finishing;
     private boolean finished;
@@ -373,6 +379,10 @@ public class HashAggregationOperator
                 : Optional.of(joinCompiler.compilePagesHashStrategyFactory(
                         preGroupedChannels.stream().map(groupByTypes::get).collect(toImmutableList()), preGroupedChannels, Optional.empty())
                 .createPagesHashStrategy(groupByTypes.stream().map(type -> ImmutableList.<Block>of()).collect(toImmutableList()), OptionalInt.empty()));
+        // segmented aggregation flushes every segment, so there is nothing to gain from partitioning
+        this.radixPartitionSize = step.isOutputPartial() && maxPartialMemory.isPresent() && preGroupedChannels.isEmpty() && isRadixPartitionedAggregationEnabled(operatorContext.getSession())
+                ? Optional.of(getRadixAggregationPartitionSize(operatorContext.getSession()))
+                : Optional.empty();
     }
 
     @Override
@@ -409,6 +419,16 @@ public class HashAggregationOperator
                 && remainingPageForSegmentedAggregation == null;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        // the output is blocked while spilled pages are being read
+        if (outputPages != null && outputPages.isBlocked()) {
+            return outputPages.getBlockedFuture();
+        }
+        return NOT_BLOCKED;
+    }
+
     @Override
     public void addInput(Page page)
     {
@@ -482,7 +502,16 @@ public class HashAggregationOperator
                 return null;
             }
 
-            outputPages = aggregationBuilder.buildResult();
+            if (!finishing) {
+                Optional<WorkProcessor<Page>> flushedPartitions = aggregationBuilder.flushFullPartitions();
+                if (flushedPartitions.isPresent()) {
+                    outputPages = flushedPartitions.get();
+                    flushingPartitions = true;
+                }
+            }
+            if (outputPages == null) {
+                outputPages = aggregationBuilder.buildResult();
+            }
         }
 
         if (!outputPages.process()) {
@@ -490,6 +519,11 @@ public class HashAggregationOperator
         }
 
         if (outputPages.isFinished()) {
+            if (flushingPartitions) {
+                outputPages = null;
+                flushingPartitions = false;
+                return null;
+            }
             closeAggregationBuilder();
             processRemainingPageForSegmentedAggregation();
             return null;
@@ -611,6 +645,20 @@ public class HashAggregationOperator
                     accumulatorFactories,
                     operatorContext.localUserMemoryContext());
         }
+        else if (radixPartitionSize.isPresent()) {
+            aggregationBuilder = new RadixPartitionedHashAggregationBuilder(
+                    accumulatorFactories,
+                    step,
+                    expectedGroups,
+                    groupByTypes,
+                    groupByChannels,
+                    hashChannel,
+                    operatorContext,
+                    maxPartialMemory.get(),
+                    radixPartitionSize.get(),
+                    joinCompiler,
+                    useSystemMemory ? ReserveType.SYSTEM : ReserveType.USER);
+        }
         else if (step.isOutputPartial() || !spillEnabled) {
             aggregationBuilder = new InMemoryHashAggregationBuilder(
                     accumulatorFactories,
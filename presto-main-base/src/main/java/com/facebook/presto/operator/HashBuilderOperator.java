@@ -412,6 +412,12 @@ public class HashBuilderOperator
             return spillIndex();
         }
         else if (state == State.LOOKUP_SOURCE_BUILT) {
+            if (lookupSourceFactory.isOuter()) {
+                // A revoke requested while consuming input. The lent lookup source of an outer join
+                // tracks visited positions and must not be spilled, and it holds no revocable memory.
+                finishMemoryRevoke = Optional.of(() -> {});
+                return immediateFuture(null);
+            }
             finishMemoryRevoke = Optional.of(() -> {
                 lookupSourceFactory.setPartitionSpilledLookupSourceHandle(partitionIndex, spilledLookupSourceHandle);
                 lookupSourceNotNeeded = Optional.empty();
@@ -526,10 +532,12 @@ public class HashBuilderOperator
         }
 
         LookupSourceSupplier partition = buildLookupSource();
-        if (spillEnabled) {
+        // Outer joins track the visited positions of the built lookup source, which would be lost if it was spilled
+        if (spillEnabled && !lookupSourceFactory.isOuter()) {
             localRevocableMemoryContext.setBytes(partition.get().getInMemorySizeInBytes());
         }
         else {
+            localRevocableMemoryContext.setBytes(0);
             localUserMemoryContext.setBytes(partition.get().getInMemorySizeInBytes(), enforceBroadcastMemoryLimit);
         }
         lookupSourceNotNeeded = Optional.of(lookupSourceFactory.lendPartitionLookupSource(partitionIndex, partition));
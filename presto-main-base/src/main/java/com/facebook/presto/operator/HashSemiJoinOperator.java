@@ -17,19 +17,33 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.PartitionedConsumption.Partition;
 import com.facebook.presto.operator.SetBuilderOperator.SetSupplier;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
-import static com.facebook.airlift.concurrent.MoreFutures.tryGetFutureValue;
+import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
+import static com.facebook.airlift.concurrent.MoreFutures.getDone;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static java.util.Collections.emptyIterator;
 import static java.util.Objects.requireNonNull;
 
 public class HashSemiJoinOperator
@@ -46,9 +60,24 @@ public class HashSemiJoinOperator
         private final List<Type> probeTypes;
         private final int probeJoinChannel;
         private final Optional<Integer> probeJoinHashChannel;
+        private final OptionalInt probeOperatorsCount;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
         private boolean closed;
 
         public HashSemiJoinOperatorFactory(int operatorId, PlanNodeId planNodeId, SetSupplier setSupplier, List<? extends Type> probeTypes, int probeJoinChannel, Optional<Integer> probeJoinHashChannel)
+        {
+            this(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel, OptionalInt.empty(), unsupportedPartitioningSpillerFactory());
+        }
+
+        public HashSemiJoinOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                SetSupplier setSupplier,
+                List<? extends Type> probeTypes,
+                int probeJoinChannel,
+                Optional<Integer> probeJoinHashChannel,
+                OptionalInt probeOperatorsCount,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -57,6 +86,8 @@ public class HashSemiJoinOperator
             checkArgument(probeJoinChannel >= 0, "probeJoinChannel is negative");
             this.probeJoinChannel = probeJoinChannel;
             this.probeJoinHashChannel = probeJoinHashChannel;
+            this.probeOperatorsCount = requireNonNull(probeOperatorsCount, "probeOperatorsCount is null");
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         @Override
@@ -64,7 +95,7 @@ public class HashSemiJoinOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, HashSemiJoinOperator.class.getSimpleName());
-            return new HashSemiJoinOperator(operatorContext, setSupplier, probeJoinChannel, probeJoinHashChannel);
+            return new HashSemiJoinOperator(operatorContext, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel, probeOperatorsCount, partitioningSpillerFactory);
         }
 
         @Override
@@ -76,19 +107,45 @@ public class HashSemiJoinOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new HashSemiJoinOperatorFactory(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel);
+            return new HashSemiJoinOperatorFactory(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel, probeOperatorsCount, partitioningSpillerFactory);
         }
     }
 
+    private final SetSupplier setSupplier;
+    private final List<Type> probeTypes;
     private final int probeJoinChannel;
     private final ListenableFuture<ChannelSet> channelSetFuture;
     private final Optional<Integer> probeHashChannel;
+    private final OptionalInt probeOperatorsCount;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
 
     private ChannelSet channelSet;
     private Page outputPage;
     private boolean finishing;
 
-    public HashSemiJoinOperator(OperatorContext operatorContext, SetSupplier channelSetFuture, int probeJoinChannel, Optional<Integer> probeHashChannel)
+    // When the set has been spilled, the probe input is spilled with the same partitioning and joined
+    // with one unspilled partition of the set at a time after all input has been received.
+    private boolean setSpilled;
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+    @Nullable
+    private ListenableFuture<PartitionedConsumption<ChannelSet>> partitionedConsumption;
+    @Nullable
+    private Iterator<Partition<ChannelSet>> setPartitions;
+    private Optional<Partition<ChannelSet>> currentPartition = Optional.empty();
+    private Optional<ListenableFuture<ChannelSet>> unspilledChannelSet = Optional.empty();
+    private Iterator<Page> unspilledInputPages = emptyIterator();
+    private boolean unspillingFinished;
+    private boolean closed;
+
+    public HashSemiJoinOperator(
+            OperatorContext operatorContext,
+            SetSupplier channelSetFuture,
+            List<Type> probeTypes,
+            int probeJoinChannel,
+            Optional<Integer> probeHashChannel,
+            OptionalInt probeOperatorsCount,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
 
@@ -96,9 +153,13 @@ public class HashSemiJoinOperator
         requireNonNull(channelSetFuture, "hashProvider is null");
         checkArgument(probeJoinChannel >= 0, "probeJoinChannel is negative");
 
+        this.setSupplier = channelSetFuture;
+        this.probeTypes = ImmutableList.copyOf(requireNonNull(probeTypes, "probeTypes is null"));
         this.channelSetFuture = channelSetFuture.getChannelSet();
         this.probeJoinChannel = probeJoinChannel;
         this.probeHashChannel = probeHashChannel;
+        this.probeOperatorsCount = requireNonNull(probeOperatorsCount, "probeOperatorsCount is null");
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
     }
 
     @Override
@@ -116,26 +177,39 @@ public class HashSemiJoinOperator
     @Override
     public boolean isFinished()
     {
-        return finishing && outputPage == null;
+        return finishing && outputPage == null && (!setSpilled || unspillingFinished);
     }
 
     @Override
     public ListenableFuture<?> isBlocked()
     {
+        if (!spillInProgress.isDone()) {
+            return spillInProgress;
+        }
+        if (unspilledChannelSet.isPresent()) {
+            return unspilledChannelSet.get();
+        }
+        if (partitionedConsumption != null) {
+            return partitionedConsumption;
+        }
         return channelSetFuture;
     }
 
     @Override
     public boolean needsInput()
     {
-        if (finishing || outputPage != null) {
+        if (finishing || outputPage != null || !spillInProgress.isDone()) {
             return false;
         }
 
-        if (channelSet == null) {
-            channelSet = tryGetFutureValue(channelSetFuture).orElse(null);
+        if (channelSet == null && !setSpilled) {
+            if (!channelSetFuture.isDone()) {
+                return false;
+            }
+            setSpilled = setSupplier.isSpilled();
+            channelSet = getDone(channelSetFuture);
         }
-        return channelSet != null;
+        return true;
     }
 
     @Override
@@ -143,11 +217,21 @@ public class HashSemiJoinOperator
     {
         requireNonNull(page, "page is null");
         checkState(!finishing, "Operator is finishing");
+        checkState(outputPage == null, "Operator still has pending output");
+
+        if (setSpilled) {
+            spillInput(page);
+            return;
+        }
+
         // use an effectively-final local variable instead of the non-final instance field inside of the loop
         ChannelSet channelSet = this.channelSet;
         checkState(channelSet != null, "Set has not been built yet");
-        checkState(outputPage == null, "Operator still has pending output");
+        outputPage = semiJoin(page, channelSet, channelSet.isEmpty(), channelSet.containsNull(), probeHashChannel);
+    }
 
+    private Page semiJoin(Page page, ChannelSet channelSet, boolean setEmpty, boolean setContainsNull, Optional<Integer> probeHashChannel)
+    {
         // create the block builder for the new boolean column
         // we know the exact size required for the block
         BlockBuilder blockBuilder = BOOLEAN.createFixedSizeBlockBuilder(page.getPositionCount());
@@ -159,7 +243,7 @@ public class HashSemiJoinOperator
         // update hashing strategy to use probe cursor
         for (int position = 0; position < page.getPositionCount(); position++) {
             if (probeJoinNulls != null && probeJoinNulls.isNull(position)) {
-                if (channelSet.isEmpty()) {
+                if (setEmpty) {
                     BOOLEAN.writeBoolean(blockBuilder, false);
                 }
                 else {
@@ -175,7 +259,7 @@ public class HashSemiJoinOperator
                 else {
                     contains = channelSet.contains(position, probeJoinPage);
                 }
-                if (!contains && channelSet.containsNull()) {
+                if (!contains && setContainsNull) {
                     blockBuilder.appendNull();
                 }
                 else {
@@ -185,14 +269,114 @@ public class HashSemiJoinOperator
         }
 
         // add the new boolean column to the page
-        outputPage = page.appendColumn(blockBuilder.build());
+        return page.appendColumn(blockBuilder.build());
+    }
+
+    private void spillInput(Page page)
+    {
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        checkSpillSucceeded(spillInProgress);
+
+        if (!spiller.isPresent()) {
+            // partition the probe rows the same way the set builder partitioned the set values
+            LocalPartitionGenerator partitionGenerator = new LocalPartitionGenerator(
+                    new InterpretedHashGenerator(ImmutableList.of(setSupplier.getType()), new int[] {probeJoinChannel}),
+                    setSupplier.getSpilledPartitionCount());
+            spiller = Optional.of(partitioningSpillerFactory.create(
+                    probeTypes,
+                    partitionGenerator,
+                    operatorContext.getSpillContext().newLocalSpillContext(),
+                    operatorContext.aggregateSystemMemoryContext()));
+        }
+        spillInProgress = spiller.get().partitionAndSpill(page, partition -> true).getSpillingFuture();
     }
 
     @Override
     public Page getOutput()
     {
+        if (outputPage == null && finishing && setSpilled && !unspillingFinished && spillInProgress.isDone()) {
+            checkSpillSucceeded(spillInProgress);
+            tryUnspillNext();
+        }
+
         Page result = outputPage;
         outputPage = null;
         return result;
     }
+
+    private void tryUnspillNext()
+    {
+        if (partitionedConsumption == null) {
+            partitionedConsumption = setSupplier.finishProbeOperator(probeOperatorsCount);
+        }
+        if (!partitionedConsumption.isDone()) {
+            return;
+        }
+        if (setPartitions == null) {
+            setPartitions = getDone(partitionedConsumption).beginConsumption();
+        }
+
+        if (unspilledInputPages.hasNext()) {
+            outputPage = semiJoin(unspilledInputPages.next(), channelSet, setSupplier.isSpilledSetEmpty(), setSupplier.spilledSetContainsNull(), Optional.empty());
+            return;
+        }
+
+        if (unspilledChannelSet.isPresent()) {
+            if (!unspilledChannelSet.get().isDone()) {
+                // Not unspilled yet
+                return;
+            }
+            channelSet = getDone(unspilledChannelSet.get());
+            unspilledChannelSet = Optional.empty();
+
+            int partition = currentPartition.get().number();
+            unspilledInputPages = spiller.map(spiller -> spiller.getSpilledPages(partition))
+                    .orElse(emptyIterator());
+            return;
+        }
+
+        channelSet = null;
+        currentPartition.ifPresent(Partition::release);
+        currentPartition = Optional.empty();
+        if (setPartitions.hasNext()) {
+            currentPartition = Optional.of(setPartitions.next());
+            if (spiller.isPresent()) {
+                unspilledChannelSet = Optional.of(currentPartition.get().load());
+            }
+            return;
+        }
+
+        spiller.ifPresent(PartitioningSpiller::verifyAllPartitionsRead);
+        unspillingFinished = true;
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        channelSet = null;
+
+        // In case of early termination (before operator is finished) release partition consumption to avoid a deadlock
+        if (partitionedConsumption == null) {
+            partitionedConsumption = setSupplier.finishProbeOperator(probeOperatorsCount);
+            addSuccessCallback(partitionedConsumption, consumption -> consumption.beginConsumption().forEachRemaining(Partition::release));
+        }
+        currentPartition.ifPresent(Partition::release);
+        currentPartition = Optional.empty();
+        if (setPartitions != null) {
+            while (setPartitions.hasNext()) {
+                setPartitions.next().release();
+            }
+        }
+
+        try (Closer closer = Closer.create()) {
+            spiller.ifPresent(closer::register);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -23,11 +23,20 @@ import com.google.common.util.concurrent.ListenableFuture;
 public interface JoinBridge
 {
     /**
-     * Can be called only after build and probe are finished.
+     * Can be called only after {@link #whenOuterPositionsReady} is done.
      */
     OuterPositionIterator getOuterPositionIterator();
 
     void destroy();
 
     ListenableFuture<?> whenBuildFinishes();
+
+    /**
+     * Returns a future that is done when {@link #getOuterPositionIterator()} can be called.
+     * By default that is once build and probe are finished.
+     */
+    default ListenableFuture<?> whenOuterPositionsReady(ListenableFuture<?> buildAndProbeFinished)
+    {
+        return buildAndProbeFinished;
+    }
 }
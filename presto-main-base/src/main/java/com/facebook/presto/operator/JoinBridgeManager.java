@@ -39,7 +39,7 @@ public class JoinBridgeManager<T extends JoinBridge>
     public static JoinBridgeManager<PartitionedLookupSourceFactory> lookupAllAtOnce(PartitionedLookupSourceFactory factory)
     {
         return new JoinBridgeManager<>(
-                false,
+                factory.isOuter(),
                 UNGROUPED_EXECUTION,
                 UNGROUPED_EXECUTION,
                 () -> factory,
@@ -239,7 +239,7 @@ public class JoinBridgeManager<T extends JoinBridge>
         public ListenableFuture<OuterPositionIterator> getOuterPositionsFuture(Lifespan lifespan)
         {
             checkArgument(Lifespan.taskWide().equals(lifespan));
-            return transform(joinLifecycle.whenBuildAndProbeFinishes(), ignored -> joinBridge.getOuterPositionIterator(), directExecutor());
+            return transform(joinBridge.whenOuterPositionsReady(joinLifecycle.whenBuildAndProbeFinishes()), ignored -> joinBridge.getOuterPositionIterator(), directExecutor());
         }
 
         @Override
@@ -316,8 +316,9 @@ public class JoinBridgeManager<T extends JoinBridge>
         @Override
         public ListenableFuture<OuterPositionIterator> getOuterPositionsFuture(Lifespan lifespan)
         {
+            JoinBridgeAndLifecycle<T> data = data(lifespan);
             return transform(
-                    data(lifespan).joinLifecycle.whenBuildAndProbeFinishes(),
+                    data.joinBridge.whenOuterPositionsReady(data.joinLifecycle.whenBuildAndProbeFinishes()),
                     ignored -> data(lifespan).joinBridge.getOuterPositionIterator(), directExecutor());
         }
 
@@ -415,7 +416,7 @@ public class JoinBridgeManager<T extends JoinBridge>
         public ListenableFuture<OuterPositionIterator> getOuterPositionsFuture(Lifespan lifespan)
         {
             checkArgument(Lifespan.taskWide().equals(lifespan), "join bridge is not partitioned");
-            return transform(joinLifecycle.whenBuildAndProbeFinishes(), ignored -> taskWideJoinBridge.getOuterPositionIterator(), directExecutor());
+            return transform(taskWideJoinBridge.whenOuterPositionsReady(joinLifecycle.whenBuildAndProbeFinishes()), ignored -> taskWideJoinBridge.getOuterPositionIterator(), directExecutor());
         }
 
         @Override
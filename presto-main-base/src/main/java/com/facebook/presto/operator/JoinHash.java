@@ -92,6 +92,21 @@ public final class JoinHash
         return startJoinPosition(addressIndex, position, allChannelsPage);
     }
 
+    @Override
+    public boolean supportsBatchJoinPositions()
+    {
+        return true;
+    }
+
+    @Override
+    public void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        int[] addressIndexes = pagesHash.getAddressIndexes(positions, positionCount, hashChannelsPage, rawHashes);
+        for (int i = 0; i < positionCount; i++) {
+            joinPositions[positions[i]] = startJoinPosition(addressIndexes[i], positions[i], allChannelsPage);
+        }
+    }
+
     private long startJoinPosition(int currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
         if (currentJoinPosition == -1) {
@@ -57,6 +57,11 @@ public class JoinProbe
     private int position = -1;
     private int nullRowCount;
 
+    // join positions of the page, resolved as one batch against batchLookupSource
+    @Nullable
+    private LookupSource batchLookupSource;
+    private long[] joinPositions;
+
     private JoinProbe(int[] probeOutputChannels, Page page, Page probePage, @Nullable Block probeHashBlock)
     {
         this.probeOutputChannels = probeOutputChannels;
@@ -79,15 +84,48 @@ public class JoinProbe
 
     public long getCurrentJoinPosition(LookupSource lookupSource)
     {
-        if (probeMayHaveNull && currentRowContainsNull()) {
+        if (probeMayHaveNull && rowContainsNull(position)) {
             ++nullRowCount;
             return -1;
         }
+        if (!lookupSource.supportsBatchJoinPositions()) {
+            if (probeHashBlock != null) {
+                long rawHash = BIGINT.getLong(probeHashBlock, position);
+                return lookupSource.getJoinPosition(position, probePage, page, rawHash);
+            }
+            return lookupSource.getJoinPosition(position, probePage, page);
+        }
+        if (lookupSource != batchLookupSource) {
+            lookupJoinPositions(lookupSource);
+        }
+        return joinPositions[position];
+    }
+
+    /**
+     * Resolves the join positions of the current and all remaining positions of the page with a single
+     * batch call, so the lookup source can hash and probe them in tight loops instead of row by row.
+     */
+    private void lookupJoinPositions(LookupSource lookupSource)
+    {
+        int[] positions = new int[positionCount - position];
+        int count = 0;
+        for (int current = position; current < positionCount; current++) {
+            if (!probeMayHaveNull || !rowContainsNull(current)) {
+                positions[count++] = current;
+            }
+        }
+
+        long[] rawHashes = null;
         if (probeHashBlock != null) {
-            long rawHash = BIGINT.getLong(probeHashBlock, position);
-            return lookupSource.getJoinPosition(position, probePage, page, rawHash);
+            rawHashes = new long[positionCount];
+            for (int i = 0; i < count; i++) {
+                rawHashes[positions[i]] = BIGINT.getLong(probeHashBlock, positions[i]);
+            }
         }
-        return lookupSource.getJoinPosition(position, probePage, page);
+
+        joinPositions = new long[positionCount];
+        lookupSource.getJoinPositions(positions, count, probePage, page, rawHashes, joinPositions);
+        batchLookupSource = lookupSource;
     }
 
     public int getPosition()
@@ -100,7 +138,7 @@ public class JoinProbe
         return page;
     }
 
-    private boolean currentRowContainsNull()
+    private boolean rowContainsNull(int position)
     {
         for (int i = 0; i < probePage.getChannelCount(); i++) {
             if (probePage.getBlock(i).isNull(position)) {
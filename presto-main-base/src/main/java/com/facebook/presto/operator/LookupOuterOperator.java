@@ -23,8 +23,10 @@ import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
+import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
 import static com.facebook.airlift.concurrent.MoreFutures.tryGetFutureValue;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
@@ -107,7 +109,7 @@ public class LookupOuterOperator
     }
 
     private final OperatorContext operatorContext;
-    private final ListenableFuture<OuterPositionIterator> outerPositionsFuture;
+    private ListenableFuture<OuterPositionIterator> outerPositionsFuture;
 
     private final List<Type> probeOutputTypes;
     private final Runnable onClose;
@@ -199,9 +201,19 @@ public class LookupOuterOperator
             }
         }
 
-        // only flush full pages unless we are done
+        if (outputPositionsFinished) {
+            Optional<ListenableFuture<OuterPositionIterator>> nextOuterPositions = outerPositions.getNextOuterPositions();
+            if (nextOuterPositions.isPresent()) {
+                // wait for the outer positions of the next spilled partition
+                outerPositionsFuture = nextOuterPositions.get();
+                outerPositions = null;
+                outputPositionsFinished = false;
+            }
+        }
+
+        // only flush full pages unless we are done or have to wait
         Page page = null;
-        if (pageBuilder.isFull() || (outputPositionsFinished && !pageBuilder.isEmpty())) {
+        if (pageBuilder.isFull() || ((outputPositionsFinished || outerPositions == null) && !pageBuilder.isEmpty())) {
             page = pageBuilder.build();
             pageBuilder.reset();
         }
@@ -220,6 +232,12 @@ public class LookupOuterOperator
         }
         closed = true;
         pageBuilder.reset();
+        if (outerPositions != null) {
+            outerPositions.close();
+        }
+        else {
+            addSuccessCallback(outerPositionsFuture, OuterPositionIterator::close);
+        }
         onClose.run();
     }
 }
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import java.io.Closeable;
@@ -36,6 +37,36 @@ public interface LookupSource
 
     long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage);
 
+    /**
+     * Looks up the first join position for each of the first {@code positionCount} entries of {@code positions}.
+     * The result for a probe position is stored at the same index of {@code joinPositions}, and {@code rawHashes}
+     * (if not null) is also indexed by probe position. Implementations may override this to resolve the whole
+     * batch in tight loops over primitive arrays instead of one position at a time.
+     * <p>
+     * Callers must only use this method if {@link #supportsBatchJoinPositions()} returns true.
+     */
+    default void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        for (int i = 0; i < positionCount; i++) {
+            int position = positions[i];
+            if (rawHashes == null) {
+                joinPositions[position] = getJoinPosition(position, hashChannelsPage, allChannelsPage);
+            }
+            else {
+                joinPositions[position] = getJoinPosition(position, hashChannelsPage, allChannelsPage, rawHashes[position]);
+            }
+        }
+    }
+
+    /**
+     * Returns true if join positions returned for one probe position stay valid while other probe
+     * positions are looked up, which is required to resolve a page with {@link #getJoinPositions}.
+     */
+    default boolean supportsBatchJoinPositions()
+    {
+        return false;
+    }
+
     long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage);
 
     void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset);
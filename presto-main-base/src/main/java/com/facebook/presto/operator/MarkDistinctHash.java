@@ -22,6 +22,7 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
 import java.util.Optional;
@@ -29,6 +30,7 @@ import java.util.Optional;
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.toIntExact;
 
 public class MarkDistinctHash
 {
@@ -66,6 +68,15 @@ public class MarkDistinctHash
         return groupByHash.getBufferedPages();
     }
 
+    /**
+     * Spills the values of the rows marked as distinct so far. Values added by a page that is
+     * still being processed are not spilled.
+     */
+    ListenableFuture<?> spillMarkedValues(DistinctRowsSpiller spiller)
+    {
+        return spiller.spillDistinctValues(groupByHash, toIntExact(nextDistinctId));
+    }
+
     private Block processNextGroupIds(GroupByIdBlock ids)
     {
         int positions = ids.getPositionCount();
@@ -18,18 +18,26 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.Collections.emptyIterator;
 import static java.util.Objects.requireNonNull;
 
 public class MarkDistinctOperator
@@ -44,6 +52,8 @@ public class MarkDistinctOperator
         private final List<Integer> markDistinctChannels;
         private final List<Type> types;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
         private boolean closed;
 
         public MarkDistinctOperatorFactory(
@@ -53,6 +63,19 @@ public class MarkDistinctOperator
                 Collection<Integer> markDistinctChannels,
                 Optional<Integer> hashChannel,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId, planNodeId, sourceTypes, markDistinctChannels, hashChannel, joinCompiler, false, unsupportedPartitioningSpillerFactory());
+        }
+
+        public MarkDistinctOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                Collection<Integer> markDistinctChannels,
+                Optional<Integer> hashChannel,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -64,6 +87,8 @@ public class MarkDistinctOperator
                     .addAll(sourceTypes)
                     .add(BOOLEAN)
                     .build();
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         @Override
@@ -71,7 +96,7 @@ public class MarkDistinctOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, MarkDistinctOperator.class.getSimpleName());
-            return new MarkDistinctOperator(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler);
+            return new MarkDistinctOperator(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -83,13 +108,22 @@ public class MarkDistinctOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new MarkDistinctOperatorFactory(operatorId, planNodeId, types.subList(0, types.size() - 1), markDistinctChannels, hashChannel, joinCompiler);
+            return new MarkDistinctOperatorFactory(operatorId, planNodeId, types.subList(0, types.size() - 1), markDistinctChannels, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
-    private final MarkDistinctHash markDistinctHash;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
+    private final List<Type> sourceTypes;
+    private final List<Type> distinctTypes;
+    private final List<Integer> markDistinctChannels;
+    private final Optional<Integer> hashChannel;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+
+    private MarkDistinctHash markDistinctHash;
 
     private Page inputPage;
     private boolean finishing;
@@ -97,7 +131,28 @@ public class MarkDistinctOperator
     // for yield when memory is not available
     private Work<Block> unfinishedWork;
 
+    // Once spilled, the remaining input is spilled as well and the rows are marked one partition at a time after
+    // all input has been received, starting from the distinct values of the partition spilled with the hash.
+    private Optional<DistinctRowsSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private Iterator<Page> unspilledDistinctValues = emptyIterator();
+    private Iterator<Page> unspilledInput = emptyIterator();
+    private boolean unspillingFinished;
+
     public MarkDistinctOperator(OperatorContext operatorContext, List<Type> types, List<Integer> markDistinctChannels, Optional<Integer> hashChannel, JoinCompiler joinCompiler)
+    {
+        this(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler, false, unsupportedPartitioningSpillerFactory());
+    }
+
+    public MarkDistinctOperator(
+            OperatorContext operatorContext,
+            List<Type> types,
+            List<Integer> markDistinctChannels,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
 
@@ -108,8 +163,17 @@ public class MarkDistinctOperator
         for (int channel : markDistinctChannels) {
             distinctTypes.add(types.get(channel));
         }
-        this.markDistinctHash = new MarkDistinctHash(operatorContext.getSession(), distinctTypes.build(), Ints.toArray(markDistinctChannels), hashChannel, joinCompiler, this::updateMemoryReservation);
+        this.distinctTypes = distinctTypes.build();
+        // the factory appends the type of the marker to the source types
+        this.sourceTypes = ImmutableList.copyOf(types.subList(0, types.size() - 1));
+        this.markDistinctChannels = ImmutableList.copyOf(markDistinctChannels);
+        this.hashChannel = hashChannel;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
+        this.markDistinctHash = new MarkDistinctHash(operatorContext.getSession(), this.distinctTypes, Ints.toArray(markDistinctChannels), hashChannel, joinCompiler, this::updateMemoryReservation);
     }
 
     @Override
@@ -127,13 +191,19 @@ public class MarkDistinctOperator
     @Override
     public boolean isFinished()
     {
-        return finishing && !hasUnfinishedInput();
+        return finishing && !hasUnfinishedInput() && (!spiller.isPresent() || unspillingFinished);
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress;
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finishing && !hasUnfinishedInput();
+        return !finishing && !hasUnfinishedInput() && spillInProgress.isDone();
     }
 
     @Override
@@ -142,6 +212,12 @@ public class MarkDistinctOperator
         requireNonNull(page, "page is null");
         checkState(needsInput());
 
+        if (spiller.isPresent()) {
+            checkSpillSucceeded(spillInProgress);
+            spillInProgress = spiller.get().spillInput(page);
+            return;
+        }
+
         inputPage = page;
 
         unfinishedWork = markDistinctHash.markDistinctRows(page);
@@ -151,6 +227,10 @@ public class MarkDistinctOperator
     @Override
     public Page getOutput()
     {
+        if (spiller.isPresent()) {
+            return finishing ? getUnspilledOutput() : null;
+        }
+
         if (unfinishedWork == null) {
             return null;
         }
@@ -169,6 +249,101 @@ public class MarkDistinctOperator
         return outputPage;
     }
 
+    private Page getUnspilledOutput()
+    {
+        if (!spillInProgress.isDone()) {
+            return null;
+        }
+        checkSpillSucceeded(spillInProgress);
+
+        while (!unspillingFinished) {
+            if (unfinishedWork != null) {
+                if (!unfinishedWork.process()) {
+                    return null;
+                }
+                Block marks = unfinishedWork.getResult();
+                unfinishedWork = null;
+                updateMemoryReservation();
+                if (inputPage != null) {
+                    Page outputPage = inputPage.appendColumn(marks);
+                    inputPage = null;
+                    return outputPage;
+                }
+                // the marks of the values spilled with the hash are already known
+            }
+            else if (unspilledDistinctValues.hasNext()) {
+                unfinishedWork = markDistinctHash.markDistinctRows(unspilledDistinctValues.next());
+            }
+            else if (unspilledInput.hasNext()) {
+                inputPage = unspilledInput.next();
+                unfinishedWork = markDistinctHash.markDistinctRows(inputPage.extractChannels(spiller.get().getValueChannels()));
+            }
+            else if (spiller.get().hasNextPartition()) {
+                int distinctChannelCount = distinctTypes.size();
+                markDistinctHash = new MarkDistinctHash(
+                        operatorContext.getSession(),
+                        distinctTypes,
+                        IntStream.range(0, distinctChannelCount).toArray(),
+                        hashChannel.map(channel -> distinctChannelCount),
+                        joinCompiler,
+                        this::updateMemoryReservation);
+                unspilledDistinctValues = spiller.get().nextPartitionDistinctValues();
+                unspilledInput = spiller.get().getSpilledInput();
+            }
+            else {
+                markDistinctHash = null;
+                unspillingFinished = true;
+                updateMemoryReservation();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+
+        if (spiller.isPresent() || markDistinctHash == null) {
+            // Probably stale revoking request
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+
+        if (finishing && !hasUnfinishedInput()) {
+            // all rows have been marked, the hash is no longer needed
+            finishMemoryRevoke = Optional.of(() -> {
+                markDistinctHash = null;
+                updateMemoryReservation();
+            });
+            return immediateFuture(null);
+        }
+
+        DistinctRowsSpiller distinctRowsSpiller = new DistinctRowsSpiller(sourceTypes, markDistinctChannels, hashChannel, partitioningSpillerFactory, operatorContext);
+        spiller = Optional.of(distinctRowsSpiller);
+        ListenableFuture<?> spillingFuture = markDistinctHash.spillMarkedValues(distinctRowsSpiller);
+        finishMemoryRevoke = Optional.of(() -> {
+            markDistinctHash = null;
+            unfinishedWork = null;
+            localRevocableMemoryContext.setBytes(0);
+            if (inputPage != null) {
+                // the page is marked again after unspilling, since only the values of fully processed pages were spilled
+                Page page = inputPage;
+                inputPage = null;
+                spillInProgress = distinctRowsSpiller.spillInput(page);
+            }
+        });
+        return spillingFuture;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
     private boolean hasUnfinishedInput()
     {
         return inputPage != null || unfinishedWork != null;
@@ -184,9 +359,15 @@ public class MarkDistinctOperator
     // The following implementation is a hybrid model, where the push model is going to call the pull model causing reentrancy
     private boolean updateMemoryReservation()
     {
+        long estimatedSize = markDistinctHash == null ? 0 : markDistinctHash.getEstimatedSize();
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
-        localUserMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+        if (spillEnabled && !spiller.isPresent()) {
+            localRevocableMemoryContext.setBytes(estimatedSize);
+        }
+        else {
+            localUserMemoryContext.setBytes(estimatedSize);
+        }
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
@@ -196,4 +377,18 @@ public class MarkDistinctOperator
     {
         return markDistinctHash.getCapacity();
     }
+
+    @Override
+    public void close()
+    {
+        markDistinctHash = null;
+        unfinishedWork = null;
+        inputPage = null;
+        unspilledDistinctValues = emptyIterator();
+        unspilledInput = emptyIterator();
+        spiller.ifPresent(DistinctRowsSpiller::close);
+        spiller = Optional.empty();
+        localUserMemoryContext.setBytes(0);
+        localRevocableMemoryContext.setBytes(0);
+    }
 }
@@ -36,7 +36,6 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.Iterators.transform;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
@@ -157,7 +156,7 @@ public class OrderByOperator
     private ListenableFuture<?> spillInProgress = immediateFuture(null);
     private Runnable finishMemoryRevoke = () -> {};
 
-    private Iterator<Optional<Page>> sortedPages;
+    private WorkProcessor<Page> sortedPages;
 
     private State state = State.NEEDS_INPUT;
 
@@ -227,10 +226,10 @@ public class OrderByOperator
 
             List<WorkProcessor<Page>> spilledPages = getSpilledPages();
             if (spilledPages.isEmpty()) {
-                sortedPages = transform(sortedPagesIndex, Optional::of);
+                sortedPages = WorkProcessor.fromIterator(sortedPagesIndex);
             }
             else {
-                sortedPages = mergeSpilledAndMemoryPages(spilledPages, sortedPagesIndex).yieldingIterator();
+                sortedPages = mergeSpilledAndMemoryPages(spilledPages, sortedPagesIndex);
             }
         }
     }
@@ -247,6 +246,15 @@ public class OrderByOperator
         return state == State.NEEDS_INPUT;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (sortedPages != null && sortedPages.isBlocked()) {
+            return sortedPages.getBlockedFuture();
+        }
+        return NOT_BLOCKED;
+    }
+
     @Override
     public void addInput(Page page)
     {
@@ -267,16 +275,16 @@ public class OrderByOperator
         }
 
         verify(sortedPages != null, "sortedPages is null");
-        if (!sortedPages.hasNext()) {
-            state = State.FINISHED;
+        if (!sortedPages.process()) {
+            // yielded, or blocked while spilled pages are being read
             return null;
         }
-
-        Optional<Page> next = sortedPages.next();
-        if (!next.isPresent()) {
+        if (sortedPages.isFinished()) {
+            state = State.FINISHED;
             return null;
         }
-        Page nextPage = next.get();
+
+        Page nextPage = sortedPages.getResult();
         Block[] blocks = new Block[outputChannels.length];
         for (int i = 0; i < outputChannels.length; i++) {
             blocks[i] = nextPage.getBlock(outputChannels[i]);
@@ -334,7 +342,7 @@ public class OrderByOperator
         }
 
         return spiller.get().getSpills().stream()
-                .map(WorkProcessor::fromIterator)
+                .map(SpillingUtils::spilledPagesProcessor)
                 .collect(toImmutableList());
     }
 
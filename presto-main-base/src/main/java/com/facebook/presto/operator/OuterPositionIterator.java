@@ -14,8 +14,28 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.PageBuilder;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.Optional;
 
 public interface OuterPositionIterator
 {
     boolean appendToNext(PageBuilder pageBuilder, int outputChannelOffset);
+
+    /**
+     * Returns the outer positions that follow the positions of this iterator but only become
+     * available later, e.g. those of a spilled build partition once it has been probed.
+     * Called after {@link #appendToNext} returned false.
+     */
+    default Optional<ListenableFuture<OuterPositionIterator>> getNextOuterPositions()
+    {
+        return Optional.empty();
+    }
+
+    /**
+     * Called when the remaining outer positions are not needed anymore.
+     */
+    default void close()
+    {
+    }
 }
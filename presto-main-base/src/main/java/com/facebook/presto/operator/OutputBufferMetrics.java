@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.execution.buffer.OutputBuffer;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_PAGE_SERIALIZATION_TIME_NANOS;
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_SERIALIZED_PAGE_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_UNCOMPRESSED_PAGE_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.OUTPUT_BUFFER_BLOCKED_TIME_NANOS;
+import static com.facebook.presto.common.RuntimeMetricName.OUTPUT_BUFFER_UTILIZATION_PERCENT;
+import static com.facebook.presto.common.RuntimeUnit.BYTE;
+import static com.facebook.presto.common.RuntimeUnit.NANO;
+import static com.facebook.presto.common.RuntimeUnit.NONE;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.Math.round;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records the pages an output operator sends to its {@link OutputBuffer} in the runtime stats of the operator:
+ * the size and the serialization time of each page, the utilization of the buffer after each enqueue, and the
+ * length of each period the operator is blocked on a full buffer. The operator stats of a stage are merged per
+ * plan node, so these metrics describe the outgoing exchange edge of the stage.
+ */
+public class OutputBufferMetrics
+{
+    private final OutputBuffer outputBuffer;
+    private final RuntimeStats runtimeStats;
+
+    public OutputBufferMetrics(OutputBuffer outputBuffer, RuntimeStats runtimeStats)
+    {
+        this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
+        this.runtimeStats = requireNonNull(runtimeStats, "runtimeStats is null");
+    }
+
+    public SerializedPage serialize(PagesSerde serde, Page page)
+    {
+        long start = System.nanoTime();
+        SerializedPage serializedPage = serde.serialize(page);
+        recordSerializedPage(serializedPage, System.nanoTime() - start);
+        return serializedPage;
+    }
+
+    /**
+     * Records the utilization of the output buffer. Called after pages are enqueued.
+     */
+    public void recordEnqueued()
+    {
+        runtimeStats.addMetricValue(OUTPUT_BUFFER_UTILIZATION_PERCENT, NONE, round(outputBuffer.getUtilization() * 100));
+    }
+
+    /**
+     * Records the time until {@code blocked} completes, if it is not done yet, and returns it.
+     */
+    public ListenableFuture<?> recordBlocked(ListenableFuture<?> blocked)
+    {
+        if (!blocked.isDone()) {
+            long start = System.nanoTime();
+            blocked.addListener(() -> runtimeStats.addMetricValue(OUTPUT_BUFFER_BLOCKED_TIME_NANOS, NANO, System.nanoTime() - start), directExecutor());
+        }
+        return blocked;
+    }
+
+    /**
+     * Records a page serialized by the operator itself, and the time spent serializing it.
+     */
+    public void recordSerializedPage(SerializedPage serializedPage, long serializationNanos)
+    {
+        runtimeStats.addMetricValue(EXCHANGE_SERIALIZED_PAGE_BYTES, BYTE, serializedPage.getSizeInBytes());
+        runtimeStats.addMetricValue(EXCHANGE_UNCOMPRESSED_PAGE_BYTES, BYTE, serializedPage.getUncompressedSizeInBytes());
+        runtimeStats.addMetricValue(EXCHANGE_PAGE_SERIALIZATION_TIME_NANOS, NANO, serializationNanos);
+    }
+}
@@ -89,6 +89,7 @@ public final class PageBufferClient
     private final URI location;
     private final ClientCallback clientCallback;
     private final ScheduledExecutorService scheduler;
+    private final Ticker ticker;
     private final Backoff backoff;
 
     @GuardedBy("this")
@@ -105,6 +106,10 @@ public final class PageBufferClient
     private boolean completed;
     @GuardedBy("this")
     private String taskInstanceId;
+    @GuardedBy("this")
+    private long lastRequestLatencyNanos;
+    @GuardedBy("this")
+    private long lastRequestMaxResponseSizeInBytes;
 
     private final AtomicLong rowsReceived = new AtomicLong();
     private final AtomicInteger pagesReceived = new AtomicInteger();
@@ -147,10 +152,28 @@ public final class PageBufferClient
         this.scheduler = requireNonNull(scheduler, "scheduler is null");
         this.pageBufferClientCallbackExecutor = requireNonNull(pageBufferClientCallbackExecutor, "pageBufferClientCallbackExecutor is null");
         requireNonNull(maxErrorDuration, "maxErrorDuration is null");
-        requireNonNull(ticker, "ticker is null");
+        this.ticker = requireNonNull(ticker, "ticker is null");
         this.backoff = new Backoff(maxErrorDuration, ticker);
     }
 
+    /**
+     * Returns the time between sending the last request and receiving its response. When called from
+     * {@link ClientCallback#addPages}, this is the request that returned the pages being added.
+     */
+    public synchronized long getLastRequestLatencyNanos()
+    {
+        return lastRequestLatencyNanos;
+    }
+
+    /**
+     * Returns the maximum response size of the last request. When called from {@link ClientCallback#addPages},
+     * this is the request that returned the pages being added.
+     */
+    public synchronized long getLastRequestMaxResponseSizeInBytes()
+    {
+        return lastRequestMaxResponseSizeInBytes;
+    }
+
     public synchronized PageBufferClientStatus getStatus()
     {
         String state;
@@ -275,6 +298,7 @@ public final class PageBufferClient
             throw new RuntimeException(e);
         }
 
+        long requestStartNanos = ticker.read();
         ListenableFuture<PagesResponse> resultFuture = resultClient.getResults(token, maxResponseSize);
 
         future = resultFuture;
@@ -292,6 +316,8 @@ public final class PageBufferClient
                 try {
                     boolean shouldAcknowledge = false;
                     synchronized (PageBufferClient.this) {
+                        lastRequestLatencyNanos = ticker.read() - requestStartNanos;
+                        lastRequestMaxResponseSizeInBytes = maxResponseSize.toBytes();
                         if (taskInstanceId == null) {
                             taskInstanceId = result.getTaskInstanceId();
                         }
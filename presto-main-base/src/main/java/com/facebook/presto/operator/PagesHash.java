@@ -20,6 +20,8 @@ import io.airlift.units.DataSize;
 import it.unimi.dsi.fastutil.HashCommon;
 import org.openjdk.jol.info.ClassLayout;
 
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
 
 import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
@@ -180,6 +182,51 @@ public final class PagesHash
         return -1;
     }
 
+    /**
+     * Batch version of {@link #getAddressIndex(int, Page, long)}. The hashes and the home slots of all
+     * positions are computed up front, so the slot lookups run as a tight loop over primitive arrays
+     * and the independent memory accesses of different rows can overlap.
+     *
+     * @param rawHashes raw hashes indexed by position, or null if they have to be computed from the page
+     * @return the address index of each of the first {@code positionCount} entries of {@code positions}, -1 if there is no match
+     */
+    public int[] getAddressIndexes(int[] positions, int positionCount, Page hashChannelsPage, @Nullable long[] rawHashes)
+    {
+        long[] hashes = new long[positionCount];
+        if (rawHashes == null) {
+            for (int i = 0; i < positionCount; i++) {
+                hashes[i] = pagesHashStrategy.hashRow(positions[i], hashChannelsPage);
+            }
+        }
+        else {
+            for (int i = 0; i < positionCount; i++) {
+                hashes[i] = rawHashes[positions[i]];
+            }
+        }
+
+        int[] hashPositions = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            hashPositions[i] = getHashPosition(hashes[i], mask);
+        }
+
+        int[] addressIndexes = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            addressIndexes[i] = key[hashPositions[i]];
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            int pos = hashPositions[i];
+            int addressIndex = addressIndexes[i];
+            while (addressIndex != -1 && !positionEqualsCurrentRowIgnoreNulls(addressIndex, (byte) hashes[i], positions[i], hashChannelsPage)) {
+                // increment position and mask to handler wrap around
+                pos = (pos + 1) & mask;
+                addressIndex = key[pos];
+            }
+            addressIndexes[i] = addressIndex;
+        }
+        return addressIndexes;
+    }
+
     public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
     {
         long pageAddress = addresses.get(toIntExact(position));
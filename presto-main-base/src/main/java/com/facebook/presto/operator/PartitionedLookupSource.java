@@ -143,6 +143,66 @@ public class PartitionedLookupSource
         return encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
     }
 
+    @Override
+    public boolean supportsBatchJoinPositions()
+    {
+        return true;
+    }
+
+    @Override
+    public void getJoinPositions(int[] positions, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        if (rawHashes == null) {
+            rawHashes = new long[hashChannelsPage.getPositionCount()];
+            for (int i = 0; i < positionCount; i++) {
+                rawHashes[positions[i]] = partitionGenerator.getRawHash(hashChannelsPage, positions[i]);
+            }
+        }
+
+        if (lookupSources.length == 1) {
+            lookupSources[0].getJoinPositions(positions, positionCount, hashChannelsPage, allChannelsPage, rawHashes, joinPositions);
+            encodePartitionedJoinPositions(0, positions, positionCount, joinPositions);
+            return;
+        }
+
+        // bucket the positions by partition, so that each partition resolves its positions as one batch
+        int[] partitions = new int[positionCount];
+        int[] partitionPositionCounts = new int[lookupSources.length];
+        for (int i = 0; i < positionCount; i++) {
+            int partition = partitionGenerator.getPartition(rawHashes[positions[i]]);
+            partitions[i] = partition;
+            partitionPositionCounts[partition]++;
+        }
+        int[][] partitionPositions = new int[lookupSources.length][];
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            partitionPositions[partition] = new int[partitionPositionCounts[partition]];
+            partitionPositionCounts[partition] = 0;
+        }
+        for (int i = 0; i < positionCount; i++) {
+            int partition = partitions[i];
+            partitionPositions[partition][partitionPositionCounts[partition]++] = positions[i];
+        }
+
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            int count = partitionPositionCounts[partition];
+            if (count == 0) {
+                continue;
+            }
+            lookupSources[partition].getJoinPositions(partitionPositions[partition], count, hashChannelsPage, allChannelsPage, rawHashes, joinPositions);
+            encodePartitionedJoinPositions(partition, partitionPositions[partition], count, joinPositions);
+        }
+    }
+
+    private void encodePartitionedJoinPositions(int partition, int[] positions, int positionCount, long[] joinPositions)
+    {
+        for (int i = 0; i < positionCount; i++) {
+            long joinPosition = joinPositions[positions[i]];
+            if (joinPosition >= 0) {
+                joinPositions[positions[i]] = encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
+            }
+        }
+    }
+
     @Override
     public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
@@ -27,12 +27,14 @@ import com.google.common.util.concurrent.SettableFuture;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -41,6 +43,7 @@ import java.util.function.Function;
 import java.util.function.IntPredicate;
 import java.util.function.Supplier;
 
+import static com.facebook.airlift.concurrent.MoreFutures.whenAnyComplete;
 import static com.facebook.presto.operator.OuterLookupSource.createOuterLookupSourceSupplier;
 import static com.facebook.presto.operator.PartitionedLookupSource.createPartitionedLookupSourceSupplier;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -97,6 +100,21 @@ public final class PartitionedLookupSourceFactory
     @GuardedBy("lock")
     private final SettableFuture<PartitionedConsumption<Supplier<LookupSource>>> partitionedConsumption = SettableFuture.create();
 
+    /*
+     * State of an outer join with spilled partitions. Its outer positions are consumed partition by partition
+     * while the probe operators are still joining the spilled partitions: first those of the partitions that
+     * stayed in memory, then those of each spilled partition after it has been unspilled and probed. A partition
+     * is disposed once its outer positions are consumed, which lets the next spilled partition be unspilled.
+     */
+    private final SettableFuture<?> inMemoryPartitionsProbed = SettableFuture.create();
+    private final SettableFuture<?> inMemoryOuterPositionsConsumed = SettableFuture.create();
+    private final Map<Integer, TrackingLookupSourceSupplier> unspilledOuterLookupSources = new ConcurrentHashMap<>();
+    private final Map<Integer, SettableFuture<OuterPositionIterator>> spilledOuterPositions = new ConcurrentHashMap<>();
+    private volatile boolean outerPositionsClosed;
+
+    @GuardedBy("lock")
+    private List<Integer> spilledOuterPartitions = ImmutableList.of();
+
     /**
      * Cached LookupSource on behalf of LookupJoinOperator (represented by SpillAwareLookupSourceProvider). LookupSource instantiation has non-negligible cost.
      * <p>
@@ -138,6 +156,11 @@ public final class PartitionedLookupSourceFactory
         return layout;
     }
 
+    public boolean isOuter()
+    {
+        return outer;
+    }
+
     // partitions is final, so we don't need a lock to read its length here
     @SuppressWarnings("FieldAccessNotGuarded")
     @Override
@@ -308,8 +331,8 @@ public final class PartitionedLookupSourceFactory
                 finishedProbeOperators++;
                 if (lookupJoinsCount.isPresent()) {
                     checkState(finishedProbeOperators <= lookupJoinsCount.getAsInt(), "%s probe operators finished out of %s declared", finishedProbeOperators, lookupJoinsCount.getAsInt());
-                    if (finishedProbeOperators == lookupJoinsCount.getAsInt()) {
-                        // We can dispose partitions now since right outer is not supported with spill and lookupJoinsCount should be absent
+                    if (finishedProbeOperators == lookupJoinsCount.getAsInt() && !outer) {
+                        // We can dispose partitions now unless the outer positions are still needed
                         freePartitions();
                     }
                 }
@@ -336,8 +359,24 @@ public final class PartitionedLookupSourceFactory
             }
 
             finishedProbeOperators++;
-            if (finishedProbeOperators == operatorsCount) {
-                // We can dispose partitions now since right outer is not supported with spill
+            if (finishedProbeOperators == operatorsCount && outer) {
+                // The partitions that stayed in memory are freed after their outer positions are consumed.
+                // Closing the cached lookup sources commits the positions visited by the probe operators.
+                closeCachedLookupSources();
+                spilledOuterPartitions = ImmutableList.copyOf(spilledPartitions.keySet());
+                spilledOuterPartitions.forEach(partition -> spilledOuterPositions.put(partition, SettableFuture.create()));
+                verify(!partitionedConsumption.isDone());
+                partitionedConsumption.set(new PartitionedConsumption<>(
+                        partitionedConsumptionParticipants.getAsInt(),
+                        inMemoryOuterPositionsConsumed,
+                        spilledOuterPartitions,
+                        this::loadSpilledOuterLookupSource,
+                        this::spilledOuterLookupSourceProbed,
+                        this::spilledLookupSourceDisposed));
+                inMemoryPartitionsProbed.set(null);
+            }
+            else if (finishedProbeOperators == operatorsCount) {
+                // We can dispose partitions now since the outer positions are not tracked
                 freePartitions();
                 verify(!partitionedConsumption.isDone());
                 partitionedConsumption.set(new PartitionedConsumption<>(
@@ -365,6 +404,45 @@ public final class PartitionedLookupSourceFactory
         getSpilledLookupSourceHandle(partitionNumber).dispose();
     }
 
+    private ListenableFuture<Supplier<LookupSource>> loadSpilledOuterLookupSource(int partitionNumber)
+    {
+        return transform(
+                loadSpilledLookupSource(partitionNumber),
+                lookupSource -> {
+                    TrackingLookupSourceSupplier outerLookupSource = createOuterLookupSourceSupplier(lookupSource);
+                    unspilledOuterLookupSources.put(partitionNumber, outerLookupSource);
+                    return outerLookupSource::getLookupSource;
+                },
+                directExecutor());
+    }
+
+    private void spilledOuterLookupSourceProbed(int partitionNumber)
+    {
+        TrackingLookupSourceSupplier outerLookupSource = unspilledOuterLookupSources.remove(partitionNumber);
+        if (outerLookupSource == null || outerPositionsClosed) {
+            // The probe operators finished early, or the outer operator does not need the positions anymore
+            disposeSpilledLookupSource(partitionNumber);
+            spilledOuterPositions.get(partitionNumber).set(new SpilledPartitionOuterPositionIterator(partitionNumber, Optional.empty()));
+            return;
+        }
+        spilledOuterPositions.get(partitionNumber).set(new SpilledPartitionOuterPositionIterator(partitionNumber, Optional.of(outerLookupSource.getOuterPositionIterator())));
+    }
+
+    private Optional<ListenableFuture<OuterPositionIterator>> getNextSpilledOuterPositions(OptionalInt previousPartitionNumber)
+    {
+        lock.readLock().lock();
+        try {
+            int index = previousPartitionNumber.isPresent() ? spilledOuterPartitions.indexOf(previousPartitionNumber.getAsInt()) + 1 : 0;
+            if (index >= spilledOuterPartitions.size()) {
+                return Optional.empty();
+            }
+            return Optional.of(spilledOuterPositions.get(spilledOuterPartitions.get(index)));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
     private SettableFuture<?> spilledLookupSourceDisposed(int partitionNumber)
     {
         return getSpilledLookupSourceHandle(partitionNumber).getDisposeCompleted();
@@ -385,19 +463,31 @@ public final class PartitionedLookupSourceFactory
     public OuterPositionIterator getOuterPositionIterator()
     {
         TrackingLookupSourceSupplier lookupSourceSupplier;
+        boolean spilled;
 
         lock.writeLock().lock();
         try {
             checkState(this.lookupSourceSupplier != null, "lookup source not ready yet");
             lookupSourceSupplier = this.lookupSourceSupplier;
+            spilled = inMemoryPartitionsProbed.isDone();
         }
         finally {
             lock.writeLock().unlock();
         }
 
+        if (spilled) {
+            return new InMemoryPartitionsOuterPositionIterator(lookupSourceSupplier.getOuterPositionIterator());
+        }
         return lookupSourceSupplier.getOuterPositionIterator();
     }
 
+    @Override
+    public ListenableFuture<?> whenOuterPositionsReady(ListenableFuture<?> buildAndProbeFinished)
+    {
+        // With spilled partitions the outer positions are ready before the probe operators finish unspilling
+        return whenAnyComplete(ImmutableList.of(buildAndProbeFinished, inMemoryPartitionsProbed));
+    }
+
     @Override
     public void destroy()
     {
@@ -450,6 +540,108 @@ public final class PartitionedLookupSourceFactory
         return nonCancellationPropagating(destroyed);
     }
 
+    @ThreadSafe
+    private class InMemoryPartitionsOuterPositionIterator
+            implements OuterPositionIterator
+    {
+        private final OuterPositionIterator outerPositions;
+
+        @GuardedBy("this")
+        private boolean finished;
+
+        public InMemoryPartitionsOuterPositionIterator(OuterPositionIterator outerPositions)
+        {
+            this.outerPositions = requireNonNull(outerPositions, "outerPositions is null");
+        }
+
+        @Override
+        public synchronized boolean appendToNext(PageBuilder pageBuilder, int outputChannelOffset)
+        {
+            if (!finished && outerPositions.appendToNext(pageBuilder, outputChannelOffset)) {
+                return true;
+            }
+            finish();
+            return false;
+        }
+
+        @Override
+        public Optional<ListenableFuture<OuterPositionIterator>> getNextOuterPositions()
+        {
+            return getNextSpilledOuterPositions(OptionalInt.empty());
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            outerPositionsClosed = true;
+            finish();
+        }
+
+        @GuardedBy("this")
+        private void finish()
+        {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            freePartitions();
+            // the first spilled partition can be unspilled now
+            inMemoryOuterPositionsConsumed.set(null);
+        }
+    }
+
+    @ThreadSafe
+    private class SpilledPartitionOuterPositionIterator
+            implements OuterPositionIterator
+    {
+        private final int partitionNumber;
+        private final Optional<OuterPositionIterator> outerPositions;
+
+        @GuardedBy("this")
+        private boolean finished;
+
+        public SpilledPartitionOuterPositionIterator(int partitionNumber, Optional<OuterPositionIterator> outerPositions)
+        {
+            this.partitionNumber = partitionNumber;
+            this.outerPositions = requireNonNull(outerPositions, "outerPositions is null");
+            this.finished = !outerPositions.isPresent();
+        }
+
+        @Override
+        public synchronized boolean appendToNext(PageBuilder pageBuilder, int outputChannelOffset)
+        {
+            if (!finished && outerPositions.get().appendToNext(pageBuilder, outputChannelOffset)) {
+                return true;
+            }
+            finish();
+            return false;
+        }
+
+        @Override
+        public Optional<ListenableFuture<OuterPositionIterator>> getNextOuterPositions()
+        {
+            return getNextSpilledOuterPositions(OptionalInt.of(partitionNumber));
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            outerPositionsClosed = true;
+            finish();
+        }
+
+        @GuardedBy("this")
+        private void finish()
+        {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            // the next spilled partition is unspilled once this one is disposed
+            disposeSpilledLookupSource(partitionNumber);
+        }
+    }
+
     @NotThreadSafe
     private class SpillAwareLookupSourceProvider
             implements LookupSourceProvider
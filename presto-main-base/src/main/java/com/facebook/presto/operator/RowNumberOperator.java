@@ -22,20 +22,28 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.Collections.emptyIterator;
 import static java.util.Objects.requireNonNull;
 
 public class RowNumberOperator
@@ -55,6 +63,8 @@ public class RowNumberOperator
         private final int expectedPositions;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public RowNumberOperatorFactory(
                 int operatorId,
@@ -67,6 +77,23 @@ public class RowNumberOperator
                 Optional<Integer> hashChannel,
                 int expectedPositions,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, maxRowsPerPartition, hashChannel, expectedPositions, joinCompiler, false, unsupportedPartitioningSpillerFactory());
+        }
+
+        public RowNumberOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> outputChannels,
+                List<Integer> partitionChannels,
+                List<? extends Type> partitionTypes,
+                Optional<Integer> maxRowsPerPartition,
+                Optional<Integer> hashChannel,
+                int expectedPositions,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -80,6 +107,8 @@ public class RowNumberOperator
             checkArgument(expectedPositions > 0, "expectedPositions < 0");
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         @Override
@@ -97,7 +126,9 @@ public class RowNumberOperator
                     maxRowsPerPartition,
                     hashChannel,
                     expectedPositions,
-                    joinCompiler);
+                    joinCompiler,
+                    spillEnabled,
+                    partitioningSpillerFactory);
         }
 
         @Override
@@ -109,22 +140,31 @@ public class RowNumberOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new RowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, maxRowsPerPartition, hashChannel, expectedPositions, joinCompiler);
+            return new RowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, maxRowsPerPartition, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
     private boolean finishing;
 
     private final int[] outputChannels;
     private final List<Type> types;
+    private final List<Type> sourceTypes;
+    private final List<Integer> partitionChannels;
+    private final List<Type> partitionTypes;
+    private final Optional<Integer> hashChannel;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
 
     private GroupByIdBlock partitionIds;
-    private final Optional<GroupByHash> groupByHash;
+    private Optional<GroupByHash> groupByHash;
 
     private Page inputPage;
-    private final LongBigArray partitionRowCount;
+    private LongBigArray partitionRowCount;
 
     private final Optional<Integer> maxRowsPerPartition;
     // Only present if maxRowsPerPartition is present
@@ -133,6 +173,16 @@ public class RowNumberOperator
     // for yield when memory is not available
     private Work<GroupByIdBlock> unfinishedWork;
 
+    // Once spilled, the remaining input is spilled as well and the rows are numbered one partition at a time after all
+    // input has been received, starting from the partition keys and row counts of the partition spilled with the hash.
+    private Optional<DistinctRowsSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private Iterator<Page> unspilledRowCounts = emptyIterator();
+    private Iterator<Page> unspilledInput = emptyIterator();
+    private Page rowCountsPage;
+    private boolean unspillingFinished;
+
     public RowNumberOperator(
             OperatorContext operatorContext,
             List<Type> sourceTypes,
@@ -143,11 +193,37 @@ public class RowNumberOperator
             Optional<Integer> hashChannel,
             int expectedPositions,
             JoinCompiler joinCompiler)
+    {
+        this(operatorContext, sourceTypes, outputChannels, partitionChannels, partitionTypes, maxRowsPerPartition, hashChannel, expectedPositions, joinCompiler, false, unsupportedPartitioningSpillerFactory());
+    }
+
+    public RowNumberOperator(
+            OperatorContext operatorContext,
+            List<Type> sourceTypes,
+            List<Integer> outputChannels,
+            List<Integer> partitionChannels,
+            List<Type> partitionTypes,
+            Optional<Integer> maxRowsPerPartition,
+            Optional<Integer> hashChannel,
+            int expectedPositions,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
         this.outputChannels = Ints.toArray(outputChannels);
         this.types = toTypes(sourceTypes, outputChannels);
+        this.sourceTypes = ImmutableList.copyOf(requireNonNull(sourceTypes, "sourceTypes is null"));
+        this.partitionChannels = ImmutableList.copyOf(requireNonNull(partitionChannels, "partitionChannels is null"));
+        this.partitionTypes = ImmutableList.copyOf(requireNonNull(partitionTypes, "partitionTypes is null"));
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        // there is nothing to spill for a single partition
+        this.spillEnabled = spillEnabled && !partitionChannels.isEmpty();
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
 
         this.maxRowsPerPartition = maxRowsPerPartition;
         if (maxRowsPerPartition.isPresent()) {
@@ -189,7 +265,13 @@ public class RowNumberOperator
             return partitionRowCount.get(0) == maxRowsPerPartition.get();
         }
 
-        return finishing && !hasUnfinishedInput();
+        return finishing && !hasUnfinishedInput() && (!spiller.isPresent() || unspillingFinished);
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress;
     }
 
     @Override
@@ -199,7 +281,7 @@ public class RowNumberOperator
             // Check if single partition is done
             return partitionRowCount.get(0) < maxRowsPerPartition.get() && !finishing && !hasUnfinishedInput();
         }
-        return !finishing && !hasUnfinishedInput();
+        return !finishing && !hasUnfinishedInput() && spillInProgress.isDone();
     }
 
     @Override
@@ -208,6 +290,13 @@ public class RowNumberOperator
         checkState(!finishing, "Operator is already finishing");
         requireNonNull(page, "page is null");
         checkState(!hasUnfinishedInput());
+
+        if (spiller.isPresent()) {
+            checkSpillSucceeded(spillInProgress);
+            spillInProgress = spiller.get().spillInput(page);
+            return;
+        }
+
         inputPage = page;
         if (groupByHash.isPresent()) {
             unfinishedWork = groupByHash.get().getGroupIds(inputPage);
@@ -219,6 +308,10 @@ public class RowNumberOperator
     @Override
     public Page getOutput()
     {
+        if (spiller.isPresent()) {
+            return finishing ? getUnspilledOutput() : null;
+        }
+
         if (unfinishedWork != null && !processUnfinishedWork()) {
             return null;
         }
@@ -240,6 +333,126 @@ public class RowNumberOperator
         return outputPage;
     }
 
+    private Page getUnspilledOutput()
+    {
+        if (!spillInProgress.isDone()) {
+            return null;
+        }
+        checkSpillSucceeded(spillInProgress);
+
+        while (!unspillingFinished) {
+            if (unfinishedWork != null) {
+                if (!processUnfinishedWork()) {
+                    return null;
+                }
+                if (inputPage != null) {
+                    Page outputPage = maxRowsPerPartition.isPresent() ? getSelectedRows() : getRowsWithRowNumber();
+                    inputPage = null;
+                    updateMemoryReservation();
+                    if (outputPage != null) {
+                        return outputPage;
+                    }
+                }
+                else {
+                    restoreRowCounts();
+                }
+            }
+            else if (unspilledRowCounts.hasNext()) {
+                rowCountsPage = unspilledRowCounts.next();
+                unfinishedWork = groupByHash.get().getGroupIds(rowCountsPage);
+            }
+            else if (unspilledInput.hasNext()) {
+                inputPage = unspilledInput.next();
+                unfinishedWork = groupByHash.get().getGroupIds(inputPage.extractChannels(spiller.get().getValueChannels()));
+            }
+            else if (spiller.get().hasNextPartition()) {
+                // the spilled pages hold the partition channels followed by the hash channel, if present
+                int partitionChannelCount = partitionTypes.size();
+                groupByHash = Optional.of(createGroupByHash(
+                        partitionTypes,
+                        IntStream.range(0, partitionChannelCount).toArray(),
+                        hashChannel.map(channel -> partitionChannelCount),
+                        expectedPositions,
+                        isDictionaryAggregationEnabled(operatorContext.getSession()),
+                        joinCompiler,
+                        this::updateMemoryReservation));
+                partitionRowCount = new LongBigArray(0);
+                unspilledRowCounts = spiller.get().nextPartitionDistinctValues();
+                unspilledInput = spiller.get().getSpilledInput();
+            }
+            else {
+                groupByHash = Optional.empty();
+                partitionRowCount = new LongBigArray(0);
+                unspillingFinished = true;
+                updateMemoryReservation();
+            }
+        }
+        return null;
+    }
+
+    private void restoreRowCounts()
+    {
+        // the row count of each partition key follows its values
+        Block rowCounts = rowCountsPage.getBlock(rowCountsPage.getChannelCount() - 1);
+        for (int position = 0; position < rowCountsPage.getPositionCount(); position++) {
+            partitionRowCount.set(partitionIds.getGroupId(position), BIGINT.getLong(rowCounts, position));
+        }
+        rowCountsPage = null;
+        updateMemoryReservation();
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+
+        if (spiller.isPresent() || !groupByHash.isPresent()) {
+            // Probably stale revoking request
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+
+        if (finishing && !hasUnfinishedInput()) {
+            // all rows have been numbered, the hash is no longer needed
+            finishMemoryRevoke = Optional.of(() -> {
+                groupByHash = Optional.empty();
+                partitionRowCount = new LongBigArray(0);
+                updateMemoryReservation();
+            });
+            return immediateFuture(null);
+        }
+
+        // the rows of the page being processed are not counted yet, so its new partitions are spilled with a row count of zero
+        GroupByHash hash = groupByHash.get();
+        int groupCount = hash.getGroupCount();
+        partitionRowCount.ensureCapacity(groupCount);
+        DistinctRowsSpiller distinctRowsSpiller = new DistinctRowsSpiller(sourceTypes, partitionChannels, hashChannel, true, partitioningSpillerFactory, operatorContext);
+        spiller = Optional.of(distinctRowsSpiller);
+        ListenableFuture<?> spillingFuture = distinctRowsSpiller.spillDistinctValues(hash, groupCount, partitionRowCount);
+        finishMemoryRevoke = Optional.of(() -> {
+            groupByHash = Optional.empty();
+            partitionRowCount = new LongBigArray(0);
+            partitionIds = null;
+            unfinishedWork = null;
+            localRevocableMemoryContext.setBytes(0);
+            if (inputPage != null) {
+                // the page is numbered after unspilling, together with the other rows of its partitions
+                Page page = inputPage;
+                inputPage = null;
+                spillInProgress = distinctRowsSpiller.spillInput(page);
+            }
+        });
+        return spillingFuture;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
     private boolean hasUnfinishedInput()
     {
         return inputPage != null || unfinishedWork != null;
@@ -258,7 +471,12 @@ public class RowNumberOperator
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
         long memorySizeInBytes = groupByHash.map(GroupByHash::getEstimatedSize).orElse(0L) + partitionRowCount.sizeOf();
-        localUserMemoryContext.setBytes(memorySizeInBytes);
+        if (spillEnabled && !spiller.isPresent()) {
+            localRevocableMemoryContext.setBytes(memorySizeInBytes);
+        }
+        else {
+            localUserMemoryContext.setBytes(memorySizeInBytes);
+        }
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
@@ -277,7 +495,7 @@ public class RowNumberOperator
 
     private boolean isSinglePartition()
     {
-        return !groupByHash.isPresent();
+        return partitionChannels.isEmpty();
     }
 
     private Page getRowsWithRowNumber()
@@ -355,4 +573,19 @@ public class RowNumberOperator
     {
         return groupByHash.map(GroupByHash::getCapacity).orElse(0);
     }
+
+    @Override
+    public void close()
+    {
+        groupByHash = Optional.empty();
+        unfinishedWork = null;
+        inputPage = null;
+        rowCountsPage = null;
+        unspilledRowCounts = emptyIterator();
+        unspilledInput = emptyIterator();
+        spiller.ifPresent(DistinctRowsSpiller::close);
+        spiller = Optional.empty();
+        localUserMemoryContext.setBytes(0);
+        localRevocableMemoryContext.setBytes(0);
+    }
 }
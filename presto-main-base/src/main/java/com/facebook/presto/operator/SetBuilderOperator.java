@@ -14,31 +14,68 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.ChannelSet.ChannelSetBuilder;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.IntStream;
 
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transformAsync;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.String.format;
+import static java.util.Collections.emptyIterator;
 import static java.util.Objects.requireNonNull;
 
 @ThreadSafe
 public class SetBuilderOperator
         implements Operator
 {
+    @VisibleForTesting
+    static final int SPILL_PARTITION_COUNT = 16;
+
     public static class SetSupplier
     {
         private final Type type;
         private final SettableFuture<ChannelSet> channelSetFuture = SettableFuture.create();
+        private final SettableFuture<PartitionedConsumption<ChannelSet>> partitionedConsumption = SettableFuture.create();
+
+        @GuardedBy("this")
+        private Optional<List<SpilledChannelSetHandle>> spilledPartitions = Optional.empty();
+        @GuardedBy("this")
+        private boolean spilledSetContainsNull;
+        @GuardedBy("this")
+        private boolean spilledSetEmpty;
+        @GuardedBy("this")
+        private OptionalInt probeOperatorsCount = OptionalInt.empty();
+        @GuardedBy("this")
+        private int finishedProbeOperators;
 
         public SetSupplier(Type type)
         {
@@ -50,6 +87,10 @@ public class SetBuilderOperator
             return type;
         }
 
+        /**
+         * Completes when the set is built. The value is {@code null} if the set has been spilled,
+         * in which case the set is probed one partition at a time, see {@link #finishProbeOperator(OptionalInt)}.
+         */
         public ListenableFuture<ChannelSet> getChannelSet()
         {
             return channelSetFuture;
@@ -60,6 +101,79 @@ public class SetBuilderOperator
             boolean wasSet = channelSetFuture.set(requireNonNull(channelSet, "channelSet is null"));
             checkState(wasSet, "ChannelSet already set");
         }
+
+        void setSpilledChannelSet(List<SpilledChannelSetHandle> partitions, boolean containsNull, boolean empty)
+        {
+            synchronized (this) {
+                checkState(!spilledPartitions.isPresent(), "Spilled partitions already set");
+                spilledPartitions = Optional.of(ImmutableList.copyOf(partitions));
+                spilledSetContainsNull = containsNull;
+                spilledSetEmpty = empty;
+                startPartitionedConsumptionIfReady();
+            }
+            boolean wasSet = channelSetFuture.set(null);
+            checkState(wasSet, "ChannelSet already set");
+        }
+
+        public synchronized boolean isSpilled()
+        {
+            return spilledPartitions.isPresent();
+        }
+
+        public synchronized int getSpilledPartitionCount()
+        {
+            return spilledPartitions.orElseThrow(() -> new IllegalStateException("Set has not been spilled")).size();
+        }
+
+        /**
+         * Whether the spilled set contains the null value. The spilled partitions only answer for non-null values.
+         */
+        public synchronized boolean spilledSetContainsNull()
+        {
+            checkState(spilledPartitions.isPresent(), "Set has not been spilled");
+            return spilledSetContainsNull;
+        }
+
+        public synchronized boolean isSpilledSetEmpty()
+        {
+            checkState(spilledPartitions.isPresent(), "Set has not been spilled");
+            return spilledSetEmpty;
+        }
+
+        /**
+         * Called once by every probe operator when it no longer probes the in memory set. The returned future
+         * completes when the set has been spilled and all the probe operators are finished.
+         */
+        public synchronized ListenableFuture<PartitionedConsumption<ChannelSet>> finishProbeOperator(OptionalInt probeOperatorsCount)
+        {
+            if (probeOperatorsCount.isPresent()) {
+                this.probeOperatorsCount = probeOperatorsCount;
+            }
+            finishedProbeOperators++;
+            this.probeOperatorsCount.ifPresent(count -> checkState(finishedProbeOperators <= count, "%s probe operators finished out of %s declared", finishedProbeOperators, count));
+            startPartitionedConsumptionIfReady();
+            return partitionedConsumption;
+        }
+
+        @GuardedBy("this")
+        private void startPartitionedConsumptionIfReady()
+        {
+            if (!spilledPartitions.isPresent() || finishedProbeOperators == 0) {
+                return;
+            }
+            int operatorsCount = probeOperatorsCount
+                    .orElseThrow(() -> new IllegalStateException("A fixed distribution is required for semi join when spilling is enabled"));
+            if (finishedProbeOperators < operatorsCount) {
+                return;
+            }
+            List<SpilledChannelSetHandle> partitions = spilledPartitions.get();
+            partitionedConsumption.set(new PartitionedConsumption<>(
+                    operatorsCount,
+                    IntStream.range(0, partitions.size()).boxed().collect(toImmutableList()),
+                    partition -> partitions.get(partition).getChannelSet(),
+                    partition -> partitions.get(partition).dispose(),
+                    partition -> partitions.get(partition).getDisposeCompleted()));
+        }
     }
 
     public static class SetBuilderOperatorFactory
@@ -73,6 +187,8 @@ public class SetBuilderOperator
         private final int expectedPositions;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public SetBuilderOperatorFactory(
                 int operatorId,
@@ -82,6 +198,20 @@ public class SetBuilderOperator
                 Optional<Integer> hashChannel,
                 int expectedPositions,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId, planNodeId, type, setChannel, hashChannel, expectedPositions, joinCompiler, false, unsupportedPartitioningSpillerFactory());
+        }
+
+        public SetBuilderOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                Type type,
+                int setChannel,
+                Optional<Integer> hashChannel,
+                int expectedPositions,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -91,6 +221,8 @@ public class SetBuilderOperator
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         public SetSupplier getSetProvider()
@@ -103,7 +235,7 @@ public class SetBuilderOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, SetBuilderOperator.class.getSimpleName());
-            return new SetBuilderOperator(operatorContext, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler);
+            return new SetBuilderOperator(operatorContext, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -115,20 +247,69 @@ public class SetBuilderOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new SetBuilderOperatorFactory(operatorId, planNodeId, setProvider.getType(), setChannel, hashChannel, expectedPositions, joinCompiler);
+            return new SetBuilderOperatorFactory(operatorId, planNodeId, setProvider.getType(), setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
+    public enum State
+    {
+        /**
+         * Operator accepts input
+         */
+        CONSUMING_INPUT,
+
+        /**
+         * Memory revoking occurred during {@link #CONSUMING_INPUT}. Operator accepts input and spills it
+         */
+        SPILLING_INPUT,
+
+        /**
+         * Input has been finished and spilled, waiting for the next partition to be requested
+         */
+        INPUT_SPILLED,
+
+        /**
+         * Spilled partition is being unspilled
+         */
+        INPUT_UNSPILLING,
+
+        /**
+         * Spilled partition has been unspilled and the set built from it
+         */
+        INPUT_UNSPILLED_AND_BUILT,
+
+        /**
+         * No longer needed
+         */
+        CLOSED
+    }
+
     private final OperatorContext operatorContext;
+    private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
     private final SetSupplier setSupplier;
     private final int[] sourceChannels;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
 
-    private final ChannelSetBuilder channelSetBuilder;
-
-    private boolean finished;
+    private ChannelSetBuilder channelSetBuilder;
+    private State state = State.CONSUMING_INPUT;
 
     @Nullable
     private Work<?> unfinishedWork;  // The pending work for current page.
+    @Nullable
+    private Page unfinishedPage;  // The page of the pending work, spilled if memory is revoked before the work is done.
+
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private boolean spilledSetContainsNull;
+    private boolean spilledSetEmpty;
+    private List<SpilledChannelSetHandle> spilledPartitions = ImmutableList.of();
+    private int currentPartition;
+    private Iterator<Page> unspilledPages = emptyIterator();
 
     public SetBuilderOperator(
             OperatorContext operatorContext,
@@ -137,8 +318,23 @@ public class SetBuilderOperator
             Optional<Integer> hashChannel,
             int expectedPositions,
             JoinCompiler joinCompiler)
+    {
+        this(operatorContext, setSupplier, setChannel, hashChannel, expectedPositions, joinCompiler, false, unsupportedPartitioningSpillerFactory());
+    }
+
+    public SetBuilderOperator(
+            OperatorContext operatorContext,
+            SetSupplier setSupplier,
+            int setChannel,
+            Optional<Integer> hashChannel,
+            int expectedPositions,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
         this.setSupplier = requireNonNull(setSupplier, "setProvider is null");
 
         if (requireNonNull(hashChannel, "hashChannel is null").isPresent()) {
@@ -147,6 +343,10 @@ public class SetBuilderOperator
         else {
             this.sourceChannels = new int[]{setChannel};
         }
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
 
         // Set builder is has a single channel which goes in channel 0, if hash is present, add a hashBlock to channel 1
         Optional<Integer> channelSetHashChannel = hashChannel.isPresent() ? Optional.of(1) : Optional.empty();
@@ -154,8 +354,9 @@ public class SetBuilderOperator
                 setSupplier.getType(),
                 channelSetHashChannel,
                 expectedPositions,
-                requireNonNull(operatorContext, "operatorContext is null"),
-                requireNonNull(joinCompiler, "joinCompiler is null"));
+                operatorContext,
+                spillEnabled ? localRevocableMemoryContext : localUserMemoryContext,
+                joinCompiler);
     }
 
     @Override
@@ -164,32 +365,181 @@ public class SetBuilderOperator
         return operatorContext;
     }
 
+    @VisibleForTesting
+    public State getState()
+    {
+        return state;
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        switch (state) {
+            case SPILLING_INPUT:
+                return spillInProgress;
+
+            case INPUT_SPILLED:
+                return spilledPartitions.get(currentPartition).getUnspillingOrDisposeRequested();
+
+            case INPUT_UNSPILLED_AND_BUILT:
+                return spilledPartitions.get(currentPartition).getDisposeRequested();
+
+            default:
+                return NOT_BLOCKED;
+        }
+    }
+
     @Override
     public void finish()
     {
-        if (finished) {
+        if (finishMemoryRevoke.isPresent()) {
+            return;
+        }
+
+        switch (state) {
+            case CONSUMING_INPUT:
+                finishInput();
+                return;
+
+            case SPILLING_INPUT:
+                finishSpilledInput();
+                return;
+
+            case INPUT_SPILLED:
+                unspillPartitionIfRequested();
+                return;
+
+            case INPUT_UNSPILLING:
+                finishPartitionUnspilling();
+                return;
+
+            case INPUT_UNSPILLED_AND_BUILT:
+                if (spilledPartitions.get(currentPartition).getDisposeRequested().isDone()) {
+                    disposePartition();
+                }
+                return;
+
+            case CLOSED:
+                // no-op
+                return;
+        }
+
+        throw new IllegalStateException("Unhandled state: " + state);
+    }
+
+    private void finishInput()
+    {
+        checkState(state == State.CONSUMING_INPUT);
+        if (unfinishedWork != null && !processUnfinishedWork()) {
             return;
         }
 
         ChannelSet channelSet = channelSetBuilder.build();
+        if (spillEnabled) {
+            // the set is no longer revocable once it is handed to the probe side
+            localRevocableMemoryContext.setBytes(0);
+            localUserMemoryContext.setBytes(channelSet.getEstimatedSizeInBytes());
+        }
         setSupplier.setChannelSet(channelSet);
         operatorContext.recordOutput(channelSet.getEstimatedSizeInBytes(), channelSet.size());
-        finished = true;
+        state = State.CLOSED;
+    }
+
+    private void finishSpilledInput()
+    {
+        checkState(state == State.SPILLING_INPUT);
+        if (!spillInProgress.isDone()) {
+            // Not ready to handle finish() yet
+            return;
+        }
+        checkSpillSucceeded(spillInProgress);
+
+        spilledPartitions = IntStream.range(0, SPILL_PARTITION_COUNT)
+                .mapToObj(partition -> new SpilledChannelSetHandle())
+                .collect(toImmutableList());
+        state = State.INPUT_SPILLED;
+        setSupplier.setSpilledChannelSet(spilledPartitions, spilledSetContainsNull, spilledSetEmpty);
+    }
+
+    private void unspillPartitionIfRequested()
+    {
+        checkState(state == State.INPUT_SPILLED);
+        SpilledChannelSetHandle partition = spilledPartitions.get(currentPartition);
+        if (partition.getDisposeRequested().isDone()) {
+            // none of the probe operators has rows in this partition
+            disposePartition();
+            return;
+        }
+        if (!partition.getUnspillingRequested().isDone()) {
+            // Nothing to do yet.
+            return;
+        }
+
+        unspilledPages = getSpiller().getSpilledPages(currentPartition);
+        channelSetBuilder = new ChannelSetBuilder(setSupplier.getType(), Optional.empty(), expectedPositions, operatorContext, localUserMemoryContext, joinCompiler);
+        state = State.INPUT_UNSPILLING;
+    }
+
+    private void finishPartitionUnspilling()
+    {
+        checkState(state == State.INPUT_UNSPILLING);
+        SpilledChannelSetHandle partition = spilledPartitions.get(currentPartition);
+        if (partition.getDisposeRequested().isDone()) {
+            // the probe operators were closed before the partition was unspilled
+            disposePartition();
+            return;
+        }
+
+        if (unfinishedWork != null && !processUnfinishedWork()) {
+            return;
+        }
+        while (unspilledPages.hasNext()) {
+            unfinishedWork = channelSetBuilder.addPage(unspilledPages.next());
+            if (!processUnfinishedWork()) {
+                return;
+            }
+        }
+
+        ChannelSet channelSet = channelSetBuilder.build();
+        operatorContext.recordOutput(channelSet.getEstimatedSizeInBytes(), channelSet.size());
+        partition.setChannelSet(channelSet);
+        state = State.INPUT_UNSPILLED_AND_BUILT;
+    }
+
+    private void disposePartition()
+    {
+        verify(state == State.INPUT_SPILLED || state == State.INPUT_UNSPILLING || state == State.INPUT_UNSPILLED_AND_BUILT);
+        channelSetBuilder = null;
+        unfinishedWork = null;
+        unspilledPages = emptyIterator();
+        localUserMemoryContext.setBytes(0);
+        spilledPartitions.get(currentPartition).setDisposeCompleted();
+
+        currentPartition++;
+        if (currentPartition == spilledPartitions.size()) {
+            close();
+            return;
+        }
+        state = State.INPUT_SPILLED;
     }
 
     @Override
     public boolean isFinished()
     {
-        return finished;
+        return state == State.CLOSED;
     }
 
     @Override
     public boolean needsInput()
     {
+        if (state == State.SPILLING_INPUT) {
+            return spillInProgress.isDone();
+        }
+
         // Since SetBuilderOperator doesn't produce any output, the getOutput()
         // method may never be called. We need to handle any unfinished work
         // before addInput() can be called again.
-        return !finished && (unfinishedWork == null || processUnfinishedWork());
+        return state == State.CONSUMING_INPUT && (unfinishedWork == null || processUnfinishedWork());
     }
 
     @Override
@@ -198,10 +548,94 @@ public class SetBuilderOperator
         requireNonNull(page, "page is null");
         checkState(!isFinished(), "Operator is already finished");
 
-        unfinishedWork = channelSetBuilder.addPage(page.extractChannels(sourceChannels));
+        if (state == State.SPILLING_INPUT) {
+            spillInput(new Page(page.getBlock(sourceChannels[0])));
+            return;
+        }
+
+        checkState(state == State.CONSUMING_INPUT);
+        unfinishedPage = page.extractChannels(sourceChannels);
+        unfinishedWork = channelSetBuilder.addPage(unfinishedPage);
         processUnfinishedWork();
     }
 
+    private void spillInput(Page page)
+    {
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        checkSpillSucceeded(spillInProgress);
+
+        Block block = page.getBlock(0);
+        spilledSetEmpty &= page.getPositionCount() == 0;
+        if (!spilledSetContainsNull && block.mayHaveNull()) {
+            for (int position = 0; position < block.getPositionCount(); position++) {
+                if (block.isNull(position)) {
+                    spilledSetContainsNull = true;
+                    break;
+                }
+            }
+        }
+        spillInProgress = getSpiller().partitionAndSpill(page, partition -> true).getSpillingFuture();
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+
+        if (state == State.CONSUMING_INPUT) {
+            ChannelSet channelSet = channelSetBuilder.build();
+            spilledSetContainsNull = channelSet.containsNull();
+            spilledSetEmpty = channelSet.isEmpty();
+
+            finishMemoryRevoke = Optional.of(() -> {
+                channelSetBuilder = null;
+                localRevocableMemoryContext.setBytes(0);
+                state = State.SPILLING_INPUT;
+                if (unfinishedPage != null) {
+                    // the values of a partially added page might be missing from the spilled set
+                    Page page = unfinishedPage;
+                    unfinishedWork = null;
+                    unfinishedPage = null;
+                    spillInput(new Page(page.getBlock(0)));
+                }
+            });
+            spiller = Optional.of(partitioningSpillerFactory.create(
+                    ImmutableList.of(setSupplier.getType()),
+                    new LocalPartitionGenerator(new InterpretedHashGenerator(ImmutableList.of(setSupplier.getType()), new int[] {0}), SPILL_PARTITION_COUNT),
+                    operatorContext.getSpillContext().newLocalSpillContext(),
+                    operatorContext.aggregateSystemMemoryContext()));
+            return spillPages(channelSetBuilder.getValuePages());
+        }
+        else if (operatorContext.getReservedRevocableBytes() == 0) {
+            // Probably stale revoking request
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+
+        throw new IllegalStateException(format("State %s can not have revocable memory, but has %s revocable bytes", state, operatorContext.getReservedRevocableBytes()));
+    }
+
+    private ListenableFuture<?> spillPages(Iterator<Page> pages)
+    {
+        // the spiller does not allow a new spill before the previous one is finished
+        while (pages.hasNext()) {
+            ListenableFuture<?> spillingFuture = getSpiller().partitionAndSpill(pages.next(), partition -> true).getSpillingFuture();
+            if (!spillingFuture.isDone()) {
+                return transformAsync(spillingFuture, ignored -> spillPages(pages), directExecutor());
+            }
+            checkSpillSucceeded(spillingFuture);
+        }
+        return immediateFuture(null);
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
     @Override
     public Page getOutput()
     {
@@ -216,15 +650,45 @@ public class SetBuilderOperator
         boolean done = unfinishedWork.process();
         if (done) {
             unfinishedWork = null;
+            unfinishedPage = null;
         }
         // We need to update the memory reservation again since the page builder memory may also be increasing.
         channelSetBuilder.updateMemoryReservation();
         return done;
     }
 
+    private PartitioningSpiller getSpiller()
+    {
+        return spiller.orElseThrow(() -> new IllegalStateException("Spiller not created"));
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
         return channelSetBuilder.getCapacity();
     }
+
+    @Override
+    public void close()
+    {
+        if (state == State.CLOSED && !spiller.isPresent()) {
+            return;
+        }
+        // close() can be called in any state, due for example to query failure, and must clean resource up unconditionally
+        state = State.CLOSED;
+        unfinishedWork = null;
+        unfinishedPage = null;
+        unspilledPages = emptyIterator();
+        finishMemoryRevoke = finishMemoryRevoke.map(ifPresent -> () -> {});
+
+        try (Closer closer = Closer.create()) {
+            spiller.ifPresent(closer::register);
+            spiller = Optional.empty();
+            closer.register(() -> localUserMemoryContext.setBytes(0));
+            closer.register(() -> localRevocableMemoryContext.setBytes(0));
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The lookup source factory used by the probe operators of a task to share the lookup source built by another task.
+ * Destroying it only releases the reference of the task, see {@link SharedLookupSourceRegistry}.
+ */
+final class SharedLookupSourceFactory
+        implements LookupSourceFactory
+{
+    private final PartitionedLookupSourceFactory delegate;
+    private final Runnable release;
+
+    SharedLookupSourceFactory(PartitionedLookupSourceFactory delegate, Runnable release)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.release = requireNonNull(release, "release is null");
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return delegate.getTypes();
+    }
+
+    @Override
+    public List<Type> getOutputTypes()
+    {
+        return delegate.getOutputTypes();
+    }
+
+    @Override
+    public ListenableFuture<LookupSourceProvider> createLookupSourceProvider()
+    {
+        return delegate.createLookupSourceProvider();
+    }
+
+    @Override
+    public int partitions()
+    {
+        return delegate.partitions();
+    }
+
+    @Override
+    public ListenableFuture<PartitionedConsumption<Supplier<LookupSource>>> finishProbeOperator(OptionalInt lookupJoinsCount)
+    {
+        return delegate.finishProbeOperator(lookupJoinsCount);
+    }
+
+    @Override
+    public OuterPositionIterator getOuterPositionIterator()
+    {
+        throw new UnsupportedOperationException("Shared lookup sources do not support outer joins");
+    }
+
+    @Override
+    public Map<VariableReferenceExpression, Integer> getLayout()
+    {
+        return delegate.getLayout();
+    }
+
+    @Override
+    public ListenableFuture<?> whenBuildFinishes()
+    {
+        return delegate.whenBuildFinishes();
+    }
+
+    @Override
+    public void destroy()
+    {
+        release.run();
+    }
+}
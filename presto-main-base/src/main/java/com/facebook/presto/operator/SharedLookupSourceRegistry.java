@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.StageExecutionId;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static com.facebook.presto.execution.Lifespan.taskWide;
+import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shares the lookup source of a broadcast join between the tasks of a stage that run on the same worker.
+ * The first task to acquire the lookup source of a join becomes its owner and builds it, while the other tasks
+ * drain their copy of the build side and probe the lookup source of the owner. The lookup source is destroyed
+ * once every task holding a reference has released it, and the next task to acquire it builds a new one.
+ */
+@ThreadSafe
+public class SharedLookupSourceRegistry
+{
+    @GuardedBy("this")
+    private final Map<SharedLookupSourceKey, SharedLookupSource> lookupSources = new HashMap<>();
+
+    /**
+     * Acquires a reference to the lookup source of the join {@code planNodeId} for a task of {@code stageExecutionId}.
+     * If the reference is the owner, the task must build the lookup source with
+     * {@link SharedLookupSourceReference#getLookupSourceFactoryManager()}.
+     */
+    public synchronized SharedLookupSourceReference acquire(
+            StageExecutionId stageExecutionId,
+            PlanNodeId planNodeId,
+            Supplier<JoinBridgeManager<PartitionedLookupSourceFactory>> lookupSourceFactoryManagerSupplier)
+    {
+        SharedLookupSourceKey key = new SharedLookupSourceKey(stageExecutionId, planNodeId);
+        SharedLookupSource lookupSource = lookupSources.get(key);
+        boolean owner = lookupSource == null;
+        if (owner) {
+            JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = lookupSourceFactoryManagerSupplier.get();
+            checkState(lookupSourceFactoryManager.getBuildExecutionStrategy() == UNGROUPED_EXECUTION, "Only ungrouped lookup sources can be shared");
+            // the registry counts as the only probe of the lookup source, so that it is not destroyed before every reference is released
+            lookupSourceFactoryManager.incrementProbeFactoryCount();
+            lookupSource = new SharedLookupSource(key, lookupSourceFactoryManager);
+            lookupSources.put(key, lookupSource);
+        }
+        lookupSource.references++;
+        return new SharedLookupSourceReference(lookupSource, owner);
+    }
+
+    @VisibleForTesting
+    synchronized int getSharedLookupSourceCount()
+    {
+        return lookupSources.size();
+    }
+
+    private void release(SharedLookupSource lookupSource)
+    {
+        synchronized (this) {
+            checkState(lookupSource.references > 0, "Shared lookup source has already been released");
+            lookupSource.references--;
+            if (lookupSource.references > 0) {
+                return;
+            }
+            lookupSources.remove(lookupSource.key);
+        }
+        // The lookup source is destroyed once it is built
+        lookupSource.lookupSourceFactoryManager.probeOperatorFactoryClosed(taskWide());
+    }
+
+    public class SharedLookupSourceReference
+    {
+        private final SharedLookupSource lookupSource;
+        private final boolean owner;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private SharedLookupSourceReference(SharedLookupSource lookupSource, boolean owner)
+        {
+            this.lookupSource = requireNonNull(lookupSource, "lookupSource is null");
+            this.owner = owner;
+        }
+
+        public boolean isOwner()
+        {
+            return owner;
+        }
+
+        public JoinBridgeManager<PartitionedLookupSourceFactory> getLookupSourceFactoryManager()
+        {
+            return lookupSource.lookupSourceFactoryManager;
+        }
+
+        /**
+         * Creates the join bridge manager of the probe operators of the task. The reference is released
+         * when the manager destroys its lookup source factory, that is when the probe operators are done.
+         */
+        public JoinBridgeManager<LookupSourceFactory> createProbeLookupSourceFactoryManager()
+        {
+            JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = lookupSource.lookupSourceFactoryManager;
+            return new JoinBridgeManager<>(
+                    false,
+                    UNGROUPED_EXECUTION,
+                    UNGROUPED_EXECUTION,
+                    () -> new SharedLookupSourceFactory(lookupSourceFactoryManager.getJoinBridge(taskWide()), this::release),
+                    lookupSourceFactoryManager.getBuildOutputTypes());
+        }
+
+        public void release()
+        {
+            if (released.compareAndSet(false, true)) {
+                SharedLookupSourceRegistry.this.release(lookupSource);
+            }
+        }
+    }
+
+    private static class SharedLookupSource
+    {
+        private final SharedLookupSourceKey key;
+        private final JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager;
+        // guarded by the registry
+        private int references;
+
+        private SharedLookupSource(SharedLookupSourceKey key, JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager)
+        {
+            this.key = requireNonNull(key, "key is null");
+            this.lookupSourceFactoryManager = requireNonNull(lookupSourceFactoryManager, "lookupSourceFactoryManager is null");
+        }
+    }
+
+    private static class SharedLookupSourceKey
+    {
+        private final StageExecutionId stageExecutionId;
+        private final PlanNodeId planNodeId;
+
+        private SharedLookupSourceKey(StageExecutionId stageExecutionId, PlanNodeId planNodeId)
+        {
+            this.stageExecutionId = requireNonNull(stageExecutionId, "stageExecutionId is null");
+            this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SharedLookupSourceKey that = (SharedLookupSourceKey) o;
+            return Objects.equals(stageExecutionId, that.stageExecutionId) &&
+                    Objects.equals(planNodeId, that.planNodeId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(stageExecutionId, planNodeId);
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("stageExecutionId", stageExecutionId)
+                    .add("planNodeId", planNodeId)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.facebook.airlift.concurrent.MoreFutures.whenAnyComplete;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Hands one spilled partition of a {@link ChannelSet} from the {@link SetBuilderOperator}
+ * that unspills it to the {@link HashSemiJoinOperator}s that probe it.
+ */
+@ThreadSafe
+final class SpilledChannelSetHandle
+{
+    private final SettableFuture<?> unspillingRequested = SettableFuture.create();
+    private final SettableFuture<ChannelSet> unspilledChannelSet = SettableFuture.create();
+    private final SettableFuture<?> disposeRequested = SettableFuture.create();
+    private final SettableFuture<?> disposeCompleted = SettableFuture.create();
+
+    private final ListenableFuture<?> unspillingOrDisposeRequested = whenAnyComplete(ImmutableList.of(unspillingRequested, disposeRequested));
+
+    public SettableFuture<?> getUnspillingRequested()
+    {
+        return unspillingRequested;
+    }
+
+    public ListenableFuture<ChannelSet> getChannelSet()
+    {
+        unspillingRequested.set(null);
+        return unspilledChannelSet;
+    }
+
+    public void setChannelSet(ChannelSet channelSet)
+    {
+        unspilledChannelSet.set(requireNonNull(channelSet, "channelSet is null"));
+    }
+
+    public void dispose()
+    {
+        disposeRequested.set(null);
+    }
+
+    public SettableFuture<?> getDisposeRequested()
+    {
+        return disposeRequested;
+    }
+
+    public void setDisposeCompleted()
+    {
+        disposeCompleted.set(null);
+    }
+
+    public SettableFuture<?> getDisposeCompleted()
+    {
+        return disposeCompleted;
+    }
+
+    public ListenableFuture<?> getUnspillingOrDisposeRequested()
+    {
+        return unspillingOrDisposeRequested;
+    }
+}
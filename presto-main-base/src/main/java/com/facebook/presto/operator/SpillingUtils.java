@@ -13,8 +13,13 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.common.Page;
+import com.facebook.presto.operator.WorkProcessor.ProcessState;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spiller.ReadAheadPageIterator;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.Iterator;
 import java.util.concurrent.Future;
 
 import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
@@ -43,4 +48,28 @@ public class SpillingUtils
             throw new PrestoException(GENERIC_SPILL_FAILURE, format("Spilling failed: %s", runtimeException.getMessage()), runtimeException);
         }
     }
+
+    /**
+     * Creates a {@link WorkProcessor} over spilled pages. Unlike {@link WorkProcessor#fromIterator(Iterator)},
+     * the processor becomes blocked rather than blocking the driver while a {@link ReadAheadPageIterator}
+     * is still reading the next page.
+     */
+    public static WorkProcessor<Page> spilledPagesProcessor(Iterator<Page> spilledPages)
+    {
+        if (!(spilledPages instanceof ReadAheadPageIterator)) {
+            return WorkProcessor.fromIterator(spilledPages);
+        }
+
+        ReadAheadPageIterator readAheadPages = (ReadAheadPageIterator) spilledPages;
+        return WorkProcessor.create(() -> {
+            ListenableFuture<?> ready = readAheadPages.isReady();
+            if (!ready.isDone()) {
+                return ProcessState.blocked(ready);
+            }
+            if (!readAheadPages.hasNext()) {
+                return ProcessState.finished();
+            }
+            return ProcessState.ofResult(readAheadPages.next());
+        });
+    }
 }
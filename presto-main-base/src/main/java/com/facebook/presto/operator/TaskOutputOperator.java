@@ -101,6 +101,7 @@ public class TaskOutputOperator
     private final OutputBuffer outputBuffer;
     private final Function<Page, Page> pagePreprocessor;
     private final PagesSerde serde;
+    private final OutputBufferMetrics outputBufferMetrics;
     private ListenableFuture<?> isBlocked = NOT_BLOCKED;
     private boolean finished;
 
@@ -109,7 +110,8 @@ public class TaskOutputOperator
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
         this.pagePreprocessor = requireNonNull(pagePreprocessor, "pagePreprocessor is null");
-        this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde();
+        this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde(operatorContext.getRuntimeStats());
+        this.outputBufferMetrics = new OutputBufferMetrics(outputBuffer, operatorContext.getRuntimeStats());
     }
 
     @Override
@@ -135,7 +137,7 @@ public class TaskOutputOperator
     {
         // Avoid re-synchronizing on the output buffer when operator is already blocked
         if (isBlocked.isDone()) {
-            isBlocked = outputBuffer.isFull();
+            isBlocked = outputBufferMetrics.recordBlocked(outputBuffer.isFull());
             if (isBlocked.isDone()) {
                 isBlocked = NOT_BLOCKED;
             }
@@ -160,10 +162,11 @@ public class TaskOutputOperator
         page = pagePreprocessor.apply(page);
 
         List<SerializedPage> serializedPages = splitPage(page, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).stream()
-                .map(serde::serialize)
+                .map(pagePart -> outputBufferMetrics.serialize(serde, pagePart))
                 .collect(toImmutableList());
 
         outputBuffer.enqueue(operatorContext.getDriverContext().getLifespan(), serializedPages);
+        outputBufferMetrics.recordEnqueued();
         operatorContext.recordOutput(page.getSizeInBytes(), page.getPositionCount());
     }
 
@@ -19,6 +19,8 @@ import com.facebook.presto.operator.Work;
 import com.facebook.presto.operator.WorkProcessor;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.Optional;
+
 public interface HashAggregationBuilder
         extends AutoCloseable
 {
@@ -26,6 +28,16 @@ public interface HashAggregationBuilder
 
     WorkProcessor<Page> buildResult();
 
+    /**
+     * Returns the output of the parts of the builder that are full and removes them from the builder,
+     * so that a partial aggregation can keep aggregating the other groups. Returns empty when the
+     * builder can only be flushed as a whole with {@link #buildResult()}.
+     */
+    default Optional<WorkProcessor<Page>> flushFullPartitions()
+    {
+        return Optional.empty();
+    }
+
     boolean isFull();
 
     void updateMemory();
@@ -0,0 +1,335 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.aggregation.builder;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.HashAggregationOperator.ReserveType;
+import com.facebook.presto.operator.HashCollisionsCounter;
+import com.facebook.presto.operator.InterpretedHashGenerator;
+import com.facebook.presto.operator.OperatorContext;
+import com.facebook.presto.operator.PrecomputedHashGenerator;
+import com.facebook.presto.operator.Work;
+import com.facebook.presto.operator.WorkProcessor;
+import com.facebook.presto.operator.WorkProcessor.ProcessState;
+import com.facebook.presto.operator.aggregation.AccumulatorFactory;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
+import com.facebook.presto.spi.plan.AggregationNode.Step;
+import com.facebook.presto.sql.gen.JoinCompiler;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Partial aggregation that buckets the input rows by the bits of their group by hash into a number of
+ * small {@link InMemoryHashAggregationBuilder} sub-tables. Each sub-table is limited to {@code partitionSize},
+ * which is chosen to fit in the CPU cache, so that looking up groups does not miss the cache even when the
+ * number of groups is very large. When a sub-table gets full, only that sub-table is flushed, see
+ * {@link #flushFullPartitions()}, and the groups in the other sub-tables keep aggregating. The whole builder
+ * is full and flushed when the sub-tables together exceed {@code maxPartialMemory}.
+ */
+public class RadixPartitionedHashAggregationBuilder
+        implements HashAggregationBuilder
+{
+    @VisibleForTesting
+    static final int MAX_PARTITION_COUNT = 256;
+
+    private final List<AccumulatorFactory> accumulatorFactories;
+    private final Step step;
+    private final int expectedGroupsPerPartition;
+    private final List<Type> groupByTypes;
+    private final List<Integer> groupByChannels;
+    private final Optional<Integer> hashChannel;
+    private final OperatorContext operatorContext;
+    private final DataSize partitionSize;
+    private final long maxPartialMemory;
+    private final JoinCompiler joinCompiler;
+    private final LocalMemoryContext memoryContext;
+    private final LocalPartitionGenerator partitionGenerator;
+
+    private final Partition[] partitions;
+    // memory of the partitions which are being flushed and were already replaced with empty ones
+    private long flushedPartitionsSize;
+
+    public RadixPartitionedHashAggregationBuilder(
+            List<AccumulatorFactory> accumulatorFactories,
+            Step step,
+            int expectedGroups,
+            List<Type> groupByTypes,
+            List<Integer> groupByChannels,
+            Optional<Integer> hashChannel,
+            OperatorContext operatorContext,
+            DataSize maxPartialMemory,
+            DataSize partitionSize,
+            JoinCompiler joinCompiler,
+            ReserveType reserveType)
+    {
+        checkArgument(step.isOutputPartial(), "radix partitioned aggregation is only supported for partial aggregation");
+        checkArgument(reserveType == ReserveType.USER || reserveType == ReserveType.SYSTEM, "unsupported reserve type: %s", reserveType);
+        this.accumulatorFactories = ImmutableList.copyOf(requireNonNull(accumulatorFactories, "accumulatorFactories is null"));
+        this.step = step;
+        this.groupByTypes = ImmutableList.copyOf(requireNonNull(groupByTypes, "groupByTypes is null"));
+        this.groupByChannels = ImmutableList.copyOf(requireNonNull(groupByChannels, "groupByChannels is null"));
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.partitionSize = requireNonNull(partitionSize, "partitionSize is null");
+        this.maxPartialMemory = requireNonNull(maxPartialMemory, "maxPartialMemory is null").toBytes();
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.memoryContext = reserveType == ReserveType.USER
+                ? operatorContext.localUserMemoryContext()
+                : operatorContext.newLocalSystemMemoryContext(RadixPartitionedHashAggregationBuilder.class.getSimpleName());
+
+        int partitionCount = getPartitionCount(maxPartialMemory, partitionSize);
+        this.expectedGroupsPerPartition = max(expectedGroups / partitionCount, 1);
+        this.partitionGenerator = new LocalPartitionGenerator(
+                hashChannel.isPresent()
+                        ? new PrecomputedHashGenerator(hashChannel.get())
+                        : new InterpretedHashGenerator(
+                                groupByChannels.stream().map(groupByTypes::get).collect(toImmutableList()),
+                                groupByChannels),
+                partitionCount);
+        this.partitions = new Partition[partitionCount];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitions[partition] = new Partition();
+        }
+    }
+
+    /**
+     * Returns the largest power of two number of partitions of {@code partitionSize} that fit in {@code maxPartialMemory}.
+     */
+    @VisibleForTesting
+    static int getPartitionCount(DataSize maxPartialMemory, DataSize partitionSize)
+    {
+        long partitionCount = maxPartialMemory.toBytes() / max(partitionSize.toBytes(), 1);
+        return (int) Long.highestOneBit(min(max(partitionCount, 2), MAX_PARTITION_COUNT));
+    }
+
+    @Override
+    public Work<?> processPage(Page page)
+    {
+        int partitionCount = partitions.length;
+        int positionCount = page.getPositionCount();
+        int[] partitionOfPosition = new int[positionCount];
+        int[] partitionPositionCounts = new int[partitionCount];
+        for (int position = 0; position < positionCount; position++) {
+            int partition = partitionGenerator.getPartition(page, position);
+            partitionOfPosition[position] = partition;
+            partitionPositionCounts[partition]++;
+        }
+
+        int[][] partitionPositions = new int[partitionCount][];
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitionPositions[partition] = new int[partitionPositionCounts[partition]];
+        }
+        int[] partitionOffsets = new int[partitionCount];
+        for (int position = 0; position < positionCount; position++) {
+            int partition = partitionOfPosition[position];
+            partitionPositions[partition][partitionOffsets[partition]++] = position;
+        }
+
+        List<Work<?>> partitionWork = new ArrayList<>();
+        for (int partition = 0; partition < partitionCount; partition++) {
+            int partitionPositionCount = partitionPositionCounts[partition];
+            if (partitionPositionCount == positionCount) {
+                partitionWork.add(partitions[partition].builder.processPage(page));
+            }
+            else if (partitionPositionCount > 0) {
+                partitionWork.add(partitions[partition].builder.processPage(page.getPositions(partitionPositions[partition], 0, partitionPositionCount)));
+            }
+        }
+        return new SequentialWork(partitionWork);
+    }
+
+    @Override
+    public WorkProcessor<Page> buildResult()
+    {
+        List<WorkProcessor<Page>> results = new ArrayList<>();
+        for (Partition partition : partitions) {
+            results.add(partition.builder.buildResult());
+        }
+        return WorkProcessor.flatten(WorkProcessor.fromIterable(results));
+    }
+
+    /**
+     * Builds the result of the full sub-tables and replaces them with empty ones, unless the
+     * builder has exceeded {@code maxPartialMemory} and has to be flushed as a whole.
+     */
+    @Override
+    public Optional<WorkProcessor<Page>> flushFullPartitions()
+    {
+        if (getSizeInMemory() > maxPartialMemory) {
+            return Optional.empty();
+        }
+
+        List<WorkProcessor<Page>> results = new ArrayList<>();
+        for (int partition = 0; partition < partitions.length; partition++) {
+            if (partitions[partition].builder.isFull()) {
+                results.add(partitions[partition].builder.buildResult());
+                flushedPartitionsSize += partitions[partition].sizeInBytes;
+                partitions[partition] = new Partition();
+            }
+        }
+        // release the memory of the flushed sub-tables once their output is built
+        results.add(WorkProcessor.create(() -> {
+            flushedPartitionsSize = 0;
+            memoryContext.setBytes(getSizeInMemory());
+            return ProcessState.finished();
+        }));
+        return Optional.of(WorkProcessor.flatten(WorkProcessor.fromIterable(results)));
+    }
+
+    @Override
+    public boolean isFull()
+    {
+        if (getSizeInMemory() > maxPartialMemory) {
+            return true;
+        }
+        for (Partition partition : partitions) {
+            if (partition.builder.isFull()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void updateMemory()
+    {
+        // refreshes the size of every sub-table, and whether it is full
+        for (Partition partition : partitions) {
+            partition.builder.updateMemory();
+        }
+        memoryContext.setBytes(getSizeInMemory());
+    }
+
+    @Override
+    public void recordHashCollisions(HashCollisionsCounter hashCollisionsCounter)
+    {
+        for (Partition partition : partitions) {
+            partition.builder.recordHashCollisions(hashCollisionsCounter);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        memoryContext.setBytes(0);
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        throw new UnsupportedOperationException("startMemoryRevoke not supported for RadixPartitionedHashAggregationBuilder");
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        throw new UnsupportedOperationException("finishMemoryRevoke not supported for RadixPartitionedHashAggregationBuilder");
+    }
+
+    @VisibleForTesting
+    int getPartitionCount()
+    {
+        return partitions.length;
+    }
+
+    private long getSizeInMemory()
+    {
+        long sizeInMemory = flushedPartitionsSize;
+        for (Partition partition : partitions) {
+            sizeInMemory += partition.sizeInBytes;
+        }
+        return sizeInMemory;
+    }
+
+    private class Partition
+    {
+        private final InMemoryHashAggregationBuilder builder;
+        private long sizeInBytes;
+
+        public Partition()
+        {
+            // the sub-table is full once it outgrows the partition size
+            this.builder = new InMemoryHashAggregationBuilder(
+                    accumulatorFactories,
+                    step,
+                    expectedGroupsPerPartition,
+                    groupByTypes,
+                    groupByChannels,
+                    hashChannel,
+                    operatorContext,
+                    Optional.of(partitionSize),
+                    Optional.empty(),
+                    joinCompiler,
+                    true,
+                    ReserveType.USER,
+                    Optional.of(this::setSizeInBytes));
+        }
+
+        private void setSizeInBytes(long sizeInBytes)
+        {
+            // the total is reserved by updateMemory()
+            this.sizeInBytes = sizeInBytes;
+        }
+    }
+
+    private static class SequentialWork
+            implements Work<Void>
+    {
+        private final Iterator<Work<?>> work;
+        private Work<?> currentWork;
+
+        public SequentialWork(List<Work<?>> work)
+        {
+            this.work = ImmutableList.copyOf(requireNonNull(work, "work is null")).iterator();
+        }
+
+        @Override
+        public boolean process()
+        {
+            while (true) {
+                if (currentWork == null) {
+                    if (!work.hasNext()) {
+                        return true;
+                    }
+                    currentWork = work.next();
+                }
+                if (!currentWork.process()) {
+                    return false;
+                }
+                currentWork = null;
+            }
+        }
+
+        @Override
+        public Void getResult()
+        {
+            return null;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.HashCollisionsCounter;
 import com.facebook.presto.operator.MergeHashSort;
 import com.facebook.presto.operator.OperatorContext;
+import com.facebook.presto.operator.SpillingUtils;
 import com.facebook.presto.operator.Work;
 import com.facebook.presto.operator.WorkProcessor;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
@@ -276,7 +277,7 @@ public class SpillableHashAggregationBuilder
                 hashAggregationBuilder.buildIntermediateTypes(),
                 ImmutableList.<WorkProcessor<Page>>builder()
                         .addAll(spiller.get().getSpills().stream()
-                                .map(WorkProcessor::fromIterator)
+                                .map(SpillingUtils::spilledPagesProcessor)
                                 .collect(toImmutableList()))
                         .add(hashAggregationBuilder.buildHashSortedResult())
                         .build(),
@@ -295,7 +296,7 @@ public class SpillableHashAggregationBuilder
                 groupByTypes,
                 hashAggregationBuilder.buildIntermediateTypes(),
                 spiller.get().getSpills().stream()
-                        .map(WorkProcessor::fromIterator)
+                        .map(SpillingUtils::spilledPagesProcessor)
                         .collect(toImmutableList()),
                 operatorContext.getDriverContext().getYieldSignal());
 
@@ -19,21 +19,23 @@ import com.facebook.presto.operator.WorkProcessor.ProcessState;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
-import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
-import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * A page buffer of a local exchange, written by any number of sinks and read by any number of operators.
+ * Adding and removing pages is lock free, so that the producers and consumers of an exchange with a high
+ * task concurrency do not contend on a monitor for every page.
+ */
 @ThreadSafe
 public class LocalExchangeSource
 {
@@ -41,14 +43,16 @@ public class LocalExchangeSource
 
     private final Consumer<LocalExchangeSource> onFinish;
 
-    private final BlockingQueue<PageReference> buffer = new LinkedBlockingDeque<>();
+    private final Queue<PageReference> buffer = new ConcurrentLinkedQueue<>();
     private final AtomicLong bufferedBytes = new AtomicLong();
+    // the size of a concurrent queue is not constant time
+    private final AtomicInteger bufferedPages = new AtomicInteger();
 
-    @Nullable
-    @GuardedBy("this")
-    private SettableFuture<?> notEmptyFuture; // null indicates no callback present
+    // null indicates no callback present
+    private final AtomicReference<SettableFuture<?>> notEmptyFuture = new AtomicReference<>();
 
     private volatile boolean finishing;
+    private volatile boolean closed;
 
     public LocalExchangeSource(Consumer<LocalExchangeSource> onFinish)
     {
@@ -59,42 +63,32 @@ public class LocalExchangeSource
     {
         // This must be lock free to assure task info creation is fast
         // Note: the stats my be internally inconsistent
-        return new LocalExchangeBufferInfo(bufferedBytes.get(), buffer.size());
+        return new LocalExchangeBufferInfo(bufferedBytes.get(), bufferedPages.get());
     }
 
     void addPage(PageReference pageReference)
     {
-        checkNotHoldsLock();
-
-        boolean added = false;
-        SettableFuture<?> notEmptyFuture = null;
-        long retainedSizeInBytes = pageReference.getRetainedSizeInBytes();
-        synchronized (this) {
-            // ignore pages after finish
-            if (!finishing) {
-                // buffered bytes must be updated before adding to the buffer to assure
-                // the count does not go negative
-                bufferedBytes.addAndGet(retainedSizeInBytes);
-                buffer.add(pageReference);
-                added = true;
-            }
-
-            // we just added a page (or we are finishing) so we are not empty
-            if (this.notEmptyFuture != null) {
-                notEmptyFuture = this.notEmptyFuture;
-                this.notEmptyFuture = null;
-            }
-        }
-
-        if (!added) {
-            // dereference the page outside of lock
+        // ignore pages after finish
+        if (finishing) {
             pageReference.removePage();
+            return;
         }
 
-        // notify readers outside of lock since this may result in a callback
-        if (notEmptyFuture != null) {
-            notEmptyFuture.set(null);
+        // buffered bytes and pages must be updated before adding to the buffer to assure
+        // the counts do not go negative
+        bufferedBytes.addAndGet(pageReference.getRetainedSizeInBytes());
+        bufferedPages.incrementAndGet();
+        buffer.add(pageReference);
+
+        if (closed) {
+            // the source was closed while the page was being added, so no reader will remove it
+            releaseBufferedPages();
+            checkFinished();
+            return;
         }
+
+        // we just added a page so we are not empty
+        notifyReaders();
     }
 
     public WorkProcessor<Page> pages()
@@ -120,17 +114,14 @@ public class LocalExchangeSource
 
     public Page removePage()
     {
-        checkNotHoldsLock();
-
-        // NOTE: there is no need to acquire a lock here. The buffer is concurrent
-        // and buffered bytes is not expected to be consistent with the buffer (only
-        // best effort).
+        // NOTE: buffered bytes is not expected to be consistent with the buffer (only best effort).
         PageReference pageReference = buffer.poll();
         if (pageReference == null) {
             return null;
         }
+        bufferedPages.decrementAndGet();
 
-        // dereference the page outside of lock, since may trigger a callback
+        // dereference the page, which may trigger a callback
         Page page = pageReference.removePage();
         bufferedBytes.addAndGet(-page.getRetainedSizeInBytes());
 
@@ -141,105 +132,86 @@ public class LocalExchangeSource
 
     public ListenableFuture<?> waitForReading()
     {
-        checkNotHoldsLock();
-
         //  Fast path, definitely not blocked
         if (finishing || !buffer.isEmpty()) {
             return NOT_BLOCKED;
         }
 
-        synchronized (this) {
-            // re-check after synchronizing
+        while (true) {
+            SettableFuture<?> future = notEmptyFuture.get();
+            if (future == null) {
+                // if we need to block readers, and no future is registered, create a new one
+                future = SettableFuture.create();
+                if (!notEmptyFuture.compareAndSet(null, future)) {
+                    continue;
+                }
+            }
+            // re-check after registering the future, since a concurrent writer may not have observed it
             if (finishing || !buffer.isEmpty()) {
                 return NOT_BLOCKED;
             }
-            // if we need to block readers, and the current future is complete, create a new one
-            if (notEmptyFuture == null) {
-                notEmptyFuture = SettableFuture.create();
-            }
-            return notEmptyFuture;
+            return future;
         }
     }
 
     public boolean isFinished()
     {
-        // Common case fast-path without synchronizing
-        if (!finishing) {
-            return false;
-        }
-        synchronized (this) {
-            // Synchronize to ensure effects of an in-flight close() or finish() are observed
-            return finishing && buffer.isEmpty();
-        }
+        return finishing && buffer.isEmpty();
     }
 
     public void finish()
     {
-        checkNotHoldsLock();
-
-        SettableFuture<?> notEmptyFuture;
-        synchronized (this) {
-            if (finishing) {
-                return;
-            }
-            finishing = true;
-
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = null;
-        }
-
-        // notify readers outside of lock since this may result in a callback
-        if (notEmptyFuture != null) {
-            notEmptyFuture.set(null);
+        if (finishing) {
+            return;
         }
+        finishing = true;
 
+        notifyReaders();
         checkFinished();
     }
 
     public void close()
     {
-        checkNotHoldsLock();
+        finishing = true;
+        closed = true;
 
-        List<PageReference> remainingPages = new ArrayList<>();
-        SettableFuture<?> notEmptyFuture;
-        synchronized (this) {
-            finishing = true;
+        // free all the remaining pages, pages added concurrently are freed by the writer
+        releaseBufferedPages();
 
-            buffer.drainTo(remainingPages);
-            bufferedBytes.addAndGet(-remainingPages.stream().mapToLong(PageReference::getRetainedSizeInBytes).sum());
+        notifyReaders();
+        checkFinished();
+    }
 
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = null;
+    private void releaseBufferedPages()
+    {
+        PageReference pageReference;
+        while ((pageReference = buffer.poll()) != null) {
+            bufferedPages.decrementAndGet();
+            bufferedBytes.addAndGet(-pageReference.getRetainedSizeInBytes());
+            pageReference.removePage();
         }
+    }
 
-        // free all the remaining pages
-        remainingPages.forEach(PageReference::removePage);
-
-        // notify readers outside of lock since this may result in a callback
-        if (notEmptyFuture != null) {
-            notEmptyFuture.set(null);
+    private void notifyReaders()
+    {
+        // a page may be added (or the source finished) after a reader has registered a future, so the
+        // future must be read after the buffer is updated
+        if (notEmptyFuture.get() == null) {
+            return;
+        }
+        SettableFuture<?> future = notEmptyFuture.getAndSet(null);
+        if (future != null) {
+            future.set(null);
         }
-
-        // this will always fire the finished event
-        checkState(isFinished(), "Expected buffer to be finished");
-        checkFinished();
     }
 
     private void checkFinished()
     {
-        checkNotHoldsLock();
-
         if (isFinished()) {
-            // notify finish listener outside of lock, since it may make a callback
             // NOTE: due the race in this method, the onFinish may be called multiple times
             // it is expected that the implementer handles this (which is why this source
             // is passed to the function)
             onFinish.accept(this);
         }
     }
-
-    private void checkNotHoldsLock()
-    {
-        checkState(!Thread.holdsLock(this), "Can not execute this method while holding the lock");
-    }
 }
@@ -60,8 +60,10 @@ class PartitioningExchanger
     }
 
     @Override
-    public synchronized void accept(Page page)
+    public void accept(Page page)
     {
+        // an exchanger is created for each sink, and a sink is used by a single driver, so the
+        // assignment lists do not need to be guarded
         // reset the assignment lists
         for (IntList partitionAssignment : partitionAssignments) {
             partitionAssignment.clear();
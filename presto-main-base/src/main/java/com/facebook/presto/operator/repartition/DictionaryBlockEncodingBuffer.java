@@ -0,0 +1,367 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.block.ArrayAllocator;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryId;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.google.common.annotations.VisibleForTesting;
+import io.airlift.slice.SliceOutput;
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.facebook.presto.common.array.Arrays.ExpansionFactor.LARGE;
+import static com.facebook.presto.common.array.Arrays.ExpansionFactor.SMALL;
+import static com.facebook.presto.common.array.Arrays.ExpansionOption.NONE;
+import static com.facebook.presto.common.array.Arrays.ExpansionOption.PRESERVE;
+import static com.facebook.presto.common.array.Arrays.ensureCapacity;
+import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
+import static com.facebook.presto.operator.UncheckedByteArrays.setIntUnchecked;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.util.Objects.requireNonNull;
+import static sun.misc.Unsafe.ARRAY_INT_INDEX_SCALE;
+
+/**
+ * Buffers a top level column as a dictionary instead of flattening it. The rows of the partition refer to a
+ * partition dictionary, which holds only the values of the incoming dictionaries that the buffered rows refer to.
+ * The page is serialized as a DictionaryBlock, or as a RunLengthEncodedBlock if all rows refer to the same value,
+ * so the receiving side gets the same encoding back without copying.
+ * <p>
+ * For example, positions [0, 2, 5] on a DictionaryBlock with dictionary ['a', 'b', 'c'] and ids [1, 1, 2, 0, 2, 1]
+ * are buffered as the partition dictionary ['b', 'c'] and the ids [0, 1, 0].
+ * <p>
+ * Flat blocks received after the buffer was created are buffered as if each value was its own dictionary entry.
+ */
+public class DictionaryBlockEncodingBuffer
+        extends AbstractBlockEncodingBuffer
+{
+    // A dictionary is preserved only when it has fewer values than this fraction of the rows of the partition referring to it
+    @VisibleForTesting
+    static final double MAX_DICTIONARY_SIZE_FRACTION = 0.5;
+
+    private static final String NAME = "DICTIONARY";
+    private static final String RLE_NAME = "RLE";
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(DictionaryBlockEncodingBuffer.class).instanceSize();
+    private static final int DICTIONARY_ID_SIZE = 3 * SIZE_OF_LONG;
+
+    // The buffer for the values of the partition dictionary
+    private final AbstractBlockEncodingBuffer dictionaryBuffer;
+
+    // The buffer for the ids of the buffered rows in the partition dictionary
+    private byte[] idsBuffer;
+
+    // The address that the next id will be written to.
+    private int idsBufferIndex;
+
+    // The estimated maximum size for idsBuffer
+    private int estimatedIdsBufferMaxCapacity;
+
+    // The number of values in the partition dictionary
+    private int dictionarySize;
+
+    // The node of the incoming dictionary, or of the incoming block itself if it is flat
+    private DecodedBlockNode sourceDictionaryNode;
+
+    // The incoming dictionary the partition dictionary ids below refer to. It is kept across pages, so that
+    // pages sharing a dictionary share the partition dictionary values as well.
+    private Block sourceDictionary;
+
+    // The id plus one in the partition dictionary of each position of sourceDictionary, or 0 if it is not in the partition dictionary yet.
+    // Only the entries of the values in the partition dictionary are cleared, so that the cost of a page does not depend on the size
+    // of the incoming dictionary.
+    private int[] dictionaryIds;
+
+    // The position in sourceDictionary of each value of the partition dictionary, from sourceDictionaryFirstId on
+    private int[] dictionarySourcePositions;
+
+    // The first id in the partition dictionary of a value of sourceDictionary
+    private int sourceDictionaryFirstId;
+
+    private int partitionBufferCapacity;
+    private double decodedBlockPageSizeFraction;
+
+    public DictionaryBlockEncodingBuffer(DecodedBlockNode decodedBlockNode, ArrayAllocator bufferAllocator)
+    {
+        super(bufferAllocator, false);
+        dictionaryBuffer = (AbstractBlockEncodingBuffer) createBlockEncodingBuffers(decodedBlockNode.getChildren().get(0), bufferAllocator, true);
+    }
+
+    /**
+     * Returns whether the block of the node can be buffered by a DictionaryBlockEncodingBuffer, and is
+     * worth it for a partition that receives partitionPositionCount of its rows: it is a RunLengthEncodedBlock,
+     * or a DictionaryBlock with a dictionary that is small relative to the rows of the partition.
+     * The values must be a flat block.
+     */
+    public static boolean isDictionaryEncodingPreferred(DecodedBlockNode decodedBlockNode, int partitionPositionCount)
+    {
+        Object decodedBlock = decodedBlockNode.getDecodedBlock();
+        if (!(decodedBlock instanceof DictionaryBlock) && !(decodedBlock instanceof RunLengthEncodedBlock)) {
+            return false;
+        }
+
+        DecodedBlockNode valuesNode = decodedBlockNode.getChildren().get(0);
+        if (!valuesNode.getChildren().isEmpty() || !(valuesNode.getDecodedBlock() instanceof Block)) {
+            return false;
+        }
+
+        if (decodedBlock instanceof DictionaryBlock) {
+            DictionaryBlock dictionaryBlock = (DictionaryBlock) decodedBlock;
+            // the rows of the partition are a subset of the rows of the block
+            return dictionaryBlock.getDictionary().getPositionCount() <= partitionPositionCount * MAX_DICTIONARY_SIZE_FRACTION;
+        }
+        return true;
+    }
+
+    @Override
+    public void accumulateSerializedRowSizes(int[] serializedRowSizes)
+    {
+        for (int i = 0; i < positionCount; i++) {
+            serializedRowSizes[i] += SIZE_OF_INT;
+        }
+
+        if (positionCount == 0) {
+            return;
+        }
+
+        // Each value not in the partition dictionary yet is added to the size of the first row that refers to it
+        int[] positions = getPositions();
+        int[] dictionaryOffsets = ensureCapacity(null, positionCount + 1, SMALL, NONE, bufferAllocator);
+        try {
+            dictionaryBuffer.resetPositions();
+            dictionaryBuffer.ensurePositionsCapacity(positionCount);
+
+            dictionaryOffsets[0] = 0;
+            for (int i = 0; i < positionCount; i++) {
+                int position = positions[i];
+                if (dictionaryIds[position] == 0) {
+                    // Mark the value as counted until all rows are processed
+                    dictionaryIds[position] = -1;
+                    dictionaryBuffer.appendPositionRange(position, 1);
+                }
+                dictionaryOffsets[i + 1] = dictionaryBuffer.positionCount;
+            }
+
+            int[] dictionaryPositions = dictionaryBuffer.getPositions();
+            for (int i = 0; i < dictionaryBuffer.positionCount; i++) {
+                dictionaryIds[dictionaryPositions[i]] = 0;
+            }
+
+            dictionaryBuffer.setupDecodedBlockAndMapPositions(sourceDictionaryNode, partitionBufferCapacity, decodedBlockPageSizeFraction);
+            dictionaryBuffer.accumulateSerializedRowSizes(dictionaryOffsets, positionCount, serializedRowSizes);
+        }
+        finally {
+            bufferAllocator.returnArray(dictionaryOffsets);
+        }
+    }
+
+    @Override
+    public void appendDataInBatch()
+    {
+        if (batchSize == 0) {
+            return;
+        }
+
+        appendIdsAndDictionary();
+
+        bufferedPositionCount += batchSize;
+    }
+
+    @Override
+    public void serializeTo(SliceOutput output)
+    {
+        if (dictionarySize == 1) {
+            writeLengthPrefixedString(output, RLE_NAME);
+
+            output.writeInt(bufferedPositionCount);
+            dictionaryBuffer.serializeTo(output);
+            return;
+        }
+
+        writeLengthPrefixedString(output, NAME);
+
+        output.writeInt(bufferedPositionCount);
+
+        // dictionary
+        dictionaryBuffer.serializeTo(output);
+
+        // ids
+        if (idsBufferIndex > 0) {
+            output.appendBytes(idsBuffer, 0, idsBufferIndex);
+        }
+
+        // every page gets its own dictionary
+        DictionaryId dictionaryId = randomDictionaryId();
+        output.appendLong(dictionaryId.getMostSignificantBits());
+        output.appendLong(dictionaryId.getLeastSignificantBits());
+        output.appendLong(dictionaryId.getSequenceId());
+    }
+
+    @Override
+    public void resetBuffers()
+    {
+        bufferedPositionCount = 0;
+        idsBufferIndex = 0;
+        flushed = true;
+        resetNullsBuffer();
+
+        // The next page starts with an empty partition dictionary
+        clearDictionaryIds();
+        dictionarySize = 0;
+        sourceDictionaryFirstId = 0;
+
+        dictionaryBuffer.resetBuffers();
+    }
+
+    @Override
+    public void noMoreBatches()
+    {
+        dictionaryBuffer.noMoreBatches();
+
+        if (flushed) {
+            if (idsBuffer != null) {
+                bufferAllocator.returnArray(idsBuffer);
+                idsBuffer = null;
+            }
+
+            // Nothing is buffered, so the next page does not need to share the incoming dictionary
+            sourceDictionary = null;
+        }
+
+        super.noMoreBatches();
+
+        sourceDictionaryNode = null;
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE +
+                sizeOf(dictionaryIds) +
+                sizeOf(dictionarySourcePositions) +
+                dictionaryBuffer.getRetainedSizeInBytes();
+    }
+
+    @Override
+    public long getSerializedSizeInBytes()
+    {
+        if (dictionarySize == 1) {
+            return RLE_NAME.length() + SIZE_OF_INT +        // encoding name
+                    SIZE_OF_INT +                           // positionCount
+                    dictionaryBuffer.getSerializedSizeInBytes();    // value
+        }
+
+        return NAME.length() + SIZE_OF_INT +                // encoding name
+                SIZE_OF_INT +                               // positionCount
+                dictionaryBuffer.getSerializedSizeInBytes() +   // dictionary
+                idsBufferIndex +                            // ids buffer
+                DICTIONARY_ID_SIZE;                         // dictionary id
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("super", super.toString())
+                .add("estimatedIdsBufferMaxCapacity", estimatedIdsBufferMaxCapacity)
+                .add("idsBufferCapacity", idsBuffer == null ? 0 : idsBuffer.length)
+                .add("idsBufferIndex", idsBufferIndex)
+                .add("dictionarySize", dictionarySize)
+                .add("dictionaryIdsCapacity", dictionaryIds == null ? 0 : dictionaryIds.length)
+                .add("dictionaryBuffer", dictionaryBuffer)
+                .toString();
+    }
+
+    @Override
+    int getEstimatedValueBufferMaxCapacity()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @VisibleForTesting
+    BlockEncodingBuffer getDictionaryBuffer()
+    {
+        return dictionaryBuffer;
+    }
+
+    @Override
+    protected void setupDecodedBlockAndMapPositions(DecodedBlockNode decodedBlockNode, int partitionBufferCapacity, double decodedBlockPageSizeFraction)
+    {
+        requireNonNull(decodedBlockNode, "decodedBlockNode is null");
+
+        // The mapped positions are the positions in the incoming dictionary
+        sourceDictionaryNode = mapPositionsToNestedBlock(decodedBlockNode);
+        decodedBlock = (Block) sourceDictionaryNode.getDecodedBlock();
+
+        if (decodedBlock != sourceDictionary) {
+            // The values buffered so far stay in the partition dictionary, but are not shared with the new incoming dictionary
+            clearDictionaryIds();
+            sourceDictionaryFirstId = dictionarySize;
+            sourceDictionary = decodedBlock;
+            dictionaryIds = ensureCapacity(dictionaryIds, sourceDictionary.getPositionCount());
+        }
+
+        this.partitionBufferCapacity = partitionBufferCapacity;
+        this.decodedBlockPageSizeFraction = decodedBlockPageSizeFraction;
+
+        double targetBufferSize = partitionBufferCapacity * decodedBlockPageSizeFraction;
+        estimatedIdsBufferMaxCapacity = getEstimatedBufferMaxCapacity(targetBufferSize, Integer.BYTES, Integer.BYTES);
+    }
+
+    @Override
+    protected void accumulateSerializedRowSizes(int[] positionOffsets, int positionCount, int[] serializedRowSizes)
+    {
+        throw new UnsupportedOperationException("Dictionaries are only preserved for top level columns");
+    }
+
+    private void appendIdsAndDictionary()
+    {
+        idsBuffer = ensureCapacity(idsBuffer, idsBufferIndex + batchSize * ARRAY_INT_INDEX_SCALE, estimatedIdsBufferMaxCapacity, LARGE, PRESERVE, bufferAllocator);
+
+        int[] positions = getPositions();
+
+        // Collect the values of this batch that are not in the partition dictionary yet
+        dictionaryBuffer.resetPositions();
+        dictionaryBuffer.ensurePositionsCapacity(batchSize);
+
+        for (int i = positionsOffset; i < positionsOffset + batchSize; i++) {
+            int position = positions[i];
+            int id = dictionaryIds[position] - 1;
+            if (id < 0) {
+                id = dictionarySize++;
+                dictionaryIds[position] = id + 1;
+                dictionarySourcePositions = ensureCapacity(dictionarySourcePositions, id - sourceDictionaryFirstId + 1, SMALL, PRESERVE);
+                dictionarySourcePositions[id - sourceDictionaryFirstId] = position;
+                dictionaryBuffer.appendPositionRange(position, 1);
+            }
+            idsBufferIndex = setIntUnchecked(idsBuffer, idsBufferIndex, id);
+        }
+
+        if (dictionaryBuffer.positionCount > 0) {
+            dictionaryBuffer.setupDecodedBlockAndMapPositions(sourceDictionaryNode, partitionBufferCapacity, decodedBlockPageSizeFraction);
+            dictionaryBuffer.setNextBatch(0, dictionaryBuffer.positionCount);
+            dictionaryBuffer.appendDataInBatch();
+        }
+    }
+
+    private void clearDictionaryIds()
+    {
+        for (int i = 0; i < dictionarySize - sourceDictionaryFirstId; i++) {
+            dictionaryIds[dictionarySourcePositions[i]] = 0;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import com.facebook.presto.operator.DriverContext;
 import com.facebook.presto.operator.Operator;
 import com.facebook.presto.operator.OperatorContext;
 import com.facebook.presto.operator.OperatorFactory;
+import com.facebook.presto.operator.OutputBufferMetrics;
 import com.facebook.presto.operator.OutputFactory;
 import com.facebook.presto.operator.PartitionFunction;
 import com.facebook.presto.operator.UncheckedStackArrayAllocator;
@@ -67,6 +68,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static com.facebook.presto.SystemSessionProperties.isPartitionSkewTrackingEnabled;
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.MEDIUM;
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.SMALL;
 import static com.facebook.presto.common.array.Arrays.ExpansionOption.INITIALIZE;
@@ -74,6 +76,8 @@ import static com.facebook.presto.common.array.Arrays.ExpansionOption.PRESERVE;
 import static com.facebook.presto.common.array.Arrays.ensureCapacity;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.operator.repartition.AbstractBlockEncodingBuffer.createBlockEncodingBuffers;
+import static com.facebook.presto.operator.repartition.DictionaryBlockEncodingBuffer.isDictionaryEncodingPreferred;
+import static com.facebook.presto.operator.repartition.PartitionSkewTracker.createPartitionSkewTracker;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
 import static io.airlift.slice.SizeOf.SIZE_OF_INT;
@@ -106,6 +110,23 @@ public class OptimizedPartitionedOutputOperator
             OutputBuffer outputBuffer,
             PagesSerdeFactory serdeFactory,
             DataSize maxMemory)
+    {
+        this(operatorContext, sourceTypes, pagePreprocessor, partitionFunction, partitionChannels, partitionConstants, replicatesAnyRow, nullChannel, outputBuffer, serdeFactory, maxMemory, false);
+    }
+
+    public OptimizedPartitionedOutputOperator(
+            OperatorContext operatorContext,
+            List<Type> sourceTypes,
+            Function<Page, Page> pagePreprocessor,
+            PartitionFunction partitionFunction,
+            List<Integer> partitionChannels,
+            List<Optional<ConstantExpression>> partitionConstants,
+            boolean replicatesAnyRow,
+            OptionalInt nullChannel,
+            OutputBuffer outputBuffer,
+            PagesSerdeFactory serdeFactory,
+            DataSize maxMemory,
+            boolean preserveDictionaries)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.pagePreprocessor = requireNonNull(pagePreprocessor, "pagePreprocessor is null");
@@ -119,6 +140,7 @@ public class OptimizedPartitionedOutputOperator
                 serdeFactory,
                 sourceTypes,
                 maxMemory,
+                preserveDictionaries,
                 operatorContext);
 
         operatorContext.setInfoSupplier(pagePartitioner.getPartitionedOutputInfoSupplier());
@@ -263,11 +285,18 @@ public class OptimizedPartitionedOutputOperator
     {
         private final OutputBuffer outputBuffer;
         private final DataSize maxMemory;
+        private final boolean preserveDictionaries;
 
         public OptimizedPartitionedOutputFactory(OutputBuffer outputBuffer, DataSize maxMemory)
+        {
+            this(outputBuffer, maxMemory, false);
+        }
+
+        public OptimizedPartitionedOutputFactory(OutputBuffer outputBuffer, DataSize maxMemory, boolean preserveDictionaries)
         {
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.maxMemory = requireNonNull(maxMemory, "maxMemory is null");
+            this.preserveDictionaries = preserveDictionaries;
         }
 
         @Override
@@ -292,7 +321,8 @@ public class OptimizedPartitionedOutputOperator
                     outputPartitioning.get().getNullChannel(),
                     outputBuffer,
                     serdeFactory,
-                    maxMemory);
+                    maxMemory,
+                    preserveDictionaries);
         }
     }
 
@@ -311,6 +341,7 @@ public class OptimizedPartitionedOutputOperator
         private final OutputBuffer outputBuffer;
         private final PagesSerdeFactory serdeFactory;
         private final DataSize maxMemory;
+        private final boolean preserveDictionaries;
 
         public OptimizedPartitionedOutputOperatorFactory(
                 int operatorId,
@@ -325,6 +356,24 @@ public class OptimizedPartitionedOutputOperator
                 OutputBuffer outputBuffer,
                 PagesSerdeFactory serdeFactory,
                 DataSize maxMemory)
+        {
+            this(operatorId, planNodeId, sourceTypes, pagePreprocessor, partitionFunction, partitionChannels, partitionConstants, replicatesAnyRow, nullChannel, outputBuffer, serdeFactory, maxMemory, false);
+        }
+
+        public OptimizedPartitionedOutputOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<Type> sourceTypes,
+                Function<Page, Page> pagePreprocessor,
+                PartitionFunction partitionFunction,
+                List<Integer> partitionChannels,
+                List<Optional<ConstantExpression>> partitionConstants,
+                boolean replicatesAnyRow,
+                OptionalInt nullChannel,
+                OutputBuffer outputBuffer,
+                PagesSerdeFactory serdeFactory,
+                DataSize maxMemory,
+                boolean preserveDictionaries)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -338,6 +387,7 @@ public class OptimizedPartitionedOutputOperator
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.serdeFactory = requireNonNull(serdeFactory, "serdeFactory is null");
             this.maxMemory = requireNonNull(maxMemory, "maxMemory is null");
+            this.preserveDictionaries = preserveDictionaries;
         }
 
         @Override
@@ -355,7 +405,8 @@ public class OptimizedPartitionedOutputOperator
                     nullChannel,
                     outputBuffer,
                     serdeFactory,
-                    maxMemory);
+                    maxMemory,
+                    preserveDictionaries);
         }
 
         @Override
@@ -378,7 +429,8 @@ public class OptimizedPartitionedOutputOperator
                     nullChannel,
                     outputBuffer,
                     serdeFactory,
-                    maxMemory);
+                    maxMemory,
+                    preserveDictionaries);
         }
     }
 
@@ -390,10 +442,12 @@ public class OptimizedPartitionedOutputOperator
         @Nullable
         private final Block[] partitionConstantBlocks; // when null, no constants are present. Only non-null elements are constants
         private final PagesSerde serde;
+        private final OutputBufferMetrics outputBufferMetrics;
         private final boolean replicatesAnyRow;
         private final int nullChannel; // when >= 0, send the position to every partition if this channel is null
         private final AtomicLong rowsAdded = new AtomicLong();
         private final AtomicLong pagesAdded = new AtomicLong();
+        private final Optional<PartitionSkewTracker> skewTracker;
 
         // The ArrayAllocator used by BlockFlattener for decoding blocks.
         // There could be queries that shuffles data with up to 1000 columns so we need to set the maxOutstandingArrays a high number.
@@ -409,6 +463,7 @@ public class OptimizedPartitionedOutputOperator
         private final List<Integer> variableWidthChannels;
         private final int fixedWidthRowSize;
         private final DecodedBlockNode[] decodedBlocks;
+        private final boolean preserveDictionaries;
 
         private boolean hasAnyRowBeenReplicated;
 
@@ -422,6 +477,7 @@ public class OptimizedPartitionedOutputOperator
                 PagesSerdeFactory serdeFactory,
                 List<Type> sourceTypes,
                 DataSize maxMemory,
+                boolean preserveDictionaries,
                 OperatorContext operatorContext)
         {
             this.partitionFunction = requireNonNull(partitionFunction, "pagePartitioner is null");
@@ -446,15 +502,23 @@ public class OptimizedPartitionedOutputOperator
             this.replicatesAnyRow = replicatesAnyRow;
             this.nullChannel = requireNonNull(nullChannel, "nullChannel is null").orElse(-1);
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
-            this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde();
+            this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde(operatorContext.getRuntimeStats());
+            this.outputBufferMetrics = new OutputBufferMetrics(outputBuffer, operatorContext.getRuntimeStats());
+            this.preserveDictionaries = preserveDictionaries;
 
             int partitionCount = partitionFunction.getPartitionCount();
 
             int partitionBufferCapacity = max(1, min(DEFAULT_MAX_PAGE_SIZE_IN_BYTES, toIntExact(maxMemory.toBytes()) / partitionCount));
+            if (isPartitionSkewTrackingEnabled(operatorContext.getSession())) {
+                this.skewTracker = Optional.of(createPartitionSkewTracker(partitionCount, sourceTypes, partitionChannels, partitionConstants));
+            }
+            else {
+                this.skewTracker = Optional.empty();
+            }
 
             partitionBuffers = new PartitionBuffer[partitionCount];
             for (int i = 0; i < partitionCount; i++) {
-                partitionBuffers[i] = new PartitionBuffer(i, sourceTypes.size(), partitionBufferCapacity, pagesAdded, rowsAdded, serde, bufferAllocator, operatorContext);
+                partitionBuffers[i] = new PartitionBuffer(i, sourceTypes.size(), partitionBufferCapacity, pagesAdded, rowsAdded, serde, outputBufferMetrics, bufferAllocator, preserveDictionaries, operatorContext);
             }
 
             this.sourceTypes = sourceTypes;
@@ -476,13 +540,13 @@ public class OptimizedPartitionedOutputOperator
 
         public ListenableFuture<?> isFull()
         {
-            return outputBuffer.isFull();
+            return outputBufferMetrics.recordBlocked(outputBuffer.isFull());
         }
 
         public Supplier<PartitionedOutputInfo> getPartitionedOutputInfoSupplier()
         {
             // Must be a separate static method to avoid embedding references to "this" in the supplier
-            return PartitionedOutputInfo.createPartitionedOutputInfoSupplier(rowsAdded, pagesAdded, outputBuffer);
+            return PartitionedOutputInfo.createPartitionedOutputInfoSupplier(rowsAdded, pagesAdded, skewTracker, outputBuffer);
         }
 
         public void partitionPage(Page page)
@@ -526,6 +590,9 @@ public class OptimizedPartitionedOutputOperator
                     else {
                         int partition = partitionFunction.getPartition(partitionFunctionArgs, position);
                         partitionBuffers[partition].addPosition(position);
+                        if (skewTracker.isPresent()) {
+                            skewTracker.get().addRow(partitionFunctionArgs, position, partition);
+                        }
                     }
                 }
             }
@@ -533,8 +600,12 @@ public class OptimizedPartitionedOutputOperator
                 for (; position < positionCount; position++) {
                     int partition = partitionFunction.getPartition(partitionFunctionArgs, position);
                     partitionBuffers[partition].addPosition(position);
+                    if (skewTracker.isPresent()) {
+                        skewTracker.get().addRow(partitionFunctionArgs, position, partition);
+                    }
                 }
             }
+            skewTracker.ifPresent(PartitionSkewTracker::publishHotKeys);
 
             // Decode the page just once. The decoded blocks will be fed to each PartitionBuffer object to set up AbstractBlockEncodingBuffer.
             long estimatedSerializedPageSize = 0;
@@ -624,10 +695,12 @@ public class OptimizedPartitionedOutputOperator
         private final AtomicLong rowsAdded;
         private final AtomicLong pagesAdded;
         private final PagesSerde serde;
+        private final OutputBufferMetrics outputBufferMetrics;
         private final Lifespan lifespan;
         private final int capacity;
         private final int channelCount;
         private final ArrayAllocator bufferAllocator;
+        private final boolean preserveDictionaries;
 
         private int[] positions;   // the default positions array for top level BlockEncodingBuffer
         private int positionCount;  // number of positions to be copied for this partition
@@ -637,7 +710,7 @@ public class OptimizedPartitionedOutputOperator
         private boolean bufferFull;
         private OperatorContext operatorContext;
 
-        PartitionBuffer(int partition, int channelCount, int capacity, AtomicLong pagesAdded, AtomicLong rowsAdded, PagesSerde serde, ArrayAllocator bufferAllocator, OperatorContext operatorContext)
+        PartitionBuffer(int partition, int channelCount, int capacity, AtomicLong pagesAdded, AtomicLong rowsAdded, PagesSerde serde, OutputBufferMetrics outputBufferMetrics, ArrayAllocator bufferAllocator, boolean preserveDictionaries, OperatorContext operatorContext)
         {
             this.partition = partition;
             this.channelCount = channelCount;
@@ -645,7 +718,9 @@ public class OptimizedPartitionedOutputOperator
             this.pagesAdded = requireNonNull(pagesAdded, "pagesAdded is null");
             this.rowsAdded = requireNonNull(rowsAdded, "rowsAdded is null");
             this.serde = requireNonNull(serde, "serde is null");
+            this.outputBufferMetrics = requireNonNull(outputBufferMetrics, "outputBufferMetrics is null");
             this.bufferAllocator = requireNonNull(bufferAllocator, "bufferAllocator is null");
+            this.preserveDictionaries = preserveDictionaries;
             this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
             this.lifespan = operatorContext.getDriverContext().getLifespan();
         }
@@ -722,10 +797,27 @@ public class OptimizedPartitionedOutputOperator
             if (blockEncodingBuffers == null) {
                 BlockEncodingBuffer[] buffers = new BlockEncodingBuffer[channelCount];
                 for (int i = 0; i < channelCount; i++) {
-                    buffers[i] = createBlockEncodingBuffers(decodedBlocks[i], bufferAllocator, false);
+                    buffers[i] = createTopLevelBlockEncodingBuffer(decodedBlocks[i]);
                 }
                 blockEncodingBuffers = buffers;
             }
+            else if (preserveDictionaries && bufferedRowCount == 0) {
+                // Nothing is buffered, so the encoding of each column can follow the rows of this page in the partition
+                for (int i = 0; i < channelCount; i++) {
+                    boolean dictionaryEncoded = blockEncodingBuffers[i] instanceof DictionaryBlockEncodingBuffer;
+                    if (dictionaryEncoded != isDictionaryEncodingPreferred(decodedBlocks[i], positionCount)) {
+                        blockEncodingBuffers[i] = createTopLevelBlockEncodingBuffer(decodedBlocks[i]);
+                    }
+                }
+            }
+        }
+
+        private BlockEncodingBuffer createTopLevelBlockEncodingBuffer(DecodedBlockNode decodedBlock)
+        {
+            if (preserveDictionaries && isDictionaryEncodingPreferred(decodedBlock, positionCount)) {
+                return new DictionaryBlockEncodingBuffer(decodedBlock, bufferAllocator);
+            }
+            return createBlockEncodingBuffers(decodedBlock, bufferAllocator, false);
         }
 
         /**
@@ -778,6 +870,7 @@ public class OptimizedPartitionedOutputOperator
                 return;
             }
 
+            long serializationStart = System.nanoTime();
             SliceOutput output = new DynamicSliceOutput(toIntExact(getSerializedBuffersSizeInBytes()));
             output.writeInt(channelCount);
 
@@ -789,7 +882,9 @@ public class OptimizedPartitionedOutputOperator
             }
 
             SerializedPage serializedPage = serde.serialize(output.slice(), bufferedRowCount);
+            outputBufferMetrics.recordSerializedPage(serializedPage, System.nanoTime() - serializationStart);
             outputBuffer.enqueue(lifespan, partition, ImmutableList.of(serializedPage));
+            outputBufferMetrics.recordEnqueued();
             pagesAdded.incrementAndGet();
             rowsAdded.addAndGet(bufferedRowCount);
             operatorContext.recordOutput(totalSizeInBytes, bufferedRowCount);
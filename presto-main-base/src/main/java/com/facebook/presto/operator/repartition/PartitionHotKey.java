@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.drift.annotations.ThriftConstructor;
+import com.facebook.drift.annotations.ThriftField;
+import com.facebook.drift.annotations.ThriftStruct;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * A partitioning key that alone receives more rows than an average partition of a partitioned output.
+ * The key is identified by the hash of its partitioning columns.
+ */
+@ThriftStruct
+public class PartitionHotKey
+{
+    private final long keyHash;
+    private final int partition;
+    private final long estimatedRowCount;
+
+    @JsonCreator
+    @ThriftConstructor
+    public PartitionHotKey(
+            @JsonProperty("keyHash") long keyHash,
+            @JsonProperty("partition") int partition,
+            @JsonProperty("estimatedRowCount") long estimatedRowCount)
+    {
+        this.keyHash = keyHash;
+        this.partition = partition;
+        this.estimatedRowCount = estimatedRowCount;
+    }
+
+    @JsonProperty
+    @ThriftField(1)
+    public long getKeyHash()
+    {
+        return keyHash;
+    }
+
+    @JsonProperty
+    @ThriftField(2)
+    public int getPartition()
+    {
+        return partition;
+    }
+
+    @JsonProperty
+    @ThriftField(3)
+    public long getEstimatedRowCount()
+    {
+        return estimatedRowCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("keyHash", keyHash)
+                .add("partition", partition)
+                .add("estimatedRowCount", estimatedRowCount)
+                .toString();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.HashGenerator;
+import com.facebook.presto.spi.relation.ConstantExpression;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.facebook.presto.operator.InterpretedHashGenerator.createPositionalWithTypes;
+import static com.facebook.presto.operator.repartition.PartitionedOutputInfo.MAX_HOT_KEYS;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Math.min;
+import static java.util.Comparator.comparingLong;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tracks how the rows of a partitioned output are spread across partitions, and which partitioning keys
+ * are heavy hitters. The heavy hitters are found with the Space-Saving algorithm over one in
+ * {@link #SAMPLE_INTERVAL_ROWS} rows on average, which estimates the counts of the most frequent key hashes with
+ * {@link #MAX_TRACKED_KEYS} counters. The rows are sampled at random intervals, so that keys repeating with
+ * a fixed period are not over or under sampled. Every key with more than 1/{@link #MAX_TRACKED_KEYS} of the sampled
+ * rows is guaranteed to be tracked.
+ * <p>
+ * Rows are added by the driver thread only, while the row counts and the hot keys can be read from any thread.
+ */
+final class PartitionSkewTracker
+{
+    @VisibleForTesting
+    static final int SAMPLE_INTERVAL_ROWS = 16;
+    @VisibleForTesting
+    static final int MAX_TRACKED_KEYS = 32;
+
+    private final AtomicLongArray partitionRowCounts;
+    private final Optional<HashGenerator> keyHashGenerator;
+
+    private final long[] keyHashes = new long[MAX_TRACKED_KEYS];
+    private final int[] keyPartitions = new int[MAX_TRACKED_KEYS];
+    private final long[] keyCounts = new long[MAX_TRACKED_KEYS];
+    private int trackedKeys;
+    private long rows;
+    private long sampledRows;
+    private int rowsUntilSample = nextSampleInterval();
+    private boolean hotKeysChanged;
+
+    private volatile List<PartitionHotKey> hotKeys = ImmutableList.of();
+
+    static PartitionSkewTracker createPartitionSkewTracker(
+            int partitionCount,
+            List<Type> sourceTypes,
+            List<Integer> partitionChannels,
+            List<Optional<ConstantExpression>> partitionConstants)
+    {
+        ImmutableList.Builder<Type> keyTypes = ImmutableList.builder();
+        for (int i = 0; i < partitionChannels.size(); i++) {
+            int channel = partitionChannels.get(i);
+            keyTypes.add(channel < 0 ? partitionConstants.get(i).get().getType() : sourceTypes.get(channel));
+        }
+        return new PartitionSkewTracker(partitionCount, keyTypes.build());
+    }
+
+    @VisibleForTesting
+    PartitionSkewTracker(int partitionCount, List<Type> keyTypes)
+    {
+        checkArgument(partitionCount > 0, "partitionCount must be positive");
+        requireNonNull(keyTypes, "keyTypes is null");
+        this.partitionRowCounts = new AtomicLongArray(partitionCount);
+        // without partitioning columns, such as in round robin partitioning, there are no keys to track
+        this.keyHashGenerator = keyTypes.isEmpty() ? Optional.empty() : Optional.of(createPositionalWithTypes(ImmutableList.copyOf(keyTypes)));
+    }
+
+    /**
+     * Records that the row at {@code position} of {@code keys}, which holds the partitioning columns,
+     * has been sent to {@code partition}.
+     */
+    void addRow(Page keys, int position, int partition)
+    {
+        // there is a single writer, so a lazy set is enough to make the count visible to readers
+        partitionRowCounts.lazySet(partition, partitionRowCounts.get(partition) + 1);
+        rows++;
+        if (--rowsUntilSample == 0) {
+            rowsUntilSample = nextSampleInterval();
+            if (keyHashGenerator.isPresent()) {
+                sampleKey(keyHashGenerator.get().hashPosition(position, keys), partition);
+            }
+        }
+    }
+
+    /**
+     * Makes the hot keys sampled so far visible to {@link #getHotKeys()}. This is called once per page,
+     * to keep the cost of publishing them off the per row path.
+     */
+    void publishHotKeys()
+    {
+        if (!hotKeysChanged) {
+            return;
+        }
+        hotKeysChanged = false;
+
+        // a key is hot when it alone receives more rows than an average partition. Keys below
+        // 1/MAX_TRACKED_KEYS of the rows may not be tracked, so they are never reported.
+        long minCount = sampledRows / min(partitionRowCounts.length(), MAX_TRACKED_KEYS);
+        List<PartitionHotKey> hotKeys = new ArrayList<>();
+        for (int i = 0; i < trackedKeys; i++) {
+            if (keyCounts[i] > minCount) {
+                hotKeys.add(new PartitionHotKey(keyHashes[i], keyPartitions[i], keyCounts[i] * rows / sampledRows));
+            }
+        }
+        this.hotKeys = hotKeys.stream()
+                .sorted(comparingLong(PartitionHotKey::getEstimatedRowCount).reversed())
+                .limit(MAX_HOT_KEYS)
+                .collect(toImmutableList());
+    }
+
+    long[] getPartitionRowCounts()
+    {
+        long[] counts = new long[partitionRowCounts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = partitionRowCounts.get(i);
+        }
+        return counts;
+    }
+
+    List<PartitionHotKey> getHotKeys()
+    {
+        return hotKeys;
+    }
+
+    private static int nextSampleInterval()
+    {
+        return ThreadLocalRandom.current().nextInt(1, 2 * SAMPLE_INTERVAL_ROWS);
+    }
+
+    private void sampleKey(long keyHash, int partition)
+    {
+        sampledRows++;
+        hotKeysChanged = true;
+
+        int minIndex = 0;
+        for (int i = 0; i < trackedKeys; i++) {
+            if (keyHashes[i] == keyHash) {
+                keyCounts[i]++;
+                return;
+            }
+            if (keyCounts[i] < keyCounts[minIndex]) {
+                minIndex = i;
+            }
+        }
+
+        if (trackedKeys < MAX_TRACKED_KEYS) {
+            keyHashes[trackedKeys] = keyHash;
+            keyPartitions[trackedKeys] = partition;
+            keyCounts[trackedKeys] = 1;
+            trackedKeys++;
+            return;
+        }
+
+        // replace the least frequent key, which inherits its count as the error bound of the new key
+        keyHashes[minIndex] = keyHash;
+        keyPartitions[minIndex] = partition;
+        keyCounts[minIndex]++;
+    }
+}
@@ -21,31 +21,48 @@ import com.facebook.presto.operator.OperatorInfo;
 import com.facebook.presto.util.Mergeable;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Math.max;
+import static java.util.Comparator.comparingLong;
 import static java.util.Objects.requireNonNull;
 
 @ThriftStruct
 public class PartitionedOutputInfo
         implements Mergeable<PartitionedOutputInfo>, OperatorInfo
 {
+    public static final int MAX_HOT_KEYS = 8;
+
     private final long rowsAdded;
     private final long pagesAdded;
     private final long outputBufferPeakMemoryUsage;
+    private final long[] partitionRowCounts;
+    private final List<PartitionHotKey> hotKeys;
 
     @JsonCreator
     @ThriftConstructor
     public PartitionedOutputInfo(
             @JsonProperty("rowsAdded") long rowsAdded,
             @JsonProperty("pagesAdded") long pagesAdded,
-            @JsonProperty("outputBufferPeakMemoryUsage") long outputBufferPeakMemoryUsage)
+            @JsonProperty("outputBufferPeakMemoryUsage") long outputBufferPeakMemoryUsage,
+            @JsonProperty("partitionRowCounts") long[] partitionRowCounts,
+            @JsonProperty("hotKeys") List<PartitionHotKey> hotKeys)
     {
         this.rowsAdded = rowsAdded;
         this.pagesAdded = pagesAdded;
         this.outputBufferPeakMemoryUsage = outputBufferPeakMemoryUsage;
+        // absent when reported by workers that do not track skew
+        this.partitionRowCounts = partitionRowCounts == null ? new long[0] : partitionRowCounts;
+        this.hotKeys = hotKeys == null ? ImmutableList.of() : ImmutableList.copyOf(hotKeys);
     }
 
     @JsonProperty
@@ -69,13 +86,43 @@ public class PartitionedOutputInfo
         return outputBufferPeakMemoryUsage;
     }
 
+    /**
+     * Number of rows sent to each partition, not counting rows replicated to all partitions
+     */
+    @JsonProperty
+    @ThriftField(4)
+    public long[] getPartitionRowCounts()
+    {
+        return partitionRowCounts;
+    }
+
+    /**
+     * Keys that alone receive more rows than an average partition, by decreasing estimated row count
+     */
+    @JsonProperty
+    @ThriftField(5)
+    public List<PartitionHotKey> getHotKeys()
+    {
+        return hotKeys;
+    }
+
     @Override
     public PartitionedOutputInfo mergeWith(PartitionedOutputInfo other)
     {
+        long[] partitionRowCounts = new long[max(this.partitionRowCounts.length, other.partitionRowCounts.length)];
+        for (int i = 0; i < this.partitionRowCounts.length; i++) {
+            partitionRowCounts[i] += this.partitionRowCounts[i];
+        }
+        for (int i = 0; i < other.partitionRowCounts.length; i++) {
+            partitionRowCounts[i] += other.partitionRowCounts[i];
+        }
+
         return new PartitionedOutputInfo(
                 rowsAdded + other.rowsAdded,
                 pagesAdded + other.pagesAdded,
-                Math.max(outputBufferPeakMemoryUsage, other.outputBufferPeakMemoryUsage));
+                max(outputBufferPeakMemoryUsage, other.outputBufferPeakMemoryUsage),
+                partitionRowCounts,
+                mergeHotKeys(hotKeys, other.hotKeys));
     }
 
     @Override
@@ -91,14 +138,50 @@ public class PartitionedOutputInfo
                 .add("rowsAdded", rowsAdded)
                 .add("pagesAdded", pagesAdded)
                 .add("outputBufferPeakMemoryUsage", outputBufferPeakMemoryUsage)
+                .add("partitionRowCounts", partitionRowCounts)
+                .add("hotKeys", hotKeys)
                 .toString();
     }
 
     public static Supplier<PartitionedOutputInfo> createPartitionedOutputInfoSupplier(AtomicLong rowsAdded, AtomicLong pagesAdded, OutputBuffer outputBuffer)
+    {
+        return createPartitionedOutputInfoSupplier(rowsAdded, pagesAdded, Optional.empty(), outputBuffer);
+    }
+
+    static Supplier<PartitionedOutputInfo> createPartitionedOutputInfoSupplier(AtomicLong rowsAdded, AtomicLong pagesAdded, Optional<PartitionSkewTracker> skewTracker, OutputBuffer outputBuffer)
     {
         requireNonNull(rowsAdded, "rowsAdded is null");
         requireNonNull(pagesAdded, "pagesAdded is null");
+        requireNonNull(skewTracker, "skewTracker is null");
         requireNonNull(outputBuffer, "outputBuffer is null");
-        return () -> new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get(), outputBuffer.getPeakMemoryUsage());
+        return () -> new PartitionedOutputInfo(
+                rowsAdded.get(),
+                pagesAdded.get(),
+                outputBuffer.getPeakMemoryUsage(),
+                skewTracker.map(PartitionSkewTracker::getPartitionRowCounts).orElse(new long[0]),
+                skewTracker.map(PartitionSkewTracker::getHotKeys).orElse(ImmutableList.of()));
+    }
+
+    private static List<PartitionHotKey> mergeHotKeys(List<PartitionHotKey> left, List<PartitionHotKey> right)
+    {
+        if (right.isEmpty()) {
+            return left;
+        }
+        if (left.isEmpty()) {
+            return right;
+        }
+
+        // the same key is sent to the same partition by every driver, so the key hash identifies it
+        Map<Long, PartitionHotKey> merged = new LinkedHashMap<>();
+        for (PartitionHotKey hotKey : ImmutableList.<PartitionHotKey>builder().addAll(left).addAll(right).build()) {
+            merged.merge(hotKey.getKeyHash(), hotKey, (first, second) -> new PartitionHotKey(
+                    first.getKeyHash(),
+                    first.getPartition(),
+                    first.getEstimatedRowCount() + second.getEstimatedRowCount()));
+        }
+        return merged.values().stream()
+                .sorted(comparingLong(PartitionHotKey::getEstimatedRowCount).reversed())
+                .limit(MAX_HOT_KEYS)
+                .collect(toImmutableList());
     }
 }
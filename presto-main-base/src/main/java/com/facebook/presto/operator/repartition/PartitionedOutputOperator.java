@@ -25,6 +25,7 @@ import com.facebook.presto.operator.DriverContext;
 import com.facebook.presto.operator.Operator;
 import com.facebook.presto.operator.OperatorContext;
 import com.facebook.presto.operator.OperatorFactory;
+import com.facebook.presto.operator.OutputBufferMetrics;
 import com.facebook.presto.operator.OutputFactory;
 import com.facebook.presto.operator.PartitionFunction;
 import com.facebook.presto.spi.page.PagesSerde;
@@ -48,8 +49,10 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static com.facebook.presto.SystemSessionProperties.isPartitionSkewTrackingEnabled;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
+import static com.facebook.presto.operator.repartition.PartitionSkewTracker.createPartitionSkewTracker;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -290,11 +293,13 @@ public class PartitionedOutputOperator
         @Nullable
         private final Block[] partitionConstantBlocks; // when null, no constants are present. Only non-null elements are constants
         private final PagesSerde serde;
+        private final OutputBufferMetrics outputBufferMetrics;
         private final PageBuilder[] pageBuilders;
         private final boolean replicatesAnyRow;
         private final int nullChannel; // when >= 0, send the position to every partition if this channel is null
         private final AtomicLong rowsAdded = new AtomicLong();
         private final AtomicLong pagesAdded = new AtomicLong();
+        private final Optional<PartitionSkewTracker> skewTracker;
         private boolean hasAnyRowBeenReplicated;
         private final OperatorContext operatorContext;
         private final LocalMemoryContext systemMemoryContext;
@@ -326,8 +331,9 @@ public class PartitionedOutputOperator
             this.nullChannel = requireNonNull(nullChannel, "nullChannel is null").orElse(-1);
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.sourceTypes = requireNonNull(sourceTypes, "sourceTypes is null").toArray(new Type[0]);
-            this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde();
             this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+            this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde(operatorContext.getRuntimeStats());
+            this.outputBufferMetrics = new OutputBufferMetrics(outputBuffer, operatorContext.getRuntimeStats());
             this.systemMemoryContext = operatorContext.localSystemMemoryContext();
             this.systemMemoryContext.setBytes(getRetainedSizeInBytes());
 
@@ -347,6 +353,12 @@ public class PartitionedOutputOperator
             for (int i = 0; i < partitionCount; i++) {
                 pageBuilders[i] = PageBuilder.withMaxPageSize(pageSize, sourceTypes);
             }
+            if (isPartitionSkewTrackingEnabled(operatorContext.getSession())) {
+                this.skewTracker = Optional.of(createPartitionSkewTracker(partitionCount, sourceTypes, partitionChannels, partitionConstants));
+            }
+            else {
+                this.skewTracker = Optional.empty();
+            }
         }
 
         public void zeroMemoryContext()
@@ -356,7 +368,7 @@ public class PartitionedOutputOperator
 
         public ListenableFuture<?> isFull()
         {
-            return outputBuffer.isFull();
+            return outputBufferMetrics.recordBlocked(outputBuffer.isFull());
         }
 
         public long getSizeInBytes()
@@ -389,7 +401,7 @@ public class PartitionedOutputOperator
         public Supplier<PartitionedOutputInfo> getPartitionedOutputInfoSupplier()
         {
             // Must be a separate static method to avoid embedding references to "this" in the supplier
-            return PartitionedOutputInfo.createPartitionedOutputInfoSupplier(rowsAdded, pagesAdded, outputBuffer);
+            return PartitionedOutputInfo.createPartitionedOutputInfoSupplier(rowsAdded, pagesAdded, skewTracker, outputBuffer);
         }
 
         public void partitionPage(Page page)
@@ -425,6 +437,9 @@ public class PartitionedOutputOperator
                     else {
                         int partition = partitionFunction.getPartition(partitionFunctionArgs, position);
                         appendRow(pageBuilders[partition], page, position);
+                        if (skewTracker.isPresent()) {
+                            skewTracker.get().addRow(partitionFunctionArgs, position, partition);
+                        }
                     }
                 }
             }
@@ -432,8 +447,12 @@ public class PartitionedOutputOperator
                 for (; position < page.getPositionCount(); position++) {
                     int partition = partitionFunction.getPartition(partitionFunctionArgs, position);
                     appendRow(pageBuilders[partition], page, position);
+                    if (skewTracker.isPresent()) {
+                        skewTracker.get().addRow(partitionFunctionArgs, position, partition);
+                    }
                 }
             }
+            skewTracker.ifPresent(PartitionSkewTracker::publishHotKeys);
 
             // We track the memory before it's flushed to avoid under counting when the page size is large.
             systemMemoryContext.setBytes(getRetainedSizeInBytes());
@@ -483,6 +502,7 @@ public class PartitionedOutputOperator
                     operatorContext.recordOutput(pagePartition.getSizeInBytes(), pagePartition.getPositionCount());
 
                     outputBuffer.enqueue(operatorContext.getDriverContext().getLifespan(), partition, splitAndSerializePage(pagePartition));
+                    outputBufferMetrics.recordEnqueued();
                     pagesAdded.incrementAndGet();
                     rowsAdded.addAndGet(pagePartition.getPositionCount());
                 }
@@ -494,7 +514,7 @@ public class PartitionedOutputOperator
             List<Page> pagesFromSplitting = splitPage(pagePartition, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
             ImmutableList.Builder<SerializedPage> builder = ImmutableList.builderWithExpectedSize(pagesFromSplitting.size());
             for (Page p : pagesFromSplitting) {
-                builder.add(serde.serialize(p));
+                builder.add(outputBufferMetrics.serialize(serde, p));
             }
             return builder.build();
         }
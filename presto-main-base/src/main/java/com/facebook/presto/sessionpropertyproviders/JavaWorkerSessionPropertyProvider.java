@@ -42,10 +42,14 @@ public class JavaWorkerSessionPropertyProvider
     public static final String DISTINCT_AGGREGATION_LARGE_BLOCK_SIZE_THRESHOLD = "distinct_aggregation_large_block_size_threshold";
     public static final String ORDER_BY_AGGREGATION_SPILL_ENABLED = "order_by_aggregation_spill_enabled";
     public static final String WINDOW_SPILL_ENABLED = "window_spill_enabled";
+    public static final String DISTINCT_OPERATOR_SPILL_ENABLED = "distinct_operator_spill_enabled";
+    public static final String ROW_NUMBER_SPILL_ENABLED = "row_number_spill_enabled";
     public static final String ORDER_BY_SPILL_ENABLED = "order_by_spill_enabled";
     public static final String AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT = "aggregation_operator_unspill_memory_limit";
     public static final String TOPN_OPERATOR_UNSPILL_MEMORY_LIMIT = "topn_operator_unspill_memory_limit";
     public static final String TEMP_STORAGE_SPILLER_BUFFER_SIZE = "temp_storage_spiller_buffer_size";
+    public static final String RADIX_PARTITIONED_AGGREGATION_ENABLED = "radix_partitioned_aggregation_enabled";
+    public static final String RADIX_AGGREGATION_PARTITION_SIZE = "radix_aggregation_partition_size";
     private final List<PropertyMetadata<?>> sessionProperties;
 
     @Inject
@@ -97,6 +101,16 @@ public class JavaWorkerSessionPropertyProvider
                         "Enable window spilling if spill_enabled",
                         javaFeaturesConfig.isWindowSpillEnabled(),
                         nativeExecution),
+                booleanProperty(
+                        DISTINCT_OPERATOR_SPILL_ENABLED,
+                        "Enable mark distinct and distinct limit spilling if spill_enabled",
+                        javaFeaturesConfig.isDistinctOperatorSpillEnabled(),
+                        nativeExecution),
+                booleanProperty(
+                        ROW_NUMBER_SPILL_ENABLED,
+                        "Enable row number spilling if spill_enabled",
+                        javaFeaturesConfig.isRowNumberSpillEnabled(),
+                        nativeExecution),
                 booleanProperty(
                         ORDER_BY_SPILL_ENABLED,
                         "Enable order by spilling if spill_enabled",
@@ -128,6 +142,20 @@ public class JavaWorkerSessionPropertyProvider
                         nodeSpillConfig.getTempStorageBufferSize(),
                         nativeExecution,
                         value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
+                booleanProperty(
+                        RADIX_PARTITIONED_AGGREGATION_ENABLED,
+                        "Experimental: Partition partial aggregations by group hash into cache sized hash tables that are flushed independently",
+                        javaFeaturesConfig.isRadixPartitionedAggregationEnabled(),
+                        nativeExecution),
+                new PropertyMetadata<>(
+                        RADIX_AGGREGATION_PARTITION_SIZE,
+                        "Experimental: Size of each hash table of a radix partitioned partial aggregation",
+                        VARCHAR,
+                        DataSize.class,
+                        javaFeaturesConfig.getRadixAggregationPartitionSize(),
+                        nativeExecution,
+                        value -> DataSize.valueOf((String) value),
                         DataSize::toString));
     }
 
@@ -177,6 +205,16 @@ public class JavaWorkerSessionPropertyProvider
         return session.getSystemProperty(WINDOW_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
     }
 
+    public static boolean isDistinctOperatorSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(DISTINCT_OPERATOR_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
+    public static boolean isRowNumberSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(ROW_NUMBER_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
     public static boolean isOrderBySpillEnabled(Session session)
     {
         return session.getSystemProperty(ORDER_BY_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
@@ -202,4 +240,16 @@ public class JavaWorkerSessionPropertyProvider
         checkArgument(tempStorageSpillerBufferSize.toBytes() >= 0, "%s must be positive", TEMP_STORAGE_SPILLER_BUFFER_SIZE);
         return tempStorageSpillerBufferSize;
     }
+
+    public static boolean isRadixPartitionedAggregationEnabled(Session session)
+    {
+        return session.getSystemProperty(RADIX_PARTITIONED_AGGREGATION_ENABLED, Boolean.class);
+    }
+
+    public static DataSize getRadixAggregationPartitionSize(Session session)
+    {
+        DataSize partitionSize = session.getSystemProperty(RADIX_AGGREGATION_PARTITION_SIZE, DataSize.class);
+        checkArgument(partitionSize.toBytes() > 0, "%s must be positive", RADIX_AGGREGATION_PARTITION_SIZE);
+        return partitionSize;
+    }
 }
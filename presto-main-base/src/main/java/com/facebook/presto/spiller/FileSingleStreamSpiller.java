@@ -19,8 +19,11 @@ import com.facebook.presto.operator.SpillContext;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.page.PagesSerde;
 import com.facebook.presto.spi.page.PagesSerdeUtil;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.spiller.SpillCipher;
+import com.facebook.presto.spiller.SpillPathManager.SpillPath;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closer;
@@ -31,6 +34,7 @@ import io.airlift.slice.InputStreamSliceInput;
 import io.airlift.slice.OutputStreamSliceOutput;
 import io.airlift.slice.SliceOutput;
 
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import java.io.Closeable;
@@ -39,9 +43,11 @@ import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
@@ -49,8 +55,11 @@ import static com.facebook.presto.spi.StandardErrorCode.GENERIC_SPILL_FAILURE;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPage;
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Iterators.concat;
 import static com.google.common.collect.Iterators.transform;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.lang.String.format;
 import static java.nio.file.StandardOpenOption.APPEND;
 import static java.util.Objects.requireNonNull;
@@ -62,15 +71,24 @@ public class FileSingleStreamSpiller
     @VisibleForTesting
     static final int BUFFER_SIZE = 4 * 1024;
 
-    private final FileHolder targetFile;
+    private final Supplier<SpillPath> nextSpillPath;
+    private final long stripeSizeInBytes;
     private final Closer closer = Closer.create();
     private final PagesSerde serde;
     private final SpillerStats spillerStats;
     private final SpillContext localSpillContext;
     private final LocalMemoryContext memoryContext;
     private final Optional<SpillCipher> spillCipher;
+    private final int readAheadPages;
 
-    private final ListeningExecutorService executor;
+    @GuardedBy("this")
+    private final List<FileHolder> stripeFiles = new ArrayList<>();
+    @GuardedBy("this")
+    private boolean closed;
+
+    // the path of the last stripe, only changed by the spill in progress
+    private SpillPath currentPath;
+    private long currentStripeSize;
 
     private boolean writable = true;
     private boolean committed;
@@ -86,13 +104,34 @@ public class FileSingleStreamSpiller
             LocalMemoryContext memoryContext,
             Optional<SpillCipher> spillCipher)
     {
+        this(serde, Suppliers.ofInstance(new SpillPath(spillPath, executor)), Long.MAX_VALUE, spillerStats, spillContext, memoryContext, spillCipher, 0);
+    }
+
+    /**
+     * @param nextSpillPath supplies the path of every new stripe
+     * @param stripeSizeInBytes the size after which the spill continues in a new file on the next spill path
+     */
+    FileSingleStreamSpiller(
+            PagesSerde serde,
+            Supplier<SpillPath> nextSpillPath,
+            long stripeSizeInBytes,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext,
+            Optional<SpillCipher> spillCipher,
+            int readAheadPages)
+    {
+        checkArgument(stripeSizeInBytes > 0, "stripeSizeInBytes must be positive");
+        checkArgument(readAheadPages >= 0, "readAheadPages is negative");
+        this.nextSpillPath = requireNonNull(nextSpillPath, "nextSpillPath is null");
+        this.stripeSizeInBytes = stripeSizeInBytes;
         this.serde = requireNonNull(serde, "serde is null");
-        this.executor = requireNonNull(executor, "executor is null");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats is null");
         this.localSpillContext = spillContext.newLocalSpillContext();
         this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
         this.spillCipher = requireNonNull(spillCipher, "spillCipher is null");
         checkState(!spillCipher.isPresent() || !spillCipher.get().isDestroyed(), "spillCipher is already destroyed");
+        this.readAheadPages = readAheadPages;
         this.spillCipher.ifPresent(cipher -> closer.register(cipher::destroy));
         // HACK!
         // The writePages() method is called in a separate thread pool and it's possible that
@@ -105,12 +144,8 @@ public class FileSingleStreamSpiller
         // before/after the spiller thread allocates that memory -- -- whether before or after depends on whether writePages() is in the
         // middle of execution when close() is called (note that this applies to both readPages() and writePages() methods).
         this.memoryContext.setBytes(BUFFER_SIZE);
-        try {
-            this.targetFile = closer.register(new FileHolder(Files.createTempFile(spillPath, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX)));
-        }
-        catch (IOException e) {
-            throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to create spill file: %s", e.getMessage()), e);
-        }
+        this.currentPath = nextSpillPath.get();
+        addStripe(currentPath);
     }
 
     @Override
@@ -118,10 +153,43 @@ public class FileSingleStreamSpiller
     {
         requireNonNull(pageIterator, "pageIterator is null");
         checkNoSpillInProgress();
-        spillInProgress = executor.submit(() -> writePages(pageIterator));
+        // page serialization requires  page.getSizeInBytes() + Integer.BYTES to fit in an integer
+        Iterator<Page> splitPages = concat(transform(pageIterator, page -> {
+            spilledPagesInMemorySize += page.getSizeInBytes();
+            return splitPage(page, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).iterator();
+        }));
+        spillInProgress = spillToCurrentStripe(splitPages);
         return spillInProgress;
     }
 
+    /**
+     * Writes the pages to the current stripe on the executor of its spill path. Once the stripe is full,
+     * the remaining pages are written to a new stripe on the executor of the next spill path.
+     */
+    private ListenableFuture<Void> spillToCurrentStripe(Iterator<Page> pages)
+    {
+        SpillPath path = currentPath;
+        path.startWrite();
+        ListenableFuture<Boolean> stripeFull;
+        try {
+            stripeFull = path.getExecutor().submit(() -> writePages(pages, path));
+        }
+        catch (RuntimeException e) {
+            path.finishWrite();
+            throw e;
+        }
+        return Futures.transformAsync(
+                stripeFull,
+                full -> {
+                    if (!full) {
+                        return Futures.immediateFuture(null);
+                    }
+                    startNextStripe();
+                    return spillToCurrentStripe(pages);
+                },
+                directExecutor());
+    }
+
     @Override
     public long getSpilledPagesInMemorySize()
     {
@@ -138,7 +206,7 @@ public class FileSingleStreamSpiller
     @Override
     public ListenableFuture<List<Page>> getAllSpilledPages()
     {
-        return executor.submit(() -> ImmutableList.copyOf(getSpilledPages()));
+        return currentPath.getExecutor().submit(() -> ImmutableList.copyOf(getSpilledPages()));
     }
 
     @Override
@@ -147,28 +215,64 @@ public class FileSingleStreamSpiller
         committed = true;
     }
 
-    private void writePages(Iterator<Page> pageIterator)
-    {
-        checkState(writable, "Spilling no longer allowed. The spiller has been made non-writable on first read for subsequent reads to be consistent");
-        checkState(!committed, "Spilling no longer allowed. Spill file is already committed");
-        try (SliceOutput output = new OutputStreamSliceOutput(targetFile.newOutputStream(APPEND), BUFFER_SIZE)) {
-            while (pageIterator.hasNext()) {
-                Page page = pageIterator.next();
-                spilledPagesInMemorySize += page.getSizeInBytes();
-                // page serialization requires  page.getSizeInBytes() + Integer.BYTES to fit in an integer
-                splitPage(page, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).stream()
-                        .map(serde::serialize)
-                        .forEach(serializedPage -> {
-                            long pageSize = serializedPage.getSizeInBytes();
-                            localSpillContext.updateBytes(pageSize);
-                            spillerStats.addToTotalSpilledBytes(pageSize);
-                            writeSerializedPage(output, serializedPage);
-                        });
+    /**
+     * @return true if the stripe is full and there are pages left to write
+     */
+    private boolean writePages(Iterator<Page> pages, SpillPath path)
+    {
+        try {
+            checkState(writable, "Spilling no longer allowed. The spiller has been made non-writable on first read for subsequent reads to be consistent");
+            checkState(!committed, "Spilling no longer allowed. Spill file is already committed");
+            try (SliceOutput output = newStripeOutput()) {
+                while (pages.hasNext()) {
+                    if (currentStripeSize >= stripeSizeInBytes) {
+                        // continue in a new file, so that a large spill is spread over the spill paths
+                        return true;
+                    }
+                    SerializedPage serializedPage = serde.serialize(pages.next());
+                    long pageSize = serializedPage.getSizeInBytes();
+                    localSpillContext.updateBytes(pageSize);
+                    spillerStats.addToTotalSpilledBytes(pageSize);
+                    writeSerializedPage(output, serializedPage);
+                    currentStripeSize += pageSize;
+                }
             }
+            return false;
         }
         catch (UncheckedIOException | IOException e) {
             throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to spill pages: %s", e.getMessage()), e);
         }
+        finally {
+            path.finishWrite();
+        }
+    }
+
+    private SliceOutput newStripeOutput()
+            throws IOException
+    {
+        FileHolder stripeFile;
+        synchronized (this) {
+            stripeFile = stripeFiles.get(stripeFiles.size() - 1);
+        }
+        return new OutputStreamSliceOutput(stripeFile.newOutputStream(APPEND), BUFFER_SIZE);
+    }
+
+    private void startNextStripe()
+    {
+        currentPath = nextSpillPath.get();
+        currentStripeSize = 0;
+        addStripe(currentPath);
+    }
+
+    private synchronized void addStripe(SpillPath path)
+    {
+        checkState(!closed, "Spiller is already closed");
+        try {
+            stripeFiles.add(closer.register(new FileHolder(Files.createTempFile(path.getPath(), SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX))));
+        }
+        catch (IOException e) {
+            throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to create spill file: %s", e.getMessage()), e);
+        }
     }
 
     private Iterator<Page> readPages()
@@ -182,11 +286,22 @@ public class FileSingleStreamSpiller
             }
 
             checkState(committed, "Cannot read pages since spill file is not committed");
-            InputStream input = closer.register(targetFile.newInputStream());
-            Iterator<Page> deserializedPages = PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input, BUFFER_SIZE));
+            ImmutableList.Builder<InputStream> inputs = ImmutableList.builder();
+            synchronized (this) {
+                for (FileHolder stripeFile : stripeFiles) {
+                    inputs.add(closer.register(stripeFile.newInputStream()));
+                }
+            }
+            Iterator<Page> deserializedPages = concat(transform(
+                    inputs.build().iterator(),
+                    input -> closeWhenExhausted(PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input, BUFFER_SIZE)), input)));
             Iterator<Page> compactPages = transform(deserializedPages, Page::compact);
             spillerStats.addToTotalSpilledBytesRead(getSpilledPagesInMemorySize());
-            return closeWhenExhausted(compactPages, input);
+            if (readAheadPages > 0) {
+                // read and deserialize the following pages on the spill executor while the current page is processed
+                return closer.register(new ReadAheadPageIterator(compactPages, currentPath.getExecutor(), readAheadPages, memoryContext));
+            }
+            return compactPages;
         }
         catch (IOException e) {
             throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to read spilled pages: %s", e.getMessage()), e);
@@ -194,8 +309,9 @@ public class FileSingleStreamSpiller
     }
 
     @Override
-    public void close()
+    public synchronized void close()
     {
+        closed = true;
         closer.register(localSpillContext);
         closer.register(() -> memoryContext.setBytes(0));
         try {
@@ -20,9 +20,9 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.SpillContext;
-import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.page.PagesSerde;
 import com.facebook.presto.spi.spiller.SpillCipher;
+import com.facebook.presto.spiller.SpillPathManager.SpillPath;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
@@ -34,19 +34,18 @@ import javax.annotation.PreDestroy;
 
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
-import java.nio.file.FileStore;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
-import static com.facebook.presto.spi.StandardErrorCode.OUT_OF_SPILL_SPACE;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.lang.String.format;
 import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.delete;
-import static java.nio.file.Files.getFileStore;
 import static java.nio.file.Files.newDirectoryStream;
+import static java.util.Collections.nCopies;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 
@@ -61,27 +60,27 @@ public class FileSingleStreamSpillerFactory
     static final String SPILL_FILE_SUFFIX = ".bin";
     private static final String SPILL_FILE_GLOB = "spill*.bin";
 
-    private final ListeningExecutorService executor;
+    private final List<ListeningExecutorService> executors;
     private final PagesSerdeFactory serdeFactory;
-    private final List<Path> spillPaths;
+    private final SpillPathManager spillPathManager;
     private final SpillerStats spillerStats;
-    private final double maxUsedSpaceThreshold;
     private final boolean spillEncryptionEnabled;
-    private int roundRobinIndex;
+    private final int readAheadPages;
+    private final long stripeSizeInBytes;
 
     @Inject
     public FileSingleStreamSpillerFactory(BlockEncodingSerde blockEncodingSerde, SpillerStats spillerStats, FeaturesConfig featuresConfig, NodeSpillConfig nodeSpillConfig)
     {
         this(
-                listeningDecorator(newFixedThreadPool(
-                        requireNonNull(featuresConfig, "featuresConfig is null").getSpillerThreads(),
-                        daemonThreadsNamed("binary-spiller-%s"))),
+                createExecutors(requireNonNull(featuresConfig, "featuresConfig is null").getSpillerSpillPaths(), featuresConfig.getSpillerThreads()),
                 blockEncodingSerde,
                 spillerStats,
-                requireNonNull(featuresConfig, "featuresConfig is null").getSpillerSpillPaths(),
-                requireNonNull(featuresConfig, "featuresConfig is null").getSpillMaxUsedSpaceThreshold(),
+                featuresConfig.getSpillerSpillPaths(),
+                featuresConfig.getSpillMaxUsedSpaceThreshold(),
                 requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").getSpillCompressionCodec(),
-                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillEncryptionEnabled());
+                nodeSpillConfig.isSpillEncryptionEnabled(),
+                nodeSpillConfig.getSpillReadAheadPages(),
+                featuresConfig.getSpillerStripeSize().toBytes());
     }
 
     @VisibleForTesting
@@ -93,12 +92,54 @@ public class FileSingleStreamSpillerFactory
             double maxUsedSpaceThreshold,
             CompressionCodec spillCompressionCodec,
             boolean spillEncryptionEnabled)
+    {
+        this(executor, blockEncodingSerde, spillerStats, spillPaths, maxUsedSpaceThreshold, spillCompressionCodec, spillEncryptionEnabled, 0);
+    }
+
+    @VisibleForTesting
+    public FileSingleStreamSpillerFactory(
+            ListeningExecutorService executor,
+            BlockEncodingSerde blockEncodingSerde,
+            SpillerStats spillerStats,
+            List<Path> spillPaths,
+            double maxUsedSpaceThreshold,
+            CompressionCodec spillCompressionCodec,
+            boolean spillEncryptionEnabled,
+            int readAheadPages)
+    {
+        this(
+                nCopies(requireNonNull(spillPaths, "spillPaths is null").size(), requireNonNull(executor, "executor is null")),
+                blockEncodingSerde,
+                spillerStats,
+                spillPaths,
+                maxUsedSpaceThreshold,
+                spillCompressionCodec,
+                spillEncryptionEnabled,
+                readAheadPages,
+                Long.MAX_VALUE);
+    }
+
+    /**
+     * @param executors the executor used for each of {@code spillPaths}
+     */
+    @VisibleForTesting
+    public FileSingleStreamSpillerFactory(
+            List<ListeningExecutorService> executors,
+            BlockEncodingSerde blockEncodingSerde,
+            SpillerStats spillerStats,
+            List<Path> spillPaths,
+            double maxUsedSpaceThreshold,
+            CompressionCodec spillCompressionCodec,
+            boolean spillEncryptionEnabled,
+            int readAheadPages,
+            long stripeSizeInBytes)
     {
         this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), spillCompressionCodec);
-        this.executor = requireNonNull(executor, "executor is null");
+        this.executors = ImmutableList.copyOf(requireNonNull(executors, "executors is null"));
         this.spillerStats = requireNonNull(spillerStats, "spillerStats can not be null");
         requireNonNull(spillPaths, "spillPaths is null");
-        this.spillPaths = ImmutableList.copyOf(spillPaths);
+        checkArgument(executors.size() == spillPaths.size(), "expected an executor for each spill path");
+        checkArgument(stripeSizeInBytes > 0, "stripeSizeInBytes must be positive");
         spillPaths.forEach(path -> {
             try {
                 createDirectories(path);
@@ -112,21 +153,40 @@ public class FileSingleStreamSpillerFactory
                         format("spill path %s is not writable; adjust experimental.spiller-spill-path config property or filesystem permissions", path));
             }
         });
-        this.maxUsedSpaceThreshold = maxUsedSpaceThreshold;
+        ImmutableList.Builder<SpillPath> paths = ImmutableList.builder();
+        for (int i = 0; i < spillPaths.size(); i++) {
+            paths.add(new SpillPath(spillPaths.get(i), executors.get(i)));
+        }
+        this.spillPathManager = new SpillPathManager(paths.build(), maxUsedSpaceThreshold);
         this.spillEncryptionEnabled = spillEncryptionEnabled;
-        this.roundRobinIndex = 0;
+        this.readAheadPages = readAheadPages;
+        this.stripeSizeInBytes = stripeSizeInBytes;
+    }
+
+    private static List<ListeningExecutorService> createExecutors(List<Path> spillPaths, int threadsPerPath)
+    {
+        // a separate pool for every path, so that a saturated device does not hold up writes to the other ones
+        ImmutableList.Builder<ListeningExecutorService> executors = ImmutableList.builder();
+        for (int i = 0; i < spillPaths.size(); i++) {
+            executors.add(listeningDecorator(newFixedThreadPool(threadsPerPath, daemonThreadsNamed("binary-spiller-" + i + "-%s"))));
+        }
+        return executors.build();
     }
 
     @PostConstruct
     public void cleanupOldSpillFiles()
     {
-        spillPaths.forEach(FileSingleStreamSpillerFactory::cleanupOldSpillFiles);
+        spillPathManager.getSpillPaths().stream()
+                .map(SpillPath::getPath)
+                .forEach(FileSingleStreamSpillerFactory::cleanupOldSpillFiles);
     }
 
     @PreDestroy
     public void destroy()
     {
-        executor.shutdownNow();
+        executors.stream()
+                .distinct()
+                .forEach(ListeningExecutorService::shutdownNow);
     }
 
     private static void cleanupOldSpillFiles(Path path)
@@ -155,34 +215,6 @@ public class FileSingleStreamSpillerFactory
             spillCipher = Optional.of(new AesSpillCipher());
         }
         PagesSerde serde = serdeFactory.createPagesSerdeForSpill(spillCipher);
-        return new FileSingleStreamSpiller(serde, executor, getNextSpillPath(), spillerStats, spillContext, memoryContext, spillCipher);
-    }
-
-    private synchronized Path getNextSpillPath()
-    {
-        int spillPathsCount = spillPaths.size();
-        for (int i = 0; i < spillPathsCount; ++i) {
-            int pathIndex = (roundRobinIndex + i) % spillPathsCount;
-            Path path = spillPaths.get(pathIndex);
-            if (hasEnoughDiskSpace(path)) {
-                roundRobinIndex = (roundRobinIndex + i + 1) % spillPathsCount;
-                return path;
-            }
-        }
-        if (spillPaths.isEmpty()) {
-            throw new PrestoException(OUT_OF_SPILL_SPACE, "No spill paths configured");
-        }
-        throw new PrestoException(OUT_OF_SPILL_SPACE, "No free space available for spill");
-    }
-
-    private boolean hasEnoughDiskSpace(Path path)
-    {
-        try {
-            FileStore fileStore = getFileStore(path);
-            return fileStore.getUsableSpace() > fileStore.getTotalSpace() * (1.0 - maxUsedSpaceThreshold);
-        }
-        catch (IOException e) {
-            throw new PrestoException(OUT_OF_SPILL_SPACE, "Cannot determine free space for spill", e);
-        }
+        return new FileSingleStreamSpiller(serde, spillPathManager::getNextSpillPath, stripeSizeInBytes, spillerStats, spillContext, memoryContext, spillCipher, readAheadPages);
     }
 }
@@ -14,9 +14,11 @@
 package com.facebook.presto.spiller;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.presto.CompressionCodec;
 import io.airlift.units.DataSize;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 public class NodeSpillConfig
@@ -28,6 +30,7 @@ public class NodeSpillConfig
 
     private CompressionCodec spillCompressionCodec = CompressionCodec.NONE;
     private boolean spillEncryptionEnabled;
+    private int spillReadAheadPages;
 
     @NotNull
     public DataSize getMaxSpillPerNode()
@@ -92,6 +95,20 @@ public class NodeSpillConfig
         return this;
     }
 
+    @Min(0)
+    public int getSpillReadAheadPages()
+    {
+        return spillReadAheadPages;
+    }
+
+    @Config("experimental.spill-read-ahead-pages")
+    @ConfigDescription("Number of spilled pages to read and deserialize ahead of the operator consuming them")
+    public NodeSpillConfig setSpillReadAheadPages(int spillReadAheadPages)
+    {
+        this.spillReadAheadPages = spillReadAheadPages;
+        return this;
+    }
+
     @NotNull
     public DataSize getTempStorageBufferSize()
     {
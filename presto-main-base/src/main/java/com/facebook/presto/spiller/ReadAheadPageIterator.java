@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads spilled pages on the spill executor ahead of the consumer, so that reading and
+ * deserializing the next pages overlaps with processing the current one. At most
+ * {@code readAheadPages} pages are buffered and their size is reserved in the memory context.
+ * <p>
+ * {@link #hasNext()} and {@link #next()} block until a page has been read. Callers that must not
+ * block the driver should wait for {@link #isReady()} first. The iterator must be consumed by
+ * a single thread.
+ */
+public class ReadAheadPageIterator
+        extends AbstractIterator<Page>
+        implements Closeable
+{
+    // only accessed by the read in progress, and there is at most one
+    private final Iterator<Page> source;
+    private final ListeningExecutorService executor;
+    private final int readAheadPages;
+    private final LocalMemoryContext memoryContext;
+    private final long baseReservation;
+
+    @GuardedBy("this")
+    private final Queue<Page> bufferedPages = new ArrayDeque<>();
+    @GuardedBy("this")
+    private long bufferedBytes;
+    @GuardedBy("this")
+    private boolean sourceFinished;
+    @GuardedBy("this")
+    private boolean readFailed;
+    @GuardedBy("this")
+    private boolean closed;
+    @GuardedBy("this")
+    private ListenableFuture<?> readInProgress = immediateFuture(null);
+
+    public ReadAheadPageIterator(Iterator<Page> source, ListeningExecutorService executor, int readAheadPages, LocalMemoryContext memoryContext)
+    {
+        checkArgument(readAheadPages > 0, "readAheadPages must be positive");
+        this.source = requireNonNull(source, "source is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        this.readAheadPages = readAheadPages;
+        this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+        this.baseReservation = memoryContext.getBytes();
+        scheduleRead();
+    }
+
+    /**
+     * Returns a future that completes once the next call to {@link #hasNext()} does not block.
+     */
+    public ListenableFuture<?> isReady()
+    {
+        ListenableFuture<?> ready;
+        synchronized (this) {
+            if (!bufferedPages.isEmpty() || sourceFinished || readFailed || closed) {
+                ready = immediateFuture(null);
+            }
+            else {
+                scheduleRead();
+                ready = readInProgress;
+            }
+        }
+        updateMemoryReservation();
+        return ready;
+    }
+
+    @Override
+    protected Page computeNext()
+    {
+        while (true) {
+            ListenableFuture<?> read;
+            synchronized (this) {
+                Page page = bufferedPages.poll();
+                if (page != null) {
+                    bufferedBytes -= page.getRetainedSizeInBytes();
+                    scheduleRead();
+                    updateMemoryReservation();
+                    return page;
+                }
+                if (sourceFinished || closed) {
+                    updateMemoryReservation();
+                    return endOfData();
+                }
+                scheduleRead();
+                read = readInProgress;
+            }
+            // propagates the failure of the read
+            getFutureValue(read);
+        }
+    }
+
+    /**
+     * Stops reading ahead and drops the buffered pages. The memory reservation is released
+     * by the owner of the memory context.
+     */
+    @Override
+    public synchronized void close()
+    {
+        closed = true;
+        bufferedPages.clear();
+        bufferedBytes = 0;
+    }
+
+    private synchronized void scheduleRead()
+    {
+        if (closed || sourceFinished || readFailed || bufferedPages.size() >= readAheadPages || !readInProgress.isDone()) {
+            return;
+        }
+        ListenableFuture<?> read = executor.submit(this::readNextPage);
+        readInProgress = read;
+        // keep reading until the buffer is full
+        read.addListener(this::scheduleRead, directExecutor());
+    }
+
+    private void readNextPage()
+    {
+        Page page;
+        try {
+            page = source.hasNext() ? source.next() : null;
+        }
+        catch (RuntimeException e) {
+            synchronized (this) {
+                readFailed = true;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (page == null) {
+                sourceFinished = true;
+            }
+            else if (!closed) {
+                bufferedPages.add(page);
+                bufferedBytes += page.getRetainedSizeInBytes();
+            }
+        }
+    }
+
+    // called by the consuming thread only, as the memory context is not thread safe
+    private void updateMemoryReservation()
+    {
+        long bytes;
+        synchronized (this) {
+            bytes = bufferedBytes;
+        }
+        memoryContext.setBytes(baseReservation + bytes);
+    }
+}
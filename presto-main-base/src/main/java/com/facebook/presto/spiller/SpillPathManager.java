@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.facebook.presto.spi.PrestoException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.facebook.presto.spi.StandardErrorCode.OUT_OF_SPILL_SPACE;
+import static java.nio.file.Files.getFileStore;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Places spill files on the configured spill paths. Every path has its own executor, so each
+ * device gets its own write queue, and a new spill file goes to the path with the fewest queued
+ * and running writes among the paths with enough free space. Ties are broken round robin.
+ */
+final class SpillPathManager
+{
+    private final List<SpillPath> spillPaths;
+    private final double maxUsedSpaceThreshold;
+
+    @GuardedBy("this")
+    private int roundRobinIndex;
+
+    public SpillPathManager(List<SpillPath> spillPaths, double maxUsedSpaceThreshold)
+    {
+        this.spillPaths = ImmutableList.copyOf(requireNonNull(spillPaths, "spillPaths is null"));
+        this.maxUsedSpaceThreshold = maxUsedSpaceThreshold;
+    }
+
+    public List<SpillPath> getSpillPaths()
+    {
+        return spillPaths;
+    }
+
+    public synchronized SpillPath getNextSpillPath()
+    {
+        if (spillPaths.isEmpty()) {
+            throw new PrestoException(OUT_OF_SPILL_SPACE, "No spill paths configured");
+        }
+
+        int spillPathsCount = spillPaths.size();
+        SpillPath selected = null;
+        int selectedIndex = -1;
+        for (int i = 0; i < spillPathsCount; ++i) {
+            int pathIndex = (roundRobinIndex + i) % spillPathsCount;
+            SpillPath spillPath = spillPaths.get(pathIndex);
+            if ((selected == null || spillPath.getPendingWrites() < selected.getPendingWrites()) && hasEnoughDiskSpace(spillPath.getPath())) {
+                selected = spillPath;
+                selectedIndex = pathIndex;
+            }
+        }
+        if (selected == null) {
+            throw new PrestoException(OUT_OF_SPILL_SPACE, "No free space available for spill");
+        }
+        roundRobinIndex = (selectedIndex + 1) % spillPathsCount;
+        return selected;
+    }
+
+    private boolean hasEnoughDiskSpace(Path path)
+    {
+        try {
+            FileStore fileStore = getFileStore(path);
+            return fileStore.getUsableSpace() > fileStore.getTotalSpace() * (1.0 - maxUsedSpaceThreshold);
+        }
+        catch (IOException e) {
+            throw new PrestoException(OUT_OF_SPILL_SPACE, "Cannot determine free space for spill", e);
+        }
+    }
+
+    static final class SpillPath
+    {
+        private final Path path;
+        private final ListeningExecutorService executor;
+        private final AtomicInteger pendingWrites = new AtomicInteger();
+
+        public SpillPath(Path path, ListeningExecutorService executor)
+        {
+            this.path = requireNonNull(path, "path is null");
+            this.executor = requireNonNull(executor, "executor is null");
+        }
+
+        public Path getPath()
+        {
+            return path;
+        }
+
+        public ListeningExecutorService getExecutor()
+        {
+            return executor;
+        }
+
+        /**
+         * Number of writes queued or running on this path.
+         */
+        public int getPendingWrites()
+        {
+            return pendingWrites.get();
+        }
+
+        public void startWrite()
+        {
+            pendingWrites.incrementAndGet();
+        }
+
+        public void finishWrite()
+        {
+            pendingWrites.decrementAndGet();
+        }
+    }
+}
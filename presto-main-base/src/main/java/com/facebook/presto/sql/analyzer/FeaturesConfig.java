@@ -27,6 +27,7 @@ import com.google.common.collect.ImmutableList;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.airlift.units.MaxDataSize;
+import io.airlift.units.MinDataSize;
 
 import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.DecimalMax;
@@ -44,6 +45,8 @@ import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrate
 import static com.facebook.presto.sql.expressions.ExpressionOptimizerManager.DEFAULT_EXPRESSION_OPTIMIZER_NAME;
 import static com.facebook.presto.sql.tree.CreateView.Security.DEFINER;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
@@ -79,6 +82,7 @@ public class FeaturesConfig
     private JoinDistributionType joinDistributionType = JoinDistributionType.AUTOMATIC;
     private DataSize joinMaxBroadcastTableSize = new DataSize(100, MEGABYTE);
     private boolean sizeBasedJoinDistributionTypeEnabled = true;
+    private boolean shareBroadcastJoinLookupSource;
     private boolean colocatedJoinsEnabled = true;
     private boolean groupedExecutionEnabled = true;
     private boolean recoverableGroupedExecutionEnabled;
@@ -133,6 +137,7 @@ public class FeaturesConfig
     private List<Path> spillerSpillPaths = ImmutableList.of();
     private int spillerThreads = 4;
     private double spillMaxUsedSpaceThreshold = 0.9;
+    private DataSize spillerStripeSize = new DataSize(1, GIGABYTE);
     private boolean iterativeOptimizerEnabled = true;
     private boolean runtimeOptimizerEnabled;
     private boolean enableStatsCalculator = true;
@@ -165,6 +170,7 @@ public class FeaturesConfig
     private int dynamicFilteringMaxPerDriverRowCount = 100;
     private DataSize dynamicFilteringMaxPerDriverSize = new DataSize(10, KILOBYTE);
     private int dynamicFilteringRangeRowLimitPerDriver;
+    private DataSize dynamicFilteringBloomFilterSize = new DataSize(0, BYTE);
 
     private boolean fragmentResultCachingEnabled;
 
@@ -177,6 +183,8 @@ public class FeaturesConfig
     private boolean jsonSerdeCodeGenerationEnabled;
     private int maxConcurrentMaterializations = 3;
     private boolean optimizedRepartitioningEnabled;
+    private boolean optimizedRepartitioningPreserveDictionaries;
+    private boolean partitionSkewTrackingEnabled;
 
     private boolean pushdownSubfieldsEnabled;
     private boolean pushdownSubfieldsFromLambdaEnabled;
@@ -201,6 +209,7 @@ public class FeaturesConfig
 
     private boolean spoolingOutputBufferEnabled;
     private DataSize spoolingOutputBufferThreshold = new DataSize(8, MEGABYTE);
+    private DataSize spoolingOutputBufferReadCacheSize = new DataSize(16, MEGABYTE);
     private String spoolingOutputBufferTempStorage = "local";
 
     private String warnOnNoTableLayoutFilter = "";
@@ -576,6 +585,19 @@ public class FeaturesConfig
         return sizeBasedJoinDistributionTypeEnabled;
     }
 
+    public boolean isShareBroadcastJoinLookupSource()
+    {
+        return shareBroadcastJoinLookupSource;
+    }
+
+    @Config("share-broadcast-join-lookup-source")
+    @ConfigDescription("Share the lookup source of a broadcast join between the tasks of a stage running on the same worker")
+    public FeaturesConfig setShareBroadcastJoinLookupSource(boolean shareBroadcastJoinLookupSource)
+    {
+        this.shareBroadcastJoinLookupSource = shareBroadcastJoinLookupSource;
+        return this;
+    }
+
     public boolean isGroupedExecutionEnabled()
     {
         return groupedExecutionEnabled;
@@ -1414,6 +1436,21 @@ public class FeaturesConfig
         return this;
     }
 
+    @NotNull
+    @MinDataSize("1MB")
+    public DataSize getSpillerStripeSize()
+    {
+        return spillerStripeSize;
+    }
+
+    @Config("experimental.spiller-stripe-size")
+    @ConfigDescription("Size after which a spill continues in a new file on the least loaded spill path")
+    public FeaturesConfig setSpillerStripeSize(DataSize spillerStripeSize)
+    {
+        this.spillerStripeSize = spillerStripeSize;
+        return this;
+    }
+
     public boolean isEnableDynamicFiltering()
     {
         return enableDynamicFiltering;
@@ -1468,6 +1505,20 @@ public class FeaturesConfig
         return this;
     }
 
+    @MaxDataSize("64MB")
+    public DataSize getDynamicFilteringBloomFilterSize()
+    {
+        return dynamicFilteringBloomFilterSize;
+    }
+
+    @Config("dynamic-filtering-bloom-filter-size")
+    @ConfigDescription("Size of the Bloom filter of build-side values collected for dynamic filtering per-driver, used when the values do not fit in the collection limits. Zero disables the Bloom filter")
+    public FeaturesConfig setDynamicFilteringBloomFilterSize(DataSize dynamicFilteringBloomFilterSize)
+    {
+        this.dynamicFilteringBloomFilterSize = dynamicFilteringBloomFilterSize;
+        return this;
+    }
+
     public boolean isFragmentResultCachingEnabled()
     {
         return fragmentResultCachingEnabled;
@@ -1744,6 +1795,32 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isOptimizedRepartitioningPreserveDictionaries()
+    {
+        return optimizedRepartitioningPreserveDictionaries;
+    }
+
+    @Config("experimental.optimized-repartitioning-preserve-dictionaries")
+    @ConfigDescription("Experimental: Send dictionary and run length encoded columns to the partitions without flattening them when using optimized repartitioning")
+    public FeaturesConfig setOptimizedRepartitioningPreserveDictionaries(boolean optimizedRepartitioningPreserveDictionaries)
+    {
+        this.optimizedRepartitioningPreserveDictionaries = optimizedRepartitioningPreserveDictionaries;
+        return this;
+    }
+
+    public boolean isPartitionSkewTrackingEnabled()
+    {
+        return partitionSkewTrackingEnabled;
+    }
+
+    @Config("experimental.partition-skew-tracking-enabled")
+    @ConfigDescription("Experimental: Report the rows sent to each partition and the hot partitioning keys of partitioned outputs")
+    public FeaturesConfig setPartitionSkewTrackingEnabled(boolean partitionSkewTrackingEnabled)
+    {
+        this.partitionSkewTrackingEnabled = partitionSkewTrackingEnabled;
+        return this;
+    }
+
     public boolean isListBuiltInFunctionsOnly()
     {
         return listBuiltInFunctionsOnly;
@@ -1976,6 +2053,18 @@ public class FeaturesConfig
         return this;
     }
 
+    public DataSize getSpoolingOutputBufferReadCacheSize()
+    {
+        return spoolingOutputBufferReadCacheSize;
+    }
+
+    @Config("spooling-output-buffer-read-cache-size")
+    public FeaturesConfig setSpoolingOutputBufferReadCacheSize(DataSize spoolingOutputBufferReadCacheSize)
+    {
+        this.spoolingOutputBufferReadCacheSize = spoolingOutputBufferReadCacheSize;
+        return this;
+    }
+
     public String getSpoolingOutputBufferTempStorage()
     {
         return spoolingOutputBufferTempStorage;
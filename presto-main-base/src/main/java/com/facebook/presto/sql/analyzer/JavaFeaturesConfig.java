@@ -29,9 +29,13 @@ public class JavaFeaturesConfig
     private boolean orderByAggregationSpillEnabled = true;
     private boolean orderBySpillEnabled = true;
     private boolean windowSpillEnabled = true;
+    private boolean distinctOperatorSpillEnabled = true;
+    private boolean rowNumberSpillEnabled = true;
     private DataSize distinctAggregationLargeBlockSizeThreshold = new DataSize(50, MEGABYTE);
     private DataSize topNOperatorUnspillMemoryLimit = new DataSize(4, MEGABYTE);
     private DataSize aggregationOperatorUnspillMemoryLimit = new DataSize(4, MEGABYTE);
+    private boolean radixPartitionedAggregationEnabled;
+    private DataSize radixAggregationPartitionSize = new DataSize(1, MEGABYTE);
 
     public boolean isOrderBySpillEnabled()
     {
@@ -59,6 +63,32 @@ public class JavaFeaturesConfig
         return this;
     }
 
+    public boolean isDistinctOperatorSpillEnabled()
+    {
+        return distinctOperatorSpillEnabled;
+    }
+
+    @Config("experimental.distinct-operator-spill-enabled")
+    @ConfigDescription("Enable MarkDistinct and DistinctLimit Operator Spilling if spill is enabled")
+    public JavaFeaturesConfig setDistinctOperatorSpillEnabled(boolean distinctOperatorSpillEnabled)
+    {
+        this.distinctOperatorSpillEnabled = distinctOperatorSpillEnabled;
+        return this;
+    }
+
+    public boolean isRowNumberSpillEnabled()
+    {
+        return rowNumberSpillEnabled;
+    }
+
+    @Config("experimental.row-number-spill-enabled")
+    @ConfigDescription("Enable RowNumber Operator Spilling if spill is enabled")
+    public JavaFeaturesConfig setRowNumberSpillEnabled(boolean rowNumberSpillEnabled)
+    {
+        this.rowNumberSpillEnabled = rowNumberSpillEnabled;
+        return this;
+    }
+
     public boolean isOrderByAggregationSpillEnabled()
     {
         return orderByAggregationSpillEnabled;
@@ -173,4 +203,30 @@ public class JavaFeaturesConfig
         this.topNOperatorUnspillMemoryLimit = aggregationOperatorUnspillMemoryLimit;
         return this;
     }
+
+    public boolean isRadixPartitionedAggregationEnabled()
+    {
+        return radixPartitionedAggregationEnabled;
+    }
+
+    @Config("experimental.radix-partitioned-aggregation-enabled")
+    @ConfigDescription("Partition partial aggregations by group hash into cache sized hash tables that are flushed independently")
+    public JavaFeaturesConfig setRadixPartitionedAggregationEnabled(boolean radixPartitionedAggregationEnabled)
+    {
+        this.radixPartitionedAggregationEnabled = radixPartitionedAggregationEnabled;
+        return this;
+    }
+
+    public DataSize getRadixAggregationPartitionSize()
+    {
+        return radixAggregationPartitionSize;
+    }
+
+    @Config("experimental.radix-aggregation-partition-size")
+    @ConfigDescription("Size of each hash table of a radix partitioned partial aggregation")
+    public JavaFeaturesConfig setRadixAggregationPartitionSize(DataSize radixAggregationPartitionSize)
+    {
+        this.radixAggregationPartitionSize = radixAggregationPartitionSize;
+        return this;
+    }
 }
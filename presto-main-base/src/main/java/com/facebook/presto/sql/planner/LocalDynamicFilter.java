@@ -13,10 +13,13 @@
  */
 package com.facebook.presto.sql.planner;
 
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterExtractResult;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.AbstractJoinNode;
 import com.facebook.presto.spi.plan.FilterNode;
 import com.facebook.presto.spi.plan.PlanNode;
@@ -25,17 +28,22 @@ import com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
+import static com.facebook.presto.common.function.OperatorType.EQUAL;
 import static com.facebook.presto.expressions.DynamicFilters.extractDynamicFilters;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Verify.verify;
 import static java.util.Objects.requireNonNull;
@@ -57,16 +65,33 @@ public class LocalDynamicFilter
     // The resulting predicates from each build-side partition.
     private final List<TupleDomain<String>> partitions;
 
+    private final SettableFuture<Map<VariableReferenceExpression, BlockedBloomFilter>> bloomFiltersFuture;
+
+    // Union of the Bloom filters of each build-side partition, and the number of partitions that provided one.
+    private final Map<String, BlockedBloomFilter> bloomFilters = new HashMap<>();
+    private final Map<String, Integer> bloomFilterPartitionCounts = new HashMap<>();
+
+    // Memory of the Bloom filter unions, which the probe-side scans use until the task is done.
+    private final LocalMemoryContext bloomFiltersMemoryContext;
+    private boolean closed;
+
     public LocalDynamicFilter(Multimap<String, DynamicFilterPlaceholder> probeVariables, Map<String, Integer> buildChannels, int partitionCount)
+    {
+        this(probeVariables, buildChannels, partitionCount, newSimpleAggregatedMemoryContext().newLocalMemoryContext(LocalDynamicFilter.class.getSimpleName()));
+    }
+
+    public LocalDynamicFilter(Multimap<String, DynamicFilterPlaceholder> probeVariables, Map<String, Integer> buildChannels, int partitionCount, LocalMemoryContext bloomFiltersMemoryContext)
     {
         this.probeVariables = requireNonNull(probeVariables, "probeVariables is null");
         this.buildChannels = requireNonNull(buildChannels, "buildChannels is null");
         verify(probeVariables.keySet().equals(buildChannels.keySet()), "probeVariables and buildChannels must have same keys");
 
         this.resultFuture = SettableFuture.create();
+        this.bloomFiltersFuture = SettableFuture.create();
 
         this.partitionCount = partitionCount;
         this.partitions = new ArrayList<>(partitionCount);
+        this.bloomFiltersMemoryContext = requireNonNull(bloomFiltersMemoryContext, "bloomFiltersMemoryContext is null");
     }
 
     private synchronized void addPartition(TupleDomain<String> tupleDomain)
@@ -78,9 +103,84 @@ public class LocalDynamicFilter
         partitions.add(tupleDomain);
         if (partitions.size() == partitionCount) {
             // No more partitions are left to be processed.
-            TupleDomain<VariableReferenceExpression> result = convertTupleDomain(TupleDomain.columnWiseUnion(partitions));
-            verify(resultFuture.set(result), "dynamic filter result is provided more than once");
+            TupleDomain<String> union = TupleDomain.columnWiseUnion(partitions);
+            Map<VariableReferenceExpression, BlockedBloomFilter> publishedBloomFilters = convertBloomFilters(union);
+            // only the published Bloom filters are retained
+            bloomFilters.clear();
+            updateBloomFiltersMemoryUsage(publishedBloomFilters.values());
+            verify(bloomFiltersFuture.set(publishedBloomFilters), "dynamic filter Bloom filters are provided more than once");
+            verify(resultFuture.set(convertTupleDomain(union)), "dynamic filter result is provided more than once");
+        }
+    }
+
+    private synchronized void addBloomFilters(Map<String, BlockedBloomFilter> partitionBloomFilters)
+    {
+        // Called by each DynamicFilterSourceOperator instance, before it provides its predicate.
+        verify(partitions.size() < partitionCount);
+        for (Map.Entry<String, BlockedBloomFilter> entry : partitionBloomFilters.entrySet()) {
+            BlockedBloomFilter bloomFilter = bloomFilters.get(entry.getKey());
+            if (bloomFilter == null) {
+                // the operator no longer uses its Bloom filter once it is provided, so it becomes the union
+                bloomFilters.put(entry.getKey(), entry.getValue());
+            }
+            else {
+                bloomFilter.union(entry.getValue());
+            }
+            bloomFilterPartitionCounts.merge(entry.getKey(), 1, Integer::sum);
         }
+        updateBloomFiltersMemoryUsage(bloomFilters.values());
+    }
+
+    private void updateBloomFiltersMemoryUsage(Collection<BlockedBloomFilter> retainedBloomFilters)
+    {
+        if (closed) {
+            return;
+        }
+        // a union used by several probe variables is only counted once
+        long bytes = 0;
+        Set<BlockedBloomFilter> distinctBloomFilters = Sets.newIdentityHashSet();
+        distinctBloomFilters.addAll(retainedBloomFilters);
+        for (BlockedBloomFilter bloomFilter : distinctBloomFilters) {
+            bytes += bloomFilter.getRetainedSizeInBytes();
+        }
+        bloomFiltersMemoryContext.setBytes(bytes);
+    }
+
+    /**
+     * Releases the memory of the Bloom filters, once the task that uses them is done.
+     */
+    public synchronized void close()
+    {
+        closed = true;
+        bloomFiltersMemoryContext.close();
+    }
+
+    private Map<VariableReferenceExpression, BlockedBloomFilter> convertBloomFilters(TupleDomain<String> result)
+    {
+        if (result.isNone()) {
+            return ImmutableMap.of();
+        }
+        Map<String, Domain> domains = result.getDomains().get();
+        ImmutableMap.Builder<VariableReferenceExpression, BlockedBloomFilter> builder = ImmutableMap.builder();
+        for (Map.Entry<String, BlockedBloomFilter> entry : bloomFilters.entrySet()) {
+            String filterId = entry.getKey();
+            BlockedBloomFilter bloomFilter = entry.getValue();
+            // A partition without a Bloom filter may have values that are missing from the union.
+            if (bloomFilterPartitionCounts.get(filterId) != partitionCount || bloomFilter.getEntryCount() > bloomFilter.getCapacity()) {
+                continue;
+            }
+            // The Bloom filter is not needed when the predicate already lists all the values.
+            Domain domain = domains.get(filterId);
+            if (domain != null && (domain.isNone() || isDiscreteSet(domain))) {
+                continue;
+            }
+            for (DynamicFilterPlaceholder placeholder : probeVariables.get(filterId)) {
+                if (placeholder.getOperator() == EQUAL) {
+                    builder.put((VariableReferenceExpression) placeholder.getInput(), bloomFilter);
+                }
+            }
+        }
+        return builder.build();
     }
 
     private TupleDomain<VariableReferenceExpression> convertTupleDomain(TupleDomain<String> result)
@@ -102,7 +202,17 @@ public class LocalDynamicFilter
         return TupleDomain.withColumnDomains(builder.build());
     }
 
+    private static boolean isDiscreteSet(Domain domain)
+    {
+        return !domain.getValues().isAll() && domain.getValues().getRanges().getOrderedRanges().stream().allMatch(Range::isSingleValue);
+    }
+
     public static Optional<LocalDynamicFilter> create(AbstractJoinNode planNode, int partitionCount)
+    {
+        return create(planNode, partitionCount, newSimpleAggregatedMemoryContext().newLocalMemoryContext(LocalDynamicFilter.class.getSimpleName()));
+    }
+
+    public static Optional<LocalDynamicFilter> create(AbstractJoinNode planNode, int partitionCount, LocalMemoryContext bloomFiltersMemoryContext)
     {
         Set<String> joinDynamicFilters = planNode.getDynamicFilters().keySet();
         List<FilterNode> filterNodes = PlanNodeSearcher
@@ -143,7 +253,7 @@ public class LocalDynamicFilter
         if (buildChannels.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(new LocalDynamicFilter(probeVariables, buildChannels, partitionCount));
+        return Optional.of(new LocalDynamicFilter(probeVariables, buildChannels, partitionCount, bloomFiltersMemoryContext));
     }
 
     public Map<String, Integer> getBuildChannels()
@@ -161,6 +271,16 @@ public class LocalDynamicFilter
         return this::addPartition;
     }
 
+    public ListenableFuture<Map<VariableReferenceExpression, BlockedBloomFilter>> getBloomFiltersFuture()
+    {
+        return bloomFiltersFuture;
+    }
+
+    public Consumer<Map<String, BlockedBloomFilter>> getBloomFiltersConsumer()
+    {
+        return this::addBloomFilters;
+    }
+
     @Override
     public String toString()
     {
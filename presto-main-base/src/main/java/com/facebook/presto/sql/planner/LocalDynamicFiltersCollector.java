@@ -13,12 +13,17 @@
  */
 package com.facebook.presto.sql.planner;
 
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableMap;
 
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @ThreadSafe
 public class LocalDynamicFiltersCollector
 {
@@ -29,6 +34,12 @@ public class LocalDynamicFiltersCollector
     @GuardedBy ("this")
     private TupleDomain<VariableReferenceExpression> predicate;
 
+    /**
+     * Bloom filters of the build-side values for the variables whose predicate is not a discrete set of values.
+     */
+    @GuardedBy("this")
+    private final Map<VariableReferenceExpression, BlockedBloomFilter> bloomFilters = new HashMap<>();
+
     public LocalDynamicFiltersCollector()
     {
         this.predicate = TupleDomain.all();
@@ -43,4 +54,15 @@ public class LocalDynamicFiltersCollector
     {
         this.predicate = this.predicate.intersect(predicate);
     }
+
+    public synchronized Map<VariableReferenceExpression, BlockedBloomFilter> getBloomFilters()
+    {
+        return ImmutableMap.copyOf(bloomFilters);
+    }
+
+    public synchronized void addBloomFilters(Map<VariableReferenceExpression, BlockedBloomFilter> bloomFilters)
+    {
+        // Keep the first Bloom filter when several joins filter the same variable, since filters of different joins cannot be combined.
+        bloomFilters.forEach(this.bloomFilters::putIfAbsent);
+    }
 }
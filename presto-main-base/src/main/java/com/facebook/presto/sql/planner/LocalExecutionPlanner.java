@@ -23,6 +23,7 @@ import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.function.OperatorType;
 import com.facebook.presto.common.function.SqlFunctionProperties;
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.common.type.TypeSignature;
@@ -46,6 +47,7 @@ import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
 import com.facebook.presto.expressions.LogicalRowExpressions;
 import com.facebook.presto.index.IndexManager;
 import com.facebook.presto.memory.MemoryManagerConfig;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.metadata.AnalyzeTableHandle;
 import com.facebook.presto.metadata.BuiltInFunctionHandle;
 import com.facebook.presto.metadata.ConnectorMetadataUpdaterManager;
@@ -91,6 +93,7 @@ import com.facebook.presto.operator.RowNumberOperator;
 import com.facebook.presto.operator.ScanFilterAndProjectOperator.ScanFilterAndProjectOperatorFactory;
 import com.facebook.presto.operator.SetBuilderOperator.SetBuilderOperatorFactory;
 import com.facebook.presto.operator.SetBuilderOperator.SetSupplier;
+import com.facebook.presto.operator.SharedLookupSourceRegistry.SharedLookupSourceReference;
 import com.facebook.presto.operator.SourceOperatorFactory;
 import com.facebook.presto.operator.SpatialIndexBuilderOperator.SpatialIndexBuilderOperatorFactory;
 import com.facebook.presto.operator.SpatialIndexBuilderOperator.SpatialPredicate;
@@ -256,6 +259,7 @@ import java.util.stream.IntStream;
 
 import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
 import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationRowsReductionRatioThreshold;
+import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringBloomFilterSize;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverRowCount;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverSize;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringRangeRowLimitPerDriver;
@@ -274,7 +278,9 @@ import static com.facebook.presto.SystemSessionProperties.isNativeExecutionEnabl
 import static com.facebook.presto.SystemSessionProperties.isOptimizeCommonSubExpressions;
 import static com.facebook.presto.SystemSessionProperties.isOptimizeJoinProbeForEmptyBuildRuntimeEnabled;
 import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningEnabled;
+import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningPreserveDictionaries;
 import static com.facebook.presto.SystemSessionProperties.isQuickDistinctLimitEnabled;
+import static com.facebook.presto.SystemSessionProperties.isShareBroadcastJoinLookupSource;
 import static com.facebook.presto.SystemSessionProperties.isSpillEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.TypeSignature.parseTypeSignature;
@@ -306,8 +312,10 @@ import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionProp
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.getTopNOperatorUnspillMemoryLimit;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isAggregationSpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isDistinctAggregationSpillEnabled;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isDistinctOperatorSpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isOrderByAggregationSpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isOrderBySpillEnabled;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isRowNumberSpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isTopNSpillEnabled;
 import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.isWindowSpillEnabled;
 import static com.facebook.presto.spi.StandardErrorCode.COMPILER_ERROR;
@@ -349,6 +357,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.DiscreteDomain.integers;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Range.closedOpen;
@@ -543,7 +552,7 @@ public class LocalExecutionPlanner
         }
 
         if (isOptimizedRepartitioningEnabled(taskContext.getSession())) {
-            return new OptimizedPartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize);
+            return new OptimizedPartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize, isOptimizedRepartitioningPreserveDictionaries(taskContext.getSession()));
         }
         else {
             return new PartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize);
@@ -753,6 +762,11 @@ public class LocalExecutionPlanner
             return ImmutableList.copyOf(driverFactories);
         }
 
+        public TaskContext getTaskContext()
+        {
+            return taskContext;
+        }
+
         public Session getSession()
         {
             return taskContext.getSession();
@@ -1041,7 +1055,9 @@ public class LocalExecutionPlanner
                     node.getMaxRowCountPerPartition(),
                     hashChannel,
                     10_000,
-                    joinCompiler);
+                    joinCompiler,
+                    isRowNumberSpillEnabled(session),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operatorFactory, outputMappings.build(), context, source);
         }
 
@@ -1299,7 +1315,9 @@ public class LocalExecutionPlanner
                     node.getLimit(),
                     hashChannel,
                     joinCompiler,
-                    node.getTimeoutMillis());
+                    node.getTimeoutMillis(),
+                    isDistinctOperatorSpillEnabled(session),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
 
@@ -1381,7 +1399,15 @@ public class LocalExecutionPlanner
 
             List<Integer> channels = getChannelsForVariables(node.getDistinctVariables(), source.getLayout());
             Optional<Integer> hashChannel = node.getHashVariable().map(variableChannelGetter(source));
-            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(context.getNextOperatorId(), node.getId(), source.getTypes(), channels, hashChannel, joinCompiler);
+            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    source.getTypes(),
+                    channels,
+                    hashChannel,
+                    joinCompiler,
+                    isDistinctOperatorSpillEnabled(session),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operator, makeLayout(node), context, source);
         }
 
@@ -1497,6 +1523,7 @@ public class LocalExecutionPlanner
 
             Optional<List<DynamicFilterPlaceholder>> dynamicFilters = extractDynamicFilterResult.map(DynamicFilterExtractResult::getDynamicConjuncts);
             Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier = Optional.empty();
+            Supplier<Map<ColumnHandle, BlockedBloomFilter>> dynamicFilterBloomFiltersSupplier = ImmutableMap::of;
             if (dynamicFilters.isPresent() && !dynamicFilters.get().isEmpty() && sourceNode instanceof TableScanNode) {
                 TableScanNode tableScanNode = (TableScanNode) sourceNode;
                 LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
@@ -1504,6 +1531,9 @@ public class LocalExecutionPlanner
                     TupleDomain<VariableReferenceExpression> predicate = collector.getPredicate();
                     return predicate.transform(tableScanNode.getAssignments()::get);
                 });
+                dynamicFilterBloomFiltersSupplier = () -> collector.getBloomFilters().entrySet().stream()
+                        .filter(entry -> tableScanNode.getAssignments().containsKey(entry.getKey()))
+                        .collect(toImmutableMap(entry -> tableScanNode.getAssignments().get(entry.getKey()), Map.Entry::getValue, (first, second) -> first));
             }
 
             // compiler uses inputs instead of variables, so rewrite the expressions first
@@ -1540,6 +1570,7 @@ public class LocalExecutionPlanner
                             columns,
                             projections.stream().map(RowExpression::getType).collect(toImmutableList()),
                             dynamicFilterSupplier,
+                            dynamicFilterBloomFiltersSupplier,
                             getFilterAndProjectMinOutputPageSize(session),
                             getFilterAndProjectMinOutputPageRowCount(session));
 
@@ -2323,11 +2354,11 @@ public class LocalExecutionPlanner
             boolean buildOuter = node.getType() == RIGHT || node.getType() == FULL;
             // spill does not work for probe only grouped execution because PartitionedLookupSourceFactory.finishProbe() expects a defined number of probe operators
             boolean isProbeOnlyGroupedExecution = probeSource.getPipelineExecutionStrategy() == GROUPED_EXECUTION && buildSource.getPipelineExecutionStrategy() != GROUPED_EXECUTION;
-            boolean spillEnabled = isSpillEnabled(context.getSession()) && isJoinSpillingEnabled(context.getSession()) && !buildOuter && !isProbeOnlyGroupedExecution;
+            boolean spillEnabled = isSpillEnabled(context.getSession()) && isJoinSpillingEnabled(context.getSession()) && !isProbeOnlyGroupedExecution;
             boolean optimizeProbeForEmptyBuild = isOptimizeJoinProbeForEmptyBuildRuntimeEnabled(context.getSession());
 
             // Plan build
-            JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactory =
+            JoinBridgeManager<? extends LookupSourceFactory> lookupSourceFactory =
                     createLookupSourceFactory(node, buildSource, buildContext, buildVariables, buildHashVariable, probeSource, spillEnabled, context);
 
             OperatorFactory operator = createLookupJoin(node, probeSource, probeVariables, probeHashVariable, lookupSourceFactory, spillEnabled, optimizeProbeForEmptyBuild, context);
@@ -2341,7 +2372,7 @@ public class LocalExecutionPlanner
             return new PhysicalOperation(operator, outputMappings.build(), context, probeSource);
         }
 
-        private JoinBridgeManager<PartitionedLookupSourceFactory> createLookupSourceFactory(
+        private JoinBridgeManager<? extends LookupSourceFactory> createLookupSourceFactory(
                 JoinNode node,
                 PhysicalOperation buildSource,
                 LocalExecutionPlanContext buildContext,
@@ -2393,7 +2424,7 @@ public class LocalExecutionPlanner
                     .collect(toImmutableList());
             boolean buildOuter = node.getType() == RIGHT || node.getType() == FULL;
             int partitionCount = buildContext.getDriverInstanceCount().orElse(1);
-            JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = new JoinBridgeManager<>(
+            Supplier<JoinBridgeManager<PartitionedLookupSourceFactory>> lookupSourceFactoryManagerSupplier = () -> new JoinBridgeManager<>(
                     buildOuter,
                     probeSource.getPipelineExecutionStrategy(),
                     buildSource.getPipelineExecutionStrategy(),
@@ -2418,23 +2449,59 @@ public class LocalExecutionPlanner
             Optional<JoinDistributionType> distributionType = node.getDistributionType();
             boolean isBroadcastJoin = distributionType.isPresent() && distributionType.get() == REPLICATED;
 
-            HashBuilderOperatorFactory hashBuilderOperatorFactory = new HashBuilderOperatorFactory(
-                    buildContext.getNextOperatorId(),
-                    node.getId(),
-                    lookupSourceFactoryManager,
-                    buildOutputChannels,
-                    buildChannels,
-                    buildHashChannel,
-                    filterFunctionFactory,
-                    sortChannel,
-                    searchFunctionFactories,
-                    10_000,
-                    pagesIndexFactory,
-                    spillEnabled && partitionCount > 1,
-                    singleStreamSpillerFactory,
-                    isBroadcastJoin);
+            // The tasks of the stage on this worker all receive the same build side, so only one of them needs to build the lookup source.
+            // Spilling lookup sources and outer joins depend on the number of probe operators of a single task.
+            boolean shareLookupSource = isBroadcastJoin &&
+                    isShareBroadcastJoinLookupSource(context.getSession()) &&
+                    !buildOuter &&
+                    !spillEnabled &&
+                    probeSource.getPipelineExecutionStrategy() == UNGROUPED_EXECUTION &&
+                    buildSource.getPipelineExecutionStrategy() == UNGROUPED_EXECUTION;
+
+            // the lookup source built by this task, if any
+            Optional<JoinBridgeManager<PartitionedLookupSourceFactory>> lookupSourceFactoryManager;
+            JoinBridgeManager<? extends LookupSourceFactory> probeLookupSourceFactoryManager;
+            if (shareLookupSource) {
+                TaskContext taskContext = context.getTaskContext();
+                SharedLookupSourceReference sharedLookupSource = taskContext.getQueryContext().getSharedLookupSourceRegistry()
+                        .acquire(context.getStageExecutionId(), node.getId(), lookupSourceFactoryManagerSupplier);
+                // release the reference of a task that is aborted before its probe operators are done
+                taskContext.addStateChangeListener(state -> {
+                    if (state.isDone()) {
+                        sharedLookupSource.release();
+                    }
+                });
+                lookupSourceFactoryManager = sharedLookupSource.isOwner() ? Optional.of(sharedLookupSource.getLookupSourceFactoryManager()) : Optional.empty();
+                probeLookupSourceFactoryManager = sharedLookupSource.createProbeLookupSourceFactoryManager();
+            }
+            else {
+                lookupSourceFactoryManager = Optional.of(lookupSourceFactoryManagerSupplier.get());
+                probeLookupSourceFactoryManager = lookupSourceFactoryManager.get();
+            }
 
-            factoriesBuilder.add(hashBuilderOperatorFactory);
+            if (lookupSourceFactoryManager.isPresent()) {
+                HashBuilderOperatorFactory hashBuilderOperatorFactory = new HashBuilderOperatorFactory(
+                        buildContext.getNextOperatorId(),
+                        node.getId(),
+                        lookupSourceFactoryManager.get(),
+                        buildOutputChannels,
+                        buildChannels,
+                        buildHashChannel,
+                        filterFunctionFactory,
+                        sortChannel,
+                        searchFunctionFactories,
+                        10_000,
+                        pagesIndexFactory,
+                        spillEnabled && partitionCount > 1,
+                        singleStreamSpillerFactory,
+                        isBroadcastJoin);
+
+                factoriesBuilder.add(hashBuilderOperatorFactory);
+            }
+            else {
+                // the lookup source is built by another task, the build side only needs to be consumed
+                factoriesBuilder.add(new DevNullOperatorFactory(buildContext.getNextOperatorId(), node.getId()));
+            }
 
             context.addDriverFactory(
                     buildContext.isInputDriver(),
@@ -2444,7 +2511,7 @@ public class LocalExecutionPlanner
                     buildSource.getPipelineExecutionStrategy(),
                     Optional.empty());
 
-            return lookupSourceFactoryManager;
+            return probeLookupSourceFactoryManager;
         }
 
         private DynamicFilterSourceOperator.DynamicFilterSourceOperatorFactory createDynamicFilterSourceOperatorFactory(
@@ -2469,7 +2536,9 @@ public class LocalExecutionPlanner
                     getDynamicFilteringMaxPerDriverRowCount(context.getSession()),
                     getDynamicFilteringMaxPerDriverSize(context.getSession()),
                     getDynamicFilteringRangeRowLimitPerDriver(context.getSession()),
-                    useNewNanDefinition);
+                    useNewNanDefinition,
+                    dynamicFilter.getBloomFiltersConsumer(),
+                    getDynamicFilteringBloomFilterSize(context.getSession()));
         }
 
         private Optional<LocalDynamicFilter> createDynamicFilter(PhysicalOperation buildSource, AbstractJoinNode node, LocalExecutionPlanContext context, int partitionCount)
@@ -2484,12 +2553,24 @@ public class LocalExecutionPlanner
                 throw new PrestoException(NOT_SUPPORTED, "Dynamic filtering cannot be used with grouped execution");
             }
             LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
-            return LocalDynamicFilter
-                    .create(node, partitionCount)
+            TaskContext taskContext = context.getTaskContext();
+            LocalMemoryContext bloomFiltersMemoryContext = taskContext.getTaskMemoryContext().newSystemMemoryContext(LocalDynamicFilter.class.getSimpleName());
+            Optional<LocalDynamicFilter> dynamicFilter = LocalDynamicFilter.create(node, partitionCount, bloomFiltersMemoryContext);
+            if (!dynamicFilter.isPresent()) {
+                bloomFiltersMemoryContext.close();
+            }
+            return dynamicFilter
                     .map(filter -> {
                         // Intersect dynamic filters' predicates when they become ready,
                         // in order to support multiple join nodes in the same plan fragment.
+                        addSuccessCallback(filter.getBloomFiltersFuture(), collector::addBloomFilters);
                         addSuccessCallback(filter.getResultFuture(), collector::intersect);
+                        // the probe-side scans use the Bloom filters until the task is done
+                        taskContext.addStateChangeListener(state -> {
+                            if (state.isDone()) {
+                                filter.close();
+                            }
+                        });
                         return filter;
                     });
         }
@@ -2628,6 +2709,12 @@ public class LocalExecutionPlanner
             Optional<Integer> buildHashChannel = node.getFilteringSourceHashVariable().map(variableChannelGetter(buildSource));
             Optional<Integer> probeHashChannel = node.getSourceHashVariable().map(variableChannelGetter(probeSource));
 
+            // the spilled set is joined one partition at a time, which requires a known number of probe operators
+            boolean spillEnabled = isSpillEnabled(context.getSession()) &&
+                    isJoinSpillingEnabled(context.getSession()) &&
+                    probeSource.getPipelineExecutionStrategy() == UNGROUPED_EXECUTION &&
+                    context.getDriverInstanceCount().isPresent();
+
             SetBuilderOperatorFactory setBuilderOperatorFactory = new SetBuilderOperatorFactory(
                     buildContext.getNextOperatorId(),
                     node.getId(),
@@ -2635,7 +2722,9 @@ public class LocalExecutionPlanner
                     buildChannel,
                     buildHashChannel,
                     10_000,
-                    joinCompiler);
+                    joinCompiler,
+                    spillEnabled,
+                    partitioningSpillerFactory);
 
             ImmutableList.Builder<OperatorFactory> factoriesBuilder = ImmutableList.builder();
             factoriesBuilder.addAll(buildSource.getOperatorFactories());
@@ -2662,7 +2751,15 @@ public class LocalExecutionPlanner
                     .put(node.getSemiJoinOutput(), probeSource.getLayout().size())
                     .build();
 
-            HashSemiJoinOperatorFactory operator = new HashSemiJoinOperatorFactory(context.getNextOperatorId(), node.getId(), setProvider, probeSource.getTypes(), probeChannel, probeHashChannel);
+            HashSemiJoinOperatorFactory operator = new HashSemiJoinOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    setProvider,
+                    probeSource.getTypes(),
+                    probeChannel,
+                    probeHashChannel,
+                    getJoinOperatorsCountForSpill(context, spillEnabled),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operator, outputMappings, context, probeSource);
         }
 
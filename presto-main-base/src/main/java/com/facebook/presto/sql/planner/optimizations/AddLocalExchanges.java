@@ -862,10 +862,20 @@ public class AddLocalExchanges
         @Override
         public PlanWithProperties visitSemiJoin(SemiJoinNode node, StreamPreferredProperties parentPreferences)
         {
-            PlanWithProperties source = planAndEnforce(
-                    node.getSource(),
-                    defaultParallelism(session),
-                    parentPreferences.constrainTo(node.getSource().getOutputVariables()).withDefaultParallelism(session));
+            // Spilling semi join requires a known number of HashSemiJoinOperator's, see visitJoin
+            PlanWithProperties source;
+            if (isSpillEnabled(session) && isJoinSpillingEnabled(session) && !nativeExecution) {
+                source = planAndEnforce(
+                        node.getSource(),
+                        fixedParallelism(),
+                        parentPreferences.constrainTo(node.getSource().getOutputVariables()).withFixedParallelism());
+            }
+            else {
+                source = planAndEnforce(
+                        node.getSource(),
+                        defaultParallelism(session),
+                        parentPreferences.constrainTo(node.getSource().getOutputVariables()).withDefaultParallelism(session));
+            }
 
             // this filter source consumes the input completely, so we do not pass through parent preferences
             PlanWithProperties filteringSource = planAndEnforce(node.getFilteringSource(), singleStream(), singleStream());
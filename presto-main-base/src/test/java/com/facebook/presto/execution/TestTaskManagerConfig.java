@@ -29,6 +29,7 @@ import static com.facebook.airlift.configuration.testing.ConfigAssertions.record
 import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracking.QUERY_FAIR;
 import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracking.TASK_FAIR;
 import static io.airlift.units.DataSize.Unit;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -69,6 +70,12 @@ public class TestTaskManagerConfig
                 .setTaskNotificationThreads(5)
                 .setTaskYieldThreads(3)
                 .setLevelTimeMultiplier(new BigDecimal("2"))
+                .setSplitWorkStealingEnabled(false)
+                .setSplitAffinityEnabled(false)
+                .setSplitAffinityMaxWait(new Duration(10, MILLISECONDS))
+                .setIoAwareSplitSchedulingEnabled(false)
+                .setIoBoundSplitCpuRatio(0.2)
+                .setIoBoundSplitConcurrencyMultiplier(2.0)
                 .setStatisticsCpuTimerEnabled(true)
                 .setLegacyLifespanCompletionCondition(false)
                 .setTaskPriorityTracking(TASK_FAIR)
@@ -119,6 +126,12 @@ public class TestTaskManagerConfig
                 .put("task.task-notification-threads", "13")
                 .put("task.task-yield-threads", "8")
                 .put("task.level-time-multiplier", "2.1")
+                .put("task.split-work-stealing-enabled", "true")
+                .put("task.split-affinity-enabled", "true")
+                .put("task.split-affinity-max-wait", "50ms")
+                .put("task.io-aware-split-scheduling-enabled", "true")
+                .put("task.io-bound-split-cpu-ratio", "0.1")
+                .put("task.io-bound-split-concurrency-multiplier", "3.0")
                 .put("task.statistics-cpu-timer-enabled", "false")
                 .put("task.legacy-lifespan-completion-condition", "true")
                 .put("task.task-priority-tracking", "QUERY_FAIR")
@@ -166,6 +179,12 @@ public class TestTaskManagerConfig
                 .setTaskNotificationThreads(13)
                 .setTaskYieldThreads(8)
                 .setLevelTimeMultiplier(new BigDecimal("2.1"))
+                .setSplitWorkStealingEnabled(true)
+                .setSplitAffinityEnabled(true)
+                .setSplitAffinityMaxWait(new Duration(50, MILLISECONDS))
+                .setIoAwareSplitSchedulingEnabled(true)
+                .setIoBoundSplitCpuRatio(0.1)
+                .setIoBoundSplitConcurrencyMultiplier(3.0)
                 .setStatisticsCpuTimerEnabled(false)
                 .setLegacyLifespanCompletionCondition(true)
                 .setTaskPriorityTracking(QUERY_FAIR)
@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.execution.buffer.AdaptivePageCompressor.Codec;
+import io.airlift.compress.MalformedInputException;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static com.facebook.presto.common.RuntimeMetricName.ADAPTIVE_COMPRESSION_LZ4_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.ADAPTIVE_COMPRESSION_SKIPPED_BYTES;
+import static com.facebook.presto.execution.buffer.AdaptivePageCompressor.Codec.LZ4;
+import static com.facebook.presto.execution.buffer.AdaptivePageCompressor.Codec.NONE;
+import static com.facebook.presto.execution.buffer.AdaptivePageCompressor.Codec.ZSTD;
+import static com.facebook.presto.execution.buffer.AdaptivePageCompressor.SAMPLE_INTERVAL_PAGES;
+import static com.facebook.presto.execution.buffer.AdaptivePageCompressor.chooseCodec;
+import static com.facebook.presto.spi.page.PagesSerde.MINIMUM_COMPRESSION_RATIO;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestAdaptivePageCompressor
+{
+    private static final int PAGE_SIZE = 64 * 1024;
+
+    @Test
+    public void testChooseCodec()
+    {
+        // neither codec makes the page smaller
+        assertEquals(chooseCodec(MINIMUM_COMPRESSION_RATIO, 1000, 1001, 10, 995, 50), NONE);
+        // ZSTD saves enough space for its CPU cost
+        assertEquals(chooseCodec(MINIMUM_COMPRESSION_RATIO, 1000, 500, 10, 300, 40), ZSTD);
+        // ZSTD does not save enough space
+        assertEquals(chooseCodec(MINIMUM_COMPRESSION_RATIO, 1000, 500, 10, 480, 20), LZ4);
+        // ZSTD is too expensive
+        assertEquals(chooseCodec(MINIMUM_COMPRESSION_RATIO, 1000, 500, 10, 300, 100), LZ4);
+        // only ZSTD makes the page smaller
+        assertEquals(chooseCodec(MINIMUM_COMPRESSION_RATIO, 1000, 950, 10, 800, 100), ZSTD);
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        AdaptivePageCompressor compressor = new AdaptivePageCompressor(new RuntimeStats(), MINIMUM_COMPRESSION_RATIO);
+        AdaptivePageDecompressor decompressor = new AdaptivePageDecompressor();
+        for (byte[] page : new byte[][] {compressiblePage(), randomPage(), new byte[0]}) {
+            for (int i = 0; i < SAMPLE_INTERVAL_PAGES + 1; i++) {
+                byte[] compressed = new byte[compressor.maxCompressedLength(page.length)];
+                int compressedSize = compressor.compress(page, 0, page.length, compressed, 0, compressed.length);
+
+                byte[] decompressed = new byte[page.length];
+                assertEquals(decompressor.decompress(compressed, 0, compressedSize, decompressed, 0, decompressed.length), page.length);
+                assertEquals(decompressed, page);
+
+                ByteBuffer output = ByteBuffer.allocate(page.length);
+                decompressor.decompress(ByteBuffer.wrap(compressed, 0, compressedSize), output);
+                assertEquals(output.position(), page.length);
+                assertEquals(output.array(), page);
+            }
+        }
+    }
+
+    @Test
+    public void testSkipsIncompressiblePages()
+    {
+        RuntimeStats runtimeStats = new RuntimeStats();
+        AdaptivePageCompressor compressor = new AdaptivePageCompressor(runtimeStats, MINIMUM_COMPRESSION_RATIO);
+
+        byte[] page = randomPage();
+        for (int i = 0; i < SAMPLE_INTERVAL_PAGES; i++) {
+            byte[] compressed = new byte[compressor.maxCompressedLength(page.length)];
+            int compressedSize = compressor.compress(page, 0, page.length, compressed, 0, compressed.length);
+            assertEquals(compressedSize, page.length + 1);
+            assertEquals(compressor.getCodec(), NONE);
+        }
+        assertEquals(runtimeStats.getMetric(ADAPTIVE_COMPRESSION_SKIPPED_BYTES).getCount(), SAMPLE_INTERVAL_PAGES);
+        assertEquals(runtimeStats.getMetric(ADAPTIVE_COMPRESSION_SKIPPED_BYTES).getSum(), (long) SAMPLE_INTERVAL_PAGES * page.length);
+
+        // the next sample notices that the data compresses again
+        page = compressiblePage();
+        byte[] compressed = new byte[compressor.maxCompressedLength(page.length)];
+        int compressedSize = compressor.compress(page, 0, page.length, compressed, 0, compressed.length);
+        assertTrue(compressedSize < page.length / 2);
+        assertTrue(compressor.getCodec() != NONE);
+        assertEquals(Codec.fromId(compressed[0]), compressor.getCodec());
+    }
+
+    @Test
+    public void testResamplesWhenPagesStopCompressing()
+    {
+        RuntimeStats runtimeStats = new RuntimeStats();
+        AdaptivePageCompressor compressor = new AdaptivePageCompressor(runtimeStats, MINIMUM_COMPRESSION_RATIO);
+
+        byte[] page = compressiblePage();
+        byte[] compressed = new byte[compressor.maxCompressedLength(page.length)];
+        compressor.compress(page, 0, page.length, compressed, 0, compressed.length);
+        assertTrue(compressor.getCodec() != NONE);
+
+        // the first incompressible page is compressed with the previous codec, and the following one is sampled again
+        page = randomPage();
+        compressed = new byte[compressor.maxCompressedLength(page.length)];
+        compressor.compress(page, 0, page.length, compressed, 0, compressed.length);
+        assertTrue(compressor.getCodec() != NONE);
+        compressor.compress(page, 0, page.length, compressed, 0, compressed.length);
+        assertEquals(compressor.getCodec(), NONE);
+        assertEquals(runtimeStats.getMetric(ADAPTIVE_COMPRESSION_SKIPPED_BYTES).getCount(), 2);
+    }
+
+    @Test
+    public void testRuntimeStats()
+    {
+        RuntimeStats runtimeStats = new RuntimeStats();
+        AdaptivePageCompressor compressor = new AdaptivePageCompressor(runtimeStats, MINIMUM_COMPRESSION_RATIO);
+
+        byte[] page = new byte[PAGE_SIZE];
+        byte[] compressed = new byte[compressor.maxCompressedLength(page.length)];
+        for (int i = 0; i < SAMPLE_INTERVAL_PAGES; i++) {
+            compressor.compress(page, 0, page.length, compressed, 0, compressed.length);
+        }
+
+        long compressedPages = runtimeStats.getMetrics().entrySet().stream()
+                .filter(entry -> !entry.getKey().equals(ADAPTIVE_COMPRESSION_SKIPPED_BYTES))
+                .mapToLong(entry -> entry.getValue().getCount())
+                .sum();
+        assertEquals(compressedPages, SAMPLE_INTERVAL_PAGES);
+        assertNull(runtimeStats.getMetric(ADAPTIVE_COMPRESSION_SKIPPED_BYTES));
+        if (compressor.getCodec() == LZ4) {
+            assertEquals(runtimeStats.getMetric(ADAPTIVE_COMPRESSION_LZ4_BYTES).getSum(), (long) SAMPLE_INTERVAL_PAGES * PAGE_SIZE);
+        }
+    }
+
+    @Test(expectedExceptions = MalformedInputException.class, expectedExceptionsMessageRegExp = "Unknown adaptive compression codec: 7: offset=0")
+    public void testUnknownCodec()
+    {
+        new AdaptivePageDecompressor().decompress(new byte[] {7, 1, 2}, 0, 3, new byte[10], 0, 10);
+    }
+
+    private static byte[] compressiblePage()
+    {
+        byte[] page = new byte[PAGE_SIZE];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = (byte) (i % 7);
+        }
+        return page;
+    }
+
+    private static byte[] randomPage()
+    {
+        byte[] page = new byte[PAGE_SIZE];
+        new Random(42).nextBytes(page);
+        return page;
+    }
+}
@@ -19,21 +19,31 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.LongStream;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.readPages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPagesFromStream;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writePages;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -51,6 +61,7 @@ public class TestPagesSerde
                 {CompressionCodec.SNAPPY},
                 {CompressionCodec.ZLIB},
                 {CompressionCodec.ZSTD},
+                {CompressionCodec.ADAPTIVE},
                 {CompressionCodec.NONE}
         };
     }
@@ -154,6 +165,108 @@ public class TestPagesSerde
         assertTrue(actualSize < expectedMaxSize, "Expected round trip size difference less than 20% of original page");
     }
 
+    @Test(dataProvider = "testCompressionCodec")
+    public void testDeserializedPagesDoNotShareDecompressionBuffer(CompressionCodec codec)
+    {
+        PagesSerde serde = new TestingPagesSerdeFactory(codec).createPagesSerde();
+        Page firstPage = createCompressibleVarcharPage("first");
+        Page secondPage = createCompressibleVarcharPage("second");
+
+        SerializedPage serializedFirstPage = serde.serialize(firstPage);
+        SerializedPage serializedSecondPage = serde.serialize(secondPage);
+
+        Page deserializedFirstPage = serde.deserialize(serializedFirstPage);
+        long retainedSize = serde.getRetainedSizeInBytes();
+        Page deserializedSecondPage = serde.deserialize(serializedSecondPage);
+
+        // the first page must not be overwritten when the buffer is reused for the second one
+        List<Type> types = ImmutableList.of(VARCHAR, BIGINT);
+        assertPageEquals(types, deserializedFirstPage, firstPage);
+        assertPageEquals(types, deserializedSecondPage, secondPage);
+        assertEquals(serde.getRetainedSizeInBytes(), retainedSize);
+    }
+
+    @Test(dataProvider = "testCompressionCodec")
+    public void testReadSerializedPagesFromInputStream(CompressionCodec codec)
+    {
+        PagesSerde serde = new TestingPagesSerdeFactory(codec).createPagesSerde();
+        List<Page> pages = ImmutableList.of(createCompressibleVarcharPage("first"), createCompressibleVarcharPage("second"));
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        writePages(serde, sliceOutput, pages.iterator());
+        Slice slice = sliceOutput.slice();
+
+        List<SerializedPage> expected = ImmutableList.copyOf(readSerializedPages(slice.getInput()));
+        List<SerializedPage> actual = ImmutableList.copyOf(readSerializedPagesFromStream(new ByteArrayInputStream(slice.getBytes())));
+        assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(actual.get(i).getSlice(), expected.get(i).getSlice());
+            assertEquals(actual.get(i).getPageCodecMarkers(), expected.get(i).getPageCodecMarkers());
+            assertEquals(actual.get(i).getPositionCount(), expected.get(i).getPositionCount());
+            assertEquals(actual.get(i).getUncompressedSizeInBytes(), expected.get(i).getUncompressedSizeInBytes());
+            // each page only retains its own data
+            assertEquals(actual.get(i).getSlice().getRetainedSize(), Slices.allocate(actual.get(i).getSizeInBytes()).getRetainedSize());
+            assertPageEquals(ImmutableList.of(VARCHAR, BIGINT), serde.deserialize(actual.get(i)), pages.get(i));
+        }
+    }
+
+    @Test
+    public void testReadSmallSerializedPagesFromInputStreamIsBuffered()
+    {
+        PagesSerde serde = new TestingPagesSerdeFactory(CompressionCodec.NONE).createPagesSerde();
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        int pageCount = 100;
+        for (long i = 0; i < pageCount; i++) {
+            BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, 1);
+            BIGINT.writeLong(blockBuilder, i);
+            writePages(serde, sliceOutput, new Page(blockBuilder.build()));
+        }
+
+        AtomicInteger reads = new AtomicInteger();
+        InputStream input = new FilterInputStream(new ByteArrayInputStream(sliceOutput.slice().getBytes()))
+        {
+            @Override
+            public int read()
+                    throws IOException
+            {
+                reads.incrementAndGet();
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length)
+                    throws IOException
+            {
+                reads.incrementAndGet();
+                return super.read(buffer, offset, length);
+            }
+        };
+        assertEquals(ImmutableList.copyOf(readSerializedPagesFromStream(input)).size(), pageCount);
+        // the metadata and the data of small pages are not read from the stream one by one
+        assertTrue(reads.get() < pageCount, "reads: " + reads.get());
+    }
+
+    @Test(expectedExceptions = UncheckedIOException.class, expectedExceptionsMessageRegExp = ".*Unexpected end of serialized page stream")
+    public void testReadTruncatedSerializedPagesFromInputStream()
+    {
+        PagesSerde serde = new TestingPagesSerdeFactory(CompressionCodec.NONE).createPagesSerde();
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        writePages(serde, sliceOutput, createCompressibleVarcharPage("page"));
+        byte[] bytes = sliceOutput.slice().getBytes();
+
+        ImmutableList.copyOf(readSerializedPagesFromStream(new ByteArrayInputStream(bytes, 0, bytes.length - 1)));
+    }
+
+    private static Page createCompressibleVarcharPage(String prefix)
+    {
+        BlockBuilder varcharBlockBuilder = VARCHAR.createBlockBuilder(null, 1000);
+        BlockBuilder bigintBlockBuilder = BIGINT.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            VARCHAR.writeString(varcharBlockBuilder, prefix + "-" + (i % 10));
+            BIGINT.writeLong(bigintBlockBuilder, i % 10);
+        }
+        return new Page(varcharBlockBuilder.build(), bigintBlockBuilder.build());
+    }
+
     private static int serializedSize(List<? extends Type> types, Page expectedPage, CompressionCodec codec)
     {
         PagesSerde serde = new TestingPagesSerdeFactory(codec).createPagesSerde();
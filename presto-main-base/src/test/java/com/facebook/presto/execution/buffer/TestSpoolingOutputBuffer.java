@@ -19,6 +19,8 @@ import com.facebook.presto.execution.QueryIdGenerator;
 import com.facebook.presto.execution.StateMachine;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.buffer.OutputBuffers.OutputBufferId;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.memory.context.SimpleLocalMemoryContext;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -52,6 +54,7 @@ import static com.facebook.presto.execution.buffer.BufferTestUtils.getFuture;
 import static com.facebook.presto.execution.buffer.BufferTestUtils.sizeOfPages;
 import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.PARTITIONED;
 import static com.facebook.presto.execution.buffer.OutputBuffers.BufferType.SPOOLING;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
@@ -71,6 +74,7 @@ public class TestSpoolingOutputBuffer
     private static final QueryIdGenerator queryIdGenerator = new QueryIdGenerator();
 
     private static SpoolingOutputBufferFactory spoolingOutputBufferFactory;
+    private static SpoolingOutputBufferFactory cachingSpoolingOutputBufferFactory;
 
     private ScheduledExecutorService stateNotificationExecutor;
 
@@ -81,7 +85,14 @@ public class TestSpoolingOutputBuffer
 
         FeaturesConfig featuresConfig = new FeaturesConfig();
         featuresConfig.setSpoolingOutputBufferThreshold(THRESHOLD);
+        // without a read cache, every request reads its pages from storage
+        featuresConfig.setSpoolingOutputBufferReadCacheSize(new DataSize(0, BYTE));
         spoolingOutputBufferFactory = new SpoolingOutputBufferFactory(featuresConfig);
+
+        // room for the pages of a single file
+        cachingSpoolingOutputBufferFactory = new SpoolingOutputBufferFactory(new FeaturesConfig()
+                .setSpoolingOutputBufferThreshold(THRESHOLD)
+                .setSpoolingOutputBufferReadCacheSize(sizeOfPages(5)));
     }
 
     @AfterClass(alwaysRun = true)
@@ -93,6 +104,7 @@ public class TestSpoolingOutputBuffer
             stateNotificationExecutor = null;
         }
         spoolingOutputBufferFactory.shutdown();
+        cachingSpoolingOutputBufferFactory.shutdown();
     }
 
     @Test
@@ -201,6 +213,68 @@ public class TestSpoolingOutputBuffer
         compareTotalBuffered(buffer, 8);
     }
 
+    @Test
+    public void testReadCache()
+    {
+        LocalMemoryContext memoryContext = new SimpleLocalMemoryContext(newSimpleAggregatedMemoryContext(), "test");
+        SpoolingOutputBuffer buffer = createSpoolingOutputBuffer(cachingSpoolingOutputBufferFactory, memoryContext);
+
+        // write three files, of which only the first one is kept in memory
+        for (int i = 0; i < 9; i++) {
+            addPage(buffer, createPage(i));
+        }
+        compareTotalBuffered(buffer, 9);
+        assertEquals(memoryContext.getBytes(), sizeOfPages(3).toBytes());
+        // the cached file and the pages of a file about to be flushed
+        assertEquals(buffer.getPeakMemoryUsage(), sizeOfPages(6).toBytes());
+
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 0, sizeOfPages(2), MAX_WAIT), bufferResult(0, createPage(0), createPage(1)));
+        compareTotalBuffered(buffer, 9);
+
+        // read across the cached file and the second file, which is read from storage
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 2, sizeOfPages(3), MAX_WAIT), bufferResult(2, createPage(2), createPage(3), createPage(4)));
+        compareTotalBuffered(buffer, 9);
+        // the file being read is loaded even though the cache is full
+        assertEquals(memoryContext.getBytes(), sizeOfPages(6).toBytes());
+
+        // the rest of the second file is served from the pages read by the previous request
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 5, sizeOfPages(1), MAX_WAIT), bufferResult(5, createPage(5)));
+        compareTotalBuffered(buffer, 6);
+        assertEquals(memoryContext.getBytes(), sizeOfPages(3).toBytes());
+
+        // the third file is read from storage
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 6, sizeOfPages(3), MAX_WAIT), bufferResult(6, createPage(6), createPage(7), createPage(8)));
+        compareTotalBuffered(buffer, 3);
+
+        buffer.setNoMorePages();
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 9, sizeOfPages(1), NO_WAIT), emptyResults(TASK_INSTANCE_ID, 9, true));
+        compareTotalBuffered(buffer, 0);
+        assertEquals(buffer.getInfo().getTotalPagesSent(), 9);
+        assertEquals(memoryContext.getBytes(), 0);
+        assertEquals(buffer.getPeakMemoryUsage(), sizeOfPages(6).toBytes());
+    }
+
+    @Test
+    public void testReadCacheDisabled()
+    {
+        LocalMemoryContext memoryContext = new SimpleLocalMemoryContext(newSimpleAggregatedMemoryContext(), "test");
+        SpoolingOutputBuffer buffer = createSpoolingOutputBuffer(spoolingOutputBufferFactory, memoryContext);
+
+        for (int i = 0; i < 6; i++) {
+            addPage(buffer, createPage(i));
+        }
+        compareTotalBuffered(buffer, 6);
+
+        // every request reads its pages from storage, and no pages are held in memory between requests
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 0, sizeOfPages(2), MAX_WAIT), bufferResult(0, createPage(0), createPage(1)));
+        assertEquals(memoryContext.getBytes(), 0);
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 2, sizeOfPages(2), MAX_WAIT), bufferResult(2, createPage(2), createPage(3)));
+        assertEquals(memoryContext.getBytes(), 0);
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 4, sizeOfPages(2), MAX_WAIT), bufferResult(4, createPage(4), createPage(5)));
+        assertEquals(memoryContext.getBytes(), 0);
+        assertEquals(buffer.getPeakMemoryUsage(), sizeOfPages(3).toBytes());
+    }
+
     @Test
     void testGetOutOfOrder()
     {
@@ -550,13 +624,24 @@ public class TestSpoolingOutputBuffer
     }
 
     private SpoolingOutputBuffer createSpoolingOutputBuffer()
+    {
+        return createSpoolingOutputBuffer(spoolingOutputBufferFactory);
+    }
+
+    private SpoolingOutputBuffer createSpoolingOutputBuffer(SpoolingOutputBufferFactory factory)
+    {
+        return createSpoolingOutputBuffer(factory, new SimpleLocalMemoryContext(newSimpleAggregatedMemoryContext(), "test"));
+    }
+
+    private SpoolingOutputBuffer createSpoolingOutputBuffer(SpoolingOutputBufferFactory factory, LocalMemoryContext memoryContext)
     {
         TaskId taskId = new TaskId(queryIdGenerator.createNextQueryId().toString(), 0, 0, 0, 0);
-        return spoolingOutputBufferFactory.createSpoolingOutputBuffer(
+        return factory.createSpoolingOutputBuffer(
                 taskId,
                 TASK_INSTANCE_ID,
                 OUTPUT_BUFFERS,
-                new StateMachine<>("bufferState", stateNotificationExecutor, OPEN, TERMINAL_BUFFER_STATES));
+                new StateMachine<>("bufferState", stateNotificationExecutor, OPEN, TERMINAL_BUFFER_STATES),
+                () -> memoryContext);
     }
 
     private static BufferResult bufferResult(long token, Page firstPage, Page... otherPages)
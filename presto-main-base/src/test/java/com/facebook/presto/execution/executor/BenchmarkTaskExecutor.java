@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.executor;
+
+import com.facebook.presto.execution.SplitRunner;
+import com.facebook.presto.execution.TaskId;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracking.TASK_FAIR;
+import static com.google.common.util.concurrent.Futures.allAsList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Measures the scheduling overhead of {@link TaskExecutor} with many short leaf splits, such as the
+ * splits of point lookup queries. The splits do no work, so the time is spent taking splits from the
+ * split queue, offering them back at the end of each quanta, and starting new splits.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MILLISECONDS)
+@BenchmarkMode(AverageTime)
+@Fork(2)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = SECONDS)
+public class BenchmarkTaskExecutor
+{
+    private static final int TASK_COUNT = 100;
+    private static final int SPLITS_PER_TASK = 100;
+
+    @Benchmark
+    public List<?> runSplits(BenchmarkData data)
+            throws Exception
+    {
+        List<ListenableFuture<?>> futures = new ArrayList<>(TASK_COUNT * SPLITS_PER_TASK);
+        for (TaskHandle taskHandle : data.getTaskHandles()) {
+            ImmutableList.Builder<SplitRunner> splits = ImmutableList.builder();
+            for (int split = 0; split < SPLITS_PER_TASK; split++) {
+                splits.add(new ShortSplit(data.quantaPerSplit));
+            }
+            futures.addAll(data.getTaskExecutor().enqueueSplits(taskHandle, false, splits.build()));
+        }
+        return allAsList(futures).get();
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"8", "32", "96"})
+        private int runnerThreads = 8;
+
+        @Param({"false", "true"})
+        private boolean workStealing = true;
+
+        @Param({"1", "10"})
+        private int quantaPerSplit = 10;
+
+        private TaskExecutor taskExecutor;
+        private List<TaskHandle> taskHandles;
+
+        @Setup
+        public void setup()
+        {
+            MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, workStealing ? runnerThreads : 1);
+            taskExecutor = new TaskExecutor(runnerThreads, runnerThreads * 2, 3, Integer.MAX_VALUE, TASK_FAIR, splitQueue, Ticker.systemTicker());
+            taskExecutor.start();
+
+            ImmutableList.Builder<TaskHandle> taskHandles = ImmutableList.builder();
+            for (int task = 0; task < TASK_COUNT; task++) {
+                taskHandles.add(taskExecutor.addTask(new TaskId("benchmark", 0, 0, task, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty()));
+            }
+            this.taskHandles = taskHandles.build();
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            taskExecutor.stop();
+        }
+
+        public TaskExecutor getTaskExecutor()
+        {
+            return taskExecutor;
+        }
+
+        public List<TaskHandle> getTaskHandles()
+        {
+            return taskHandles;
+        }
+    }
+
+    private static class ShortSplit
+            implements SplitRunner
+    {
+        private int remainingQuanta;
+
+        public ShortSplit(int quanta)
+        {
+            this.remainingQuanta = quanta;
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return remainingQuanta <= 0;
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            remainingQuanta--;
+            return immediateFuture(null);
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return "short-split";
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    @Test
+    public void verifyRunSplits()
+            throws Exception
+    {
+        BenchmarkData data = new BenchmarkData();
+        data.setup();
+        try {
+            assertEquals(new BenchmarkTaskExecutor().runSplits(data).size(), TASK_COUNT * SPLITS_PER_TASK);
+        }
+        finally {
+            data.tearDown();
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkTaskExecutor.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
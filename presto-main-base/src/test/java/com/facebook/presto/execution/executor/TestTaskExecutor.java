@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.execution.executor;
 
+import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.TimeStat;
 import com.facebook.airlift.testing.TestingTicker;
 import com.facebook.presto.execution.SplitRunner;
 import com.facebook.presto.execution.TaskId;
@@ -26,9 +28,11 @@ import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
@@ -42,11 +46,14 @@ import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracki
 import static com.facebook.presto.execution.executor.MultilevelSplitQueue.LEVEL_CONTRIBUTION_CAP;
 import static com.facebook.presto.execution.executor.MultilevelSplitQueue.LEVEL_THRESHOLD_SECONDS;
 import static com.google.common.collect.Iterables.getOnlyElement;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 public class TestTaskExecutor
@@ -339,6 +346,253 @@ public class TestTaskExecutor
         }
     }
 
+    @Test
+    public void testLocalSplitQueues()
+            throws Exception
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 2);
+        TaskHandle taskHandle = new TaskHandle(new TaskId("test", 0, 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+        PrioritizedSplitRunner split0 = createPrioritizedSplitRunner(taskHandle, Ticker.systemTicker());
+        PrioritizedSplitRunner split1 = createPrioritizedSplitRunner(taskHandle, Ticker.systemTicker());
+
+        splitQueue.offer(split0, 0);
+        splitQueue.offer(split1, 1);
+        assertEquals(splitQueue.size(), 2);
+
+        // a runner thread takes the splits of its own queue first
+        assertSame(splitQueue.take(1), split1);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 0);
+
+        // and then steals the splits of the other queues
+        assertSame(splitQueue.take(1), split0);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 1);
+        assertEquals(splitQueue.size(), 0);
+    }
+
+    @Test(timeOut = 30_000)
+    public void testSplitAffinity()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 2, true, new Duration(10, MILLISECONDS));
+        TaskHandle taskHandle = new TaskHandle(new TaskId("test", 0, 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+        PrioritizedSplitRunner split = createPrioritizedSplitRunner(taskHandle, ticker);
+
+        // an unblocked split goes back to the queue of the runner thread that ran it
+        split.setRunnerId(1);
+        splitQueue.offer(split);
+        assertSame(splitQueue.take(1), split);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 0);
+
+        // other runner threads only steal it once it has waited for the maximum wait
+        splitQueue.offer(split);
+        ExecutorService executor = newSingleThreadExecutor();
+        try {
+            Future<PrioritizedSplitRunner> stolenSplit = executor.submit(() -> splitQueue.take(0));
+            Thread.sleep(100);
+            assertFalse(stolenSplit.isDone());
+
+            ticker.increment(10, MILLISECONDS);
+            assertSame(stolenSplit.get(10, SECONDS), split);
+            assertEquals(splitQueue.getStolenSplits().getTotalCount(), 1);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void testSplitAffinityWakesUpOwnRunner()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 2, true, new Duration(1, MINUTES));
+        TaskHandle taskHandle = new TaskHandle(new TaskId("test", 0, 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+        PrioritizedSplitRunner split = createPrioritizedSplitRunner(taskHandle, ticker);
+
+        ExecutorService executor = newFixedThreadPool(2);
+        try {
+            // both runner threads are idle, and the runner thread of the other queue started waiting first
+            Future<PrioritizedSplitRunner> otherRunner = executor.submit(() -> splitQueue.take(0));
+            Thread.sleep(100);
+            Future<PrioritizedSplitRunner> ownRunner = executor.submit(() -> splitQueue.take(1));
+            Thread.sleep(100);
+
+            // the split wakes up the runner thread that last ran it, rather than one that has to wait for its affinity to expire
+            split.setRunnerId(1);
+            splitQueue.offer(split);
+            assertSame(ownRunner.get(10, SECONDS), split);
+            assertFalse(otherRunner.isDone());
+            assertEquals(splitQueue.getStolenSplits().getTotalCount(), 0);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeOut = 30_000)
+    public void testWorkStealing()
+            throws Exception
+    {
+        assertYieldingSplitsComplete(new MultilevelSplitQueue(2, 4));
+        assertYieldingSplitsComplete(new MultilevelSplitQueue(2, 4, true, new Duration(1, MILLISECONDS)));
+    }
+
+    private static void assertYieldingSplitsComplete(MultilevelSplitQueue splitQueue)
+            throws Exception
+    {
+        TaskExecutor taskExecutor = new TaskExecutor(4, 8, 3, 4, TASK_FAIR, splitQueue, Ticker.systemTicker());
+        taskExecutor.start();
+        try {
+            List<ListenableFuture<?>> futures = new ArrayList<>();
+            List<YieldingSplit> splits = new ArrayList<>();
+            for (int task = 0; task < 10; task++) {
+                TaskHandle taskHandle = taskExecutor.addTask(new TaskId("test", 0, 0, task, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty());
+                ImmutableList.Builder<YieldingSplit> taskSplits = ImmutableList.builder();
+                for (int split = 0; split < 100; split++) {
+                    taskSplits.add(new YieldingSplit(10));
+                }
+                splits.addAll(taskSplits.build());
+                futures.addAll(taskExecutor.enqueueSplits(taskHandle, task % 2 == 0, taskSplits.build()));
+            }
+
+            for (ListenableFuture<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+            for (YieldingSplit split : splits) {
+                assertTrue(split.isFinished());
+            }
+            assertEquals(splitQueue.size(), 0);
+        }
+        finally {
+            taskExecutor.stop();
+        }
+    }
+
+    @Test
+    public void testIoBoundSplitClassification()
+    {
+        TestingTicker ticker = new TestingTicker();
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2);
+        TaskHandle taskHandle = new TaskHandle(new TaskId("test", 0, 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+        IoBoundSplit ioBoundSplit = new IoBoundSplit(ticker, 3);
+        PrioritizedSplitRunner split = new PrioritizedSplitRunner(
+                taskHandle,
+                ioBoundSplit,
+                ticker,
+                new CounterStat(),
+                new CounterStat(),
+                new TimeStat(),
+                new TimeStat(),
+                true,
+                0.2);
+        assertFalse(split.isIoBound());
+
+        // the first quanta is charged for its scheduled time, as the split is not classified yet
+        split.process();
+        assertTrue(split.isIoBound());
+        assertEquals(taskHandle.getScheduledNanos(), MILLISECONDS.toNanos(500));
+        assertTrue(split.getInfo().contains("io-bound"), split.getInfo());
+
+        // time spent blocked between quanta is accounted separately
+        ticker.increment(200, MILLISECONDS);
+        split.setReady();
+        assertEquals(split.getBlockedNanos(), MILLISECONDS.toNanos(200));
+
+        // once classified, the split is only charged for its CPU time
+        split.process();
+        assertLessThan(taskHandle.getScheduledNanos(), MILLISECONDS.toNanos(600));
+        assertEquals(split.getScheduledNanos(), SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testBlockedOnOutputIsNotIoTime()
+    {
+        TestingTicker ticker = new TestingTicker();
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2);
+        TaskHandle taskHandle = new TaskHandle(new TaskId("test", 0, 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+        PrioritizedSplitRunner split = new PrioritizedSplitRunner(
+                taskHandle,
+                new IoBoundSplit(ticker, 3, false),
+                ticker,
+                new CounterStat(),
+                new CounterStat(),
+                new TimeStat(),
+                new TimeStat(),
+                true,
+                0.2);
+
+        // time spent blocked on a full output buffer is not time spent waiting for I/O
+        split.process();
+        assertFalse(split.isBlockedOnSource());
+        ticker.increment(200, MILLISECONDS);
+        split.setReady();
+        assertEquals(split.getBlockedNanos(), 0);
+    }
+
+    @Test(timeOut = 30_000)
+    public void testIoBoundSplitConcurrency()
+            throws Exception
+    {
+        assertEquals(runBlockedIoBoundSplits(false, true), 2);
+        assertEquals(runBlockedIoBoundSplits(true, true), 4);
+        // splits blocked on their output do not let more splits start
+        assertEquals(runBlockedIoBoundSplits(true, false), 2);
+    }
+
+    private static int runBlockedIoBoundSplits(boolean ioAwareSplitSchedulingEnabled, boolean blockedOnSource)
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(
+                4,
+                2,
+                1,
+                10,
+                TASK_FAIR,
+                new Duration(600, SECONDS),
+                elements -> false,
+                new Duration(60, SECONDS),
+                new EmbedVersion(new ServerConfig()),
+                new MultilevelSplitQueue(2),
+                ticker,
+                ioAwareSplitSchedulingEnabled,
+                0.2,
+                2.0);
+        taskExecutor.start();
+        try {
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("test", 0, 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty());
+            List<IoBoundSplit> splits = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                splits.add(new IoBoundSplit(ticker, 2, blockedOnSource));
+            }
+            List<ListenableFuture<?>> futures = taskExecutor.enqueueSplits(taskHandle, false, splits);
+
+            boolean extraSplitsStarted = ioAwareSplitSchedulingEnabled && blockedOnSource;
+            int expectedStartedSplits = extraSplitsStarted ? 4 : 2;
+            while (splits.stream().filter(IoBoundSplit::isStarted).count() < expectedStartedSplits) {
+                MILLISECONDS.sleep(10);
+            }
+            // no more splits are started while the running ones are blocked
+            MILLISECONDS.sleep(100);
+            int startedSplits = (int) splits.stream().filter(IoBoundSplit::isStarted).count();
+            assertEquals(taskExecutor.getBlockedIoBoundSplits(), extraSplitsStarted ? startedSplits : 0);
+
+            for (IoBoundSplit split : splits) {
+                split.completeRead();
+            }
+            for (ListenableFuture<?> future : futures) {
+                future.get(10, SECONDS);
+            }
+            assertEquals(taskExecutor.getBlockedIoBoundSplits(), 0);
+            assertEquals(taskExecutor.getCompletedIoBoundSplits().getTotalCount(), 6);
+            return startedSplits;
+        }
+        finally {
+            taskExecutor.stop();
+        }
+    }
+
     @Test
     public void testLevelContributionCap()
     {
@@ -516,6 +770,118 @@ public class TestTaskExecutor
         }
     }
 
+    private static PrioritizedSplitRunner createPrioritizedSplitRunner(TaskHandle taskHandle, Ticker ticker)
+    {
+        return new PrioritizedSplitRunner(
+                taskHandle,
+                new YieldingSplit(1),
+                ticker,
+                new CounterStat(),
+                new CounterStat(),
+                new TimeStat(),
+                new TimeStat());
+    }
+
+    private static class YieldingSplit
+            implements SplitRunner
+    {
+        private final AtomicInteger remainingQuanta;
+
+        public YieldingSplit(int quanta)
+        {
+            this.remainingQuanta = new AtomicInteger(quanta);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return remainingQuanta.get() <= 0;
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            remainingQuanta.decrementAndGet();
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return "yielding-split";
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    private static class IoBoundSplit
+            implements SplitRunner
+    {
+        private final TestingTicker ticker;
+        private final AtomicInteger remainingQuanta;
+        private final boolean blockedOnSource;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final SettableFuture<?> read = SettableFuture.create();
+
+        public IoBoundSplit(TestingTicker ticker, int quanta)
+        {
+            this(ticker, quanta, true);
+        }
+
+        public IoBoundSplit(TestingTicker ticker, int quanta, boolean blockedOnSource)
+        {
+            this.ticker = ticker;
+            this.remainingQuanta = new AtomicInteger(quanta);
+            this.blockedOnSource = blockedOnSource;
+        }
+
+        public boolean isStarted()
+        {
+            return started.get();
+        }
+
+        public void completeRead()
+        {
+            read.set(null);
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return remainingQuanta.get() <= 0;
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            started.set(true);
+            remainingQuanta.decrementAndGet();
+            // waiting for a read from remote storage uses wall time but no CPU time
+            ticker.increment(500, MILLISECONDS);
+            return read;
+        }
+
+        @Override
+        public boolean isBlockedOnSource()
+        {
+            return blockedOnSource;
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return "io-bound-split";
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
     private static class TestingJob
             implements SplitRunner
     {
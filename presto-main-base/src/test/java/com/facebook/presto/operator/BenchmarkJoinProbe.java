@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.JoinProbe.JoinProbeFactory;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+/**
+ * Compares resolving the join positions of a probe page one position at a time against
+ * the batch lookup used by {@link JoinProbe}. See {@link BenchmarkHashBuildAndJoinOperators}
+ * for the end to end operator benchmark.
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Thread)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(AverageTime)
+@Fork(3)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class BenchmarkJoinProbe
+{
+    private static final int POSITIONS_PER_PAGE = 1024;
+    private static final int PROBE_PAGES = 1000;
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT);
+
+    @State(Thread)
+    public static class BenchmarkData
+    {
+        @Param({"10000", "1000000", "10000000"})
+        private int buildRows = 1_000_000;
+
+        @Param({"0.1", "1"})
+        private double matchRate = 1;
+
+        private LookupSource lookupSource;
+        private List<Page> probePages;
+        private JoinProbeFactory joinProbeFactory;
+
+        @Setup
+        public void setup()
+        {
+            PagesIndex pagesIndex = new PagesIndex.TestingFactory(false).newPagesIndex(TYPES, buildRows);
+            for (int start = 0; start < buildRows; start += POSITIONS_PER_PAGE) {
+                int end = Math.min(start + POSITIONS_PER_PAGE, buildRows);
+                BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, end - start);
+                for (int value = start; value < end; value++) {
+                    BIGINT.writeLong(blockBuilder, value);
+                }
+                pagesIndex.addPage(new Page(blockBuilder.build()));
+            }
+            lookupSource = pagesIndex.createLookupSourceSupplier(TEST_SESSION, ImmutableList.of(0)).get();
+
+            Random random = new Random(42);
+            ImmutableList.Builder<Page> pages = ImmutableList.builder();
+            for (int page = 0; page < PROBE_PAGES; page++) {
+                BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, POSITIONS_PER_PAGE);
+                for (int position = 0; position < POSITIONS_PER_PAGE; position++) {
+                    long value = random.nextInt(buildRows);
+                    BIGINT.writeLong(blockBuilder, random.nextDouble() < matchRate ? value : -value - 1);
+                }
+                pages.add(new Page(blockBuilder.build()));
+            }
+            probePages = pages.build();
+            joinProbeFactory = new JoinProbeFactory(new int[] {0}, ImmutableList.of(0), OptionalInt.empty());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBE_PAGES * POSITIONS_PER_PAGE)
+    public long singlePositionLookup(BenchmarkData data)
+    {
+        long matches = 0;
+        for (Page page : data.probePages) {
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                if (data.lookupSource.getJoinPosition(position, page, page) >= 0) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBE_PAGES * POSITIONS_PER_PAGE)
+    public long batchLookup(BenchmarkData data)
+    {
+        long matches = 0;
+        for (Page page : data.probePages) {
+            JoinProbe probe = data.joinProbeFactory.createJoinProbe(page);
+            while (probe.advanceNextPosition()) {
+                if (probe.getCurrentJoinPosition(data.lookupSource) >= 0) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        // assure the benchmarks are valid before running
+        BenchmarkData data = new BenchmarkData();
+        data.setup();
+        long singleMatches = new BenchmarkJoinProbe().singlePositionLookup(data);
+        long batchMatches = new BenchmarkJoinProbe().batchLookup(data);
+        if (singleMatches != batchMatches) {
+            throw new AssertionError("Batch lookup produced a different number of matches");
+        }
+
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkJoinProbe.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.Session;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.metadata.FunctionAndTypeManager;
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.operator.HashAggregationOperator.HashAggregationOperatorFactory;
+import com.facebook.presto.spi.function.JavaAggregationFunctionImplementation;
+import com.facebook.presto.spi.plan.AggregationNode;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.sql.gen.JoinCompiler;
+import com.facebook.presto.testing.TestingTaskContext;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.BenchmarkRadixPartitionedAggregation.Context.ROWS_PER_PAGE;
+import static com.facebook.presto.operator.BenchmarkRadixPartitionedAggregation.Context.TOTAL_PAGES;
+import static com.facebook.presto.operator.aggregation.GenericAccumulatorFactory.generateAccumulatorFactory;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.RADIX_AGGREGATION_PARTITION_SIZE;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.RADIX_PARTITIONED_AGGREGATION_ENABLED;
+import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Compares the partial hash aggregation with a single hash table against the radix partitioned one,
+ * from a number of groups that fits in the CPU cache to one that does not fit in the partial memory.
+ */
+@State(Thread)
+@OutputTimeUnit(MILLISECONDS)
+@BenchmarkMode(AverageTime)
+@Fork(3)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10, time = 2, timeUnit = SECONDS)
+public class BenchmarkRadixPartitionedAggregation
+{
+    private static final MetadataManager metadata = MetadataManager.createTestMetadataManager();
+    private static final FunctionAndTypeManager FUNCTION_AND_TYPE_MANAGER = metadata.getFunctionAndTypeManager();
+
+    private static final JavaAggregationFunctionImplementation LONG_SUM = FUNCTION_AND_TYPE_MANAGER.getJavaAggregateFunctionImplementation(
+            FUNCTION_AND_TYPE_MANAGER.lookupFunction("sum", fromTypes(BIGINT)));
+    private static final JavaAggregationFunctionImplementation COUNT = FUNCTION_AND_TYPE_MANAGER.getJavaAggregateFunctionImplementation(
+            FUNCTION_AND_TYPE_MANAGER.lookupFunction("count", ImmutableList.of()));
+
+    @State(Thread)
+    public static class Context
+    {
+        public static final int TOTAL_PAGES = 200;
+        public static final int ROWS_PER_PAGE = 10_000;
+
+        @Param({"1000", "100000", "10000000", "100000000"})
+        public int groupCount;
+
+        @Param({"hash", "radix"})
+        public String aggregationType;
+
+        private ExecutorService executor;
+        private ScheduledExecutorService scheduledExecutor;
+        private Session session;
+        private OperatorFactory operatorFactory;
+        private List<Page> pages;
+
+        @Setup
+        public void setup()
+        {
+            executor = newCachedThreadPool(daemonThreadsNamed("test-executor-%s"));
+            scheduledExecutor = newScheduledThreadPool(2, daemonThreadsNamed("test-scheduledExecutor-%s"));
+
+            session = Session.builder(TEST_SESSION)
+                    .setSystemProperty(RADIX_PARTITIONED_AGGREGATION_ENABLED, String.valueOf(aggregationType.equalsIgnoreCase("radix")))
+                    .setSystemProperty(RADIX_AGGREGATION_PARTITION_SIZE, "1MB")
+                    .build();
+
+            Random random = new Random(42);
+            RowPagesBuilder pagesBuilder = RowPagesBuilder.rowPagesBuilder(true, ImmutableList.of(0), BIGINT, BIGINT);
+            for (int i = 0; i < TOTAL_PAGES; i++) {
+                BlockBuilder keys = BIGINT.createBlockBuilder(null, ROWS_PER_PAGE);
+                BlockBuilder values = BIGINT.createBlockBuilder(null, ROWS_PER_PAGE);
+                for (int j = 0; j < ROWS_PER_PAGE; j++) {
+                    BIGINT.writeLong(keys, random.nextInt(groupCount));
+                    BIGINT.writeLong(values, j);
+                }
+                pagesBuilder.addBlocksPage(keys.build(), values.build());
+            }
+            pages = pagesBuilder.build();
+
+            operatorFactory = new HashAggregationOperatorFactory(
+                    0,
+                    new PlanNodeId("test"),
+                    ImmutableList.of(BIGINT),
+                    ImmutableList.of(0),
+                    ImmutableList.of(),
+                    ImmutableList.of(),
+                    AggregationNode.Step.PARTIAL,
+                    ImmutableList.of(generateAccumulatorFactory(COUNT, ImmutableList.of(0), Optional.empty()),
+                            generateAccumulatorFactory(LONG_SUM, ImmutableList.of(1), Optional.empty())),
+                    pagesBuilder.getHashChannel(),
+                    Optional.empty(),
+                    10_000,
+                    Optional.of(new DataSize(64, MEGABYTE)),
+                    new JoinCompiler(metadata),
+                    false);
+        }
+
+        public TaskContext createTaskContext()
+        {
+            return TestingTaskContext.createTaskContext(executor, scheduledExecutor, session, new DataSize(2, GIGABYTE));
+        }
+
+        public OperatorFactory getOperatorFactory()
+        {
+            return operatorFactory;
+        }
+
+        public List<Page> getPages()
+        {
+            return pages;
+        }
+    }
+
+    @Benchmark
+    public List<Page> benchmark(Context context)
+    {
+        DriverContext driverContext = context.createTaskContext().addPipelineContext(0, true, true, false).addDriverContext();
+        Operator operator = context.getOperatorFactory().createOperator(driverContext);
+
+        Iterator<Page> input = context.getPages().iterator();
+        ImmutableList.Builder<Page> outputPages = ImmutableList.builder();
+
+        boolean finishing = false;
+        for (int loops = 0; !operator.isFinished() && loops < 1_000_000; loops++) {
+            if (operator.needsInput()) {
+                if (input.hasNext()) {
+                    operator.addInput(input.next());
+                }
+                else if (!finishing) {
+                    operator.finish();
+                    finishing = true;
+                }
+            }
+
+            Page outputPage = operator.getOutput();
+            if (outputPage != null) {
+                outputPages.add(outputPage);
+            }
+        }
+
+        return outputPages.build();
+    }
+
+    @Test
+    public void verifyHash()
+    {
+        verify(1000, "hash");
+        verify(100_000, "hash");
+    }
+
+    @Test
+    public void verifyRadix()
+    {
+        verify(1000, "radix");
+        verify(100_000, "radix");
+    }
+
+    private void verify(int groupCount, String aggregationType)
+    {
+        Context context = new Context();
+        context.groupCount = groupCount;
+        context.aggregationType = aggregationType;
+        context.setup();
+
+        // partial aggregation may emit a group more than once, but the partial counts add up to the input
+        long rowCount = 0;
+        for (Page page : benchmark(context)) {
+            // the group by key and its hash are followed by the count and the sum
+            Block counts = page.getBlock(2);
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                rowCount += BIGINT.getLong(counts, position);
+            }
+        }
+        assertEquals(rowCount, (long) TOTAL_PAGES * ROWS_PER_PAGE);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkRadixPartitionedAggregation.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
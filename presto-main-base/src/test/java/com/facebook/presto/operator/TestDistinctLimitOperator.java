@@ -18,9 +18,11 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Ints;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -31,7 +33,9 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.LongStream;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
@@ -41,11 +45,16 @@ import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
+import static com.facebook.presto.operator.OperatorAssertion.toPages;
+import static com.facebook.presto.operator.OperatorAssertion.toPagesPartial;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestDistinctLimitOperator
@@ -107,6 +116,43 @@ public class TestDistinctLimitOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected, hashEnabled, ImmutableList.of(1));
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testDistinctLimitWithSpill(boolean hashEnabled)
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(50, 0)
+                .addSequencePage(100, 25)
+                .build();
+
+        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                rowPagesBuilder.getTypes(),
+                Ints.asList(0),
+                90,
+                rowPagesBuilder.getHashChannel(),
+                joinCompiler,
+                0,
+                true,
+                new GenericPartitioningSpillerFactory(new DummySingleStreamSpillerFactory()));
+        Operator operator = operatorFactory.createOperator(driverContext);
+
+        // the first page is produced before spilling, only its values are spilled with the hash
+        List<Long> producedBeforeSpill = getValues(toPagesPartial(operator, input.subList(0, 1).iterator(), false));
+        assertEquals(producedBeforeSpill, LongStream.range(0, 50).boxed().collect(toImmutableList()));
+        assertGreaterThan(operator.getOperatorContext().getReservedRevocableBytes(), 0L);
+        getFutureValue(operator.startMemoryRevoke());
+        operator.finishMemoryRevoke();
+        assertEquals(operator.getOperatorContext().getReservedRevocableBytes(), 0L);
+
+        // the rest of the limit is filled from the unspilled partitions, without producing the spilled values again
+        List<Long> producedAfterSpill = getValues(toPages(operator, input.subList(1, input.size()).iterator(), false));
+        assertEquals(producedAfterSpill.size(), 40);
+        assertEquals(ImmutableSet.copyOf(producedAfterSpill).size(), 40);
+        assertTrue(producedAfterSpill.stream().allMatch(value -> value >= 50 && value < 125));
+    }
+
     @Test(dataProvider = "hashEnabledValues")
     public void testDistinctLimitWithPageAlignment(boolean hashEnabled)
     {
@@ -167,4 +213,14 @@ public class TestDistinctLimitOperator
         assertGreaterThan(result.getMaxReservedBytes(), 20L << 20);
         assertEquals(result.getOutput().stream().mapToInt(Page::getPositionCount).sum(), 6_000 * 600);
     }
+
+    private List<Long> getValues(List<Page> pages)
+    {
+        MaterializedResult result = toMaterializedResult(driverContext.getSession(), ImmutableList.of(BIGINT), pages.stream()
+                .map(page -> page.extractChannels(new int[] {0}))
+                .collect(toImmutableList()));
+        return result.getMaterializedRows().stream()
+                .map(row -> (Long) row.getField(0))
+                .collect(toImmutableList());
+    }
 }
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.predicate.ValueSet;
@@ -24,6 +25,7 @@ import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.airlift.units.DataSize;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -32,6 +34,7 @@ import org.testng.annotations.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.IntStream;
@@ -48,6 +51,7 @@ import static com.facebook.presto.block.BlockAssertions.createLongRepeatBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createSequenceBlockOfReal;
+import static com.facebook.presto.block.BlockAssertions.createStringSequenceBlock;
 import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.common.predicate.Range.range;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
@@ -66,11 +70,13 @@ import static com.facebook.presto.testing.assertions.Assert.assertEquals;
 import static com.facebook.presto.type.ColorType.COLOR;
 import static com.google.common.base.Strings.repeat;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static io.airlift.slice.Slices.utf8Slice;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static java.lang.Float.floatToRawIntBits;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestDynamicFilterSourceOperator
@@ -80,6 +86,7 @@ public class TestDynamicFilterSourceOperator
     private PipelineContext pipelineContext;
 
     private ImmutableList.Builder<TupleDomain<String>> partitions;
+    private ImmutableList.Builder<Map<String, BlockedBloomFilter>> bloomFilters;
 
     @BeforeMethod
     public void setUp()
@@ -90,6 +97,7 @@ public class TestDynamicFilterSourceOperator
                 .addPipelineContext(0, true, true, false);
 
         partitions = ImmutableList.builder();
+        bloomFilters = ImmutableList.builder();
     }
 
     @AfterMethod(alwaysRun = true)
@@ -141,11 +149,33 @@ public class TestDynamicFilterSourceOperator
                 useNewNanDefinition);
     }
 
+    private OperatorFactory createOperatorFactoryWithBloomFilter(int minMaxCollectionLimit, DataSize bloomFilterSize, DynamicFilterSourceOperator.Channel... buildChannels)
+    {
+        return new DynamicFilterSourceOperator.DynamicFilterSourceOperatorFactory(
+                0,
+                new PlanNodeId("PLAN_NODE_ID"),
+                this::consumePredicate,
+                ImmutableList.copyOf(buildChannels),
+                100,
+                new DataSize(10, KILOBYTE),
+                minMaxCollectionLimit,
+                true,
+                this::consumeBloomFilters,
+                bloomFilterSize);
+    }
+
     private void consumePredicate(TupleDomain<String> partitionPredicate)
     {
         partitions.add(partitionPredicate);
     }
 
+    private void consumeBloomFilters(Map<String, BlockedBloomFilter> partitionBloomFilters)
+    {
+        // the Bloom filters must be provided before the predicate completes the partition
+        assertEquals(partitions.build().size(), bloomFilters.build().size());
+        bloomFilters.add(partitionBloomFilters);
+    }
+
     private Operator createOperator(OperatorFactory operatorFactory)
     {
         return operatorFactory.createOperator(pipelineContext.addDriverContext());
@@ -582,4 +612,95 @@ public class TestDynamicFilterSourceOperator
                         new Page(createLongSequenceBlock(0, maxPositionsCount + 1))),
                 ImmutableList.of(TupleDomain.all()));
     }
+
+    @Test
+    public void testCollectBloomFilterWhenTooManyPositions()
+    {
+        OperatorFactory operatorFactory = createOperatorFactoryWithBloomFilter(1_000_000, new DataSize(1, KILOBYTE), channel(0, BIGINT), channel(1, VARCHAR), channel(2, DOUBLE));
+        Page largePage = new Page(
+                createLongSequenceBlock(0, 101),
+                createStringSequenceBlock(0, 101),
+                createDoubleSequenceBlock(0, 101));
+        verifyPassthrough(createOperator(operatorFactory), ImmutableList.of(BIGINT, VARCHAR, DOUBLE), largePage);
+        operatorFactory.noMoreOperators();
+
+        assertEquals(partitions.build(), ImmutableList.of(TupleDomain.withColumnDomains(ImmutableMap.of(
+                "0", Domain.create(ValueSet.ofRanges(range(BIGINT, 0L, true, 100L, true)), false),
+                "1", Domain.create(ValueSet.ofRanges(range(VARCHAR, utf8Slice("0"), true, utf8Slice("99"), true)), false)))));
+
+        // no Bloom filter for the unsupported DOUBLE column
+        Map<String, BlockedBloomFilter> partitionBloomFilters = getOnlyElement(bloomFilters.build());
+        assertEquals(partitionBloomFilters.keySet(), ImmutableSet.of("0", "1"));
+        for (long value = 0; value <= 100; value++) {
+            assertTrue(partitionBloomFilters.get("0").mightContain(BlockedBloomFilter.hashLong(value)));
+            assertTrue(partitionBloomFilters.get("1").mightContain(BlockedBloomFilter.hashSlice(utf8Slice(Long.toString(value)))));
+        }
+    }
+
+    @Test
+    public void testCollectBloomFilterWhenMinMaxLimitExceeded()
+    {
+        // the 'all' predicate is only published once all the values are added to the Bloom filter
+        OperatorFactory operatorFactory = createOperatorFactoryWithBloomFilter(150, new DataSize(1, KILOBYTE), channel(0, BIGINT));
+        Operator operator = createOperator(operatorFactory);
+        verifyPassthrough(
+                operator,
+                ImmutableList.of(BIGINT),
+                new Page(createLongSequenceBlock(0, 101)),
+                new Page(createLongSequenceBlock(101, 202)));
+        operatorFactory.noMoreOperators();
+
+        assertEquals(partitions.build(), ImmutableList.of(TupleDomain.all()));
+        BlockedBloomFilter bloomFilter = getOnlyElement(bloomFilters.build()).get("0");
+        assertEquals(bloomFilter.getEntryCount(), 202);
+        for (long value = 0; value < 202; value++) {
+            assertTrue(bloomFilter.mightContain(BlockedBloomFilter.hashLong(value)));
+        }
+    }
+
+    @Test
+    public void testDropBloomFilterWhenTooManyEntries()
+    {
+        // 1KB Bloom filter holds up to 819 entries
+        OperatorFactory operatorFactory = createOperatorFactoryWithBloomFilter(0, new DataSize(1, KILOBYTE), channel(0, BIGINT));
+        verifyPassthrough(
+                createOperator(operatorFactory),
+                ImmutableList.of(BIGINT),
+                new Page(createLongSequenceBlock(0, 500)),
+                new Page(createLongSequenceBlock(500, 1000)));
+        operatorFactory.noMoreOperators();
+
+        assertEquals(partitions.build(), ImmutableList.of(TupleDomain.all()));
+        assertEquals(bloomFilters.build(), ImmutableList.of());
+    }
+
+    @Test
+    public void testBloomFilterCountsDistinctValues()
+    {
+        OperatorFactory operatorFactory = createOperatorFactoryWithBloomFilter(0, new DataSize(1, KILOBYTE), channel(0, BIGINT));
+        verifyPassthrough(
+                createOperator(operatorFactory),
+                ImmutableList.of(BIGINT),
+                new Page(createLongSequenceBlock(0, 100)),
+                new Page(createLongSequenceBlock(0, 100)),
+                new Page(createLongRepeatBlock(7, 100)));
+        operatorFactory.noMoreOperators();
+
+        BlockedBloomFilter bloomFilter = getOnlyElement(bloomFilters.build()).get("0");
+        assertEquals(bloomFilter.getEntryCount(), 100);
+    }
+
+    @Test
+    public void testBloomFilterMemoryReservation()
+    {
+        OperatorFactory operatorFactory = createOperatorFactoryWithBloomFilter(0, new DataSize(1, KILOBYTE), channel(0, BIGINT));
+        Operator operator = createOperator(operatorFactory);
+        operatorFactory.noMoreOperators();
+        assertTrue(operator.getOperatorContext().getOperatorMemoryContext().getSystemMemory() >= 1024);
+
+        operator.addInput(new Page(createLongSequenceBlock(0, 100)));
+        operator.getOutput();
+        operator.finish();
+        assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getSystemMemory(), 0L);
+    }
 }
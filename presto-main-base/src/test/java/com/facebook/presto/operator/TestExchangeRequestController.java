@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.airlift.testing.TestingTicker;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestExchangeRequestController
+{
+    private static final long MEGABYTE = 1024 * 1024;
+    private static final long KILOBYTE = 1024;
+
+    @Test
+    public void testEstimates()
+    {
+        TestingTicker ticker = new TestingTicker();
+        ExchangeRequestController controller = new ExchangeRequestController(16 * MEGABYTE, 3, ticker);
+        assertFalse(controller.hasEstimates());
+
+        // the throughput is only measured once enough time passed
+        controller.requestCompleted(2 * MEGABYTE, 2 * MEGABYTE, MILLISECONDS.toNanos(50));
+        assertFalse(controller.hasEstimates());
+
+        ticker.increment(100, MILLISECONDS);
+        controller.requestCompleted(4 * MEGABYTE, 4 * MEGABYTE, MILLISECONDS.toNanos(50));
+        assertTrue(controller.hasEstimates());
+        assertEquals(controller.getThroughputBytesPerSecond(), 60 * MEGABYTE);
+        assertEquals(controller.getLatencyNanos(), MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void testResponseSizeGrowsWhileResponsesAreFull()
+    {
+        ExchangeRequestController controller = new ExchangeRequestController(16 * MEGABYTE, 3, new TestingTicker());
+        assertEquals(controller.getResponseSizeInBytes(), 2 * MEGABYTE);
+
+        controller.requestCompleted(2 * MEGABYTE, 2 * MEGABYTE, MILLISECONDS.toNanos(10));
+        assertEquals(controller.getResponseSizeInBytes(), 4 * MEGABYTE);
+        controller.requestCompleted(4 * MEGABYTE, 4 * MEGABYTE, MILLISECONDS.toNanos(10));
+        controller.requestCompleted(8 * MEGABYTE, 8 * MEGABYTE, MILLISECONDS.toNanos(10));
+        controller.requestCompleted(16 * MEGABYTE, 16 * MEGABYTE, MILLISECONDS.toNanos(10));
+        assertEquals(controller.getResponseSizeInBytes(), 16 * MEGABYTE);
+
+        // partially filled responses keep the size
+        controller.requestCompleted(16 * MEGABYTE, 8 * MEGABYTE, MILLISECONDS.toNanos(10));
+        assertEquals(controller.getResponseSizeInBytes(), 16 * MEGABYTE);
+    }
+
+    @Test
+    public void testResponseSizeShrinksWhileResponsesAreEmpty()
+    {
+        ExchangeRequestController controller = new ExchangeRequestController(16 * MEGABYTE, 3, new TestingTicker());
+        for (int i = 0; i < 10; i++) {
+            controller.requestCompleted(controller.getResponseSizeInBytes(), 0, SECONDS.toNanos(1));
+        }
+        assertEquals(controller.getResponseSizeInBytes(), 64 * KILOBYTE);
+    }
+
+    @Test
+    public void testConcurrentRequestsForFewLargeSources()
+    {
+        TestingTicker ticker = new TestingTicker();
+        ExchangeRequestController controller = new ExchangeRequestController(16 * MEGABYTE, 3, ticker);
+        controller.requestCompleted(2 * MEGABYTE, 2 * MEGABYTE, MILLISECONDS.toNanos(50));
+        ticker.increment(100, MILLISECONDS);
+        controller.requestCompleted(4 * MEGABYTE, 4 * MEGABYTE, MILLISECONDS.toNanos(50));
+        assertEquals(controller.getResponseSizeInBytes(), 8 * MEGABYTE);
+
+        // 60MB/s during 50ms is 3MB per round trip, and twice that fits in one 8MB response, i.e. two average responses
+        assertEquals(controller.getConcurrentRequests(32 * MEGABYTE, 4 * MEGABYTE), 2);
+        // at least one request is sent while there is free buffer space
+        assertEquals(controller.getConcurrentRequests(MEGABYTE, MEGABYTE), 1);
+        // the requests in flight can not exceed three times the free buffer space when they all come back full
+        assertEquals(controller.getConcurrentRequests(8 * MEGABYTE, 64 * KILOBYTE), 3);
+    }
+
+    @Test
+    public void testConcurrentRequestsForManySmallSources()
+    {
+        TestingTicker ticker = new TestingTicker();
+        ExchangeRequestController controller = new ExchangeRequestController(16 * MEGABYTE, 3, ticker);
+
+        // most tasks have no data and their requests wait a second, while the others return a little data quickly
+        for (int i = 0; i < 100; i++) {
+            ticker.increment(10, MILLISECONDS);
+            if (i % 2 == 0) {
+                controller.requestCompleted(controller.getResponseSizeInBytes(), 0, SECONDS.toNanos(1));
+            }
+            else {
+                controller.requestCompleted(controller.getResponseSizeInBytes(), 10 * KILOBYTE, MILLISECONDS.toNanos(10));
+            }
+        }
+        assertTrue(controller.hasEstimates());
+        assertEquals(controller.getResponseSizeInBytes(), 64 * KILOBYTE);
+
+        // about 500KB/s are received, and the long waits of the idle tasks bring the average latency close to half a second,
+        // so about 500KB must be in flight, i.e. around a hundred requests returning 5KB on average
+        int concurrentRequests = controller.getConcurrentRequests(32 * MEGABYTE, 5 * KILOBYTE);
+        assertTrue(concurrentRequests > 50, "concurrentRequests: " + concurrentRequests);
+        assertTrue(concurrentRequests <= 3 * 32 * MEGABYTE / (64 * KILOBYTE), "concurrentRequests: " + concurrentRequests);
+    }
+}
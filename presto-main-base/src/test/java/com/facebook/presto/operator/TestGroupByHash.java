@@ -20,6 +20,7 @@ import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.DictionaryBlock;
 import com.facebook.presto.common.block.DictionaryId;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
@@ -37,12 +38,16 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
+import static com.facebook.presto.block.BlockAssertions.createDateSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createIntsBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createStringSequenceBlock;
 import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.facebook.presto.type.TypeUtils.getHashBlock;
@@ -199,6 +204,91 @@ public class TestGroupByHash
         BlockAssertions.assertBlockEquals(BIGINT, outputPage.getBlock(0), BlockAssertions.createLongSequenceBlock(0, 50));
     }
 
+    @Test
+    public void testFixedWidthMultipleColumns()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, DATE, INTEGER);
+        List<Long> bigints = new ArrayList<>();
+        List<Integer> ints = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // the last column alternates between null and a value to exercise the null mask
+            bigints.add(i % 3 == 0 ? null : (long) (i % 100));
+            ints.add(i % 2 == 0 ? null : 7);
+        }
+        Block bigintBlock = createLongsBlock(bigints);
+        Block dateBlock = createDateSequenceBlock(0, 1000);
+        Block intBlock = createIntsBlock(ints);
+        Block hashBlock = getHashBlock(types, bigintBlock, dateBlock, intBlock);
+        Page page = new Page(bigintBlock, dateBlock, intBlock, hashBlock);
+
+        // expected size is small enough to force several rehashes
+        GroupByHash groupByHash = createGroupByHash(TEST_SESSION, types, new int[] {0, 1, 2}, Optional.of(3), 4, JOIN_COMPILER);
+        assertTrue(groupByHash instanceof FixedWidthGroupByHash);
+        assertEquals(groupByHash.getTypes(), ImmutableList.of(BIGINT, DATE, INTEGER, BIGINT));
+
+        Work<GroupByIdBlock> work = groupByHash.getGroupIds(page);
+        work.process();
+        GroupByIdBlock groupIds = work.getResult();
+        assertEquals(groupByHash.getGroupCount(), 1000);
+        for (int i = 0; i < groupIds.getPositionCount(); i++) {
+            assertEquals(groupIds.getGroupId(i), i);
+        }
+
+        // adding the same rows again must not create new groups
+        groupByHash.addPage(page).process();
+        assertEquals(groupByHash.getGroupCount(), 1000);
+
+        PageBuilder pageBuilder = new PageBuilder(groupByHash.getTypes());
+        for (int i = 0; i < groupByHash.getGroupCount(); i++) {
+            pageBuilder.declarePosition();
+            groupByHash.appendValuesTo(i, pageBuilder, 0);
+            assertEquals(groupByHash.getRawHash(i), BIGINT.getLong(hashBlock, i));
+        }
+        Page outputPage = pageBuilder.build();
+        BlockAssertions.assertBlockEquals(BIGINT, outputPage.getBlock(0), bigintBlock);
+        BlockAssertions.assertBlockEquals(DATE, outputPage.getBlock(1), dateBlock);
+        BlockAssertions.assertBlockEquals(INTEGER, outputPage.getBlock(2), intBlock);
+        BlockAssertions.assertBlockEquals(BIGINT, outputPage.getBlock(3), hashBlock);
+
+        List<Page> bufferedPages = groupByHash.getBufferedPages();
+        assertEquals(bufferedPages.stream().mapToInt(Page::getPositionCount).sum(), 1000);
+        BlockAssertions.assertBlockEquals(DATE, bufferedPages.get(0).getBlock(1), dateBlock.getRegion(0, bufferedPages.get(0).getPositionCount()));
+
+        int[] hashChannels = {0, 1, 2};
+        assertTrue(groupByHash.contains(5, page, hashChannels));
+        assertTrue(groupByHash.contains(6, page, hashChannels));
+        Block otherIntBlock = createIntsBlock(8);
+        Page otherPage = new Page(bigintBlock.getRegion(5, 1), dateBlock.getRegion(5, 1), otherIntBlock);
+        assertFalse(groupByHash.contains(0, otherPage, hashChannels));
+    }
+
+    @Test
+    public void testFixedWidthRunLengthEncoded()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, BIGINT);
+        Page page = new Page(
+                new RunLengthEncodedBlock(createLongsBlock(1), 100),
+                new RunLengthEncodedBlock(createLongsBlock((Long) null), 100));
+        GroupByHash groupByHash = createGroupByHash(TEST_SESSION, types, new int[] {0, 1}, Optional.empty(), 100, JOIN_COMPILER);
+
+        Work<GroupByIdBlock> work = groupByHash.getGroupIds(page);
+        work.process();
+        GroupByIdBlock groupIds = work.getResult();
+        assertEquals(groupIds.getPositionCount(), 100);
+        assertEquals(groupIds.getGroupCount(), 1);
+        assertEquals(groupIds.getGroupId(99), 0);
+        assertTrue(groupByHash.contains(0, page, new int[] {0, 1}));
+    }
+
+    @Test
+    public void testNonFixedWidthMultipleColumns()
+    {
+        GroupByHash groupByHash = createGroupByHash(TEST_SESSION, ImmutableList.of(BIGINT, VARCHAR), new int[] {0, 1}, Optional.empty(), 100, JOIN_COMPILER);
+        assertTrue(groupByHash instanceof MultiChannelGroupByHash);
+        groupByHash = createGroupByHash(TEST_SESSION, ImmutableList.of(BIGINT, DOUBLE), new int[] {0, 1}, Optional.empty(), 100, JOIN_COMPILER);
+        assertTrue(groupByHash instanceof MultiChannelGroupByHash);
+    }
+
     @Test
     public void testContains()
     {
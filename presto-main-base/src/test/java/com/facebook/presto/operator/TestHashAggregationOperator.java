@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
@@ -28,6 +29,7 @@ import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.operator.HashAggregationOperator.HashAggregationOperatorFactory;
 import com.facebook.presto.operator.aggregation.builder.HashAggregationBuilder;
 import com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder;
+import com.facebook.presto.operator.aggregation.builder.RadixPartitionedHashAggregationBuilder;
 import com.facebook.presto.operator.aggregation.partial.PartialAggregationController;
 import com.facebook.presto.spi.function.JavaAggregationFunctionImplementation;
 import com.facebook.presto.spi.plan.AggregationNode.Step;
@@ -50,8 +52,10 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -76,6 +80,8 @@ import static com.facebook.presto.operator.OperatorAssertion.dropChannel;
 import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.OperatorAssertion.toPages;
 import static com.facebook.presto.operator.aggregation.GenericAccumulatorFactory.generateAccumulatorFactory;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.RADIX_AGGREGATION_PARTITION_SIZE;
+import static com.facebook.presto.sessionpropertyproviders.JavaWorkerSessionPropertyProvider.RADIX_PARTITIONED_AGGREGATION_ENABLED;
 import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
@@ -585,6 +591,77 @@ public class TestHashAggregationOperator
         assertEquals(driverContext.getMemoryUsage(), 0);
     }
 
+    @Test(dataProvider = "hashEnabled")
+    public void testRadixPartitionedPartialAggregation(boolean hashEnabled)
+            throws Exception
+    {
+        List<Integer> hashChannels = Ints.asList(0);
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, hashChannels, BIGINT);
+        for (int i = 0; i < 20; i++) {
+            rowPagesBuilder.addSequencePage(10_000, (i % 10) * 10_000);
+        }
+        List<Page> input = rowPagesBuilder.build();
+
+        HashAggregationOperatorFactory operatorFactory = new HashAggregationOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT),
+                hashChannels,
+                ImmutableList.of(),
+                ImmutableList.of(),
+                Step.PARTIAL,
+                ImmutableList.of(generateAccumulatorFactory(COUNT, ImmutableList.of(0), Optional.empty())),
+                rowPagesBuilder.getHashChannel(),
+                Optional.empty(),
+                100,
+                Optional.of(new DataSize(16, MEGABYTE)),
+                joinCompiler,
+                false);
+
+        Session session = Session.builder(TEST_SESSION)
+                .setSystemProperty(RADIX_PARTITIONED_AGGREGATION_ENABLED, "true")
+                .setSystemProperty(RADIX_AGGREGATION_PARTITION_SIZE, "16kB")
+                .build();
+        DriverContext driverContext = TestingTaskContext.builder(executor, scheduledExecutor, session)
+                .build()
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+
+        try (Operator operator = operatorFactory.createOperator(driverContext)) {
+            HashAggregationBuilder aggregationBuilder = null;
+            List<Page> outputPages = new ArrayList<>();
+            Iterator<Page> inputIterator = input.iterator();
+            while (inputIterator.hasNext()) {
+                if (operator.needsInput()) {
+                    operator.addInput(inputIterator.next());
+                }
+                Page output = operator.getOutput();
+                if (output != null) {
+                    outputPages.add(output);
+                }
+
+                // full sub-tables are flushed without replacing the builder
+                HashAggregationBuilder currentBuilder = ((HashAggregationOperator) operator).getAggregationBuilder();
+                assertTrue(currentBuilder instanceof RadixPartitionedHashAggregationBuilder);
+                assertTrue(aggregationBuilder == null || aggregationBuilder == currentBuilder);
+                aggregationBuilder = currentBuilder;
+            }
+            assertFalse(outputPages.isEmpty());
+            outputPages.addAll(toPages(operator, emptyIterator()));
+
+            // every group is counted twice, possibly across several partial rows
+            Map<Long, Long> counts = new HashMap<>();
+            for (Page page : outputPages) {
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    counts.merge(BIGINT.getLong(page.getBlock(0), position), BIGINT.getLong(page.getBlock(page.getChannelCount() - 1), position), Long::sum);
+                }
+            }
+            assertEquals(counts.size(), 100_000);
+            assertTrue(counts.values().stream().allMatch(count -> count == 2));
+        }
+        assertEquals(driverContext.getMemoryUsage(), 0);
+    }
+
     @Test
     public void testMergeWithMemorySpill()
     {
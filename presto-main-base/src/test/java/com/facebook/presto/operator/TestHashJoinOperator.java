@@ -21,7 +21,6 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskStateMachine;
-import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.HashBuilderOperator.HashBuilderOperatorFactory;
 import com.facebook.presto.operator.ValuesOperator.ValuesOperatorFactory;
 import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeFactory;
@@ -34,7 +33,6 @@ import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
 import com.facebook.presto.spiller.PartitioningSpillerFactory;
-import com.facebook.presto.spiller.SingleStreamSpiller;
 import com.facebook.presto.spiller.SingleStreamSpillerFactory;
 import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
 import com.facebook.presto.sql.planner.PartitioningProviderManager;
@@ -44,7 +42,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
@@ -55,7 +52,6 @@ import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
@@ -83,16 +79,12 @@ import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqual
 import static com.facebook.presto.operator.OperatorAssertion.dropChannel;
 import static com.facebook.presto.operator.OperatorAssertion.without;
 import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
-import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.facebook.presto.testing.assertions.Assert.assertEquals;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.Iterators.unmodifiableIterator;
-import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
-import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.lang.String.format;
@@ -113,7 +105,7 @@ public class TestHashJoinOperator
 {
     private static final int PARTITION_COUNT = 4;
     private static final LookupJoinOperators LOOKUP_JOIN_OPERATORS = new LookupJoinOperators();
-    private static final SingleStreamSpillerFactory SINGLE_STREAM_SPILLER_FACTORY = new DummySpillerFactory();
+    private static final SingleStreamSpillerFactory SINGLE_STREAM_SPILLER_FACTORY = new DummySingleStreamSpillerFactory();
     private static final PartitioningSpillerFactory PARTITIONING_SPILLER_FACTORY = new GenericPartitioningSpillerFactory(SINGLE_STREAM_SPILLER_FACTORY);
     private static final String PAGE_BUFFER = "PageBuffer";
 
@@ -339,8 +331,8 @@ public class TestHashJoinOperator
     public void testInnerJoinWithFailingSpill(boolean probeHashEnabled, List<WhenSpill> whenSpill, WhenSpillFails whenSpillFails, boolean isDictionaryProcessingJoinEnabled)
             throws Throwable
     {
-        DummySpillerFactory buildSpillerFactory = new DummySpillerFactory();
-        DummySpillerFactory joinSpillerFactory = new DummySpillerFactory();
+        DummySingleStreamSpillerFactory buildSpillerFactory = new DummySingleStreamSpillerFactory();
+        DummySingleStreamSpillerFactory joinSpillerFactory = new DummySingleStreamSpillerFactory();
         PartitioningSpillerFactory partitioningSpillerFactory = new GenericPartitioningSpillerFactory(joinSpillerFactory);
 
         String expectedMessage;
@@ -492,6 +484,149 @@ public class TestHashJoinOperator
         }
     }
 
+    @DataProvider
+    public Object[][] lookupOuterJoinWithSpillValues()
+    {
+        List<Object[]> result = new ArrayList<>();
+        for (boolean probeHashEnabled : ImmutableList.of(false, true)) {
+            // built outer partitions are not revocable, so they can only be spilled during build
+            result.add(new Object[] {probeHashEnabled, nCopies(PARTITION_COUNT, WhenSpill.NEVER)});
+            result.add(new Object[] {probeHashEnabled, nCopies(PARTITION_COUNT, WhenSpill.DURING_BUILD)});
+            result.add(new Object[] {probeHashEnabled, concat(singletonList(WhenSpill.DURING_BUILD), nCopies(PARTITION_COUNT - 1, WhenSpill.NEVER))});
+            // a revoke requested during build that is only handled once the lookup source is built does not spill it
+            result.add(new Object[] {probeHashEnabled, nCopies(PARTITION_COUNT, WhenSpill.AFTER_BUILD)});
+        }
+        return result.toArray(new Object[][] {});
+    }
+
+    @Test(dataProvider = "lookupOuterJoinWithSpillValues", timeOut = 60000)
+    public void testLookupOuterJoinWithSpill(boolean probeHashEnabled, List<WhenSpill> whenSpill)
+            throws Exception
+    {
+        TaskStateMachine taskStateMachine = new TaskStateMachine(new TaskId("query", 0, 0, 0, 0), executor);
+        TaskContext taskContext = TestingTaskContext.createTaskContext(executor, scheduledExecutor, TEST_SESSION, taskStateMachine);
+
+        // build factory, with enough pages for every partition to receive input more than once
+        RowPagesBuilder buildPages = rowPagesBuilder(ImmutableList.of(VARCHAR, BIGINT));
+        for (int key = 100; key < 180; key += 10) {
+            buildPages.addSequencePage(10, key, 900 + key);
+        }
+
+        BuildSideSetup buildSideSetup = setupBuildSide(true, taskContext, Ints.asList(0), buildPages, Optional.empty(), true, SINGLE_STREAM_SPILLER_FACTORY, false, true);
+        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = buildSideSetup.getLookupSourceFactoryManager();
+
+        // probe factory
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), ImmutableList.of(VARCHAR, BIGINT))
+                .addSequencePage(20, 90, 0);
+        JoinOperatorFactory joinOperatorFactory = (JoinOperatorFactory) LOOKUP_JOIN_OPERATORS.lookupOuterJoin(
+                0,
+                new PlanNodeId("test"),
+                lookupSourceFactoryManager,
+                probePages.getTypes(),
+                Ints.asList(0),
+                getHashChannelAsInt(probePages),
+                Optional.empty(),
+                OptionalInt.of(1),
+                PARTITIONING_SPILLER_FACTORY,
+                false);
+        OperatorFactory outerOperatorFactory = joinOperatorFactory.createOuterOperatorFactory().get().getOuterOperatorFactory();
+
+        // build drivers and operators
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+        List<Driver> buildDrivers = buildSideSetup.getBuildDrivers();
+        int buildOperatorCount = buildDrivers.size();
+        checkState(buildOperatorCount == whenSpill.size());
+        LookupSourceFactory lookupSourceFactory = lookupSourceFactoryManager.getJoinBridge(Lifespan.taskWide());
+
+        ListenableFuture<LookupSourceProvider> lookupSourceProvider = lookupSourceFactory.createLookupSourceProvider();
+        List<Boolean> revoked = new ArrayList<>(nCopies(buildOperatorCount, false));
+        List<Boolean> revokeRequested = new ArrayList<>(nCopies(buildOperatorCount, false));
+        while (!lookupSourceProvider.isDone()) {
+            for (int i = 0; i < buildOperatorCount; i++) {
+                checkErrors(taskStateMachine);
+                buildDrivers.get(i).process();
+                HashBuilderOperator buildOperator = buildSideSetup.getBuildOperators().get(i);
+                if (whenSpill.get(i) == WhenSpill.DURING_BUILD && buildOperator.getOperatorContext().getReservedRevocableBytes() > 0) {
+                    checkState(!lookupSourceProvider.isDone(), "Too late, LookupSource already done");
+                    revokeMemory(buildOperator);
+                    revoked.set(i, true);
+                }
+                if (whenSpill.get(i) == WhenSpill.AFTER_BUILD && buildOperator.getOperatorContext().getReservedRevocableBytes() > 0) {
+                    revokeRequested.set(i, true);
+                }
+            }
+        }
+        getFutureValue(lookupSourceProvider).close();
+        assertEquals(revoked, whenSpill.stream().map(WhenSpill.DURING_BUILD::equals).collect(toImmutableList()), "Some operators not spilled before LookupSource built");
+        assertEquals(revokeRequested, whenSpill.stream().map(WhenSpill.AFTER_BUILD::equals).collect(toImmutableList()), "Some operators had no revocable memory during build");
+        for (int i = 0; i < buildOperatorCount; i++) {
+            HashBuilderOperator buildOperator = buildSideSetup.getBuildOperators().get(i);
+            assertEquals(buildOperator.getOperatorContext().getReservedRevocableBytes(), 0, "Built outer lookup source must not be revocable");
+            if (revokeRequested.get(i)) {
+                // the revoke requested while consuming input arrives after the lookup source was lent to the probe
+                assertEquals(buildOperator.getState(), HashBuilderOperator.State.LOOKUP_SOURCE_BUILT);
+                getFutureValue(buildOperator.startMemoryRevoke());
+                buildOperator.finishMemoryRevoke();
+                assertEquals(buildOperator.getState(), HashBuilderOperator.State.LOOKUP_SOURCE_BUILT);
+            }
+        }
+
+        for (Driver buildDriver : buildDrivers) {
+            runDriverInThread(executor, buildDriver);
+        }
+
+        // the unmatched rows of the spilled partitions are only available once the partition is unspilled,
+        // so the join and outer drivers have to make progress together
+        DriverContext joinDriverContext = taskContext.addPipelineContext(2, true, true, false).addDriverContext();
+        ValuesOperatorFactory valuesOperatorFactory = new ValuesOperatorFactory(17, new PlanNodeId("values"), probePages.build());
+        PageBuffer pageBuffer = new PageBuffer(100);
+        PageBufferOperatorFactory pageBufferOperatorFactory = new PageBufferOperatorFactory(18, new PlanNodeId(PAGE_BUFFER), pageBuffer, PAGE_BUFFER);
+        Operator joinOperator = joinOperatorFactory.createOperator(joinDriverContext);
+        Driver joinDriver = Driver.createDriver(
+                joinDriverContext,
+                valuesOperatorFactory.createOperator(joinDriverContext),
+                joinOperator,
+                pageBufferOperatorFactory.createOperator(joinDriverContext));
+
+        DriverContext outerDriverContext = taskContext.addPipelineContext(3, false, true, false).addDriverContext();
+        PageBuffer outerPageBuffer = new PageBuffer(100);
+        PageBufferOperatorFactory outerPageBufferOperatorFactory = new PageBufferOperatorFactory(20, new PlanNodeId(PAGE_BUFFER), outerPageBuffer, PAGE_BUFFER);
+        Driver outerDriver = Driver.createDriver(
+                outerDriverContext,
+                outerOperatorFactory.createOperator(outerDriverContext),
+                outerPageBufferOperatorFactory.createOperator(outerDriverContext));
+        joinOperatorFactory.noMoreOperators(Lifespan.taskWide());
+        joinOperatorFactory.noMoreOperators();
+        outerOperatorFactory.noMoreOperators(Lifespan.taskWide());
+        outerOperatorFactory.noMoreOperators();
+
+        List<Page> actualPages = new ArrayList<>();
+        while (!joinDriver.isFinished() || !outerDriver.isFinished()) {
+            if (!joinDriver.isFinished()) {
+                processRow(joinDriver, taskStateMachine);
+            }
+            if (!outerDriver.isFinished()) {
+                processRow(outerDriver, taskStateMachine);
+            }
+            actualPages.addAll(getPages(pageBuffer));
+            actualPages.addAll(getPages(outerPageBuffer));
+        }
+        checkErrors(taskStateMachine);
+        actualPages.addAll(getPages(pageBuffer));
+        actualPages.addAll(getPages(outerPageBuffer));
+
+        // the probe rows without a match are dropped, the build rows without a match are padded with nulls
+        MaterializedResult.Builder expected = MaterializedResult.resultBuilder(taskContext.getSession(), concat(probePages.getTypesWithoutHash(), buildPages.getTypesWithoutHash()));
+        for (long key = 100; key < 110; key++) {
+            expected.row(String.valueOf(key), key - 90, String.valueOf(key), 900 + key);
+        }
+        for (long key = 110; key < 180; key++) {
+            expected.row(null, null, String.valueOf(key), 900 + key);
+        }
+
+        assertEqualsIgnoreOrder(getProperColumns(joinOperator, concat(probePages.getTypes(), buildPages.getTypes()), probePages, actualPages).getMaterializedRows(), expected.build().getMaterializedRows());
+    }
+
     @Test(timeOut = 60000)
     public void testInnerJoinWithSpillWithEarlyTermination()
     {
@@ -684,7 +819,7 @@ public class TestHashJoinOperator
         RowPagesBuilder buildPages = rowPagesBuilder(ImmutableList.of(VARCHAR, BIGINT))
                 .addSequencePage(4, 20, 200);
 
-        DummySpillerFactory buildSpillerFactory = new DummySpillerFactory();
+        DummySingleStreamSpillerFactory buildSpillerFactory = new DummySingleStreamSpillerFactory();
 
         BuildSideSetup buildSideSetup = setupBuildSide(true, taskContext, Ints.asList(0), buildPages, Optional.empty(), true, buildSpillerFactory);
         instantiateBuildDrivers(buildSideSetup, taskContext);
@@ -1542,6 +1677,21 @@ public class TestHashJoinOperator
             boolean spillEnabled,
             SingleStreamSpillerFactory singleStreamSpillerFactory,
             boolean enforceBroadcastMemoryLimit)
+    {
+        return setupBuildSide(parallelBuild, taskContext, hashChannels, buildPages,
+                filterFunction, spillEnabled, singleStreamSpillerFactory, enforceBroadcastMemoryLimit, false);
+    }
+
+    private BuildSideSetup setupBuildSide(
+            boolean parallelBuild,
+            TaskContext taskContext,
+            List<Integer> hashChannels,
+            RowPagesBuilder buildPages,
+            Optional<InternalJoinFilterFunction> filterFunction,
+            boolean spillEnabled,
+            SingleStreamSpillerFactory singleStreamSpillerFactory,
+            boolean enforceBroadcastMemoryLimit,
+            boolean outer)
     {
         Optional<JoinFilterFunctionFactory> filterFunctionFactory = filterFunction
                 .map(function -> (session, addresses, pages) -> new StandardJoinFilterFunction(function, addresses, pages));
@@ -1587,7 +1737,7 @@ public class TestHashJoinOperator
                         .collect(toImmutableList()),
                 partitionCount,
                 requireNonNull(ImmutableMap.of(), "layout is null"),
-                false));
+                outer));
 
         HashBuilderOperatorFactory buildOperatorFactory = new HashBuilderOperatorFactory(
                 1,
@@ -1773,82 +1923,4 @@ public class TestHashJoinOperator
             return lambda.filter(leftPosition, leftPage, rightPosition, rightPage);
         }
     }
-
-    private static class DummySpillerFactory
-            implements SingleStreamSpillerFactory
-    {
-        private volatile boolean failSpill;
-        private volatile boolean failUnspill;
-
-        void failSpill()
-        {
-            failSpill = true;
-        }
-
-        void failUnspill()
-        {
-            failUnspill = true;
-        }
-
-        @Override
-        public SingleStreamSpiller create(List<Type> types, SpillContext spillContext, LocalMemoryContext memoryContext)
-        {
-            return new SingleStreamSpiller()
-            {
-                private boolean writing = true;
-                private final List<Page> spills = new ArrayList<>();
-
-                @Override
-                public ListenableFuture<?> spill(Iterator<Page> pageIterator)
-                {
-                    checkState(writing, "writing already finished");
-                    if (failSpill) {
-                        return immediateFailedFuture(new PrestoException(GENERIC_INTERNAL_ERROR, "Spill failed"));
-                    }
-                    Iterators.addAll(spills, pageIterator);
-                    return immediateFuture(null);
-                }
-
-                @Override
-                public Iterator<Page> getSpilledPages()
-                {
-                    if (failUnspill) {
-                        throw new PrestoException(GENERIC_INTERNAL_ERROR, "Unspill failed");
-                    }
-                    writing = false;
-                    return unmodifiableIterator(spills.iterator());
-                }
-
-                @Override
-                public long getSpilledPagesInMemorySize()
-                {
-                    return spills.stream()
-                            .mapToLong(Page::getSizeInBytes)
-                            .sum();
-                }
-
-                @Override
-                public ListenableFuture<List<Page>> getAllSpilledPages()
-                {
-                    if (failUnspill) {
-                        return immediateFailedFuture(new PrestoException(GENERIC_INTERNAL_ERROR, "Unspill failed"));
-                    }
-                    writing = false;
-                    return immediateFuture(ImmutableList.copyOf(spills));
-                }
-
-                @Override
-                public void commit()
-                {
-                    writing = false;
-                }
-
-                @Override
-                public void close()
-                {
-                    writing = false;
-                }
-            };
-        }
-    }
 }
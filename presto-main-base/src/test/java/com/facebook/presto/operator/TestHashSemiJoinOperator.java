@@ -20,6 +20,8 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.HashSemiJoinOperator.HashSemiJoinOperatorFactory;
 import com.facebook.presto.operator.SetBuilderOperator.SetBuilderOperatorFactory;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
@@ -30,12 +32,16 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThanOrEqual;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
@@ -46,17 +52,22 @@ import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.metadata.MetadataManager.createTestMetadataManager;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.concat;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestHashSemiJoinOperator
 {
+    private static final PartitioningSpillerFactory PARTITIONING_SPILLER_FACTORY = new GenericPartitioningSpillerFactory(new DummySingleStreamSpillerFactory());
+
     private ExecutorService executor;
     private ScheduledExecutorService scheduledExecutor;
     private TaskContext taskContext;
@@ -421,6 +432,106 @@ public class TestHashSemiJoinOperator
         OperatorAssertion.assertOperatorEquals(joinOperatorFactory, driverContext, probeInput, expected, hashEnabled, ImmutableList.of(probeTypes.size()));
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testSemiJoinWithSpill(boolean hashEnabled)
+            throws Exception
+    {
+        PipelineContext pipelineContext = taskContext.addPipelineContext(0, true, true, false);
+        DriverContext buildDriverContext = pipelineContext.addDriverContext();
+
+        // build
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+        List<Page> buildPages = rowPagesBuilder
+                .addSequencePage(10, 0)
+                .row((Object) null)
+                .pageBreak()
+                .addSequencePage(10, 100)
+                .build();
+        SetBuilderOperatorFactory setBuilderOperatorFactory = new SetBuilderOperatorFactory(
+                1,
+                new PlanNodeId("test"),
+                rowPagesBuilder.getTypes().get(0),
+                0,
+                rowPagesBuilder.getHashChannel(),
+                10,
+                new JoinCompiler(createTestMetadataManager()),
+                true,
+                PARTITIONING_SPILLER_FACTORY);
+        SetBuilderOperator setBuilderOperator = (SetBuilderOperator) setBuilderOperatorFactory.createOperator(buildDriverContext);
+
+        // spill the set after the first page, the second page is spilled directly
+        assertTrue(setBuilderOperator.needsInput());
+        setBuilderOperator.addInput(buildPages.get(0));
+        assertGreaterThan(setBuilderOperator.getOperatorContext().getReservedRevocableBytes(), 0L);
+        getFutureValue(setBuilderOperator.startMemoryRevoke());
+        setBuilderOperator.finishMemoryRevoke();
+        assertEquals(setBuilderOperator.getOperatorContext().getReservedRevocableBytes(), 0L);
+        assertEquals(setBuilderOperator.getState(), SetBuilderOperator.State.SPILLING_INPUT);
+        for (Page page : buildPages.subList(1, buildPages.size())) {
+            getFutureValue(setBuilderOperator.isBlocked());
+            assertTrue(setBuilderOperator.needsInput());
+            setBuilderOperator.addInput(page);
+        }
+        getFutureValue(setBuilderOperator.isBlocked());
+        setBuilderOperator.finish();
+        assertEquals(setBuilderOperator.getState(), SetBuilderOperator.State.INPUT_SPILLED);
+
+        // probe
+        List<Type> probeTypes = ImmutableList.of(BIGINT, BIGINT);
+        RowPagesBuilder rowPagesBuilderProbe = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT, BIGINT);
+        List<Page> probeInput = rowPagesBuilderProbe
+                .addSequencePage(5, 8, 0)
+                .row(null, 5L)
+                .pageBreak()
+                .addSequencePage(3, 108, 6)
+                .build();
+        Optional<Integer> probeHashChannel = hashEnabled ? Optional.of(probeTypes.size()) : Optional.empty();
+        HashSemiJoinOperatorFactory joinOperatorFactory = new HashSemiJoinOperatorFactory(
+                2,
+                new PlanNodeId("test"),
+                setBuilderOperatorFactory.getSetProvider(),
+                rowPagesBuilderProbe.getTypes(),
+                0,
+                probeHashChannel,
+                OptionalInt.of(1),
+                PARTITIONING_SPILLER_FACTORY);
+        Operator joinOperator = joinOperatorFactory.createOperator(pipelineContext.addDriverContext());
+
+        List<Page> output = new ArrayList<>();
+        for (Page page : probeInput) {
+            getFutureValue(joinOperator.isBlocked());
+            assertTrue(joinOperator.needsInput());
+            joinOperator.addInput(page);
+            assertEquals(joinOperator.getOutput(), null);
+        }
+        joinOperator.finish();
+        while (!joinOperator.isFinished() || !setBuilderOperator.isFinished()) {
+            setBuilderOperator.finish();
+            Page page = joinOperator.getOutput();
+            if (page != null) {
+                output.add(page);
+            }
+        }
+        joinOperator.close();
+
+        // the set contains a null value, so rows without a match produce null
+        MaterializedResult expected = resultBuilder(TEST_SESSION, concat(probeTypes, ImmutableList.of(BOOLEAN)))
+                .row(8L, 0L, true)
+                .row(9L, 1L, true)
+                .row(10L, 2L, null)
+                .row(11L, 3L, null)
+                .row(12L, 4L, null)
+                .row(null, 5L, null)
+                .row(108L, 6L, true)
+                .row(109L, 7L, true)
+                .row(110L, 8L, null)
+                .build();
+        List<Page> outputWithoutHash = output.stream()
+                .map(page -> hashEnabled ? page.extractChannels(new int[] {0, 1, 3}) : page)
+                .collect(toImmutableList());
+        assertEqualsIgnoreOrder(toMaterializedResult(TEST_SESSION, expected.getTypes(), outputWithoutHash).getMaterializedRows(), expected.getMaterializedRows());
+    }
+
     @Test(dataProvider = "hashEnabledValues", expectedExceptions = ExceededMemoryLimitException.class, expectedExceptionsMessageRegExp = "Query exceeded per-node user memory limit of.*")
     public void testMemoryLimit(boolean hashEnabled)
     {
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.PartitionedLookupSource.createPartitionedLookupSourceSupplier;
+import static com.facebook.presto.type.TypeUtils.getHashBlock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestJoinHash
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT);
+    private static final List<Integer> JOIN_CHANNELS = ImmutableList.of(0);
+
+    @Test
+    public void testBatchJoinPositions()
+    {
+        LookupSource lookupSource = createLookupSource(buildValues(1000), 1);
+        assertTrue(lookupSource.supportsBatchJoinPositions());
+        assertBatchMatchesSingle(lookupSource);
+    }
+
+    @Test
+    public void testPartitionedBatchJoinPositions()
+    {
+        LookupSource lookupSource = createLookupSource(buildValues(1000), 4);
+        assertTrue(lookupSource.supportsBatchJoinPositions());
+        assertBatchMatchesSingle(lookupSource);
+    }
+
+    private static void assertBatchMatchesSingle(LookupSource lookupSource)
+    {
+        // every other probe value is missing from the build side
+        List<Long> probeValues = new ArrayList<>();
+        for (long value = 0; value < 2000; value++) {
+            probeValues.add(value);
+        }
+        Block probeBlock = createLongsBlock(probeValues);
+        Page probePage = new Page(probeBlock);
+        Block hashBlock = getHashBlock(TYPES, probeBlock);
+
+        // only look up the odd positions
+        int[] positions = IntStream.range(0, probePage.getPositionCount()).filter(position -> position % 2 == 1).toArray();
+
+        long[] joinPositions = new long[probePage.getPositionCount()];
+        lookupSource.getJoinPositions(positions, positions.length, probePage, probePage, null, joinPositions);
+
+        long[] rawHashes = new long[probePage.getPositionCount()];
+        for (int position = 0; position < rawHashes.length; position++) {
+            rawHashes[position] = BIGINT.getLong(hashBlock, position);
+        }
+        long[] joinPositionsWithHashes = new long[probePage.getPositionCount()];
+        lookupSource.getJoinPositions(positions, positions.length, probePage, probePage, rawHashes, joinPositionsWithHashes);
+
+        for (int position : positions) {
+            long expected = lookupSource.getJoinPosition(position, probePage, probePage);
+            assertEquals(joinPositions[position], expected);
+            assertEquals(joinPositionsWithHashes[position], expected);
+            assertEquals(expected >= 0, position < 1000);
+        }
+    }
+
+    private static List<Long> buildValues(int count)
+    {
+        List<Long> values = new ArrayList<>();
+        for (long value = 0; value < count; value++) {
+            values.add(value);
+            // add duplicates so that some keys have position links
+            if (value % 10 == 0) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private static LookupSource createLookupSource(List<Long> values, int partitionCount)
+    {
+        LocalPartitionGenerator partitionGenerator = new LocalPartitionGenerator(InterpretedHashGenerator.createPositionalWithTypes(TYPES), partitionCount);
+        List<List<Long>> partitionValues = new ArrayList<>();
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitionValues.add(new ArrayList<>());
+        }
+        for (Long value : values) {
+            partitionValues.get(partitionGenerator.getPartition(new Page(createLongsBlock(value)), 0)).add(value);
+        }
+
+        ImmutableList.Builder<Supplier<LookupSource>> partitions = ImmutableList.builder();
+        for (List<Long> partition : partitionValues) {
+            PagesIndex pagesIndex = new PagesIndex.TestingFactory(false).newPagesIndex(TYPES, partition.size());
+            pagesIndex.addPage(new Page(createLongsBlock(partition)));
+            partitions.add(pagesIndex.createLookupSourceSupplier(TEST_SESSION, JOIN_CHANNELS));
+        }
+        List<Supplier<LookupSource>> suppliers = partitions.build();
+        if (partitionCount == 1) {
+            return suppliers.get(0).get();
+        }
+        return createPartitionedLookupSourceSupplier(suppliers, TYPES, false).getLookupSource();
+    }
+}
@@ -21,6 +21,7 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.operator.MarkDistinctOperator.MarkDistinctOperatorFactory;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
@@ -30,12 +31,15 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.airlift.testing.Assertions.assertInstanceOf;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
@@ -45,9 +49,14 @@ import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
+import static com.facebook.presto.operator.OperatorAssertion.toPages;
+import static com.facebook.presto.operator.OperatorAssertion.toPagesPartial;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Collections.emptyIterator;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
@@ -111,6 +120,55 @@ public class TestMarkDistinctOperator
         OperatorAssertion.assertOperatorEqualsIgnoreOrder(operatorFactory, driverContext, input, expected.build(), hashEnabled, Optional.of(1));
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testMarkDistinctWithSpill(boolean hashEnabled)
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(100, 0)
+                .addSequencePage(100, 50)
+                .addSequencePage(100, 0)
+                .build();
+
+        OperatorFactory operatorFactory = new MarkDistinctOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                rowPagesBuilder.getTypes(),
+                ImmutableList.of(0),
+                rowPagesBuilder.getHashChannel(),
+                joinCompiler,
+                true,
+                new GenericPartitioningSpillerFactory(new DummySingleStreamSpillerFactory()));
+        Operator operator = operatorFactory.createOperator(driverContext);
+
+        // the hash is held in revocable memory until it is spilled
+        List<Page> output = new ArrayList<>(toPagesPartial(operator, input.subList(0, 1).iterator(), false));
+        assertGreaterThan(operator.getOperatorContext().getReservedRevocableBytes(), 0L);
+        getFutureValue(operator.startMemoryRevoke());
+        operator.finishMemoryRevoke();
+        assertEquals(operator.getOperatorContext().getReservedRevocableBytes(), 0L);
+
+        // the remaining input is spilled and only marked after all input has been received
+        assertEquals(toPagesPartial(operator, input.subList(1, input.size()).iterator(), false), ImmutableList.of());
+        output.addAll(toPages(operator, emptyIterator(), false));
+
+        // values marked before spilling are not marked as distinct again
+        MaterializedResult.Builder expected = resultBuilder(driverContext.getSession(), BIGINT, BOOLEAN);
+        for (long i = 0; i < 100; i++) {
+            expected.row(i, true);
+            expected.row(i, false);
+        }
+        for (long i = 50; i < 150; i++) {
+            expected.row(i, i >= 100);
+        }
+        List<Page> outputWithoutHash = output.stream()
+                .map(page -> page.extractChannels(new int[] {0, page.getChannelCount() - 1}))
+                .collect(toImmutableList());
+        assertEqualsIgnoreOrder(
+                toMaterializedResult(driverContext.getSession(), ImmutableList.of(BIGINT, BOOLEAN), outputWithoutHash).getMaterializedRows(),
+                expected.build().getMaterializedRows());
+    }
+
     @Test(dataProvider = "hashEnabledValues")
     public void testRleDistinctMask(boolean hashEnabled)
     {
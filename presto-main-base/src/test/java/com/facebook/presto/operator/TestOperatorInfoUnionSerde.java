@@ -118,6 +118,10 @@ public class TestOperatorInfoUnionSerde
         assertThat(exchangeClientStatus.getSuccessfulRequestsCount()).isEqualTo(5708);
         assertThat(exchangeClientStatus.getBufferedPages()).isEqualTo(316);
         assertThat(exchangeClientStatus.isNoMoreLocations()).isTrue();
+        assertThat(exchangeClientStatus.getConcurrentRequests()).isEqualTo(8);
+        assertThat(exchangeClientStatus.getMaxResponseSizeInBytes()).isEqualTo(2097152);
+        assertThat(exchangeClientStatus.getThroughputBytesPerSecond()).isEqualTo(104857600);
+        assertThat(exchangeClientStatus.getRequestLatencyNanos()).isEqualTo(15000000);
 
         List<PageBufferClientStatus> pageBufferClientStatuses = exchangeClientStatus.getPageBufferClientStatuses();
         assertNotNull(pageBufferClientStatuses);
@@ -157,6 +161,10 @@ public class TestOperatorInfoUnionSerde
                         2,
                         71,
                         3,
-                        "OK")));
+                        "OK")),
+                8,
+                2097152,
+                104857600,
+                15000000);
     }
 }
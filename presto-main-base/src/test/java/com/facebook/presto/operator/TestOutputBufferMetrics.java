@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.CompressionCodec;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.execution.buffer.PagesSerdeFactory;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.sql.planner.TestingOutputBuffer;
+import com.google.common.util.concurrent.SettableFuture;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.block.BlockAssertions.createLongRepeatBlock;
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_PAGE_SERIALIZATION_TIME_NANOS;
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_SERIALIZED_PAGE_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_UNCOMPRESSED_PAGE_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.OUTPUT_BUFFER_BLOCKED_TIME_NANOS;
+import static com.facebook.presto.common.RuntimeMetricName.OUTPUT_BUFFER_UTILIZATION_PERCENT;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestOutputBufferMetrics
+{
+    @Test
+    public void testSerializedPages()
+    {
+        RuntimeStats runtimeStats = new RuntimeStats();
+        OutputBufferMetrics metrics = new OutputBufferMetrics(new TestingUtilizationOutputBuffer(), runtimeStats);
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), CompressionCodec.LZ4).createPagesSerde();
+
+        SerializedPage first = metrics.serialize(serde, new Page(createLongRepeatBlock(7, 10_000)));
+        SerializedPage second = metrics.serialize(serde, new Page(createLongRepeatBlock(7, 100)));
+        assertTrue(first.getSizeInBytes() < first.getUncompressedSizeInBytes());
+
+        assertEquals(runtimeStats.getMetric(EXCHANGE_SERIALIZED_PAGE_BYTES).getCount(), 2);
+        assertEquals(runtimeStats.getMetric(EXCHANGE_SERIALIZED_PAGE_BYTES).getSum(), first.getSizeInBytes() + second.getSizeInBytes());
+        assertEquals(runtimeStats.getMetric(EXCHANGE_SERIALIZED_PAGE_BYTES).getMax(), first.getSizeInBytes());
+        assertEquals(runtimeStats.getMetric(EXCHANGE_UNCOMPRESSED_PAGE_BYTES).getSum(), first.getUncompressedSizeInBytes() + second.getUncompressedSizeInBytes());
+        assertEquals(runtimeStats.getMetric(EXCHANGE_PAGE_SERIALIZATION_TIME_NANOS).getCount(), 2);
+    }
+
+    @Test
+    public void testBufferUtilization()
+    {
+        RuntimeStats runtimeStats = new RuntimeStats();
+        TestingUtilizationOutputBuffer outputBuffer = new TestingUtilizationOutputBuffer();
+        OutputBufferMetrics metrics = new OutputBufferMetrics(outputBuffer, runtimeStats);
+
+        outputBuffer.setUtilization(0.25);
+        metrics.recordEnqueued();
+        outputBuffer.setUtilization(0.75);
+        metrics.recordEnqueued();
+
+        assertEquals(runtimeStats.getMetric(OUTPUT_BUFFER_UTILIZATION_PERCENT).getCount(), 2);
+        assertEquals(runtimeStats.getMetric(OUTPUT_BUFFER_UTILIZATION_PERCENT).getMin(), 25);
+        assertEquals(runtimeStats.getMetric(OUTPUT_BUFFER_UTILIZATION_PERCENT).getMax(), 75);
+    }
+
+    @Test
+    public void testBlockedTime()
+    {
+        RuntimeStats runtimeStats = new RuntimeStats();
+        OutputBufferMetrics metrics = new OutputBufferMetrics(new TestingUtilizationOutputBuffer(), runtimeStats);
+
+        // a buffer that is not full does not count as a blocked period
+        metrics.recordBlocked(immediateFuture(null));
+        assertNull(runtimeStats.getMetric(OUTPUT_BUFFER_BLOCKED_TIME_NANOS));
+
+        SettableFuture<?> blocked = SettableFuture.create();
+        assertSame(metrics.recordBlocked(blocked), blocked);
+        assertNull(runtimeStats.getMetric(OUTPUT_BUFFER_BLOCKED_TIME_NANOS));
+
+        blocked.set(null);
+        assertEquals(runtimeStats.getMetric(OUTPUT_BUFFER_BLOCKED_TIME_NANOS).getCount(), 1);
+        assertTrue(runtimeStats.getMetric(OUTPUT_BUFFER_BLOCKED_TIME_NANOS).getSum() >= 0);
+    }
+
+    private static class TestingUtilizationOutputBuffer
+            extends TestingOutputBuffer
+    {
+        private double utilization;
+
+        public void setUtilization(double utilization)
+        {
+            this.utilization = utilization;
+        }
+
+        @Override
+        public double getUtilization()
+        {
+            return utilization;
+        }
+    }
+}
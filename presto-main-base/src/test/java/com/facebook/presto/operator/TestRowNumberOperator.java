@@ -20,6 +20,7 @@ import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
@@ -35,7 +36,9 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.IntStream;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
@@ -48,6 +51,7 @@ import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPages
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.OperatorAssertion.toPages;
+import static com.facebook.presto.operator.OperatorAssertion.toPagesPartial;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static com.google.common.collect.ImmutableList.toImmutableList;
@@ -318,6 +322,63 @@ public class TestRowNumberOperator
         assertEquals(Sets.intersection(expectedPartition3Set, actualSet).size(), 2);
     }
 
+    @DataProvider
+    public static Object[][] spillValues()
+    {
+        return new Object[][] {{true, Optional.empty()}, {false, Optional.empty()}, {true, Optional.of(2)}, {false, Optional.of(2)}};
+    }
+
+    @Test(dataProvider = "spillValues")
+    public void testRowNumberPartitionedWithSpill(boolean hashEnabled, Optional<Integer> maxRowsPerPartition)
+    {
+        DriverContext driverContext = getDriverContext();
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(100, 0)
+                .addSequencePage(100, 0)
+                .addSequencePage(100, 50)
+                .build();
+
+        RowNumberOperator.RowNumberOperatorFactory operatorFactory = new RowNumberOperator.RowNumberOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                rowPagesBuilder.getTypes(),
+                IntStream.range(0, rowPagesBuilder.getTypes().size()).boxed().collect(toImmutableList()),
+                Ints.asList(0),
+                ImmutableList.of(BIGINT),
+                maxRowsPerPartition,
+                rowPagesBuilder.getHashChannel(),
+                10,
+                joinCompiler,
+                true,
+                new GenericPartitioningSpillerFactory(new DummySingleStreamSpillerFactory()));
+        Operator operator = operatorFactory.createOperator(driverContext);
+
+        // the partition hash and the row counters are held in revocable memory until they are spilled
+        MaterializedResult beforeSpill = getPartitionKeyAndRowNumber(driverContext, toPagesPartial(operator, input.subList(0, 1).iterator(), false));
+        MaterializedResult.Builder expectedBeforeSpill = resultBuilder(driverContext.getSession(), BIGINT, BIGINT);
+        for (long key = 0; key < 100; key++) {
+            expectedBeforeSpill.row(key, 1L);
+        }
+        assertEqualsIgnoreOrder(beforeSpill.getMaterializedRows(), expectedBeforeSpill.build().getMaterializedRows());
+        assertGreaterThan(operator.getOperatorContext().getReservedRevocableBytes(), 0L);
+        getFutureValue(operator.startMemoryRevoke());
+        operator.finishMemoryRevoke();
+        assertEquals(operator.getOperatorContext().getReservedRevocableBytes(), 0L);
+
+        // the row numbers of a partition continue from the count spilled with its key
+        MaterializedResult afterSpill = getPartitionKeyAndRowNumber(driverContext, toPages(operator, input.subList(1, input.size()).iterator(), false));
+        MaterializedResult.Builder expectedAfterSpill = resultBuilder(driverContext.getSession(), BIGINT, BIGINT);
+        for (long key = 0; key < 150; key++) {
+            long firstRowNumber = key < 100 ? 2 : 1;
+            long lastRowNumber = Math.min(key < 50 ? 2 : key < 100 ? 3 : 1, maxRowsPerPartition.orElse(Integer.MAX_VALUE));
+            for (long rowNumber = firstRowNumber; rowNumber <= lastRowNumber; rowNumber++) {
+                expectedAfterSpill.row(key, rowNumber);
+            }
+        }
+        assertEqualsIgnoreOrder(afterSpill.getMaterializedRows(), expectedAfterSpill.build().getMaterializedRows());
+    }
+
     @Test
     public void testRowNumberUnpartitionedLimit()
     {
@@ -398,4 +459,12 @@ public class TestRowNumberOperator
                 })
                 .collect(toImmutableList());
     }
+
+    private static MaterializedResult getPartitionKeyAndRowNumber(DriverContext driverContext, List<Page> pages)
+    {
+        List<Page> keysAndRowNumbers = pages.stream()
+                .map(page -> page.extractChannels(new int[] {0, page.getChannelCount() - 1}))
+                .collect(toImmutableList());
+        return toMaterializedResult(driverContext.getSession(), ImmutableList.of(BIGINT, BIGINT), keysAndRowNumbers);
+    }
 }
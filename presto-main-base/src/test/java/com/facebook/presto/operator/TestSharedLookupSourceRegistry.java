@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.execution.StageExecutionId;
+import com.facebook.presto.execution.StageId;
+import com.facebook.presto.operator.SharedLookupSourceRegistry.SharedLookupSourceReference;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.Test;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.execution.Lifespan.taskWide;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestSharedLookupSourceRegistry
+{
+    private static final StageExecutionId STAGE_EXECUTION_ID = new StageExecutionId(new StageId("query", 1), 0);
+    private static final PlanNodeId JOIN_NODE_ID = new PlanNodeId("join");
+
+    @Test
+    public void testSharedLookupSource()
+            throws Exception
+    {
+        SharedLookupSourceRegistry registry = new SharedLookupSourceRegistry();
+        PartitionedLookupSourceFactory lookupSourceFactory = createLookupSourceFactory();
+
+        SharedLookupSourceReference owner = registry.acquire(STAGE_EXECUTION_ID, JOIN_NODE_ID, () -> JoinBridgeManager.lookupAllAtOnce(lookupSourceFactory));
+        SharedLookupSourceReference other = registry.acquire(STAGE_EXECUTION_ID, JOIN_NODE_ID, () -> {
+            fail("lookup source must be shared");
+            return null;
+        });
+        assertTrue(owner.isOwner());
+        assertFalse(other.isOwner());
+        assertSame(other.getLookupSourceFactoryManager(), owner.getLookupSourceFactoryManager());
+
+        JoinBridgeManager<LookupSourceFactory> ownerProbe = createProbeLookupSourceFactoryManager(owner);
+        JoinBridgeManager<LookupSourceFactory> otherProbe = createProbeLookupSourceFactoryManager(other);
+        ListenableFuture<LookupSourceProvider> lookupSourceProvider = otherProbe.getJoinBridge(taskWide()).createLookupSourceProvider();
+        assertFalse(lookupSourceProvider.isDone());
+
+        lookupSourceFactory.lendPartitionLookupSource(0, EmptyLookupSource::new);
+        assertTrue(lookupSourceProvider.isDone());
+        getDone(lookupSourceProvider).close();
+
+        // the lookup source is destroyed once the probe operators of every task are done
+        ownerProbe.probeOperatorFactoryClosed(taskWide());
+        assertFalse(lookupSourceFactory.isDestroyed().isDone());
+        assertEquals(registry.getSharedLookupSourceCount(), 1);
+        otherProbe.probeOperatorFactoryClosed(taskWide());
+        assertTrue(lookupSourceFactory.isDestroyed().isDone());
+        assertEquals(registry.getSharedLookupSourceCount(), 0);
+
+        // releasing a reference again has no effect
+        other.release();
+        assertEquals(registry.getSharedLookupSourceCount(), 0);
+
+        // a task acquiring the lookup source after it was destroyed builds a new one
+        PartitionedLookupSourceFactory newLookupSourceFactory = createLookupSourceFactory();
+        SharedLookupSourceReference newOwner = registry.acquire(STAGE_EXECUTION_ID, JOIN_NODE_ID, () -> JoinBridgeManager.lookupAllAtOnce(newLookupSourceFactory));
+        assertTrue(newOwner.isOwner());
+        assertSame(newOwner.getLookupSourceFactoryManager().getJoinBridge(taskWide()), newLookupSourceFactory);
+    }
+
+    @Test
+    public void testReleaseBeforeBuild()
+    {
+        SharedLookupSourceRegistry registry = new SharedLookupSourceRegistry();
+        PartitionedLookupSourceFactory lookupSourceFactory = createLookupSourceFactory();
+
+        SharedLookupSourceReference owner = registry.acquire(STAGE_EXECUTION_ID, JOIN_NODE_ID, () -> JoinBridgeManager.lookupAllAtOnce(lookupSourceFactory));
+        SharedLookupSourceReference other = registry.acquire(STAGE_EXECUTION_ID, JOIN_NODE_ID, () -> JoinBridgeManager.lookupAllAtOnce(createLookupSourceFactory()));
+        other.release();
+        owner.release();
+        assertEquals(registry.getSharedLookupSourceCount(), 0);
+
+        // the owner still builds the lookup source, which is destroyed as soon as it is built
+        owner.getLookupSourceFactoryManager().getJoinBridge(taskWide());
+        assertFalse(lookupSourceFactory.isDestroyed().isDone());
+        lookupSourceFactory.lendPartitionLookupSource(0, EmptyLookupSource::new);
+        assertTrue(lookupSourceFactory.isDestroyed().isDone());
+    }
+
+    @Test
+    public void testLookupSourcesOfDifferentJoins()
+    {
+        SharedLookupSourceRegistry registry = new SharedLookupSourceRegistry();
+
+        assertTrue(registry.acquire(STAGE_EXECUTION_ID, JOIN_NODE_ID, () -> JoinBridgeManager.lookupAllAtOnce(createLookupSourceFactory())).isOwner());
+        assertTrue(registry.acquire(STAGE_EXECUTION_ID, new PlanNodeId("other"), () -> JoinBridgeManager.lookupAllAtOnce(createLookupSourceFactory())).isOwner());
+        assertTrue(registry.acquire(new StageExecutionId(new StageId("query", 2), 0), JOIN_NODE_ID, () -> JoinBridgeManager.lookupAllAtOnce(createLookupSourceFactory())).isOwner());
+        assertFalse(registry.acquire(STAGE_EXECUTION_ID, JOIN_NODE_ID, () -> JoinBridgeManager.lookupAllAtOnce(createLookupSourceFactory())).isOwner());
+        assertEquals(registry.getSharedLookupSourceCount(), 3);
+    }
+
+    private static JoinBridgeManager<LookupSourceFactory> createProbeLookupSourceFactoryManager(SharedLookupSourceReference reference)
+    {
+        JoinBridgeManager<LookupSourceFactory> probeLookupSourceFactoryManager = reference.createProbeLookupSourceFactoryManager();
+        // as done by the lookup join operator factory of the task
+        probeLookupSourceFactoryManager.incrementProbeFactoryCount();
+        return probeLookupSourceFactoryManager;
+    }
+
+    private static PartitionedLookupSourceFactory createLookupSourceFactory()
+    {
+        return new PartitionedLookupSourceFactory(
+                ImmutableList.of(BIGINT),
+                ImmutableList.of(BIGINT),
+                ImmutableList.of(BIGINT),
+                1,
+                ImmutableMap.of(),
+                false);
+    }
+}
@@ -46,10 +46,15 @@ import org.testng.annotations.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertContains;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.operator.PipelineExecutionStrategy.GROUPED_EXECUTION;
@@ -65,6 +70,8 @@ import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DI
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.airlift.units.DataSize.Unit.BYTE;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
@@ -451,6 +458,137 @@ public class TestLocalExchange
         });
     }
 
+    @Test
+    public void testConcurrentPartition()
+            throws Exception
+    {
+        int writerCount = 8;
+        int readerCount = 4;
+        int pagesPerWriter = 200;
+        LocalExchangeFactory localExchangeFactory = new LocalExchangeFactory(
+                partitioningProviderManager,
+                session,
+                FIXED_HASH_DISTRIBUTION,
+                readerCount,
+                TYPES,
+                ImmutableList.of(0),
+                Optional.empty(),
+                UNGROUPED_EXECUTION,
+                new DataSize(retainedSizeOfPages(4), BYTE));
+        LocalExchangeSinkFactoryId localExchangeSinkFactoryId = localExchangeFactory.newSinkFactoryId();
+        localExchangeFactory.noMoreSinkFactories();
+        LocalExchange exchange = localExchangeFactory.getLocalExchange(Lifespan.taskWide());
+
+        LocalExchangeSinkFactory sinkFactory = exchange.getSinkFactory(localExchangeSinkFactoryId);
+        List<LocalExchangeSink> sinks = Stream.generate(sinkFactory::createSink)
+                .limit(writerCount)
+                .collect(toImmutableList());
+        sinkFactory.close();
+        sinkFactory.noMoreSinkFactories();
+
+        ExecutorService executor = newFixedThreadPool(writerCount + readerCount, daemonThreadsNamed("test-local-exchange-%s"));
+        try {
+            List<Future<Long>> writers = sinks.stream()
+                    .map(sink -> executor.submit(() -> {
+                        for (int i = 0; i < pagesPerWriter; i++) {
+                            sink.waitForWriting().get(10, SECONDS);
+                            sink.addPage(createPage(i));
+                        }
+                        sink.finish();
+                        return (long) pagesPerWriter * createPage(0).getPositionCount();
+                    }))
+                    .collect(toImmutableList());
+            List<Future<Long>> readers = IntStream.range(0, readerCount)
+                    .mapToObj(exchange::getSource)
+                    .map(source -> executor.submit(() -> {
+                        long positions = 0;
+                        while (!source.isFinished()) {
+                            Page page = source.removePage();
+                            if (page == null) {
+                                source.waitForReading().get(10, SECONDS);
+                                continue;
+                            }
+                            positions += page.getPositionCount();
+                        }
+                        return positions;
+                    }))
+                    .collect(toImmutableList());
+
+            long writtenPositions = 0;
+            for (Future<Long> writer : writers) {
+                writtenPositions += writer.get(30, SECONDS);
+            }
+            long readPositions = 0;
+            for (Future<Long> reader : readers) {
+                readPositions += reader.get(30, SECONDS);
+            }
+            assertEquals(readPositions, writtenPositions);
+            assertExchangeTotalBufferedBytes(exchange, 0);
+            for (int i = 0; i < readerCount; i++) {
+                assertSourceFinished(exchange.getSource(i));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseSourcesWhileWriting()
+            throws Exception
+    {
+        int writerCount = 4;
+        LocalExchangeFactory localExchangeFactory = new LocalExchangeFactory(
+                partitioningProviderManager,
+                session,
+                FIXED_HASH_DISTRIBUTION,
+                2,
+                TYPES,
+                ImmutableList.of(0),
+                Optional.empty(),
+                UNGROUPED_EXECUTION,
+                LOCAL_EXCHANGE_MAX_BUFFERED_BYTES);
+        LocalExchangeSinkFactoryId localExchangeSinkFactoryId = localExchangeFactory.newSinkFactoryId();
+        localExchangeFactory.noMoreSinkFactories();
+        LocalExchange exchange = localExchangeFactory.getLocalExchange(Lifespan.taskWide());
+
+        LocalExchangeSinkFactory sinkFactory = exchange.getSinkFactory(localExchangeSinkFactoryId);
+        List<LocalExchangeSink> sinks = Stream.generate(sinkFactory::createSink)
+                .limit(writerCount)
+                .collect(toImmutableList());
+        sinkFactory.close();
+        sinkFactory.noMoreSinkFactories();
+
+        ExecutorService executor = newFixedThreadPool(writerCount, daemonThreadsNamed("test-local-exchange-%s"));
+        try {
+            CountDownLatch writing = new CountDownLatch(writerCount);
+            List<Future<?>> writers = sinks.stream()
+                    .map(sink -> executor.submit(() -> {
+                        writing.countDown();
+                        // the sinks are finished once all sources are closed
+                        for (int i = 0; !sink.isFinished(); i++) {
+                            sink.addPage(createPage(i));
+                        }
+                    }))
+                    .collect(toImmutableList());
+
+            writing.await(10, SECONDS);
+            exchange.getSource(0).close();
+            exchange.getSource(1).close();
+            for (Future<?> writer : writers) {
+                writer.get(30, SECONDS);
+            }
+
+            // pages added while the sources were closed are released by the writers
+            assertExchangeTotalBufferedBytes(exchange, 0);
+            assertSourceFinished(exchange.getSource(0));
+            assertSourceFinished(exchange.getSource(1));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testCreatePartitionFunction()
     {
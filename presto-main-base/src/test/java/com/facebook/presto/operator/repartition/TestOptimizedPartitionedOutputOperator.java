@@ -17,7 +17,9 @@ import com.facebook.presto.CompressionCodec;
 import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.common.block.DictionaryBlock;
 import com.facebook.presto.common.block.RunLengthEncodedBlock;
 import com.facebook.presto.common.block.VariableWidthBlock;
 import com.facebook.presto.common.type.ArrayType;
@@ -52,6 +54,7 @@ import io.airlift.units.DataSize;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +70,7 @@ import java.util.stream.IntStream;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertBetweenInclusive;
+import static com.facebook.presto.SystemSessionProperties.PARTITION_SKEW_TRACKING_ENABLED;
 import static com.facebook.presto.block.BlockAssertions.Encoding.DICTIONARY;
 import static com.facebook.presto.block.BlockAssertions.Encoding.RUN_LENGTH;
 import static com.facebook.presto.block.BlockAssertions.createLongDictionaryBlock;
@@ -75,6 +79,7 @@ import static com.facebook.presto.block.BlockAssertions.createMapType;
 import static com.facebook.presto.block.BlockAssertions.createRLEBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomStringBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.block.BlockAssertions.wrapBlock;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
@@ -102,6 +107,7 @@ import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestOptimizedPartitionedOutputOperator
 {
@@ -113,6 +119,7 @@ public class TestOptimizedPartitionedOutputOperator
     private static final int PARTITION_COUNT = 16;
     private static final int PAGE_COUNT = 50;
     private static final int POSITION_COUNT = 100;
+    private static final int DICTIONARY_PAGE_POSITION_COUNT = 1000;
 
     private static final Random RANDOM = new Random(0);
 
@@ -621,6 +628,138 @@ public class TestOptimizedPartitionedOutputOperator
         testPartitioned(types, ImmutableList.of(page), new DataSize(1, KILOBYTE));
     }
 
+    @Test
+    public void testPartitionedWithPreservedDictionaries()
+    {
+        Block dictionary = createStringsBlock("a", "bb", null, "dddd", "eeeee");
+        Block otherDictionary = createStringsBlock("ffffff", "a", null);
+
+        // The later pages change the dictionary, flatten the columns, or have a dictionary too large to be preserved,
+        // so the partitions switch encodings whenever their buffers are empty.
+        List<Page> pages = ImmutableList.of(
+                createPageWithDictionaryAndRle(dictionary, "x", DICTIONARY_PAGE_POSITION_COUNT),
+                createPageWithDictionaryAndRle(dictionary, "y", DICTIONARY_PAGE_POSITION_COUNT),
+                createPageWithDictionaryAndRle(otherDictionary, "x", DICTIONARY_PAGE_POSITION_COUNT),
+                createPageWithDictionaryAndRle(createRandomStringBlock(200, 0.0f, 5), "w", DICTIONARY_PAGE_POSITION_COUNT),
+                new Page(
+                        createRandomLongsBlock(DICTIONARY_PAGE_POSITION_COUNT, 0.0f),
+                        createRandomStringBlock(DICTIONARY_PAGE_POSITION_COUNT, 0.2f, 5),
+                        createRandomStringBlock(DICTIONARY_PAGE_POSITION_COUNT, 0.2f, 5)),
+                createPageWithDictionaryAndRle(dictionary, "z", DICTIONARY_PAGE_POSITION_COUNT));
+
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, VARCHAR);
+        testPartitioned(types, pages, new DataSize(128, MEGABYTE), true);
+        testPartitioned(types, pages, new DataSize(1, KILOBYTE), true);
+    }
+
+    @Test
+    public void testPreservedDictionaryEncodings()
+    {
+        Block dictionary = createStringsBlock("a", "bb", null, "dddd", "eeeee");
+        Page page = createPageWithDictionaryAndRle(dictionary, "x", DICTIONARY_PAGE_POSITION_COUNT);
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, VARCHAR);
+
+        TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
+        OptimizedPartitionedOutputOperator operator = createOptimizedPartitionedOutputOperator(
+                types,
+                ImmutableList.of(0),
+                new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT),
+                outputBuffer,
+                OptionalInt.empty(),
+                MAX_MEMORY,
+                true);
+        operator.addInput(page);
+        operator.addInput(page);
+        operator.finish();
+
+        for (List<Page> partitionPages : outputBuffer.getPages().values()) {
+            for (Page partitionPage : partitionPages) {
+                // Each partition only gets the dictionary values its rows refer to
+                assertTrue(partitionPage.getBlock(1) instanceof DictionaryBlock || partitionPage.getBlock(1) instanceof RunLengthEncodedBlock);
+                if (partitionPage.getBlock(1) instanceof DictionaryBlock) {
+                    assertTrue(((DictionaryBlock) partitionPage.getBlock(1)).getDictionary().getPositionCount() <= dictionary.getPositionCount());
+                }
+                assertTrue(partitionPage.getBlock(2) instanceof RunLengthEncodedBlock);
+            }
+        }
+    }
+
+    @Test
+    public void testPartitionSkewInfo()
+    {
+        // two thirds of the rows have the same key
+        BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, POSITION_COUNT);
+        for (int i = 0; i < POSITION_COUNT; i++) {
+            BIGINT.writeLong(blockBuilder, i % 3 == 0 ? i : 7);
+        }
+        Page page = new Page(blockBuilder.build());
+        PartitionFunction partitionFunction = new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT);
+        int hotPartition = partitionFunction.getPartition(new Page(createLongSequenceBlock(7, 8)), 0);
+
+        // skew is not tracked by default
+        OptimizedPartitionedOutputOperator operator = createOptimizedPartitionedOutputOperator(
+                ImmutableList.of(BIGINT),
+                ImmutableList.of(0),
+                partitionFunction,
+                createPartitionedOutputBuffer(),
+                OptionalInt.empty(),
+                MAX_MEMORY);
+        processPages(operator, page);
+
+        PartitionedOutputInfo info = (PartitionedOutputInfo) operator.getOperatorContext().getOperatorStats().getInfo();
+        assertEquals(info.getPartitionRowCounts().length, 0);
+        assertEquals(info.getHotKeys(), ImmutableList.of());
+
+        operator = createOptimizedPartitionedOutputOperator(
+                ImmutableList.of(BIGINT),
+                ImmutableList.of(0),
+                partitionFunction,
+                createPartitionedOutputBuffer(),
+                OptionalInt.empty(),
+                MAX_MEMORY,
+                false,
+                createSession(true));
+        processPages(operator, page);
+
+        info = (PartitionedOutputInfo) operator.getOperatorContext().getOperatorStats().getInfo();
+        long[] partitionRowCounts = info.getPartitionRowCounts();
+        assertEquals(partitionRowCounts.length, PARTITION_COUNT);
+        assertEquals(Arrays.stream(partitionRowCounts).sum(), PAGE_COUNT * POSITION_COUNT);
+        assertEquals(Arrays.stream(partitionRowCounts).max().getAsLong(), partitionRowCounts[hotPartition]);
+
+        assertEquals(info.getHotKeys().size(), 1);
+        assertEquals(info.getHotKeys().get(0).getPartition(), hotPartition);
+        assertBetweenInclusive(info.getHotKeys().get(0).getEstimatedRowCount(), PAGE_COUNT * POSITION_COUNT / 2L, (long) PAGE_COUNT * POSITION_COUNT);
+    }
+
+    @Test
+    public void testLargeDictionaryNotPreserved()
+    {
+        // The dictionary is small relative to the rows of the page, but not to the rows of each partition
+        Block dictionary = createRandomStringBlock(200, 0.0f, 5);
+        Page page = createPageWithDictionaryAndRle(dictionary, "x", DICTIONARY_PAGE_POSITION_COUNT);
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, VARCHAR);
+
+        TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
+        OptimizedPartitionedOutputOperator operator = createOptimizedPartitionedOutputOperator(
+                types,
+                ImmutableList.of(0),
+                new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT),
+                outputBuffer,
+                OptionalInt.empty(),
+                MAX_MEMORY,
+                true);
+        operator.addInput(page);
+        operator.finish();
+
+        for (List<Page> partitionPages : outputBuffer.getPages().values()) {
+            for (Page partitionPage : partitionPages) {
+                assertTrue(partitionPage.getBlock(1) instanceof VariableWidthBlock);
+                assertTrue(partitionPage.getBlock(2) instanceof RunLengthEncodedBlock);
+            }
+        }
+    }
+
     private void testPartitionedSinglePage(List<Type> targetTypes)
     {
         List<Type> types = updateBlockTypesWithHashBlockAndNullBlock(targetTypes, true, false);
@@ -697,7 +836,17 @@ public class TestOptimizedPartitionedOutputOperator
         testPartitioned(types, pages, maxMemory, ImmutableList.of(0), new PrecomputedHashGenerator(0));
     }
 
+    private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, boolean preserveDictionaries)
+    {
+        testPartitioned(types, pages, maxMemory, ImmutableList.of(0), new PrecomputedHashGenerator(0), preserveDictionaries);
+    }
+
     private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator)
+    {
+        testPartitioned(types, pages, maxMemory, partitionChannel, hashGenerator, false);
+    }
+
+    private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator, boolean preserveDictionaries)
     {
         TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
         PartitionFunction partitionFunction = new LocalPartitionGenerator(hashGenerator, PARTITION_COUNT);
@@ -707,7 +856,8 @@ public class TestOptimizedPartitionedOutputOperator
                 partitionFunction,
                 outputBuffer,
                 OptionalInt.empty(),
-                maxMemory);
+                maxMemory,
+                preserveDictionaries);
 
         Map<Integer, List<Page>> expectedPageList = new HashMap<>();
 
@@ -897,6 +1047,31 @@ public class TestOptimizedPartitionedOutputOperator
             PartitionedOutputBuffer buffer,
             OptionalInt nullChannel,
             DataSize maxMemory)
+    {
+        return createOptimizedPartitionedOutputOperator(types, partitionChannel, partitionFunction, buffer, nullChannel, maxMemory, false);
+    }
+
+    private OptimizedPartitionedOutputOperator createOptimizedPartitionedOutputOperator(
+            List<Type> types,
+            List<Integer> partitionChannel,
+            PartitionFunction partitionFunction,
+            PartitionedOutputBuffer buffer,
+            OptionalInt nullChannel,
+            DataSize maxMemory,
+            boolean preserveDictionaries)
+    {
+        return createOptimizedPartitionedOutputOperator(types, partitionChannel, partitionFunction, buffer, nullChannel, maxMemory, preserveDictionaries, createSession(false));
+    }
+
+    private OptimizedPartitionedOutputOperator createOptimizedPartitionedOutputOperator(
+            List<Type> types,
+            List<Integer> partitionChannel,
+            PartitionFunction partitionFunction,
+            PartitionedOutputBuffer buffer,
+            OptionalInt nullChannel,
+            DataSize maxMemory,
+            boolean preserveDictionaries,
+            Session session)
     {
         PagesSerdeFactory serdeFactory = new PagesSerdeFactory(new BlockEncodingManager(), CompressionCodec.NONE);
 
@@ -907,21 +1082,25 @@ public class TestOptimizedPartitionedOutputOperator
                 false,
                 nullChannel);
 
-        OptimizedPartitionedOutputFactory operatorFactory = new OptimizedPartitionedOutputFactory(buffer, maxMemory);
+        OptimizedPartitionedOutputFactory operatorFactory = new OptimizedPartitionedOutputFactory(buffer, maxMemory, preserveDictionaries);
 
         return (OptimizedPartitionedOutputOperator) operatorFactory
                 .createOutputOperator(0, new PlanNodeId("plan-node-0"), types, Function.identity(), Optional.of(outputPartitioning), serdeFactory)
-                .createOperator(createDriverContext());
+                .createOperator(createDriverContext(session));
     }
 
-    private DriverContext createDriverContext()
+    private static Session createSession(boolean partitionSkewTrackingEnabled)
     {
-        Session testSession = testSessionBuilder()
+        return testSessionBuilder()
                 .setCatalog("tpch")
                 .setSchema(TINY_SCHEMA_NAME)
+                .setSystemProperty(PARTITION_SKEW_TRACKING_ENABLED, String.valueOf(partitionSkewTrackingEnabled))
                 .build();
+    }
 
-        return TestingTaskContext.builder(EXECUTOR, SCHEDULER, testSession)
+    private DriverContext createDriverContext(Session session)
+    {
+        return TestingTaskContext.builder(EXECUTOR, SCHEDULER, session)
                 .setMemoryPoolSize(MAX_MEMORY)
                 .build()
                 .addPipelineContext(0, true, true, false)
@@ -939,6 +1118,18 @@ public class TestOptimizedPartitionedOutputOperator
                 SCHEDULER);
     }
 
+    private static Page createPageWithDictionaryAndRle(Block dictionary, String constant, int positionCount)
+    {
+        int[] ids = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            ids[i] = RANDOM.nextInt(dictionary.getPositionCount());
+        }
+        return new Page(
+                createRandomLongsBlock(positionCount, 0.0f),
+                new DictionaryBlock(dictionary, ids),
+                new RunLengthEncodedBlock(createStringsBlock(constant), positionCount));
+    }
+
     private static Block createVariableWidthBlockOverSliceView(int entries)
     {
         // Create a slice view whose address starts in the middle of the original slice, and length is half of original slice
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.repartition.PartitionSkewTracker.MAX_TRACKED_KEYS;
+import static com.facebook.presto.operator.repartition.PartitionSkewTracker.SAMPLE_INTERVAL_ROWS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestPartitionSkewTracker
+{
+    private static final int PARTITION_COUNT = 8;
+    private static final int ROW_COUNT = 100_000;
+
+    @Test
+    public void testPartitionRowCounts()
+    {
+        PartitionSkewTracker tracker = new PartitionSkewTracker(PARTITION_COUNT, ImmutableList.of(BIGINT));
+        Page keys = createKeys(ROW_COUNT, key -> key);
+        for (int position = 0; position < ROW_COUNT; position++) {
+            tracker.addRow(keys, position, position % PARTITION_COUNT);
+        }
+        tracker.publishHotKeys();
+
+        long[] partitionRowCounts = tracker.getPartitionRowCounts();
+        assertEquals(partitionRowCounts.length, PARTITION_COUNT);
+        for (long rowCount : partitionRowCounts) {
+            assertEquals(rowCount, ROW_COUNT / PARTITION_COUNT);
+        }
+        // every key is unique, so none of them is hot
+        assertEquals(tracker.getHotKeys(), ImmutableList.of());
+    }
+
+    @Test
+    public void testHotKeys()
+    {
+        // a quarter of the rows have key 0, and another tenth have key 1
+        PartitionSkewTracker tracker = new PartitionSkewTracker(PARTITION_COUNT, ImmutableList.of(BIGINT));
+        Page keys = createKeys(ROW_COUNT, key -> key % 4 == 1 ? 0 : (key % 10 == 2 ? 1 : key));
+        for (int position = 0; position < ROW_COUNT; position++) {
+            tracker.addRow(keys, position, (int) (BIGINT.getLong(keys.getBlock(0), position) % PARTITION_COUNT));
+        }
+        assertEquals(tracker.getHotKeys(), ImmutableList.of());
+        tracker.publishHotKeys();
+
+        List<PartitionHotKey> hotKeys = tracker.getHotKeys();
+        assertEquals(hotKeys.size(), 1);
+        assertEquals(hotKeys.get(0).getPartition(), 0);
+        assertEstimatedRowCount(hotKeys.get(0), ROW_COUNT / 4);
+    }
+
+    @Test
+    public void testHotKeysWithManyPartitions()
+    {
+        // with more partitions than tracked keys, keys above 1/MAX_TRACKED_KEYS of the rows are hot
+        PartitionSkewTracker tracker = new PartitionSkewTracker(1024, ImmutableList.of(BIGINT));
+        Page keys = createKeys(ROW_COUNT, key -> key % 4 == 1 ? 0 : (key % 10 == 2 ? 1 : key));
+        for (int position = 0; position < ROW_COUNT; position++) {
+            tracker.addRow(keys, position, (int) (BIGINT.getLong(keys.getBlock(0), position) % 1024));
+        }
+        tracker.publishHotKeys();
+
+        List<PartitionHotKey> hotKeys = tracker.getHotKeys();
+        assertEquals(hotKeys.size(), 2);
+        assertEquals(hotKeys.get(0).getPartition(), 0);
+        assertEstimatedRowCount(hotKeys.get(0), ROW_COUNT / 4);
+        assertEquals(hotKeys.get(1).getPartition(), 1);
+        assertEstimatedRowCount(hotKeys.get(1), ROW_COUNT / 10);
+    }
+
+    @Test
+    public void testNoPartitioningColumns()
+    {
+        PartitionSkewTracker tracker = new PartitionSkewTracker(PARTITION_COUNT, ImmutableList.of());
+        Page keys = new Page(ROW_COUNT);
+        for (int position = 0; position < ROW_COUNT; position++) {
+            tracker.addRow(keys, position, 0);
+        }
+        tracker.publishHotKeys();
+
+        assertEquals(tracker.getPartitionRowCounts()[0], ROW_COUNT);
+        assertEquals(tracker.getHotKeys(), ImmutableList.of());
+    }
+
+    private static void assertEstimatedRowCount(PartitionHotKey hotKey, long expected)
+    {
+        // Space-Saving overestimates by at most the sampled rows divided by the number of tracked keys
+        long error = (long) ROW_COUNT / MAX_TRACKED_KEYS + SAMPLE_INTERVAL_ROWS;
+        assertTrue(Math.abs(hotKey.getEstimatedRowCount() - expected) <= error, "estimated " + hotKey.getEstimatedRowCount() + ", expected " + expected);
+    }
+
+    private static Page createKeys(int rowCount, KeyFunction keyFunction)
+    {
+        BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            BIGINT.writeLong(blockBuilder, keyFunction.getKey(i));
+        }
+        return new Page(blockBuilder.build());
+    }
+
+    private interface KeyFunction
+    {
+        long getKey(int row);
+    }
+}
@@ -20,6 +20,7 @@ import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.PageAssertions;
+import com.facebook.presto.operator.WorkProcessor;
 import com.facebook.presto.spi.page.PageCodecMarker;
 import com.facebook.presto.spi.page.PagesSerdeUtil;
 import com.facebook.presto.spi.page.SerializedPage;
@@ -34,14 +35,17 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
+import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
 import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static com.facebook.presto.operator.SpillingUtils.spilledPagesProcessor;
 import static com.google.common.io.MoreFiles.deleteRecursively;
 import static com.google.common.io.MoreFiles.listFiles;
 import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
@@ -150,6 +154,57 @@ public class TestFileSingleStreamSpiller
         assertEquals(memoryContext.getBytes(), 0);
     }
 
+    @Test
+    public void testReadAhead()
+            throws Exception
+    {
+        File spillPath = new File(tempDirectory, UUID.randomUUID().toString());
+        FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                executor, // executor won't be closed, because we don't call destroy() on the spiller factory
+                new BlockEncodingManager(),
+                new SpillerStats(),
+                ImmutableList.of(spillPath.toPath()),
+                1.0,
+                CompressionCodec.LZ4,
+                false,
+                2);
+        LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+        SingleStreamSpiller spiller = spillerFactory.create(TYPES, new TestingSpillContext(), memoryContext);
+
+        Page page = buildPage();
+        spiller.spill(Collections.nCopies(10, page).iterator()).get();
+
+        Iterator<Page> spilledPages = spiller.getSpilledPages();
+        assertTrue(spilledPages instanceof ReadAheadPageIterator);
+        ReadAheadPageIterator readAheadPages = (ReadAheadPageIterator) spilledPages;
+
+        // the pages read ahead are accounted on top of the read buffer
+        readAheadPages.isReady().get();
+        assertTrue(readAheadPages.isReady().isDone());
+        assertGreaterThan(memoryContext.getBytes(), (long) FileSingleStreamSpiller.BUFFER_SIZE);
+
+        WorkProcessor<Page> processor = spilledPagesProcessor(readAheadPages);
+        int pageCount = 0;
+        while (!processor.isFinished()) {
+            if (processor.process()) {
+                if (!processor.isFinished()) {
+                    PageAssertions.assertPageEquals(TYPES, page, processor.getResult());
+                    pageCount++;
+                }
+            }
+            else {
+                assertTrue(processor.isBlocked());
+                processor.getBlockedFuture().get();
+            }
+        }
+        assertEquals(pageCount, 10);
+        assertEquals(memoryContext.getBytes(), FileSingleStreamSpiller.BUFFER_SIZE);
+
+        spiller.close();
+        assertEquals(listFiles(spillPath.toPath()).size(), 0);
+        assertEquals(memoryContext.getBytes(), 0);
+    }
+
     private Page buildPage()
     {
         BlockBuilder col1 = BIGINT.createBlockBuilder(null, 1);
@@ -19,9 +19,11 @@ import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.common.type.Type;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closer;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import org.testng.annotations.AfterMethod;
@@ -32,10 +34,13 @@ import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
 import static com.google.common.io.MoreFiles.deleteRecursively;
@@ -105,10 +110,116 @@ public class TestFileSingleStreamSpillerFactory
         assertEquals(listFiles(spillPath2.toPath()).size(), 0);
     }
 
+    @Test
+    public void testPlacesSpillOnLeastLoadedPath()
+            throws Exception
+    {
+        List<Type> types = ImmutableList.of(BIGINT);
+        List<Path> spillPaths = ImmutableList.of(spillPath1.toPath(), spillPath2.toPath());
+        FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                executor, // executor won't be closed, because we don't call destroy() on the spiller factory
+                new BlockEncodingManager(),
+                new SpillerStats(),
+                spillPaths,
+                1.0,
+                CompressionCodec.NONE,
+                false);
+
+        // the first spill stays in progress on the first path
+        CountDownLatch spillBlocked = new CountDownLatch(1);
+        SingleStreamSpiller blockedSpiller = spillerFactory.create(types, new TestingSpillContext(), newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"));
+        ListenableFuture<?> blockedSpill = blockedSpiller.spill(new AbstractIterator<Page>()
+        {
+            private boolean done;
+
+            @Override
+            protected Page computeNext()
+            {
+                if (done) {
+                    return endOfData();
+                }
+                done = true;
+                try {
+                    spillBlocked.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                return buildPage();
+            }
+        });
+        assertEquals(listFiles(spillPath1.toPath()).size(), 1);
+
+        List<SingleStreamSpiller> spillers = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            SingleStreamSpiller singleStreamSpiller = spillerFactory.create(types, new TestingSpillContext(), newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"));
+            getUnchecked(singleStreamSpiller.spill(buildPage()));
+            spillers.add(singleStreamSpiller);
+        }
+        // round robin would have placed half of them on the busy path
+        assertEquals(listFiles(spillPath1.toPath()).size(), 1);
+        assertEquals(listFiles(spillPath2.toPath()).size(), 4);
+
+        spillBlocked.countDown();
+        getUnchecked(blockedSpill);
+        blockedSpiller.close();
+        spillers.forEach(SingleStreamSpiller::close);
+        assertEquals(listFiles(spillPath1.toPath()).size(), 0);
+        assertEquals(listFiles(spillPath2.toPath()).size(), 0);
+    }
+
+    @Test
+    public void testStripesSpillOverPaths()
+            throws Exception
+    {
+        List<Type> types = ImmutableList.of(BIGINT);
+        List<Path> spillPaths = ImmutableList.of(spillPath1.toPath(), spillPath2.toPath());
+        ThreadPoolExecutor spillPath1Executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        closer.register(() -> spillPath1Executor.shutdownNow());
+        ThreadPoolExecutor spillPath2Executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        closer.register(() -> spillPath2Executor.shutdownNow());
+        FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                ImmutableList.of(MoreExecutors.listeningDecorator(spillPath1Executor), MoreExecutors.listeningDecorator(spillPath2Executor)),
+                new BlockEncodingManager(),
+                new SpillerStats(),
+                spillPaths,
+                1.0,
+                CompressionCodec.NONE,
+                false,
+                0,
+                1);
+
+        SingleStreamSpiller spiller = spillerFactory.create(types, new TestingSpillContext(), newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"));
+        List<Page> pages = ImmutableList.of(buildPage(1), buildPage(2), buildPage(3), buildPage(4));
+        getUnchecked(spiller.spill(pages.iterator()));
+
+        // every page exceeds the stripe size, so each one is written to a separate file by the executor of its path
+        assertEquals(listFiles(spillPath1.toPath()).size(), 2);
+        assertEquals(listFiles(spillPath2.toPath()).size(), 2);
+        assertEquals(spillPath1Executor.getTaskCount(), 2);
+        assertEquals(spillPath2Executor.getTaskCount(), 2);
+
+        List<Page> spilledPages = ImmutableList.copyOf(spiller.getSpilledPages());
+        assertEquals(spilledPages.size(), pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            assertPageEquals(types, spilledPages.get(i), pages.get(i));
+        }
+
+        spiller.close();
+        assertEquals(listFiles(spillPath1.toPath()).size(), 0);
+        assertEquals(listFiles(spillPath2.toPath()).size(), 0);
+    }
+
     private Page buildPage()
+    {
+        return buildPage(42);
+    }
+
+    private Page buildPage(long value)
     {
         BlockBuilder col1 = BIGINT.createBlockBuilder(null, 1);
-        col1.writeLong(42).closeEntry();
+        col1.writeLong(value).closeEntry();
         return new Page(col1.build());
     }
 
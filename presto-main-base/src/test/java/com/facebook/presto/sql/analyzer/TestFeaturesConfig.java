@@ -47,6 +47,7 @@ import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrate
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrategy.PER_TASK_MEMORY_THRESHOLD;
 import static com.facebook.presto.sql.tree.CreateView.Security.DEFINER;
 import static com.facebook.presto.sql.tree.CreateView.Security.INVOKER;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
@@ -66,6 +67,7 @@ public class TestFeaturesConfig
                 .setJoinDistributionType(JoinDistributionType.AUTOMATIC)
                 .setJoinMaxBroadcastTableSize(new DataSize(100, MEGABYTE))
                 .setSizeBasedJoinDistributionTypeEnabled(true)
+                .setShareBroadcastJoinLookupSource(false)
                 .setGroupedExecutionEnabled(true)
                 .setRecoverableGroupedExecutionEnabled(false)
                 .setMaxFailedTaskPercentage(0.3)
@@ -106,6 +108,7 @@ public class TestFeaturesConfig
                 .setSpillerSpillPaths("")
                 .setSpillerThreads(4)
                 .setSpillMaxUsedSpaceThreshold(0.9)
+                .setSpillerStripeSize(new DataSize(1, GIGABYTE))
                 .setMemoryRevokingThreshold(0.9)
                 .setMemoryRevokingTarget(0.5)
                 .setTaskSpillingStrategy(ORDER_BY_CREATE_TIME)
@@ -121,6 +124,7 @@ public class TestFeaturesConfig
                 .setDynamicFilteringMaxPerDriverRowCount(100)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(10, KILOBYTE))
                 .setDynamicFilteringRangeRowLimitPerDriver(0)
+                .setDynamicFilteringBloomFilterSize(new DataSize(0, BYTE))
                 .setFragmentResultCachingEnabled(false)
                 .setEnableStatsCalculator(true)
                 .setEnableStatsCollectionForTemporaryTable(false)
@@ -156,6 +160,8 @@ public class TestFeaturesConfig
                 .setPushdownDereferenceEnabled(false)
                 .setIndexLoaderTimeout(new Duration(20, SECONDS))
                 .setOptimizedRepartitioningEnabled(false)
+                .setOptimizedRepartitioningPreserveDictionaries(false)
+                .setPartitionSkewTrackingEnabled(false)
                 .setListBuiltInFunctionsOnly(true)
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.AUTOMATIC)
                 .setExperimentalFunctionsEnabled(false)
@@ -176,6 +182,7 @@ public class TestFeaturesConfig
                 .setLogInvokedFunctionNamesEnabled(false)
                 .setSpoolingOutputBufferEnabled(false)
                 .setSpoolingOutputBufferThreshold(new DataSize(8, MEGABYTE))
+                .setSpoolingOutputBufferReadCacheSize(new DataSize(16, MEGABYTE))
                 .setSpoolingOutputBufferTempStorage("local")
                 .setPrestoSparkAssignBucketToPartitionForPartitionedTableWriteEnabled(false)
                 .setPartialResultsEnabled(false)
@@ -276,6 +283,7 @@ public class TestFeaturesConfig
                 .put("dynamic-filtering-max-per-driver-row-count", "256")
                 .put("dynamic-filtering-max-per-driver-size", "64kB")
                 .put("dynamic-filtering-range-row-limit-per-driver", "1000")
+                .put("dynamic-filtering-bloom-filter-size", "4MB")
                 .put("fragment-result-cache.enabled", "true")
                 .put("experimental.enable-stats-calculator", "false")
                 .put("experimental.enable-stats-collection-for-temporary-table", "true")
@@ -286,6 +294,7 @@ public class TestFeaturesConfig
                 .put("join-distribution-type", "BROADCAST")
                 .put("join-max-broadcast-table-size", "42GB")
                 .put("optimizer.size-based-join-distribution-type-enabled", "false")
+                .put("share-broadcast-join-lookup-source", "true")
                 .put("grouped-execution-enabled", "false")
                 .put("recoverable-grouped-execution-enabled", "true")
                 .put("max-failed-task-percentage", "0.8")
@@ -328,6 +337,7 @@ public class TestFeaturesConfig
                 .put("experimental.spiller-spill-path", "/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .put("experimental.spiller-threads", "42")
                 .put("experimental.spiller-max-used-space-threshold", "0.8")
+                .put("experimental.spiller-stripe-size", "256MB")
                 .put("experimental.memory-revoking-threshold", "0.2")
                 .put("experimental.memory-revoking-target", "0.8")
                 .put("experimental.spiller.task-spilling-strategy", "PER_TASK_MEMORY_THRESHOLD")
@@ -363,6 +373,8 @@ public class TestFeaturesConfig
                 .put("experimental.pushdown-dereference-enabled", "true")
                 .put("index-loader-timeout", "10s")
                 .put("experimental.optimized-repartitioning", "true")
+                .put("experimental.optimized-repartitioning-preserve-dictionaries", "true")
+                .put("experimental.partition-skew-tracking-enabled", "true")
                 .put("list-built-in-functions-only", "false")
                 .put("partitioning-precision-strategy", "PREFER_EXACT_PARTITIONING")
                 .put("experimental-functions-enabled", "true")
@@ -383,6 +395,7 @@ public class TestFeaturesConfig
                 .put("log-invoked-function-names-enabled", "true")
                 .put("spooling-output-buffer-enabled", "true")
                 .put("spooling-output-buffer-threshold", "16MB")
+                .put("spooling-output-buffer-read-cache-size", "32MB")
                 .put("spooling-output-buffer-temp-storage", "tempfs")
                 .put("spark.assign-bucket-to-partition-for-partitioned-table-write-enabled", "true")
                 .put("partial-results-enabled", "true")
@@ -479,6 +492,7 @@ public class TestFeaturesConfig
                 .setDynamicFilteringMaxPerDriverRowCount(256)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(64, KILOBYTE))
                 .setDynamicFilteringRangeRowLimitPerDriver(1000)
+                .setDynamicFilteringBloomFilterSize(new DataSize(4, MEGABYTE))
                 .setFragmentResultCachingEnabled(true)
                 .setEnableStatsCalculator(false)
                 .setEnableStatsCollectionForTemporaryTable(true)
@@ -488,6 +502,7 @@ public class TestFeaturesConfig
                 .setJoinDistributionType(BROADCAST)
                 .setJoinMaxBroadcastTableSize(new DataSize(42, GIGABYTE))
                 .setSizeBasedJoinDistributionTypeEnabled(false)
+                .setShareBroadcastJoinLookupSource(true)
                 .setGroupedExecutionEnabled(false)
                 .setRecoverableGroupedExecutionEnabled(true)
                 .setMaxFailedTaskPercentage(0.8)
@@ -530,6 +545,7 @@ public class TestFeaturesConfig
                 .setSpillerSpillPaths("/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .setSpillerThreads(42)
                 .setSpillMaxUsedSpaceThreshold(0.8)
+                .setSpillerStripeSize(new DataSize(256, MEGABYTE))
                 .setMemoryRevokingThreshold(0.2)
                 .setMemoryRevokingTarget(0.8)
                 .setTaskSpillingStrategy(PER_TASK_MEMORY_THRESHOLD)
@@ -566,6 +582,8 @@ public class TestFeaturesConfig
                 .setPushdownDereferenceEnabled(true)
                 .setIndexLoaderTimeout(new Duration(10, SECONDS))
                 .setOptimizedRepartitioningEnabled(true)
+                .setOptimizedRepartitioningPreserveDictionaries(true)
+                .setPartitionSkewTrackingEnabled(true)
                 .setListBuiltInFunctionsOnly(false)
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.PREFER_EXACT_PARTITIONING)
                 .setExperimentalFunctionsEnabled(true)
@@ -587,6 +605,7 @@ public class TestFeaturesConfig
                 .setLogInvokedFunctionNamesEnabled(true)
                 .setSpoolingOutputBufferEnabled(true)
                 .setSpoolingOutputBufferThreshold(new DataSize(16, MEGABYTE))
+                .setSpoolingOutputBufferReadCacheSize(new DataSize(32, MEGABYTE))
                 .setSpoolingOutputBufferTempStorage("tempfs")
                 .setPrestoSparkAssignBucketToPartitionForPartitionedTableWriteEnabled(true)
                 .setPartialResultsEnabled(true)
@@ -36,10 +36,14 @@ public class TestJavaFeaturesConfig
                 .setDistinctAggregationLargeBlockSizeThreshold(DataSize.valueOf("50MB"))
                 .setOrderByAggregationSpillEnabled(true)
                 .setWindowSpillEnabled(true)
+                .setDistinctOperatorSpillEnabled(true)
+                .setRowNumberSpillEnabled(true)
                 .setOrderBySpillEnabled(true)
                 .setTopNSpillEnabled(true)
                 .setAggregationOperatorUnspillMemoryLimit(DataSize.valueOf("4MB"))
-                .setTopNOperatorUnspillMemoryLimit(DataSize.valueOf("4MB")));
+                .setTopNOperatorUnspillMemoryLimit(DataSize.valueOf("4MB"))
+                .setRadixPartitionedAggregationEnabled(false)
+                .setRadixAggregationPartitionSize(DataSize.valueOf("1MB")));
     }
 
     @Test
@@ -53,10 +57,14 @@ public class TestJavaFeaturesConfig
                 .put("experimental.distinct-aggregation-large-block-size-threshold", "10MB")
                 .put("experimental.order-by-aggregation-spill-enabled", "false")
                 .put("experimental.window-spill-enabled", "false")
+                .put("experimental.distinct-operator-spill-enabled", "false")
+                .put("experimental.row-number-spill-enabled", "false")
                 .put("experimental.order-by-spill-enabled", "false")
                 .put("experimental.topn-spill-enabled", "false")
                 .put("experimental.aggregation-operator-unspill-memory-limit", "100MB")
                 .put("experimental.topn-operator-unspill-memory-limit", "100MB")
+                .put("experimental.radix-partitioned-aggregation-enabled", "true")
+                .put("experimental.radix-aggregation-partition-size", "2MB")
                 .build();
 
         JavaFeaturesConfig expected = new JavaFeaturesConfig()
@@ -67,10 +75,14 @@ public class TestJavaFeaturesConfig
                 .setDistinctAggregationLargeBlockSizeThreshold(DataSize.valueOf("10MB"))
                 .setOrderByAggregationSpillEnabled(false)
                 .setWindowSpillEnabled(false)
+                .setDistinctOperatorSpillEnabled(false)
+                .setRowNumberSpillEnabled(false)
                 .setOrderBySpillEnabled(false)
                 .setTopNSpillEnabled(false)
                 .setAggregationOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"))
-                .setTopNOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"));
+                .setTopNOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"))
+                .setRadixPartitionedAggregationEnabled(true)
+                .setRadixAggregationPartitionSize(DataSize.valueOf("2MB"));
         assertFullMapping(properties, expected);
     }
 }
@@ -15,9 +15,13 @@
 package com.facebook.presto.sql.planner;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.ValueSet;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.JoinNode;
 import com.facebook.presto.spi.relation.VariableReferenceExpression;
 import com.facebook.presto.sql.Optimizer;
@@ -26,6 +30,7 @@ import com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.testng.annotations.Test;
@@ -41,11 +46,14 @@ import static com.facebook.presto.SystemSessionProperties.ENABLE_DYNAMIC_FILTERI
 import static com.facebook.presto.SystemSessionProperties.FORCE_SINGLE_NODE_OUTPUT;
 import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
 import static com.facebook.presto.common.function.OperatorType.EQUAL;
+import static com.facebook.presto.common.function.OperatorType.LESS_THAN;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
 import static com.facebook.presto.testing.assertions.Assert.assertEquals;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestLocalDynamicFilter
         extends BasePlanTest
@@ -191,6 +199,101 @@ public class TestLocalDynamicFilter
                 new VariableReferenceExpression(Optional.empty(), "b", BIGINT), Domain.multipleValues(BIGINT, ImmutableList.of(100L, 200L)))));
     }
 
+    @Test
+    public void testBloomFilters()
+            throws ExecutionException, InterruptedException
+    {
+        VariableReferenceExpression a = new VariableReferenceExpression(Optional.empty(), "a", BIGINT);
+        VariableReferenceExpression b = new VariableReferenceExpression(Optional.empty(), "b", BIGINT);
+        VariableReferenceExpression c = new VariableReferenceExpression(Optional.empty(), "c", BIGINT);
+        LocalDynamicFilter filter = new LocalDynamicFilter(
+                ImmutableMultimap.of(
+                        "123", new DynamicFilterPlaceholder("123", a, EQUAL),
+                        "123", new DynamicFilterPlaceholder("123", c, LESS_THAN),
+                        "456", new DynamicFilterPlaceholder("456", b, EQUAL)),
+                ImmutableMap.of("123", 0, "456", 1),
+                2);
+        Consumer<TupleDomain<String>> consumer = filter.getTupleDomainConsumer();
+        Consumer<Map<String, BlockedBloomFilter>> bloomFiltersConsumer = filter.getBloomFiltersConsumer();
+        ListenableFuture<Map<VariableReferenceExpression, BlockedBloomFilter>> bloomFilters = filter.getBloomFiltersFuture();
+
+        bloomFiltersConsumer.accept(ImmutableMap.of("123", bloomFilter(0, 100), "456", bloomFilter(0, 2)));
+        consumer.accept(TupleDomain.withColumnDomains(ImmutableMap.of(
+                "123", Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 0L, true, 99L, true)), false),
+                "456", Domain.multipleValues(BIGINT, ImmutableList.of(0L, 1L)))));
+        assertFalse(bloomFilters.isDone());
+
+        bloomFiltersConsumer.accept(ImmutableMap.of("123", bloomFilter(1000, 1100), "456", bloomFilter(10, 12)));
+        consumer.accept(TupleDomain.withColumnDomains(ImmutableMap.of(
+                "123", Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 1000L, true, 1099L, true)), false),
+                "456", Domain.multipleValues(BIGINT, ImmutableList.of(10L, 11L)))));
+
+        // the Bloom filter is only used for equality and when the values are not listed in the predicate
+        assertEquals(bloomFilters.get().keySet(), ImmutableSet.of(a));
+        BlockedBloomFilter union = bloomFilters.get().get(a);
+        assertEquals(union.getEntryCount(), 200);
+        assertTrue(union.mightContain(BlockedBloomFilter.hashLong(50)));
+        assertTrue(union.mightContain(BlockedBloomFilter.hashLong(1050)));
+    }
+
+    @Test
+    public void testBloomFilterMissingFromPartition()
+            throws ExecutionException, InterruptedException
+    {
+        LocalDynamicFilter filter = new LocalDynamicFilter(
+                ImmutableMultimap.of("123", new DynamicFilterPlaceholder("123", new VariableReferenceExpression(Optional.empty(), "a", BIGINT), EQUAL)),
+                ImmutableMap.of("123", 0),
+                2);
+        Consumer<TupleDomain<String>> consumer = filter.getTupleDomainConsumer();
+        ListenableFuture<Map<VariableReferenceExpression, BlockedBloomFilter>> bloomFilters = filter.getBloomFiltersFuture();
+
+        filter.getBloomFiltersConsumer().accept(ImmutableMap.of("123", bloomFilter(0, 100)));
+        consumer.accept(TupleDomain.all());
+        // the second partition had too many values for its Bloom filter
+        consumer.accept(TupleDomain.all());
+
+        assertEquals(bloomFilters.get(), ImmutableMap.of());
+    }
+
+    @Test
+    public void testBloomFiltersMemoryUsage()
+            throws ExecutionException, InterruptedException
+    {
+        VariableReferenceExpression a = new VariableReferenceExpression(Optional.empty(), "a", BIGINT);
+        LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+        LocalDynamicFilter filter = new LocalDynamicFilter(
+                ImmutableMultimap.of("123", new DynamicFilterPlaceholder("123", a, EQUAL)),
+                ImmutableMap.of("123", 0),
+                2,
+                memoryContext);
+        Consumer<TupleDomain<String>> consumer = filter.getTupleDomainConsumer();
+
+        BlockedBloomFilter first = bloomFilter(0, 100);
+        filter.getBloomFiltersConsumer().accept(ImmutableMap.of("123", first));
+        consumer.accept(TupleDomain.all());
+        assertEquals(memoryContext.getBytes(), first.getRetainedSizeInBytes());
+
+        // the second partition is folded into the accounted union
+        filter.getBloomFiltersConsumer().accept(ImmutableMap.of("123", bloomFilter(1000, 1100)));
+        assertEquals(memoryContext.getBytes(), first.getRetainedSizeInBytes());
+        consumer.accept(TupleDomain.all());
+
+        BlockedBloomFilter union = filter.getBloomFiltersFuture().get().get(a);
+        assertEquals(memoryContext.getBytes(), union.getRetainedSizeInBytes());
+
+        filter.close();
+        assertEquals(memoryContext.getBytes(), 0);
+    }
+
+    private static BlockedBloomFilter bloomFilter(long start, long end)
+    {
+        BlockedBloomFilter bloomFilter = BlockedBloomFilter.create(1024);
+        for (long value = start; value < end; value++) {
+            bloomFilter.add(BlockedBloomFilter.hashLong(value));
+        }
+        return bloomFilter;
+    }
+
     @Test
     public void testCreateSingleColumn()
             throws ExecutionException, InterruptedException
@@ -26,14 +26,13 @@ import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.collect.ImmutableList;
 import com.google.common.net.MediaType;
 import com.google.common.util.concurrent.ListenableFuture;
-import io.airlift.slice.InputStreamSliceInput;
-import io.airlift.slice.SliceInput;
 import io.airlift.units.DataSize;
 
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.List;
@@ -52,7 +51,7 @@ import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_TASK_INSTANCE_ID;
 import static com.facebook.presto.operator.PageBufferClient.PagesResponse.createEmptyPagesResponse;
 import static com.facebook.presto.operator.PageBufferClient.PagesResponse.createPagesResponse;
-import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPagesFromStream;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -188,8 +187,9 @@ public final class HttpRpcShuffleClient
                 long nextToken = getNextToken(request, response);
                 boolean complete = getComplete(request, response);
 
-                try (SliceInput input = new InputStreamSliceInput(response.getInputStream())) {
-                    List<SerializedPage> pages = ImmutableList.copyOf(readSerializedPages(input));
+                // the pages are read straight from the response stream into the arrays backing their slices
+                try (InputStream input = response.getInputStream()) {
+                    List<SerializedPage> pages = ImmutableList.copyOf(readSerializedPagesFromStream(input));
                     return createPagesResponse(taskInstanceId, token, nextToken, pages, complete);
                 }
                 catch (IOException e) {
@@ -412,6 +412,62 @@ public class TestExchangeClient
         }
     }
 
+    @Test(timeOut = 30000)
+    public void testAdaptiveConcurrency()
+    {
+        DataSize bufferCapacity = new DataSize(32, MEGABYTE);
+        DataSize maxResponseSize = new DataSize(10, MEGABYTE);
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(maxResponseSize);
+
+        List<URI> locations = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            URI location = URI.create("http://localhost:" + (8080 + i));
+            locations.add(location);
+            processor.addPage(location, createPage(1));
+            processor.addPage(location, createPage(2));
+        }
+
+        try (ExchangeClient exchangeClient = createExchangeClient(processor, bufferCapacity, maxResponseSize, true)) {
+            for (int i = 0; i < locations.size(); i++) {
+                exchangeClient.addLocation(locations.get(i), TaskId.valueOf("taskid.0.0." + i + ".0"));
+            }
+            exchangeClient.noMoreLocations();
+
+            for (int i = 0; i < locations.size() * 2; i++) {
+                assertNotNull(getNextPage(exchangeClient));
+            }
+            // before the throughput and the latency are known, the concurrency comes from the average response size
+            int initialConcurrentRequests = exchangeClient.getStatus().getConcurrentRequests();
+            assertTrue(initialConcurrentRequests > 0);
+
+            // the tasks have no more data for now, so the clients keep long polling and the controller learns from the empty responses
+            long start = System.nanoTime();
+            ExchangeClientStatus status;
+            do {
+                assertLessThan(Duration.nanosSince(start), new Duration(10, SECONDS));
+                sleepUninterruptibly(100, MILLISECONDS);
+                status = exchangeClient.getStatus();
+            }
+            while (status.getThroughputBytesPerSecond() == 0 || status.getConcurrentRequests() == initialConcurrentRequests || !isAdaptive(status, bufferCapacity));
+
+            assertTrue(status.getConcurrentRequests() > 0);
+            assertTrue(status.getMaxResponseSizeInBytes() > 0);
+            assertTrue(status.getMaxResponseSizeInBytes() <= maxResponseSize.toBytes());
+            assertTrue(status.getThroughputBytesPerSecond() > 0);
+            assertTrue(status.getRequestLatencyNanos() > 0);
+
+            for (URI location : locations) {
+                processor.addPage(location, createPage(3));
+                processor.setComplete(location);
+            }
+            for (int i = 0; i < locations.size(); i++) {
+                assertPageEquals(getNextPage(exchangeClient), createPage(3));
+            }
+            assertNull(getNextPage(exchangeClient));
+            assertTrue(exchangeClient.isClosed());
+        }
+    }
+
     @Test
     public void testRemoveRemoteSource()
             throws Exception
@@ -490,6 +546,13 @@ public class TestExchangeClient
         assertStatus(clientStatusOptional2.get(), "closed", "not scheduled");
     }
 
+    private static boolean isAdaptive(ExchangeClientStatus status, DataSize bufferCapacity)
+    {
+        // with a concurrent request multiplier of 1, the controller never asks for more than the buffer can hold,
+        // while the static estimate asks for twice the free buffer space once the average response size is known
+        return (long) status.getConcurrentRequests() * status.getMaxResponseSizeInBytes() <= bufferCapacity.toBytes();
+    }
+
     private static Page createPage(int size)
     {
         return new Page(BlockAssertions.createLongSequenceBlock(0, size));
@@ -552,6 +615,11 @@ public class TestExchangeClient
     }
 
     private ExchangeClient createExchangeClient(MockExchangeRequestProcessor processor, DataSize bufferCapacity, DataSize maxResponseSize)
+    {
+        return createExchangeClient(processor, bufferCapacity, maxResponseSize, false);
+    }
+
+    private ExchangeClient createExchangeClient(MockExchangeRequestProcessor processor, DataSize bufferCapacity, DataSize maxResponseSize, boolean adaptiveConcurrencyEnabled)
     {
         return new ExchangeClient(
                 bufferCapacity,
@@ -559,10 +627,12 @@ public class TestExchangeClient
                 1,
                 new Duration(1, MINUTES),
                 true,
+                adaptiveConcurrencyEnabled,
                 0.2,
                 new HttpShuffleClientProvider(new TestingHttpClient(processor, testingHttpClientExecutor)),
                 scheduler,
                 new SimpleLocalMemoryContext(newSimpleAggregatedMemoryContext(), "test"),
-                pageBufferClientCallbackExecutor);
+                pageBufferClientCallbackExecutor,
+                new ExchangeClientStats());
     }
 }
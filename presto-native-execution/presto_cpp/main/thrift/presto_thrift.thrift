@@ -146,6 +146,10 @@ struct ExchangeClientStatus {
   5: i32 bufferedPages;
   6: bool noMoreLocations;
   7: list<PageBufferClientStatus> pageBufferClientStatuses;
+  8: i32 concurrentRequests;
+  9: i64 maxResponseSizeInBytes;
+  10: i64 throughputBytesPerSecond;
+  11: i64 requestLatencyNanos;
 }
 struct PageBufferClientStatus {
   1: string uri;
@@ -178,10 +182,17 @@ struct HashCollisionsInfo {
   2: double weightedHashCollisions;
   3: double weightedExpectedHashCollisions;
 }
+struct PartitionHotKey {
+  1: i64 keyHash;
+  2: i32 partition;
+  3: i64 estimatedRowCount;
+}
 struct PartitionedOutputInfo {
   1: i64 rowsAdded;
   2: i64 pagesAdded;
   3: i64 outputBufferPeakMemoryUsage;
+  4: list<i64> partitionRowCounts;
+  5: list<PartitionHotKey> hotKeys;
 }
 struct WindowInfo {
   1: list<DriverWindowInfo> windowInfos;
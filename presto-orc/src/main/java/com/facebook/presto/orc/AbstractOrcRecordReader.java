@@ -54,6 +54,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import static com.facebook.presto.orc.AbstractOrcRecordReader.LinearProbeRangeFinder.createTinyStripesRangeFinder;
@@ -97,6 +98,7 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
 
     private final List<StripeInformation> stripes;
     private final StripeReader stripeReader;
+    private final Optional<StripePrefetcher> stripePrefetcher;
     private int currentStripe = -1;
     private OrcAggregatedMemoryContext currentStripeSystemMemoryContext;
     private Optional<DwrfEncryptionInfo> dwrfEncryptionInfo = Optional.empty();
@@ -156,7 +158,9 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             boolean cacheable,
             RuntimeStats runtimeStats,
             Optional<OrcFileIntrospector> fileIntrospector,
-            long fileModificationTime)
+            long fileModificationTime,
+            Optional<Executor> stripePrefetchExecutor,
+            DataSize stripePrefetchSize)
     {
         requireNonNull(includedColumns, "includedColumns is null");
         requireNonNull(predicate, "predicate is null");
@@ -266,6 +270,24 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
                 fileIntrospector,
                 fileModificationTime);
 
+        // Stripes can only be read ahead when nothing observes the order in which stripes are read, and
+        // when the data source can be read from another thread. The caching data source for tiny stripes
+        // does not support concurrent reads, and tiny stripes gain little from being read ahead.
+        requireNonNull(stripePrefetchExecutor, "stripePrefetchExecutor is null");
+        requireNonNull(stripePrefetchSize, "stripePrefetchSize is null");
+        if (stripePrefetchExecutor.isPresent()
+                && stripePrefetchSize.toBytes() > 0
+                && this.stripes.size() > 1
+                && !writeValidation.isPresent()
+                && !fileIntrospector.isPresent()
+                && this.dwrfEncryptionGroupMap.isEmpty()
+                && orcDataSource.supportsConcurrentReads()) {
+            this.stripePrefetcher = Optional.of(new StripePrefetcher(stripeReader, this.stripes, stripePrefetchExecutor.get(), stripePrefetchSize, systemMemoryUsage));
+        }
+        else {
+            this.stripePrefetcher = Optional.empty();
+        }
+
         this.streamReaders = requireNonNull(streamReaders, "streamReaders is null");
         for (int columnId = 0; columnId < root.getFieldCount(); columnId++) {
             if (includedColumns.containsKey(columnId)) {
@@ -505,6 +527,7 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
     {
         try (Closer closer = Closer.create()) {
             closer.register(orcDataSource);
+            stripePrefetcher.ifPresent(prefetcher -> closer.register(prefetcher::close));
             for (StreamReader column : streamReaders) {
                 if (column != null) {
                     closer.register(column::close);
@@ -634,7 +657,6 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             throws IOException
     {
         currentStripeSystemMemoryContext.close();
-        currentStripeSystemMemoryContext = systemMemoryUsage.newOrcAggregatedMemoryContext();
         rowGroups = ImmutableList.<RowGroup>of().iterator();
 
         if (currentStripe >= 0) {
@@ -648,6 +670,7 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
 
         currentStripe++;
         if (currentStripe >= stripes.size()) {
+            currentStripeSystemMemoryContext = systemMemoryUsage.newOrcAggregatedMemoryContext();
             return;
         }
 
@@ -668,8 +691,22 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             dwrfEncryptionInfo = Optional.of(createDwrfEncryptionInfo(encryptionLibrary.get(), stripeDecryptionKeyMetadata, intermediateKeyMetadata, dwrfEncryptionGroupMap));
         }
 
-        SharedBuffer sharedDecompressionBuffer = new SharedBuffer(currentStripeSystemMemoryContext.newOrcLocalMemoryContext("sharedDecompressionBuffer"));
-        Stripe stripe = stripeReader.readStripe(stripeInformation, currentStripeSystemMemoryContext, dwrfEncryptionInfo, sharedDecompressionBuffer);
+        Stripe stripe;
+        Optional<StripePrefetcher.PrefetchedStripe> prefetchedStripe = Optional.empty();
+        if (stripePrefetcher.isPresent()) {
+            prefetchedStripe = stripePrefetcher.get().getStripe(currentStripe);
+        }
+        if (prefetchedStripe.isPresent()) {
+            currentStripeSystemMemoryContext = prefetchedStripe.get().getMemoryContext();
+            stripe = prefetchedStripe.get().getStripe();
+        }
+        else {
+            currentStripeSystemMemoryContext = systemMemoryUsage.newOrcAggregatedMemoryContext();
+            SharedBuffer sharedDecompressionBuffer = new SharedBuffer(currentStripeSystemMemoryContext.newOrcLocalMemoryContext("sharedDecompressionBuffer"));
+            stripe = stripeReader.readStripe(stripeInformation, currentStripeSystemMemoryContext, dwrfEncryptionInfo, sharedDecompressionBuffer);
+        }
+        // read the following stripes while this one is decoded
+        stripePrefetcher.ifPresent(prefetcher -> prefetcher.prefetchAfter(currentStripe));
         if (stripe != null) {
             for (StreamReader column : streamReaders) {
                 if (column != null) {
@@ -754,9 +791,18 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
         return currentStripeSystemMemoryContext.getBytes();
     }
 
+    /**
+     * @return The size of memory retained by stripes read ahead of the current stripe
+     */
+    @VisibleForTesting
+    long getPrefetchedStripesRetainedSizeInBytes()
+    {
+        return stripePrefetcher.map(StripePrefetcher::getRetainedSizeInBytes).orElse(0L);
+    }
+
     protected long getRetainedSizeInBytes()
     {
-        return INSTANCE_SIZE + getStreamReaderRetainedSizeInBytes() + getCurrentStripeRetainedSizeInBytes();
+        return INSTANCE_SIZE + getStreamReaderRetainedSizeInBytes() + getCurrentStripeRetainedSizeInBytes() + getPrefetchedStripesRetainedSizeInBytes();
     }
 
     /**
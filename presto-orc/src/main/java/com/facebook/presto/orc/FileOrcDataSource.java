@@ -39,11 +39,18 @@ public class FileOrcDataSource
         input.close();
     }
 
+    // synchronized because the seek and read must not interleave with a read of another thread
     @Override
-    protected void readInternal(long position, byte[] buffer, int bufferOffset, int bufferLength)
+    protected synchronized void readInternal(long position, byte[] buffer, int bufferOffset, int bufferLength)
             throws IOException
     {
         input.seek(position);
         input.readFully(buffer, bufferOffset, bufferLength);
     }
+
+    @Override
+    public boolean supportsConcurrentReads()
+    {
+        return true;
+    }
 }
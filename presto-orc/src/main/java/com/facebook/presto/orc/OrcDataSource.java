@@ -37,6 +37,15 @@ public interface OrcDataSource
     <K> Map<K, OrcDataSourceInput> readFully(Map<K, DiskRange> diskRanges)
             throws IOException;
 
+    /**
+     * Returns whether this data source can be read from more than one thread at a time. Stripes are
+     * only read ahead on another thread from data sources that support concurrent reads.
+     */
+    default boolean supportsConcurrentReads()
+    {
+        return false;
+    }
+
     @Override
     default void close()
             throws IOException
@@ -50,6 +50,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TimeZone;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -422,6 +423,47 @@ public class OrcReader
             OrcAggregatedMemoryContext systemMemoryUsage,
             Optional<OrcWriteValidation> writeValidation,
             int initialBatchSize)
+    {
+        return createSelectiveRecordReader(
+                includedColumns,
+                outputColumns,
+                filters,
+                filterFunctions,
+                filterFunctionInputs,
+                requiredSubfields,
+                constantValues,
+                coercers,
+                predicate,
+                offset,
+                length,
+                hiveStorageTimeZone,
+                systemMemoryUsage,
+                writeValidation,
+                initialBatchSize,
+                Optional.empty());
+    }
+
+    /**
+     * Creates a selective record reader that reads stripes ahead on {@code stripePrefetchExecutor},
+     * up to the stripe prefetch size of the reader options.
+     */
+    public OrcSelectiveRecordReader createSelectiveRecordReader(
+            Map<Integer, Type> includedColumns,
+            List<Integer> outputColumns,
+            Map<Integer, Map<Subfield, TupleDomainFilter>> filters,
+            List<FilterFunction> filterFunctions,
+            Map<Integer, Integer> filterFunctionInputs,
+            Map<Integer, List<Subfield>> requiredSubfields,
+            Map<Integer, Object> constantValues,
+            Map<Integer, Function<Block, Block>> coercers,
+            OrcPredicate predicate,
+            long offset,
+            long length,
+            DateTimeZone hiveStorageTimeZone,
+            OrcAggregatedMemoryContext systemMemoryUsage,
+            Optional<OrcWriteValidation> writeValidation,
+            int initialBatchSize,
+            Optional<Executor> stripePrefetchExecutor)
     {
         return new OrcSelectiveRecordReader(
                 includedColumns,
@@ -458,7 +500,8 @@ public class OrcReader
                 cacheable,
                 runtimeStats,
                 fileIntrospector,
-                fileModificationTime);
+                fileModificationTime,
+                requireNonNull(stripePrefetchExecutor, "stripePrefetchExecutor is null"));
     }
 
     private static OrcDataSource wrapWithCacheIfTiny(OrcDataSource dataSource, DataSize maxCacheSize, OrcAggregatedMemoryContext systemMemoryContext)
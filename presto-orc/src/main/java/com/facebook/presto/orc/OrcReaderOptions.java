@@ -16,12 +16,14 @@ package com.facebook.presto.orc;
 import io.airlift.units.DataSize;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static java.util.Objects.requireNonNull;
 
 public class OrcReaderOptions
 {
     private static final DataSize DEFAULT_MAX_SLICE_SIZE = new DataSize(1, GIGABYTE);
+    private static final DataSize DEFAULT_STRIPE_PREFETCH_SIZE = new DataSize(0, BYTE);
     private final DataSize maxMergeDistance;
     private final DataSize tinyStripeThreshold;
     private final DataSize maxBlockSize;
@@ -32,6 +34,8 @@ public class OrcReaderOptions
     // slice reader will throw if the slice size is larger than this value
     private final DataSize maxSliceSize;
     private final boolean resetAllReaders;
+    // OrcSelectiveRecordReader reads stripes ahead of the current one while they retain less than this much memory
+    private final DataSize stripePrefetchSize;
 
     /**
      * Read column statistics for flat map columns. Usually there are quite a
@@ -48,7 +52,8 @@ public class OrcReaderOptions
             boolean appendRowNumber,
             boolean readMapStatistics,
             DataSize maxSliceSize,
-            boolean resetAllReaders)
+            boolean resetAllReaders,
+            DataSize stripePrefetchSize)
     {
         this.maxMergeDistance = requireNonNull(maxMergeDistance, "maxMergeDistance is null");
         this.maxBlockSize = requireNonNull(maxBlockSize, "maxBlockSize is null");
@@ -59,6 +64,7 @@ public class OrcReaderOptions
         this.readMapStatistics = readMapStatistics;
         this.maxSliceSize = maxSliceSize;
         this.resetAllReaders = resetAllReaders;
+        this.stripePrefetchSize = requireNonNull(stripePrefetchSize, "stripePrefetchSize is null");
     }
 
     public DataSize getMaxMergeDistance()
@@ -106,6 +112,11 @@ public class OrcReaderOptions
         return resetAllReaders;
     }
 
+    public DataSize getStripePrefetchSize()
+    {
+        return stripePrefetchSize;
+    }
+
     @Override
     public String toString()
     {
@@ -119,6 +130,7 @@ public class OrcReaderOptions
                 .add("readMapStatistics", readMapStatistics)
                 .add("maxSliceSize", maxSliceSize)
                 .add("resetAllReaders", resetAllReaders)
+                .add("stripePrefetchSize", stripePrefetchSize)
                 .toString();
     }
 
@@ -138,6 +150,7 @@ public class OrcReaderOptions
         private boolean readMapStatistics;
         private DataSize maxSliceSize = DEFAULT_MAX_SLICE_SIZE;
         private boolean resetAllReaders;
+        private DataSize stripePrefetchSize = DEFAULT_STRIPE_PREFETCH_SIZE;
 
         private Builder() {}
 
@@ -195,6 +208,12 @@ public class OrcReaderOptions
             return this;
         }
 
+        public Builder withStripePrefetchSize(DataSize stripePrefetchSize)
+        {
+            this.stripePrefetchSize = requireNonNull(stripePrefetchSize, "stripePrefetchSize is null");
+            return this;
+        }
+
         public OrcReaderOptions build()
         {
             return new OrcReaderOptions(
@@ -206,7 +225,8 @@ public class OrcReaderOptions
                     appendRowNumber,
                     readMapStatistics,
                     maxSliceSize,
-                    resetAllReaders);
+                    resetAllReaders,
+                    stripePrefetchSize);
         }
     }
 }
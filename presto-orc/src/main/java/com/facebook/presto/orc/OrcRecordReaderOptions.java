@@ -27,6 +27,7 @@ public class OrcRecordReaderOptions
     private final boolean appendRowNumber;
     private final long maxSliceSize;
     private final boolean resetAllReaders;
+    private final DataSize stripePrefetchSize;
 
     public OrcRecordReaderOptions(OrcReaderOptions options)
     {
@@ -36,7 +37,8 @@ public class OrcRecordReaderOptions
                 options.mapNullKeysEnabled(),
                 options.appendRowNumber(),
                 options.getMaxSliceSize(),
-                options.isResetAllReaders());
+                options.isResetAllReaders(),
+                options.getStripePrefetchSize());
     }
 
     public OrcRecordReaderOptions(
@@ -46,7 +48,8 @@ public class OrcRecordReaderOptions
             boolean mapNullKeysEnabled,
             boolean appendRowNumber,
             DataSize maxSliceSize,
-            boolean resetAllReaders)
+            boolean resetAllReaders,
+            DataSize stripePrefetchSize)
     {
         this.maxMergeDistance = requireNonNull(maxMergeDistance, "maxMergeDistance is null");
         this.maxBlockSize = requireNonNull(maxBlockSize, "maxBlockSize is null");
@@ -57,6 +60,7 @@ public class OrcRecordReaderOptions
         checkArgument(maxSliceSize.toBytes() > 0, "maxSliceSize must be positive");
         this.maxSliceSize = maxSliceSize.toBytes();
         this.resetAllReaders = resetAllReaders;
+        this.stripePrefetchSize = requireNonNull(stripePrefetchSize, "stripePrefetchSize is null");
     }
 
     public DataSize getMaxMergeDistance()
@@ -93,4 +97,9 @@ public class OrcRecordReaderOptions
     {
         return resetAllReaders;
     }
+
+    public DataSize getStripePrefetchSize()
+    {
+        return stripePrefetchSize;
+    }
 }
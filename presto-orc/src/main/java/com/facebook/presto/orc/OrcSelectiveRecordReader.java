@@ -28,6 +28,7 @@ import com.facebook.presto.common.predicate.TupleDomainFilter.BigintMultiRange;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BigintRange;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BigintValuesUsingBitmask;
 import com.facebook.presto.common.predicate.TupleDomainFilter.BigintValuesUsingHashTable;
+import com.facebook.presto.common.predicate.TupleDomainFilter.BloomFilterValues;
 import com.facebook.presto.common.type.CharType;
 import com.facebook.presto.common.type.DecimalType;
 import com.facebook.presto.common.type.Type;
@@ -38,6 +39,7 @@ import com.facebook.presto.orc.metadata.StripeInformation;
 import com.facebook.presto.orc.metadata.statistics.ColumnStatistics;
 import com.facebook.presto.orc.metadata.statistics.StripeStatistics;
 import com.facebook.presto.orc.reader.SelectiveStreamReader;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -54,7 +56,6 @@ import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,9 +63,12 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.IntStream;
 
+import static com.facebook.presto.common.RuntimeUnit.NONE;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DateType.DATE;
@@ -86,7 +90,6 @@ import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static io.airlift.slice.SizeOf.sizeOf;
 import static java.lang.Math.max;
-import static java.lang.Math.min;
 import static java.util.Objects.requireNonNull;
 
 public class OrcSelectiveRecordReader
@@ -99,6 +102,12 @@ public class OrcSelectiveRecordReader
 
     private static final Page EMPTY_PAGE = new Page(0);
 
+    private static final String FILTER_REORDER_COUNT = "OrcFilterReorderCount";
+    private static final String FILTER_REORDER_COLUMN_POSITION = "OrcFilterReorderColumnPosition";
+    // a filter only moves ahead of another one when its cost is lower by this fraction, so that
+    // filters of similar cost are not reordered back and forth on noise in their stats
+    private static final double FILTER_REORDER_COST_MARGIN = 0.2;
+
     private final int[] hiveColumnIndices;                            // elements are hive column indices
     private final List<Integer> outputColumns;                        // elements are zero based column indices
     private final Map<Integer, Type> columnTypes;                     // key: index into hiveColumnIndices array
@@ -111,6 +120,7 @@ public class OrcSelectiveRecordReader
     private final Map<Integer, Integer> columnsWithFilterScores;      // keys are indices into hiveColumnIndices array; values are filter scores
 
     private final OrcLocalMemoryContext localMemoryContext;
+    private final RuntimeStats runtimeStats;
 
     // Optimal order of stream readers
     private int[] streamReaderOrder;                                  // elements are indices into hiveColumnIndices array
@@ -120,6 +130,7 @@ public class OrcSelectiveRecordReader
     private List<FilterFunctionWithStats>[] filterFunctionsOrder;
 
     private Set<Integer>[] filterFunctionInputs;                      // aligned with filterFunctionsOrder
+    private FilterStats[] columnReadStats;                            // aligned with hiveColumnIndices array; set for columns with any filter
     private boolean reorderFilters;
 
     // non-deterministic filter functions with only constant inputs; evaluated before any column is read
@@ -189,7 +200,8 @@ public class OrcSelectiveRecordReader
             boolean cacheable,
             RuntimeStats runtimeStats,
             Optional<OrcFileIntrospector> fileIntrospector,
-            long fileModificationTime)
+            long fileModificationTime,
+            Optional<Executor> stripePrefetchExecutor)
     {
         super(includedColumns,
                 requiredSubfields,
@@ -233,7 +245,9 @@ public class OrcSelectiveRecordReader
                 cacheable,
                 runtimeStats,
                 fileIntrospector,
-                fileModificationTime);
+                fileModificationTime,
+                stripePrefetchExecutor,
+                options.getStripePrefetchSize());
 
         // Hive column indices can't be used to index into arrays because they are negative
         // for partition and hidden columns. Hence, we create synthetic zero-based indices.
@@ -259,6 +273,7 @@ public class OrcSelectiveRecordReader
                 .collect(toImmutableMap(entry -> zeroBasedIndices.get(entry.getKey()), entry -> scoreFilter(entry.getValue())));
 
         this.localMemoryContext = systemMemoryUsage.newOrcLocalMemoryContext(OrcSelectiveRecordReader.class.getSimpleName());
+        this.runtimeStats = runtimeStats;
 
         requireNonNull(coercers, "coercers is null");
         this.coercers = new Function[this.hiveColumnIndices.length];
@@ -316,11 +331,21 @@ public class OrcSelectiveRecordReader
                 .collect(toImmutableList());
         filterFunctionsOrder = orderFilterFunctionsWithInputs(streamReaderOrder, filterFunctionsWithStats, this.filterFunctionInputMapping);
         filterFunctionInputs = collectFilterFunctionInputs(filterFunctionsOrder, this.filterFunctionInputMapping);
-        int[] reorderableColumns = Arrays.stream(streamReaderOrder)
-                .filter(columnIndex -> !columnsWithFilterScores.containsKey(columnIndex))
-                .filter(this.filterFunctionInputMapping::containsKey)
-                .toArray();
-        reorderFilters = filterFunctionsWithStats.size() > 1 && reorderableColumns.length > 1;
+
+        // range filters and filter functions are reordered by their observed cost and selectivity
+        columnReadStats = new FilterStats[this.hiveColumnIndices.length];
+        int filterColumnCount = 0;
+        int rangeFilterCount = 0;
+        for (int columnIndex : streamReaderOrder) {
+            if (hasAnyFilter(columnIndex)) {
+                columnReadStats[columnIndex] = new FilterStats();
+                filterColumnCount++;
+                if (columnsWithFilterScores.containsKey(columnIndex)) {
+                    rangeFilterCount++;
+                }
+            }
+        }
+        reorderFilters = rangeFilterCount + filterFunctionsWithStats.size() > 1 && filterColumnCount > 1;
 
         filterFunctionsWithConstantInputs = filterFunctions.stream()
                 .filter(not(FilterFunction::isDeterministic))
@@ -378,50 +403,114 @@ public class OrcSelectiveRecordReader
 
     private void reorderFiltersIfNeeded()
     {
-        List<FilterFunctionWithStats> filters = Arrays.stream(filterFunctionsOrder)
+        List<FilterFunctionWithStats> currentFilters = Arrays.stream(filterFunctionsOrder)
                 .filter(Objects::nonNull)
                 .flatMap(functions -> functions.stream())
-                .sorted(Comparator.comparingDouble(function -> function.getStats().getElapsedNanonsPerDroppedPosition()))
                 .collect(toImmutableList());
-
-        assert filters.size() > 1;
-
-        Map<Integer, Integer> columnScore = new HashMap<>();
-        for (int i = 0; i < filters.size(); i++) {
-            int score = i;
-            Arrays.stream(filters.get(i).getFunction().getInputChannels())
+        Map<FilterFunctionWithStats, Double> filterCosts = currentFilters.stream()
+                .collect(toImmutableMap(Function.identity(), this::getElapsedNanosPerDroppedPosition));
+        List<FilterFunctionWithStats> filters = orderByCost(currentFilters, filterCosts::get);
+
+        // Range filters and filter functions are ranked together by the time spent per dropped position.
+        // Each column is read as early as the best ranked filter that needs it.
+        Map<Integer, Double> columnCosts = new HashMap<>();
+        for (int columnIndex : streamReaderOrder) {
+            if (columnsWithFilterScores.containsKey(columnIndex)) {
+                columnCosts.put(columnIndex, columnReadStats[columnIndex].getElapsedNanonsPerDroppedPosition());
+            }
+        }
+        for (FilterFunctionWithStats filter : filters) {
+            double cost = filterCosts.get(filter);
+            Arrays.stream(filter.getFunction().getInputChannels())
                     .map(filterFunctionInputMapping::get)
-                    // exclude columns with range filters
-                    .filter(columnIndex -> !columnsWithFilterScores.containsKey(columnIndex))
                     // exclude constant columns
                     .filter(columnIndex -> constantValues[columnIndex] == null)
-                    .forEach(columnIndex -> columnScore.compute(columnIndex, (k, v) -> v == null ? score : min(score, v)));
+                    .forEach(columnIndex -> columnCosts.merge(columnIndex, cost, Math::min));
         }
 
-        int[] newColumnOrder = columnScore.entrySet().stream()
-                .sorted(Comparator.comparing(Map.Entry::getValue))
-                .mapToInt(Map.Entry::getKey)
+        List<Integer> currentFilterColumns = Arrays.stream(streamReaderOrder)
+                .filter(columnCosts::containsKey)
+                .boxed()
+                .collect(toImmutableList());
+        int[] filterColumnOrder = orderByCost(currentFilterColumns, columnCosts::get).stream()
+                .mapToInt(Integer::intValue)
                 .toArray();
 
+        // columns without filters keep their order after the columns with filters
+        int[] newColumnOrder = Arrays.copyOf(filterColumnOrder, streamReaderOrder.length);
+        int i = filterColumnOrder.length;
+        for (int columnIndex : streamReaderOrder) {
+            if (!columnCosts.containsKey(columnIndex)) {
+                newColumnOrder[i++] = columnIndex;
+            }
+        }
+
         // Update streamReaderOrder,
         // filterFunctionsOrder (aligned with streamReaderOrder),
         // filterFunctionInputs (aligned with filterFunctionsOrder)
-        boolean sameOrder = true;
-        for (int i = 0; i < streamReaderOrder.length; i++) {
-            if (!columnsWithFilterScores.containsKey(streamReaderOrder[i])) {
-                for (int j = 0; j < newColumnOrder.length; j++) {
-                    if (streamReaderOrder[i] != newColumnOrder[j]) {
-                        sameOrder = false;
-                    }
-                    streamReaderOrder[i++] = newColumnOrder[j];
-                }
-                break;
+        boolean sameColumnOrder = Arrays.equals(newColumnOrder, streamReaderOrder);
+        List<FilterFunctionWithStats>[] newFilterFunctionsOrder = orderFilterFunctionsWithInputs(newColumnOrder, filters, this.filterFunctionInputMapping);
+        if (sameColumnOrder && Arrays.equals(newFilterFunctionsOrder, filterFunctionsOrder)) {
+            return;
+        }
+
+        streamReaderOrder = newColumnOrder;
+        filterFunctionsOrder = newFilterFunctionsOrder;
+        filterFunctionInputs = collectFilterFunctionInputs(filterFunctionsOrder, this.filterFunctionInputMapping);
+
+        runtimeStats.addMetricValue(FILTER_REORDER_COUNT, NONE, 1);
+        if (!sameColumnOrder) {
+            for (int position = 0; position < streamReaderOrder.length && hasAnyFilter(streamReaderOrder[position]); position++) {
+                runtimeStats.addMetricValue(FILTER_REORDER_COLUMN_POSITION + "-" + hiveColumnIndices[streamReaderOrder[position]], NONE, position);
             }
         }
+    }
+
+    /**
+     * Orders the elements by increasing cost, starting from their current order. An element only moves
+     * ahead of another one when its cost is lower by {@link #FILTER_REORDER_COST_MARGIN}, otherwise
+     * the current order is kept.
+     */
+    @VisibleForTesting
+    static <T> List<T> orderByCost(List<T> currentOrder, ToDoubleFunction<T> cost)
+    {
+        List<T> order = new ArrayList<>(currentOrder.size());
+        for (T element : currentOrder) {
+            double elementCost = cost.applyAsDouble(element);
+            int position = order.size();
+            while (position > 0 && elementCost < cost.applyAsDouble(order.get(position - 1)) * (1 - FILTER_REORDER_COST_MARGIN)) {
+                position--;
+            }
+            order.add(position, element);
+        }
+        return order;
+    }
+
+    private double getElapsedNanosPerDroppedPosition(FilterFunctionWithStats filter)
+    {
+        // a filter function is charged for reading its inputs, unless a range filter reads them anyway
+        double readNanosPerPosition = Arrays.stream(filter.getFunction().getInputChannels())
+                .map(filterFunctionInputMapping::get)
+                .distinct()
+                .filter(columnIndex -> constantValues[columnIndex] == null && !columnsWithFilterScores.containsKey(columnIndex))
+                .mapToDouble(columnIndex -> columnReadStats[columnIndex].getElapsedNanosPerPosition())
+                .sum();
 
-        if (!sameOrder) {
-            filterFunctionsOrder = orderFilterFunctionsWithInputs(streamReaderOrder, filters, this.filterFunctionInputMapping);
-            filterFunctionInputs = collectFilterFunctionInputs(filterFunctionsOrder, this.filterFunctionInputMapping);
+        FilterStats stats = filter.getStats();
+        return (stats.getElapsedNanos() + readNanosPerPosition * stats.getInputPositions()) / (1 + stats.getDroppedPositions());
+    }
+
+    private void decayFilterStats()
+    {
+        for (FilterStats stats : columnReadStats) {
+            if (stats != null) {
+                stats.decay();
+            }
+        }
+        for (List<FilterFunctionWithStats> functions : filterFunctionsOrder) {
+            if (functions != null) {
+                functions.forEach(function -> function.getStats().decay());
+            }
         }
     }
 
@@ -508,6 +597,11 @@ public class OrcSelectiveRecordReader
             return 50;
         }
 
+        if (filter instanceof BloomFilterValues) {
+            // Dynamic filter on a join key. Usually selective, so evaluate it before the other columns are read.
+            return 50;
+        }
+
         return 100;
     }
 
@@ -675,8 +769,14 @@ public class OrcSelectiveRecordReader
 
         int offset = getNextRowInGroup();
 
-        if (reorderFilters && offset >= MAX_BATCH_SIZE) {
-            reorderFiltersIfNeeded();
+        if (reorderFilters) {
+            if (offset == 0) {
+                // rank the filters by the most recent row groups
+                decayFilterStats();
+            }
+            else if (offset >= MAX_BATCH_SIZE) {
+                reorderFiltersIfNeeded();
+            }
         }
 
         for (int i = 0; i < streamReaderOrder.length; i++) {
@@ -687,7 +787,10 @@ public class OrcSelectiveRecordReader
             }
 
             SelectiveStreamReader streamReader = getStreamReader(columnIndex);
+            long startTime = System.nanoTime();
+            int inputPositionCount = positionCount;
             positionCount = streamReader.read(offset, positionsToRead, positionCount);
+            columnReadStats[columnIndex].update(inputPositionCount, positionCount, System.nanoTime() - startTime);
             if (positionCount == 0) {
                 break;
             }
@@ -767,6 +870,7 @@ public class OrcSelectiveRecordReader
                 sizeOf(coercers) +
                 sizeOf(streamReaderOrder) +
                 sizeOf(filterFunctionsOrder) +
+                sizeOf(columnReadStats) +
                 sizeOf(positions) +
                 sizeOf(outputPositions) +
                 sizeOf(errors) +
@@ -1007,6 +1111,36 @@ public class OrcSelectiveRecordReader
             this.elapsedNanos += elapsedNanos;
         }
 
+        /**
+         * Halves the weight of the positions seen so far.
+         */
+        public void decay()
+        {
+            this.inputPositions /= 2;
+            this.outputPositions /= 2;
+            this.elapsedNanos /= 2;
+        }
+
+        public long getInputPositions()
+        {
+            return inputPositions;
+        }
+
+        public long getDroppedPositions()
+        {
+            return inputPositions - outputPositions;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        public double getElapsedNanosPerPosition()
+        {
+            return (double) elapsedNanos / (1 + inputPositions);
+        }
+
         public double getElapsedNanonsPerDroppedPosition()
         {
             return (double) elapsedNanos / (1 + inputPositions - outputPositions);
@@ -0,0 +1,240 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.presto.orc.metadata.StripeInformation;
+import com.facebook.presto.orc.stream.SharedBuffer;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.units.DataSize;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the stripes of a record reader ahead of the stripe being decoded. Stripes are read
+ * one at a time on the executor, in stripe order, and the next read is started only while
+ * the memory retained by stripes read ahead, plus the size of the next stripe, fits in the
+ * prefetch size. A stripe larger than the prefetch size is never read ahead.
+ */
+class StripePrefetcher
+{
+    private final StripeReader stripeReader;
+    private final List<StripeInformation> stripes;
+    private final Executor executor;
+    private final long maxPrefetchBytes;
+    private final OrcAggregatedMemoryContext memoryContext;
+
+    @GuardedBy("this")
+    private final Deque<PrefetchedStripe> prefetchedStripes = new ArrayDeque<>();
+    @GuardedBy("this")
+    private int nextStripe;
+    @GuardedBy("this")
+    private boolean reading;
+    @GuardedBy("this")
+    private boolean closed;
+
+    public StripePrefetcher(StripeReader stripeReader, List<StripeInformation> stripes, Executor executor, DataSize maxPrefetchSize, OrcAggregatedMemoryContext systemMemoryUsage)
+    {
+        this.stripeReader = requireNonNull(stripeReader, "stripeReader is null");
+        this.stripes = ImmutableList.copyOf(requireNonNull(stripes, "stripes is null"));
+        this.executor = requireNonNull(executor, "executor is null");
+        this.maxPrefetchBytes = requireNonNull(maxPrefetchSize, "maxPrefetchSize is null").toBytes();
+        checkArgument(maxPrefetchBytes > 0, "maxPrefetchSize must be greater than zero");
+        this.memoryContext = requireNonNull(systemMemoryUsage, "systemMemoryUsage is null").newOrcAggregatedMemoryContext();
+    }
+
+    /**
+     * Starts reading the stripes after the given stripe.
+     */
+    public synchronized void prefetchAfter(int stripe)
+    {
+        nextStripe = Math.max(nextStripe, stripe + 1);
+        startNextRead();
+    }
+
+    /**
+     * Returns the given stripe if it was read ahead, waiting for the read to finish. The memory
+     * context of the returned stripe must be closed by the caller once the stripe is no longer used.
+     */
+    public Optional<PrefetchedStripe> getStripe(int stripe)
+            throws IOException
+    {
+        PrefetchedStripe prefetchedStripe;
+        synchronized (this) {
+            // stripes are consumed in order, so anything before the requested stripe is stale
+            while (!prefetchedStripes.isEmpty() && prefetchedStripes.peekFirst().getStripeIndex() < stripe) {
+                prefetchedStripes.pollFirst().discard();
+            }
+            if (prefetchedStripes.isEmpty() || prefetchedStripes.peekFirst().getStripeIndex() != stripe) {
+                return Optional.empty();
+            }
+            prefetchedStripe = prefetchedStripes.pollFirst();
+            // the stripe no longer counts against the prefetch size
+            startNextRead();
+        }
+        return Optional.of(prefetchedStripe);
+    }
+
+    /**
+     * Returns the memory retained by stripes that were read ahead but not yet returned by {@link #getStripe}.
+     */
+    public synchronized long getRetainedSizeInBytes()
+    {
+        long bytes = 0;
+        for (PrefetchedStripe prefetchedStripe : prefetchedStripes) {
+            bytes += prefetchedStripe.getMemoryContext().getBytes();
+        }
+        return bytes;
+    }
+
+    public synchronized void close()
+    {
+        closed = true;
+        while (!prefetchedStripes.isEmpty()) {
+            prefetchedStripes.pollFirst().discard();
+        }
+    }
+
+    @GuardedBy("this")
+    private void startNextRead()
+    {
+        if (closed || reading || nextStripe >= stripes.size()) {
+            return;
+        }
+        // the stored size of the stripe is known before it is read, and it retains at least that much once read
+        if (getRetainedSizeInBytes() + stripes.get(nextStripe).getTotalLength() > maxPrefetchBytes) {
+            return;
+        }
+        reading = true;
+        int stripeIndex = nextStripe++;
+        PrefetchedStripe prefetchedStripe = new PrefetchedStripe(stripeIndex, memoryContext.newOrcAggregatedMemoryContext());
+        prefetchedStripes.addLast(prefetchedStripe);
+        executor.execute(() -> readStripe(prefetchedStripe));
+    }
+
+    private void readStripe(PrefetchedStripe prefetchedStripe)
+    {
+        Stripe stripe = null;
+        Throwable failure = null;
+        try {
+            OrcAggregatedMemoryContext stripeMemoryContext = prefetchedStripe.getMemoryContext();
+            SharedBuffer sharedDecompressionBuffer = new SharedBuffer(stripeMemoryContext.newOrcLocalMemoryContext("sharedDecompressionBuffer"));
+            stripe = stripeReader.readStripe(stripes.get(prefetchedStripe.getStripeIndex()), stripeMemoryContext, Optional.empty(), sharedDecompressionBuffer, true);
+        }
+        catch (Throwable t) {
+            failure = t;
+        }
+        synchronized (this) {
+            // complete the read under the lock, so the next read is queued before this stripe can be consumed
+            if (failure == null) {
+                prefetchedStripe.set(stripe);
+            }
+            else {
+                prefetchedStripe.setException(failure);
+            }
+            reading = false;
+            if (closed || prefetchedStripe.isDiscarded()) {
+                prefetchedStripe.discard();
+                return;
+            }
+            startNextRead();
+        }
+    }
+
+    static class PrefetchedStripe
+    {
+        private final int stripeIndex;
+        private final OrcAggregatedMemoryContext memoryContext;
+        private final SettableFuture<Optional<Stripe>> stripe = SettableFuture.create();
+        private boolean discarded;
+
+        private PrefetchedStripe(int stripeIndex, OrcAggregatedMemoryContext memoryContext)
+        {
+            this.stripeIndex = stripeIndex;
+            this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+        }
+
+        public int getStripeIndex()
+        {
+            return stripeIndex;
+        }
+
+        public OrcAggregatedMemoryContext getMemoryContext()
+        {
+            return memoryContext;
+        }
+
+        /**
+         * Returns the stripe, or null if all of its row groups were skipped, waiting for the read to finish.
+         */
+        @Nullable
+        public Stripe getStripe()
+                throws IOException
+        {
+            try {
+                return stripe.get().orElse(null);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for stripe " + stripeIndex);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throwIfInstanceOf(cause, IOException.class);
+                throwIfUnchecked(cause);
+                throw new IOException(cause);
+            }
+        }
+
+        private void set(@Nullable Stripe stripe)
+        {
+            checkState(this.stripe.set(Optional.ofNullable(stripe)), "stripe already set");
+        }
+
+        private void setException(Throwable throwable)
+        {
+            stripe.setException(throwable);
+        }
+
+        private boolean isDiscarded()
+        {
+            return discarded;
+        }
+
+        private void discard()
+        {
+            discarded = true;
+            // the memory of a stripe that is still being read is released once the read finishes
+            if (stripe.isDone()) {
+                memoryContext.close();
+            }
+        }
+    }
+}
@@ -46,7 +46,9 @@ import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import io.airlift.slice.BasicSliceInput;
 import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -155,6 +157,21 @@ public class StripeReader
             Optional<DwrfEncryptionInfo> decryptors,
             SharedBuffer sharedDecompressionBuffer)
             throws IOException
+    {
+        return readStripe(stripe, systemMemoryUsage, decryptors, sharedDecompressionBuffer, false);
+    }
+
+    /**
+     * Reads the stripe. If {@code loadStreams} is set, the data of the included streams is read
+     * before this method returns instead of when the streams are first decoded.
+     */
+    public Stripe readStripe(
+            StripeInformation stripe,
+            OrcAggregatedMemoryContext systemMemoryUsage,
+            Optional<DwrfEncryptionInfo> decryptors,
+            SharedBuffer sharedDecompressionBuffer,
+            boolean loadStreams)
+            throws IOException
     {
         StripeId stripeId = new StripeId(orcDataSource.getId(), stripe.getOffset());
 
@@ -192,7 +209,7 @@ public class StripeReader
             diskRanges = Maps.filterKeys(diskRanges, Predicates.in(includedStreams.keySet()));
 
             // read the file regions
-            Map<StreamId, OrcInputStream> streamsData = readDiskRanges(stripeId, diskRanges, systemMemoryUsage, decryptors, sharedDecompressionBuffer);
+            Map<StreamId, OrcInputStream> streamsData = readDiskRanges(stripeId, diskRanges, systemMemoryUsage, decryptors, sharedDecompressionBuffer, loadStreams);
 
             // read the row index for each column
             Map<StreamId, List<RowGroupIndex>> columnIndexes = readColumnIndexes(includedStreams, streamsData, stripeId);
@@ -251,7 +268,7 @@ public class StripeReader
         ImmutableMap<StreamId, DiskRange> diskRanges = diskRangesBuilder.build();
 
         // read the file regions
-        Map<StreamId, OrcInputStream> streamsData = readDiskRanges(stripeId, diskRanges, systemMemoryUsage, decryptors, sharedDecompressionBuffer);
+        Map<StreamId, OrcInputStream> streamsData = readDiskRanges(stripeId, diskRanges, systemMemoryUsage, decryptors, sharedDecompressionBuffer, loadStreams);
 
         long totalBytes = 0;
         ImmutableMap.Builder<StreamId, List<RowGroupIndex>> columnIndexes = ImmutableMap.builder();
@@ -341,7 +358,8 @@ public class StripeReader
             Map<StreamId, DiskRange> diskRanges,
             OrcAggregatedMemoryContext systemMemoryUsage,
             Optional<DwrfEncryptionInfo> decryptors,
-            SharedBuffer sharedDecompressionBuffer)
+            SharedBuffer sharedDecompressionBuffer,
+            boolean loadStreams)
             throws IOException
     {
         //
@@ -355,6 +373,12 @@ public class StripeReader
         ImmutableMap.Builder<StreamId, OrcInputStream> streamsBuilder = ImmutableMap.builder();
         for (Entry<StreamId, OrcDataSourceInput> entry : streamsData.entrySet()) {
             OrcDataSourceInput sourceInput = entry.getValue();
+            if (loadStreams) {
+                // large ranges are otherwise read lazily in chunks as the stream is decoded
+                byte[] data = new byte[toIntExact(sourceInput.getInput().remaining())];
+                sourceInput.getInput().readBytes(data);
+                sourceInput = new OrcDataSourceInput(new BasicSliceInput(Slices.wrappedBuffer(data)), data.length);
+            }
             Optional<DwrfDataEncryptor> dwrfDecryptor = createDwrfDecryptor(entry.getKey(), decryptors);
             streamsBuilder.put(entry.getKey(), new OrcInputStream(
                     orcDataSource.getId(),
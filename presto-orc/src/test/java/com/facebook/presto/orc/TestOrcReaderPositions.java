@@ -52,6 +52,9 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.LongStream;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
@@ -63,14 +66,17 @@ import static com.facebook.presto.orc.OrcReader.BATCH_SIZE_GROWTH_FACTOR;
 import static com.facebook.presto.orc.OrcReader.INITIAL_BATCH_SIZE;
 import static com.facebook.presto.orc.OrcReader.MAX_BATCH_SIZE;
 import static com.facebook.presto.orc.OrcTester.Format.ORC_12;
+import static com.facebook.presto.orc.OrcTester.HIVE_STORAGE_TIME_ZONE;
 import static com.facebook.presto.orc.OrcTester.MAX_BLOCK_SIZE;
 import static com.facebook.presto.orc.OrcTester.createCustomOrcRecordReader;
 import static com.facebook.presto.orc.OrcTester.createCustomOrcSelectiveRecordReader;
 import static com.facebook.presto.orc.OrcTester.createOrcRecordWriter;
 import static com.facebook.presto.orc.OrcTester.createSettableStructObjectInspector;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.lang.Math.min;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.apache.hadoop.hive.ql.io.orc.CompressionKind.SNAPPY;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
@@ -558,6 +564,99 @@ public class TestOrcReaderPositions
         }
     }
 
+    @Test
+    public void testStripePrefetch()
+            throws Exception
+    {
+        // every stripe after the first one is read ahead
+        assertEquals(readWithStripePrefetch(new DataSize(1, MEGABYTE), false), 4);
+    }
+
+    @Test
+    public void testStripePrefetchSizeLimit()
+            throws Exception
+    {
+        // a stripe that does not fit in the prefetch size is not read ahead
+        assertEquals(readWithStripePrefetch(new DataSize(1, BYTE), false), 0);
+    }
+
+    @Test
+    public void testStripePrefetchRequiresConcurrentReads()
+            throws Exception
+    {
+        // stripes are not read ahead from a data source that does not support concurrent reads
+        assertEquals(readWithStripePrefetch(new DataSize(1, MEGABYTE), true), 0);
+    }
+
+    private static int readWithStripePrefetch(DataSize stripePrefetchSize, boolean singleThreadedDataSource)
+            throws Exception
+    {
+        ExecutorService executor = newSingleThreadExecutor();
+        AtomicInteger prefetchedStripes = new AtomicInteger();
+        try (TempFile tempFile = new TempFile()) {
+            // Create a file with 5 stripes of 20 rows each.
+            createMultiStripeFile(tempFile.getFile());
+
+            OrcDataSource orcDataSource = new FileOrcDataSource(tempFile.getFile(), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), true);
+            if (singleThreadedDataSource) {
+                orcDataSource = new TestingOrcDataSource(orcDataSource);
+            }
+            OrcReader orcReader = new OrcReader(
+                    orcDataSource,
+                    ORC,
+                    new StorageOrcFileTailSource(),
+                    new StorageStripeMetadataSource(),
+                    NOOP_ORC_AGGREGATED_MEMORY_CONTEXT,
+                    OrcReaderOptions.builder()
+                            .withMaxMergeDistance(new DataSize(1, MEGABYTE))
+                            // the stripes of the test file are tiny and would otherwise be cached instead of read ahead
+                            .withTinyStripeThreshold(new DataSize(0, BYTE))
+                            .withMaxBlockSize(MAX_BLOCK_SIZE)
+                            .withStripePrefetchSize(stripePrefetchSize)
+                            .build(),
+                    false,
+                    NO_ENCRYPTION,
+                    DwrfKeyProvider.EMPTY,
+                    new RuntimeStats());
+
+            try (OrcSelectiveRecordReader reader = orcReader.createSelectiveRecordReader(
+                    ImmutableMap.of(0, BIGINT),
+                    ImmutableList.of(0),
+                    ImmutableMap.of(),
+                    ImmutableList.of(),
+                    ImmutableMap.of(),
+                    ImmutableMap.of(),
+                    ImmutableMap.of(),
+                    ImmutableMap.of(),
+                    OrcPredicate.TRUE,
+                    0,
+                    orcDataSource.getSize(),
+                    HIVE_STORAGE_TIME_ZONE,
+                    new TestingHiveOrcAggregatedMemoryContext(),
+                    Optional.empty(),
+                    MAX_BATCH_SIZE,
+                    Optional.of(command -> {
+                        prefetchedStripes.incrementAndGet();
+                        executor.execute(command);
+                    }))) {
+                long expectedValue = 0;
+                for (Page page = reader.getNextPage(); page != null; page = reader.getNextPage()) {
+                    Block block = page.getBlock(0).getLoadedBlock();
+                    for (int i = 0; i < block.getPositionCount(); i++) {
+                        assertEquals(BIGINT.getLong(block, i), expectedValue);
+                        expectedValue += 3;
+                    }
+                }
+                assertEquals(expectedValue, 300);
+                assertEquals(reader.getPrefetchedStripesRetainedSizeInBytes(), 0);
+                return prefetchedStripes.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     private static void assertCurrentBatch(OrcBatchRecordReader reader, int rowIndex, int batchSize)
             throws IOException
     {
@@ -15,29 +15,44 @@
 package com.facebook.presto.orc;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.common.Subfield;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.predicate.TupleDomainFilter.BigintRange;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.orc.cache.StorageOrcFileTailSource;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
+import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.orc.DwrfEncryptionProvider.NO_ENCRYPTION;
 import static com.facebook.presto.orc.NoOpOrcWriterStats.NOOP_WRITER_STATS;
+import static com.facebook.presto.orc.NoopOrcAggregatedMemoryContext.NOOP_ORC_AGGREGATED_MEMORY_CONTEXT;
+import static com.facebook.presto.orc.OrcReader.MAX_BATCH_SIZE;
 import static com.facebook.presto.orc.OrcTester.Format.DWRF;
 import static com.facebook.presto.orc.OrcTester.Format.ORC_12;
+import static com.facebook.presto.orc.OrcTester.HIVE_STORAGE_TIME_ZONE;
 import static com.facebook.presto.orc.OrcTester.createCustomOrcSelectiveRecordReader;
 import static com.facebook.presto.orc.OrcTester.writeOrcColumnsPresto;
 import static com.facebook.presto.orc.TestingOrcPredicate.createOrcPredicate;
 import static com.facebook.presto.orc.metadata.CompressionKind.NONE;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 
 public class TestOrcSelectiveRecordReader
 {
@@ -133,4 +148,76 @@ public class TestOrcSelectiveRecordReader
             assertEquals(block.getPositionCount(), 1);
         }
     }
+
+    @Test
+    public void testOrderByCost()
+    {
+        Map<String, Double> costs = ImmutableMap.of("a", 10.0, "b", 9.0, "c", 5.0);
+        // filters of similar cost keep their current order
+        assertEquals(OrcSelectiveRecordReader.orderByCost(ImmutableList.of("a", "b"), costs::get), ImmutableList.of("a", "b"));
+        // a filter that is cheaper by more than the margin moves ahead
+        assertEquals(OrcSelectiveRecordReader.orderByCost(ImmutableList.of("a", "b", "c"), costs::get), ImmutableList.of("c", "a", "b"));
+        assertEquals(OrcSelectiveRecordReader.orderByCost(ImmutableList.of("c", "b", "a"), costs::get), ImmutableList.of("c", "b", "a"));
+    }
+
+    @Test
+    public void testFilterReordering()
+            throws Exception
+    {
+        // the equality filter on the first column is evaluated first, but drops no rows
+        int rowCount = 30_000;
+        List<Type> types = ImmutableList.of(BIGINT, BIGINT);
+        List<List<?>> values = ImmutableList.of(
+                Collections.nCopies(rowCount, 1L),
+                LongStream.range(0, rowCount).boxed().collect(toImmutableList()));
+
+        TempFile tempFile = new TempFile();
+        writeOrcColumnsPresto(tempFile.getFile(), ORC_12, NONE, Optional.empty(), types, values, NOOP_WRITER_STATS);
+
+        OrcDataSource orcDataSource = new FileOrcDataSource(tempFile.getFile(), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), true);
+        RuntimeStats runtimeStats = new RuntimeStats();
+        OrcReader orcReader = new OrcReader(
+                orcDataSource,
+                ORC_12.getOrcEncoding(),
+                new StorageOrcFileTailSource(),
+                new StorageStripeMetadataSource(),
+                NOOP_ORC_AGGREGATED_MEMORY_CONTEXT,
+                OrcReaderTestingUtils.createDefaultTestConfig(),
+                false,
+                NO_ENCRYPTION,
+                DwrfKeyProvider.EMPTY,
+                runtimeStats);
+
+        List<Long> actualValues = new ArrayList<>();
+        try (OrcSelectiveRecordReader recordReader = orcReader.createSelectiveRecordReader(
+                ImmutableMap.of(0, BIGINT, 1, BIGINT),
+                ImmutableList.of(1),
+                ImmutableMap.of(
+                        0, ImmutableMap.of(new Subfield("c"), BigintRange.of(1, 1, false)),
+                        1, ImmutableMap.of(new Subfield("c"), BigintRange.of(0, 99, false))),
+                ImmutableList.of(),
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                OrcPredicate.TRUE,
+                0,
+                orcDataSource.getSize(),
+                HIVE_STORAGE_TIME_ZONE,
+                new TestingHiveOrcAggregatedMemoryContext(),
+                Optional.empty(),
+                MAX_BATCH_SIZE)) {
+            for (Page page = recordReader.getNextPage(); page != null; page = recordReader.getNextPage()) {
+                for (int i = 0; i < page.getPositionCount(); i++) {
+                    actualValues.add(BIGINT.getLong(page.getBlock(0), i));
+                }
+            }
+        }
+        assertEquals(actualValues, LongStream.range(0, 100).boxed().collect(toImmutableList()));
+
+        // the range filter on the second column drops more rows for less time, so it is moved first
+        assertNotNull(runtimeStats.getMetric("OrcFilterReorderCount"));
+        assertEquals(runtimeStats.getMetric("OrcFilterReorderColumnPosition-1").getMin(), 0);
+        assertEquals(runtimeStats.getMetric("OrcFilterReorderColumnPosition-0").getMax(), 1);
+    }
 }
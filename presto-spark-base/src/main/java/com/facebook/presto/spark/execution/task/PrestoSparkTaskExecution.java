@@ -483,6 +483,12 @@ public class PrestoSparkTaskExecution
             return driver.processFor(duration);
         }
 
+        @Override
+        public synchronized boolean isBlockedOnSource()
+        {
+            return driver != null && driver.isBlockedOnSource();
+        }
+
         @Override
         public String getInfo()
         {
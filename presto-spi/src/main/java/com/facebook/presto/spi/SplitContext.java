@@ -13,10 +13,13 @@
  */
 package com.facebook.presto.spi;
 
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
@@ -29,22 +32,33 @@ public class SplitContext
     private final boolean cacheable;
     // For local execution only; no need for serialization.
     private final Optional<TupleDomain<ColumnHandle>> dynamicFilterPredicate;
+    // Bloom filters of the build side join keys, for columns whose dynamic filter is not a discrete set of values.
+    private final Map<ColumnHandle, BlockedBloomFilter> dynamicFilterBloomFilters;
 
     @JsonCreator
     public SplitContext(@JsonProperty boolean cacheable)
     {
-        this(cacheable, Optional.empty());
+        this(cacheable, Optional.empty(), Collections.emptyMap());
     }
 
     public SplitContext(boolean cacheable, TupleDomain<ColumnHandle> dynamicFilterPredicate)
     {
-        this(cacheable, Optional.of(requireNonNull(dynamicFilterPredicate, "dynamicFilterPredicate is null")));
+        this(cacheable, dynamicFilterPredicate, Collections.emptyMap());
     }
 
-    private SplitContext(boolean cacheable, Optional<TupleDomain<ColumnHandle>> dynamicFilterPredicate)
+    public SplitContext(boolean cacheable, TupleDomain<ColumnHandle> dynamicFilterPredicate, Map<ColumnHandle, BlockedBloomFilter> dynamicFilterBloomFilters)
+    {
+        this(
+                cacheable,
+                Optional.of(requireNonNull(dynamicFilterPredicate, "dynamicFilterPredicate is null")),
+                requireNonNull(dynamicFilterBloomFilters, "dynamicFilterBloomFilters is null"));
+    }
+
+    private SplitContext(boolean cacheable, Optional<TupleDomain<ColumnHandle>> dynamicFilterPredicate, Map<ColumnHandle, BlockedBloomFilter> dynamicFilterBloomFilters)
     {
         this.cacheable = cacheable;
         this.dynamicFilterPredicate = dynamicFilterPredicate;
+        this.dynamicFilterBloomFilters = dynamicFilterBloomFilters;
     }
 
     @JsonProperty
@@ -57,4 +71,9 @@ public class SplitContext
     {
         return dynamicFilterPredicate;
     }
+
+    public Map<ColumnHandle, BlockedBloomFilter> getDynamicFilterBloomFilters()
+    {
+        return dynamicFilterBloomFilters;
+    }
 }
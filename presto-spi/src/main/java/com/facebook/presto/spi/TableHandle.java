@@ -13,11 +13,13 @@
  */
 package com.facebook.presto.spi;
 
+import com.facebook.presto.common.predicate.BlockedBloomFilter;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -36,6 +38,7 @@ public final class TableHandle
 
     // This is not serializable; for local execution only
     private final Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilter;
+    private final Optional<Supplier<Map<ColumnHandle, BlockedBloomFilter>>> dynamicFilterBloomFilters;
 
     @JsonCreator
     public TableHandle(
@@ -53,12 +56,24 @@ public final class TableHandle
             ConnectorTransactionHandle transaction,
             Optional<ConnectorTableLayoutHandle> layout,
             Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilter)
+    {
+        this(connectorId, connectorHandle, transaction, layout, dynamicFilter, Optional.empty());
+    }
+
+    private TableHandle(
+            ConnectorId connectorId,
+            ConnectorTableHandle connectorHandle,
+            ConnectorTransactionHandle transaction,
+            Optional<ConnectorTableLayoutHandle> layout,
+            Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilter,
+            Optional<Supplier<Map<ColumnHandle, BlockedBloomFilter>>> dynamicFilterBloomFilters)
     {
         this.connectorId = requireNonNull(connectorId, "connectorId is null");
         this.connectorHandle = requireNonNull(connectorHandle, "connectorHandle is null");
         this.transaction = requireNonNull(transaction, "transaction is null");
         this.layout = requireNonNull(layout, "layout is null");
         this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
+        this.dynamicFilterBloomFilters = requireNonNull(dynamicFilterBloomFilters, "dynamicFilterBloomFilters is null");
     }
 
     @JsonProperty
@@ -99,6 +114,21 @@ public final class TableHandle
         return new TableHandle(connectorId, connectorHandle, transaction, layout, Optional.of(dynamicFilter));
     }
 
+    public Optional<Supplier<Map<ColumnHandle, BlockedBloomFilter>>> getDynamicFilterBloomFilters()
+    {
+        return dynamicFilterBloomFilters;
+    }
+
+    public TableHandle withDynamicFilter(Supplier<TupleDomain<ColumnHandle>> dynamicFilter, Supplier<Map<ColumnHandle, BlockedBloomFilter>> dynamicFilterBloomFilters)
+    {
+        requireNonNull(dynamicFilter, "dynamicFilter is null");
+        requireNonNull(dynamicFilterBloomFilters, "dynamicFilterBloomFilters is null");
+        if (this.dynamicFilter.isPresent()) {
+            throw new RuntimeException("dynamicFilter already exists");
+        }
+        return new TableHandle(connectorId, connectorHandle, transaction, layout, Optional.of(dynamicFilter), Optional.of(dynamicFilterBloomFilters));
+    }
+
     @Override
     public boolean equals(Object obj)
     {
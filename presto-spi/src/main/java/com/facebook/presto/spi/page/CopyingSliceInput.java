@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spi.page;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.Slices;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SliceInput} that copies the slices it returns out of the underlying input, so that
+ * the blocks read from it do not retain the input. This allows the input buffer to be reused
+ * as soon as a page has been read from it.
+ */
+final class CopyingSliceInput
+        extends SliceInput
+{
+    private final SliceInput delegate;
+
+    CopyingSliceInput(SliceInput delegate)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+    }
+
+    @Override
+    public Slice readSlice(int length)
+    {
+        return Slices.copyOf(delegate.readSlice(length));
+    }
+
+    @Override
+    public long position()
+    {
+        return delegate.position();
+    }
+
+    @Override
+    public void setPosition(long position)
+    {
+        delegate.setPosition(position);
+    }
+
+    @Override
+    public boolean isReadable()
+    {
+        return delegate.isReadable();
+    }
+
+    @Override
+    public int available()
+    {
+        return delegate.available();
+    }
+
+    @Override
+    public int read()
+    {
+        return delegate.read();
+    }
+
+    @Override
+    public boolean readBoolean()
+    {
+        return delegate.readBoolean();
+    }
+
+    @Override
+    public byte readByte()
+    {
+        return delegate.readByte();
+    }
+
+    @Override
+    public int readUnsignedByte()
+    {
+        return delegate.readUnsignedByte();
+    }
+
+    @Override
+    public short readShort()
+    {
+        return delegate.readShort();
+    }
+
+    @Override
+    public int readUnsignedShort()
+    {
+        return delegate.readUnsignedShort();
+    }
+
+    @Override
+    public int readInt()
+    {
+        return delegate.readInt();
+    }
+
+    @Override
+    public long readLong()
+    {
+        return delegate.readLong();
+    }
+
+    @Override
+    public float readFloat()
+    {
+        return delegate.readFloat();
+    }
+
+    @Override
+    public double readDouble()
+    {
+        return delegate.readDouble();
+    }
+
+    @Override
+    public int read(byte[] destination, int destinationIndex, int length)
+    {
+        return delegate.read(destination, destinationIndex, length);
+    }
+
+    @Override
+    public void readBytes(byte[] destination, int destinationIndex, int length)
+    {
+        delegate.readBytes(destination, destinationIndex, length);
+    }
+
+    @Override
+    public void readBytes(Slice destination, int destinationIndex, int length)
+    {
+        delegate.readBytes(destination, destinationIndex, length);
+    }
+
+    @Override
+    public void readBytes(OutputStream out, int length)
+            throws IOException
+    {
+        delegate.readBytes(out, length);
+    }
+
+    @Override
+    public long skip(long length)
+    {
+        return delegate.skip(length);
+    }
+
+    @Override
+    public int skipBytes(int length)
+    {
+        return delegate.skipBytes(length);
+    }
+
+    @Override
+    public long getRetainedSize()
+    {
+        return delegate.getRetainedSize();
+    }
+}
@@ -23,7 +23,6 @@ import io.airlift.slice.Slices;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.util.Optional;
 
@@ -41,7 +40,8 @@ import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
 @NotThreadSafe
 public class PagesSerde
 {
-    private static final double MINIMUM_COMPRESSION_RATIO = 0.9;
+    public static final double MINIMUM_COMPRESSION_RATIO = 0.9;
+    private static final int MINIMUM_DECOMPRESSION_BUFFER_SIZE = 64 * 1024;
 
     private final BlockEncodingSerde blockEncodingSerde;
     private final Optional<PageCompressor> compressor;
@@ -50,6 +50,7 @@ public class PagesSerde
     private final boolean checksumEnabled;
 
     private byte[] compressionBuffer;
+    private byte[] decompressionBuffer;
 
     public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<PageCompressor> compressor, Optional<PageDecompressor> decompressor, Optional<SpillCipher> spillCipher)
     {
@@ -95,14 +96,18 @@ public class PagesSerde
         if (COMPRESSED.isSet(serializedPage.getPageCodecMarkers())) {
             checkState(decompressor.isPresent(), "Page is compressed, but decompressor is missing");
 
+            // the decompression buffer is reused for the following pages, so the slices read from it are copied
             int uncompressedSize = serializedPage.getUncompressedSizeInBytes();
-            ByteBuffer decompressionBuffer = ByteBuffer.allocate(uncompressedSize);
+            decompressionBuffer = ensureDecompressionBufferCapacity(decompressionBuffer, uncompressedSize);
+            ByteBuffer output = ByteBuffer.wrap(decompressionBuffer, 0, uncompressedSize);
 
-            decompressor.get().decompress(slice.toByteBuffer(), decompressionBuffer);
-            ((Buffer) decompressionBuffer).flip();
-            checkState(decompressionBuffer.remaining() == uncompressedSize, "page size changed after decompression into decompressionBuffer");
+            decompressor.get().decompress(slice.toByteBuffer(), output);
+            checkState(output.position() == uncompressedSize, "page size changed after decompression into decompressionBuffer");
 
-            slice = Slices.wrappedBuffer(decompressionBuffer);
+            return readRawPage(
+                    serializedPage.getPositionCount(),
+                    new CopyingSliceInput(Slices.wrappedBuffer(decompressionBuffer, 0, uncompressedSize).getInput()),
+                    blockEncodingSerde);
         }
 
         return readRawPage(serializedPage.getPositionCount(), slice.getInput(), blockEncodingSerde);
@@ -110,12 +115,12 @@ public class PagesSerde
 
     public long getSizeInBytes()
     {
-        return compressionBuffer == null ? 0 : compressionBuffer.length;
+        return (compressionBuffer == null ? 0 : compressionBuffer.length) + (decompressionBuffer == null ? 0 : decompressionBuffer.length);
     }
 
     public long getRetainedSizeInBytes()
     {
-        return sizeOf(compressionBuffer);
+        return sizeOf(compressionBuffer) + sizeOf(decompressionBuffer);
     }
 
     private SerializedPage wrapSlice(Slice slice, int positionCount)
@@ -179,4 +184,17 @@ public class PagesSerde
 
         return buffer;
     }
+
+    private static byte[] ensureDecompressionBufferCapacity(byte[] buffer, int capacity)
+    {
+        if (buffer != null && buffer.length >= capacity) {
+            return buffer;
+        }
+        // round up to a power of two, so that pages of similar sizes share the buffer instead of growing it one at a time
+        int size = Math.max(MINIMUM_DECOMPRESSION_BUFFER_SIZE, capacity);
+        if (Integer.bitCount(size) != 1 && size <= (1 << 30)) {
+            size = Integer.highestOneBit(size) << 1;
+        }
+        return new byte[size];
+    }
 }
@@ -19,7 +19,13 @@ import com.facebook.presto.common.block.BlockEncodingSerde;
 import io.airlift.slice.Slice;
 import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
 
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.zip.CRC32;
@@ -187,6 +193,17 @@ public class PagesSerdeUtil
         return new SerializedPageReader(sliceInput);
     }
 
+    /**
+     * Reads the serialized pages of {@code inputStream} into the arrays backing their slices. Unlike reading
+     * through an {@link io.airlift.slice.InputStreamSliceInput}, the data of a large page is read straight into
+     * its array instead of being copied through an intermediate buffer, and each page only retains its own data.
+     * Only the page metadata and small pages go through a small buffer.
+     */
+    public static Iterator<SerializedPage> readSerializedPagesFromStream(InputStream inputStream)
+    {
+        return new InputStreamSerializedPageReader(inputStream);
+    }
+
     private static class SerializedPageReader
             implements Iterator<SerializedPage>
     {
@@ -212,4 +229,83 @@ public class PagesSerdeUtil
             return readSerializedPage(input);
         }
     }
+
+    private static class InputStreamSerializedPageReader
+            implements Iterator<SerializedPage>
+    {
+        // reads of at least this size bypass the buffer
+        private static final int BUFFER_SIZE = 4 * 1024;
+
+        private final InputStream input;
+        private final byte[] metadata = new byte[PAGE_METADATA_SIZE];
+        private final Slice metadataSlice = Slices.wrappedBuffer(metadata);
+
+        private SerializedPage nextPage;
+        private boolean finished;
+
+        InputStreamSerializedPageReader(InputStream input)
+        {
+            this.input = new BufferedInputStream(requireNonNull(input, "input is null"), BUFFER_SIZE);
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (nextPage == null && !finished) {
+                try {
+                    nextPage = readNextPage();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                finished = nextPage == null;
+            }
+            return nextPage != null;
+        }
+
+        @Override
+        public SerializedPage next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SerializedPage page = nextPage;
+            nextPage = null;
+            return page;
+        }
+
+        private SerializedPage readNextPage()
+                throws IOException
+        {
+            int firstByte = input.read();
+            if (firstByte < 0) {
+                return null;
+            }
+            metadata[0] = (byte) firstByte;
+            readFully(input, metadata, 1, metadata.length - 1);
+
+            int positionCount = metadataSlice.getInt(0);
+            byte codecMarker = metadataSlice.getByte(SIZE_OF_INT);
+            int uncompressedSizeInBytes = metadataSlice.getInt(SIZE_OF_INT + SIZE_OF_BYTE);
+            int sizeInBytes = metadataSlice.getInt(SIZE_OF_INT * 2 + SIZE_OF_BYTE);
+            long checksum = metadataSlice.getLong(SIZE_OF_INT * 3 + SIZE_OF_BYTE);
+
+            byte[] data = new byte[sizeInBytes];
+            readFully(input, data, 0, sizeInBytes);
+            return new SerializedPage(Slices.wrappedBuffer(data), codecMarker, positionCount, uncompressedSizeInBytes, checksum);
+        }
+
+        private static void readFully(InputStream input, byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            while (length > 0) {
+                int bytesRead = input.read(buffer, offset, length);
+                if (bytesRead < 0) {
+                    throw new EOFException("Unexpected end of serialized page stream");
+                }
+                offset += bytesRead;
+                length -= bytesRead;
+            }
+        }
+    }
 }